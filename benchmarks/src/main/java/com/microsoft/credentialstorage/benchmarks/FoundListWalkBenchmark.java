@@ -0,0 +1,172 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.benchmarks;
+
+import com.microsoft.credentialstorage.implementation.posix.internal.GLibLibrary;
+import com.microsoft.credentialstorage.implementation.posix.keyring.GnomeKeyringLibrary;
+import com.sun.jna.Memory;
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+import com.sun.jna.Structure;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to walk the list of items returned by a search and read the key attribute of each item, as done
+ * when listing the keys of the gnome-keyring store, with JNA {@code Structure}s and with fixed field offsets.
+ *
+ * The list is built in native memory, so no keyring is needed; divide the score by {@code items} for the
+ * per-item cost.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FoundListWalkBenchmark {
+    private static final String[] ATTRIBUTE_NAMES = {"Type", "Account", "Key"};
+    private static final int ATTRIBUTE_SIZE = Native.POINTER_SIZE * 3;
+
+    @Param({"10", "100", "1000"})
+    public int items;
+
+    private Pointer list;
+
+    // keeps the native memory of the list alive
+    private final List<Memory> allocations = new ArrayList<>();
+
+    @Setup
+    public void setUp() {
+        Pointer next = null;
+        for (int i = items - 1; i >= 0; i--) {
+            final Memory attributes = allocate(ATTRIBUTE_SIZE * ATTRIBUTE_NAMES.length);
+            for (int a = 0; a < ATTRIBUTE_NAMES.length; a++) {
+                final Pointer attribute = attributes.share((long) a * ATTRIBUTE_SIZE);
+                attribute.setPointer(0, string(ATTRIBUTE_NAMES[a]));
+                attribute.setPointer(Native.POINTER_SIZE * 2, string(ATTRIBUTE_NAMES[a] + "-" + i));
+            }
+
+            final Memory array = allocate(Native.POINTER_SIZE * 2);
+            array.setPointer(0, attributes);
+            array.setInt(Native.POINTER_SIZE, ATTRIBUTE_NAMES.length);
+
+            final Memory found = allocate(Native.POINTER_SIZE * 4);
+            found.setPointer(Native.POINTER_SIZE * 2, array);
+            found.setPointer(Native.POINTER_SIZE * 3, string("secret-" + i));
+
+            final Memory node = allocate(Native.POINTER_SIZE * 3);
+            node.setPointer(0, found);
+            node.setPointer(Native.POINTER_SIZE, next);
+            next = node;
+        }
+        list = next;
+    }
+
+    @Benchmark
+    public void walkStructures(final Blackhole blackhole) {
+        for (Pointer next = list; next != null; ) {
+            final GLibLibrary.GList listItem = new GLibLibrary.GList(next);
+            next = listItem.next;
+
+            final Found item = new Found(listItem.data);
+            final GLibLibrary.GArray attrArray = new GLibLibrary.GArray(item.attributes);
+            final Attribute dummyArray = new Attribute(attrArray.data);
+            for (Structure attr : dummyArray.toArray(attrArray.len)) {
+                final Attribute attribute = (Attribute) attr;
+                if ("Key".equals(attribute.name)) {
+                    blackhole.consume(attribute.value);
+                    break;
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void walkOffsets(final Blackhole blackhole) {
+        for (Pointer next = list; next != null; next = next.getPointer(GLibLibrary.GList.NEXT_OFFSET)) {
+            final Pointer item = next.getPointer(GLibLibrary.GList.DATA_OFFSET);
+            final Pointer attributes = item.getPointer(GnomeKeyringLibrary.GnomeKeyringFound.ATTRIBUTES_OFFSET);
+            final Pointer data = attributes.getPointer(GLibLibrary.GArray.DATA_OFFSET);
+            final int length = attributes.getInt(GLibLibrary.GArray.LEN_OFFSET);
+            for (int i = 0; i < length; i++) {
+                final Pointer attribute = data.share((long) i * ATTRIBUTE_SIZE);
+                if ("Key".equals(attribute.getPointer(GnomeKeyringLibrary.GnomeKeyringAttribute.NAME_OFFSET).getString(0))) {
+                    blackhole.consume(attribute.getPointer(GnomeKeyringLibrary.GnomeKeyringAttribute.VALUE_OFFSET).getString(0));
+                    break;
+                }
+            }
+        }
+    }
+
+    private Memory allocate(final long size) {
+        final Memory memory = new Memory(size);
+        memory.clear();
+        allocations.add(memory);
+        return memory;
+    }
+
+    private Pointer string(final String value) {
+        final Memory memory = allocate(value.length() + 1);
+        memory.setString(0, value);
+        return memory;
+    }
+
+    /**
+     * Same fields as {@code GnomeKeyringLibrary.GnomeKeyringAttribute}, which loads gnome-keyring when created
+     */
+    public static final class Attribute extends Structure {
+        public String name;
+        public int type;
+        public String value;
+
+        public Attribute() {
+        }
+
+        public Attribute(final Pointer p) {
+            super(p);
+            read();
+        }
+
+        @Override
+        protected List<String> getFieldOrder() {
+            return Arrays.asList("name", "type", "value");
+        }
+    }
+
+    /**
+     * Same fields as {@code GnomeKeyringLibrary.GnomeKeyringFound}
+     */
+    public static final class Found extends Structure {
+        public String keyring;
+        public int item_id;
+        public Pointer attributes;
+        public String secret;
+
+        public Found(final Pointer p) {
+            super(p);
+            read();
+        }
+
+        @Override
+        protected List<String> getFieldOrder() {
+            return Arrays.asList("keyring", "item_id", "attributes", "secret");
+        }
+    }
+}
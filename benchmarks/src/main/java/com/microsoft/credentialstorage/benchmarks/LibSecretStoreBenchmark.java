@@ -0,0 +1,95 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.benchmarks;
+
+import com.microsoft.credentialstorage.implementation.posix.libsecret.LibSecretBackedCredentialStore;
+import com.microsoft.credentialstorage.implementation.posix.libsecret.LibSecretBackedSecureStore;
+import com.microsoft.credentialstorage.model.StoredCredential;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-call time of the libsecret store, with the calls made through JNA and, on Java 22 and later, through
+ * {@code java.lang.foreign} downcalls. Each binding runs in its own fork, as it is chosen when the store is loaded.
+ *
+ * Requires an unlocked secret service, e.g. gnome-keyring started with {@code dbus-run-session}. The time includes
+ * the D-Bus round trip to the service, so the difference between the bindings is the marshalling overhead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class LibSecretStoreBenchmark {
+    private static final String KEY = "http://benchmark.credential-secure-storage";
+    private static final String MISSING_KEY = "http://benchmark.credential-secure-storage/missing";
+
+    private LibSecretBackedCredentialStore store;
+    private StoredCredential credential;
+
+    @Setup
+    public void setUp() {
+        if (!LibSecretBackedSecureStore.isSupported()) {
+            throw new IllegalStateException("No secret service available");
+        }
+
+        store = new LibSecretBackedCredentialStore();
+        credential = new StoredCredential("benchmark", "benchmark-password".toCharArray());
+        if (!store.add(KEY, credential)) {
+            throw new IllegalStateException("Adding the credential failed");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        store.delete(KEY);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-DAUTH_LIB_LIBSECRET_DOWNCALLS=false")
+    public StoredCredential getJna() {
+        return store.get(KEY);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-DAUTH_LIB_LIBSECRET_DOWNCALLS=true")
+    public StoredCredential getDowncalls() {
+        return store.get(KEY);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-DAUTH_LIB_LIBSECRET_DOWNCALLS=false")
+    public StoredCredential getMissingJna() {
+        return store.get(MISSING_KEY);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-DAUTH_LIB_LIBSECRET_DOWNCALLS=true")
+    public StoredCredential getMissingDowncalls() {
+        return store.get(MISSING_KEY);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-DAUTH_LIB_LIBSECRET_DOWNCALLS=false")
+    public boolean addJna() {
+        return store.add(KEY, credential);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-DAUTH_LIB_LIBSECRET_DOWNCALLS=true")
+    public boolean addDowncalls() {
+        return store.add(KEY, credential);
+    }
+}
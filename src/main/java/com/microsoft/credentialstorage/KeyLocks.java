@@ -0,0 +1,40 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Striped locks serializing the conditional writes of a key within this process, for stores without
+ * a native conditional write.
+ *
+ * The stripes are keyed by the class of the store rather than by the instance: the instances of a backend's
+ * store, e.g. the stores returned by separate calls of {@link StorageProvider}, share the secrets of the
+ * backend, so their conditional writes of a key have to be serialized with each other.
+ */
+final class KeyLocks {
+    private static final int STRIPES = 64;
+
+    private static final ReentrantLock[] LOCKS = new ReentrantLock[STRIPES];
+
+    static {
+        for (int i = 0; i < STRIPES; i++) {
+            LOCKS[i] = new ReentrantLock();
+        }
+    }
+
+    private KeyLocks() {
+    }
+
+    /**
+     * @param store store the key belongs to
+     * @param key key to lock
+     * @return lock of the stripe of the key in the backend of the store
+     */
+    static ReentrantLock get(final SecretStore<?> store, final String key) {
+        final int hash = 31 * store.getClass().getName().hashCode() + key.hashCode();
+        // spread the bits, like HashMap
+        return LOCKS[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+    }
+}
@@ -0,0 +1,201 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage;
+
+import java.util.Objects;
+
+/**
+ * Outcome of reading a secret, telling a missing secret from a backend which could not be read,
+ * see {@link SecretStore#getResult(String)}.
+ *
+ * Failures carry the native error of the backend where there is one, e.g. the domain and code of a libsecret
+ * {@code GError}, or the {@code GetLastError} code of a Credential Manager call.
+ *
+ * @param <T> secret type
+ */
+public final class SecretResult<T> {
+
+    /**
+     * Status of a read
+     */
+    public enum Status {
+        /**
+         * The secret was found
+         */
+        FOUND,
+
+        /**
+         * No secret is stored for the key
+         */
+        NOT_FOUND,
+
+        /**
+         * The secret is stored in a locked keyring or collection which could not be unlocked
+         */
+        LOCKED,
+
+        /**
+         * The backend, e.g. its daemon or the logon session, is not available
+         */
+        UNAVAILABLE,
+
+        /**
+         * The read was cancelled or did not complete in time
+         */
+        TIMEOUT,
+
+        /**
+         * The backend reported another error
+         */
+        FAILED
+    }
+
+    private static final SecretResult<?> NOT_FOUND = new SecretResult<>(Status.NOT_FOUND, null, null, 0, null);
+
+    private final Status status;
+    private final T value;
+    private final String errorDomain;
+    private final int errorCode;
+    private final String message;
+
+    private SecretResult(final Status status, final T value, final String errorDomain, final int errorCode,
+                         final String message) {
+        this.status = status;
+        this.value = value;
+        this.errorDomain = errorDomain;
+        this.errorCode = errorCode;
+        this.message = message;
+    }
+
+    /**
+     * @param value secret found
+     * @param <T> secret type
+     * @return result of a secret found
+     */
+    public static <T> SecretResult<T> found(final T value) {
+        Objects.requireNonNull(value, "value cannot be null");
+
+        return new SecretResult<>(Status.FOUND, value, null, 0, null);
+    }
+
+    /**
+     * @param <T> secret type
+     * @return result of a missing secret
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> SecretResult<T> notFound() {
+        return (SecretResult<T>) NOT_FOUND;
+    }
+
+    /**
+     * @param value secret, or {@code null} if it is not found
+     * @param <T> secret type
+     * @return result of a secret found or missing
+     */
+    public static <T> SecretResult<T> of(final T value) {
+        return value != null ? found(value) : notFound();
+    }
+
+    /**
+     * Creates the result of a read which failed.
+     *
+     * @param status status of the failure
+     * @param errorDomain domain of the native error code, or {@code null} if there is none
+     * @param errorCode native error code
+     * @param message description of the error, may be {@code null}
+     * @param <T> secret type
+     * @return result of a failed read
+     */
+    public static <T> SecretResult<T> failed(final Status status, final String errorDomain, final int errorCode,
+                                             final String message) {
+        Objects.requireNonNull(status, "status cannot be null");
+        if (status == Status.FOUND || status == Status.NOT_FOUND) {
+            throw new IllegalArgumentException(status + " is not a failure");
+        }
+
+        return new SecretResult<>(status, null, errorDomain, errorCode, message);
+    }
+
+    /**
+     * @return status of the read
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return secret found, or {@code null} if it was not found or the read failed
+     */
+    public T getValue() {
+        return value;
+    }
+
+    /**
+     * @return {@code true} if the secret was found
+     */
+    public boolean isFound() {
+        return status == Status.FOUND;
+    }
+
+    /**
+     * @return {@code true} if the read failed, so whether a secret is stored for the key is not known
+     */
+    public boolean isFailure() {
+        return status != Status.FOUND && status != Status.NOT_FOUND;
+    }
+
+    /**
+     * Retype a failed result, e.g. to report the failure to read a part of a secret as the failure of the secret.
+     *
+     * @param <U> secret type of the result
+     * @return this failed result
+     * @throws IllegalStateException if the read did not fail
+     */
+    @SuppressWarnings("unchecked")
+    public <U> SecretResult<U> asFailure() {
+        if (!isFailure()) {
+            throw new IllegalStateException(status + " is not a failure");
+        }
+        // a failure holds no value
+        return (SecretResult<U>) this;
+    }
+
+    /**
+     * Domain of the native error code: the {@code GError} domain for libsecret, {@code win32} for Credential
+     * Manager, {@code gnome-keyring} for GNOME Keyring and {@code security} for the exit codes of the macOS
+     * {@code security} tool.
+     *
+     * @return domain of the native error code, or {@code null} if there is none
+     */
+    public String getErrorDomain() {
+        return errorDomain;
+    }
+
+    /**
+     * @return native error code, {@code 0} if there is none
+     */
+    public int getErrorCode() {
+        return errorCode;
+    }
+
+    /**
+     * @return description of the error, or {@code null}
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Describes the result without its secret.
+     *
+     * @return description of the result
+     */
+    @Override
+    public String toString() {
+        if (!isFailure()) {
+            return status.name();
+        }
+        return status + " (" + errorDomain + " " + errorCode + ": " + message + ")";
+    }
+}
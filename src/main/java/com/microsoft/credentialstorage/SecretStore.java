@@ -5,6 +5,10 @@ package com.microsoft.credentialstorage;
 
 import com.microsoft.credentialstorage.model.StoredSecret;
 
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
 /**
  * Secret store to hold the credentials.
  *
@@ -24,6 +28,28 @@ public interface SecretStore<E extends StoredSecret> {
      */
     E get(final String key);
 
+    /**
+     * Retrieve a secret identified by the key from this store, telling a missing secret from a read which failed.
+     *
+     * Native stores classify the errors of their backend, e.g. a locked collection or a daemon which is not
+     * running. The default implementation only tells timeouts apart, see {@link SecretStoreTimeoutException}: like
+     * {@link #get(String)}, other failures are reported as {@link SecretResult.Status#NOT_FOUND}.
+     *
+     * @param key
+     *      for which a secret is associated with
+     *
+     * @return result of the read, holding the secret if it was found
+     */
+    default SecretResult<E> getResult(final String key) {
+        Objects.requireNonNull(key, "key cannot be null");
+
+        try {
+            return SecretResult.of(get(key));
+        } catch (final SecretStoreTimeoutException e) {
+            return SecretResult.failed(SecretResult.Status.TIMEOUT, null, 0, e.getMessage());
+        }
+    }
+
     /**
      * Remove the secret identified by the key from this store
      *
@@ -47,6 +73,67 @@ public interface SecretStore<E extends StoredSecret> {
      */
     boolean add(final String key, final E secret);
 
+    /**
+     * Save the secret identified by the key to this store, unless a secret is already stored for the key.
+     *
+     * Stores with a native conditional write make this atomic for all processes. Otherwise the default
+     * implementation only serializes it with the other conditional writes of the stores of the same class in
+     * this process.
+     *
+     * @param key
+     *      for which a secret is associated with
+     * @param secret
+     *      secret to be stored
+     *
+     * @return {@code true} if the secret was stored
+     *         {@code false} if a secret is already stored for the key, or the write failed
+     */
+    default boolean putIfAbsent(final String key, final E secret) {
+        Objects.requireNonNull(key, "key cannot be null");
+        Objects.requireNonNull(secret, "secret cannot be null");
+
+        final ReentrantLock lock = KeyLocks.get(this, key);
+        lock.lock();
+        try {
+            return get(key) == null && add(key, secret);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Replace the secret identified by the key, only if it is still the expected secret. The expected secret is
+     * compared by value, so it serves as the version of the secret: e.g. a token refresher replaces the token pair
+     * it refreshed, and loses to a concurrent refresher which replaced it first.
+     *
+     * Stores with a native conditional write make this atomic for all processes. Otherwise the default
+     * implementation only serializes it with the other conditional writes of the stores of the same class in
+     * this process.
+     *
+     * @param key
+     *      for which a secret is associated with
+     * @param expected
+     *      secret expected to be stored
+     * @param updated
+     *      secret to be stored
+     *
+     * @return {@code true} if the secret was replaced
+     *         {@code false} if another secret, or no secret, is stored for the key, or the write failed
+     */
+    default boolean replace(final String key, final E expected, final E updated) {
+        Objects.requireNonNull(key, "key cannot be null");
+        Objects.requireNonNull(expected, "expected cannot be null");
+        Objects.requireNonNull(updated, "updated cannot be null");
+
+        final ReentrantLock lock = KeyLocks.get(this, key);
+        lock.lock();
+        try {
+            return expected.equals(get(key)) && add(key, updated);
+        } finally {
+            lock.unlock();
+        }
+    }
+
     /**
      * Indicate whether this store is secure or not.  Generally a secure storage is password protected, and all
      * data maybe encrypted on disk.  However this method does not assert any of those claims - it simply
@@ -56,4 +143,58 @@ public interface SecretStore<E extends StoredSecret> {
      *         {@code false} otherwise
      */
     boolean isSecure();
+
+    /**
+     * List the keys of the secrets in this store.
+     *
+     * The keys are read lazily while the stream is consumed. The stream may hold native resources, so it should be
+     * closed, e.g. with try-with-resources. Secrets added or deleted while the stream is consumed may or may not
+     * be reflected.
+     *
+     * @return keys of the secrets
+     * @throws UnsupportedOperationException if the store cannot list its keys
+     */
+    default Stream<String> keys() {
+        throw new UnsupportedOperationException(getClass().getName() + " cannot list its keys");
+    }
+
+    /**
+     * List the keys of the secrets in this store starting with a prefix.
+     *
+     * @param prefix
+     *      prefix of the keys
+     *
+     * @return keys of the secrets starting with the prefix, see {@link #keys()}
+     * @throws UnsupportedOperationException if the store cannot list its keys
+     */
+    default Stream<String> scan(final String prefix) {
+        Objects.requireNonNull(prefix, "prefix cannot be null");
+
+        return keys().filter(key -> key.startsWith(prefix));
+    }
+
+    /**
+     * Register a listener notified when secrets of this store are added, replaced or deleted, including by
+     * other processes where the underlying storage reports them.
+     *
+     * @param listener
+     *      listener to notify
+     *
+     * @throws UnsupportedOperationException if the store cannot notify of changes
+     */
+    default void addListener(final SecretStoreListener listener) {
+        throw new UnsupportedOperationException(getClass().getName() + " cannot notify of changes");
+    }
+
+    /**
+     * Unregister a listener added with {@link #addListener(SecretStoreListener)}.
+     *
+     * @param listener
+     *      listener to remove
+     *
+     * @throws UnsupportedOperationException if the store cannot notify of changes
+     */
+    default void removeListener(final SecretStoreListener listener) {
+        throw new UnsupportedOperationException(getClass().getName() + " cannot notify of changes");
+    }
 }
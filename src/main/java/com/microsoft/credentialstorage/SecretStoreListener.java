@@ -0,0 +1,24 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage;
+
+/**
+ * Listener notified of changes to the secrets of a store, see {@link SecretStore#addListener(SecretStoreListener)}.
+ *
+ * Notifications arrive on a thread of the store, after the change, and possibly for changes made by this
+ * listener's own process. They should return quickly, e.g. by invalidating a cached entry.
+ */
+public interface SecretStoreListener {
+    /**
+     * A secret was added, replaced or deleted.
+     *
+     * @param key key of the secret
+     */
+    void secretChanged(String key);
+
+    /**
+     * Changes may have been missed, any secret of the store may have changed.
+     */
+    void secretsChanged();
+}
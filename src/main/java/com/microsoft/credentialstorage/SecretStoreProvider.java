@@ -0,0 +1,87 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage;
+
+import com.microsoft.credentialstorage.model.StoredCredential;
+import com.microsoft.credentialstorage.model.StoredToken;
+import com.microsoft.credentialstorage.model.StoredTokenPair;
+
+/**
+ * Provides the stores of a storage backend to {@link StorageProvider}, which discovers the providers with
+ * {@link java.util.ServiceLoader}. Declare a provider with {@code provides} in the module declaration, or in
+ * {@code META-INF/services/com.microsoft.credentialstorage.SecretStoreProvider} on the class path.
+ *
+ * The provider with the highest priority whose backend is supported is used, secure providers being preferred
+ * over insecure ones. Providers are probed in order of priority: {@link #isLikelySupported()} first, then
+ * {@link #isSupported()} until a provider is supported, so that only the winner's backend is loaded. A provider
+ * must not load the classes or the native libraries of its backend before {@link #isSupported()} is called.
+ */
+public interface SecretStoreProvider {
+    /**
+     * @return name of the backend, for logging
+     */
+    String getName();
+
+    /**
+     * Priority of the provider, providers with a higher priority are probed first. The built-in providers of the
+     * platform stores have priorities between 100 and 500.
+     *
+     * @return priority
+     */
+    int getPriority();
+
+    /**
+     * @return {@code true} if the stores are secure, see {@link SecretStore#isSecure()}
+     */
+    boolean isSecure();
+
+    /**
+     * @return {@code true} if the secrets outlive the user's session
+     */
+    boolean isPersistent();
+
+    /**
+     * Cheap check of whether the backend may be supported, from the operating system, the environment or
+     * the configuration only.
+     *
+     * @return {@code false} if the backend is certainly not supported
+     */
+    boolean isLikelySupported();
+
+    /**
+     * Check whether the backend is supported, which may load native libraries or call the backend.
+     *
+     * @return {@code true} if the stores of this provider can be used
+     */
+    boolean isSupported();
+
+    /**
+     * @return {@code true} if the stores notify their listeners of the changes made by other processes
+     */
+    default boolean isReportingChanges() {
+        return false;
+    }
+
+    /**
+     * @return number of calls to the backend that may usefully run at the same time
+     */
+    default int getMaxConcurrentCalls() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * @return new credential store
+     */
+    SecretStore<StoredCredential> createCredentialStore();
+
+    /**
+     * @return new token store
+     */
+    SecretStore<StoredToken> createTokenStore();
+
+    /**
+     * @return new token pair store
+     */
+    SecretStore<StoredTokenPair> createTokenPairStore();
+}
@@ -0,0 +1,23 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage;
+
+/**
+ * Thrown when a secret cannot be saved because the backend's quota of the user is exhausted, e.g. the key quota
+ * of the kernel keyring.
+ *
+ * The secret was not saved; deleting other secrets, or raising the quota, lets later writes succeed.
+ */
+public class SecretStoreQuotaExceededException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates the exception.
+     *
+     * @param message description of the quota exceeded
+     */
+    public SecretStoreQuotaExceededException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,35 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage;
+
+import java.time.Duration;
+
+/**
+ * Thrown when a secret store operation with a deadline does not complete in time.
+ *
+ * The operation was cancelled; a write may or may not have been applied.
+ */
+public class SecretStoreTimeoutException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final transient Duration timeout;
+
+    /**
+     * Creates the exception.
+     *
+     * @param message description of the operation
+     * @param timeout time the operation was allowed to take
+     */
+    public SecretStoreTimeoutException(final String message, final Duration timeout) {
+        super(message);
+        this.timeout = timeout;
+    }
+
+    /**
+     * @return time the operation was allowed to take
+     */
+    public Duration getTimeout() {
+        return timeout;
+    }
+}
@@ -0,0 +1,156 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage;
+
+import com.microsoft.credentialstorage.implementation.memory.InsecureInMemoryStore;
+import com.microsoft.credentialstorage.model.StoredCredential;
+import com.microsoft.credentialstorage.model.StoredSecret;
+import com.microsoft.credentialstorage.model.StoredToken;
+import com.microsoft.credentialstorage.model.StoredTokenPair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Named in-memory stores shared by the components of the process, see
+ * {@link StorageProvider#getTokenStorage(boolean, StorageProvider.SecureOption, String)}.
+ *
+ * Each name holds a credential, a token and a token pair store, created on first use, unbounded and without
+ * expiry unless configured otherwise for the name before. The secrets of the stores are cleared when the process
+ * exits.
+ */
+final class SharedStoreRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(SharedStoreRegistry.class);
+
+    private final ConcurrentMap<String, Stores> stores = new ConcurrentHashMap<>();
+    private final AtomicBoolean clearedOnExit = new AtomicBoolean();
+
+    /**
+     * Configure the stores of a name, unless they are already in use.
+     *
+     * @param name name of the stores
+     * @param maximumSize maximum number of secrets of each store, or {@link InsecureInMemoryStore#UNBOUNDED}
+     * @param timeToLive time-to-live of the secrets, or {@code null} if they do not expire
+     * @return {@code true} if the stores were configured
+     *         {@code false} if stores of this name were already created
+     */
+    boolean configure(final String name, final long maximumSize, final Duration timeToLive) {
+        Objects.requireNonNull(name, "name cannot be null");
+
+        final Stores configured = new Stores(maximumSize, timeToLive);
+        if (stores.putIfAbsent(name, configured) != null) {
+            logger.warn("The {} stores are already in use, keeping their configuration.", name);
+            return false;
+        }
+
+        clearOnExit();
+        return true;
+    }
+
+    /**
+     * @param name name of the stores
+     * @return credential store of the name
+     */
+    SecretStore<StoredCredential> getCredentialStore(final String name) {
+        return get(name).credentials;
+    }
+
+    /**
+     * @param name name of the stores
+     * @return token store of the name
+     */
+    SecretStore<StoredToken> getTokenStore(final String name) {
+        return get(name).tokens;
+    }
+
+    /**
+     * @param name name of the stores
+     * @return token pair store of the name
+     */
+    SecretStore<StoredTokenPair> getTokenPairStore(final String name) {
+        return get(name).tokenPairs;
+    }
+
+    /**
+     * Delete the secrets of the stores of a name and clear their values, see {@link StoredSecret#clear()}. The
+     * stores stay in use, with their configuration.
+     *
+     * @param name name of the stores
+     */
+    void clear(final String name) {
+        Objects.requireNonNull(name, "name cannot be null");
+
+        final Stores named = stores.get(name);
+        if (named != null) {
+            named.clear();
+        }
+    }
+
+    /**
+     * Delete the secrets of all stores and clear their values.
+     */
+    void clearAll() {
+        stores.values().forEach(Stores::clear);
+    }
+
+    private Stores get(final String name) {
+        Objects.requireNonNull(name, "name cannot be null");
+
+        Stores named = stores.get(name);
+        if (named == null) {
+            named = stores.computeIfAbsent(name, key -> new Stores(InsecureInMemoryStore.UNBOUNDED, null));
+            clearOnExit();
+        }
+        return named;
+    }
+
+    private void clearOnExit() {
+        if (clearedOnExit.compareAndSet(false, true)) {
+            Runtime.getRuntime().addShutdownHook(new Thread(this::clearAll, "credential-shared-store-shutdown"));
+        }
+    }
+
+    /**
+     * Stores of a name
+     */
+    private static final class Stores {
+        final InsecureInMemoryStore<StoredCredential> credentials;
+        final InsecureInMemoryStore<StoredToken> tokens;
+        final InsecureInMemoryStore<StoredTokenPair> tokenPairs;
+
+        Stores(final long maximumSize, final Duration timeToLive) {
+            this.credentials = new InsecureInMemoryStore<>(maximumSize, timeToLive);
+            this.tokens = new InsecureInMemoryStore<>(maximumSize, timeToLive);
+            this.tokenPairs = new InsecureInMemoryStore<>(maximumSize, timeToLive);
+        }
+
+        void clear() {
+            clear(credentials);
+            clear(tokens);
+            clear(tokenPairs);
+        }
+
+        private static <E extends StoredSecret> void clear(final InsecureInMemoryStore<E> store) {
+            final List<String> keys;
+            try (Stream<String> stream = store.keys()) {
+                keys = stream.collect(Collectors.toList());
+            }
+
+            for (final String key : keys) {
+                final E secret = store.get(key);
+                if (store.delete(key) && secret != null) {
+                    secret.clear();
+                }
+            }
+        }
+    }
+}
@@ -3,34 +3,53 @@
 
 package com.microsoft.credentialstorage;
 
-import com.microsoft.credentialstorage.implementation.posix.libsecret.LibSecretBackedCredentialStore;
-import com.microsoft.credentialstorage.implementation.posix.libsecret.LibSecretBackedSecureStore;
-import com.microsoft.credentialstorage.implementation.posix.libsecret.LibSecretBackedTokenPairStore;
-import com.microsoft.credentialstorage.implementation.posix.libsecret.LibSecretBackedTokenStore;
+import com.microsoft.credentialstorage.audit.AccessEventPipeline;
+import com.microsoft.credentialstorage.audit.AccessEventSink;
+import com.microsoft.credentialstorage.audit.JfrAccessEventSink;
+import com.microsoft.credentialstorage.audit.JsonFileAccessEventSink;
+import com.microsoft.credentialstorage.audit.Slf4jAccessEventSink;
+import com.microsoft.credentialstorage.composite.AuditedSecretStore;
+import com.microsoft.credentialstorage.composite.BloomFilteredSecretStore;
+import com.microsoft.credentialstorage.composite.Bulkhead;
+import com.microsoft.credentialstorage.composite.CircuitBreaker;
+import com.microsoft.credentialstorage.composite.JournaledSecretStore;
+import com.microsoft.credentialstorage.composite.OffloadingSecretStore;
+import com.microsoft.credentialstorage.composite.RateLimiter;
+import com.microsoft.credentialstorage.composite.ResilientSecretStore;
+import com.microsoft.credentialstorage.composite.RetryPolicy;
+import com.microsoft.credentialstorage.composite.RetryingSecretStore;
+import com.microsoft.credentialstorage.composite.ThrottledSecretStore;
+import com.microsoft.credentialstorage.composite.TieredSecretStore;
 import com.microsoft.credentialstorage.model.StoredCredential;
 import com.microsoft.credentialstorage.model.StoredSecret;
 import com.microsoft.credentialstorage.model.StoredToken;
 import com.microsoft.credentialstorage.model.StoredTokenPair;
-import com.microsoft.credentialstorage.implementation.macosx.KeychainSecurityBackedCredentialStore;
-import com.microsoft.credentialstorage.implementation.macosx.KeychainSecurityBackedTokenPairStore;
-import com.microsoft.credentialstorage.implementation.macosx.KeychainSecurityBackedTokenStore;
-import com.microsoft.credentialstorage.implementation.macosx.KeychainSecurityCliStore;
 import com.microsoft.credentialstorage.implementation.memory.InsecureInMemoryStore;
-import com.microsoft.credentialstorage.implementation.posix.keyring.GnomeKeyringBackedCredentialStore;
-import com.microsoft.credentialstorage.implementation.posix.keyring.GnomeKeyringBackedTokenPairStore;
-import com.microsoft.credentialstorage.implementation.posix.keyring.GnomeKeyringBackedTokenStore;
-import com.microsoft.credentialstorage.implementation.posix.keyring.GnomeKeyringBackedSecureStore;
-import com.microsoft.credentialstorage.implementation.windows.CredManagerBackedCredentialStore;
-import com.microsoft.credentialstorage.implementation.windows.CredManagerBackedSecureStore;
-import com.microsoft.credentialstorage.implementation.windows.CredManagerBackedTokenPairStore;
-import com.microsoft.credentialstorage.implementation.windows.CredManagerBackedTokenStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 /**
  * Returns a store for credential, token or token pair for the requested security level.
@@ -55,6 +74,95 @@ public final class StorageProvider {
         PREFERRED
     }
 
+    /**
+     * Option for putting an in-memory tier in front of a persistent store, see {@link TieredSecretStore}.
+     */
+    public enum TieringOption {
+        /**
+         * Every operation goes to the persistent store
+         */
+        NONE,
+
+        /**
+         * Reads are served from memory, writes are applied to the persistent store before returning
+         */
+        WRITE_THROUGH,
+
+        /**
+         * Reads are served from memory, writes are applied to the persistent store in the background
+         */
+        WRITE_BACK
+    }
+
+    /**
+     * System property with the number of platform threads to run the calls of the persistent stores on,
+     * see {@link OffloadingSecretStore}. Set it when the stores are used from virtual threads.
+     */
+    public static final String OFFLOAD_THREADS = "AUTH_LIB_OFFLOAD_THREADS";
+
+    /**
+     * System property with a directory for journals of the changes made to the persistent stores, see
+     * {@link JournaledSecretStore}. Set it when several processes share a store without native change
+     * notifications, so that their in-memory tiers are invalidated when another process changes a secret.
+     */
+    public static final String CHANGE_JOURNAL_DIRECTORY = "AUTH_LIB_CHANGE_JOURNAL_DIRECTORY";
+
+    /**
+     * System property with the names of the providers of a fallback chain of persistent stores, separated by
+     * commas, e.g. {@code libsecret,kernel keyring}, see {@link ResilientSecretStore}. The supported providers
+     * are chained in this order, each behind a circuit breaker shared by its stores. Providers of session stores,
+     * such as the kernel keyring, are only used as persistent stores when they are named in the chain.
+     */
+    public static final String FALLBACK_CHAIN = "AUTH_LIB_FALLBACK_CHAIN";
+
+    /**
+     * System property with the number of attempts of reads of the persistent stores failing with a transient
+     * error of their backend, e.g. while the keyring daemon starts, see {@link RetryingSecretStore}. Reads are
+     * not retried unless it is set above 1.
+     */
+    public static final String RETRY_ATTEMPTS = "AUTH_LIB_RETRY_ATTEMPTS";
+
+    /**
+     * System property with the number of calls in progress to each persistent backend, see {@link Bulkhead}. Calls
+     * beyond it wait in a queue, so that a spike of calls does not overwhelm a daemon shared with the session.
+     */
+    public static final String MAX_CONCURRENT_CALLS = "AUTH_LIB_MAX_CONCURRENT_CALLS";
+
+    /**
+     * System property with the rate of calls to each persistent backend, in calls per second, see
+     * {@link RateLimiter}.
+     */
+    public static final String MAX_CALLS_PER_SECOND = "AUTH_LIB_MAX_CALLS_PER_SECOND";
+
+    /**
+     * System property with the sinks of the access events of the stores, separated by commas, see
+     * {@link AccessEventPipeline}: {@code log} for the {@code com.microsoft.credentialstorage.audit} logger,
+     * {@code jfr} for Java Flight Recorder, and {@code json:} followed by the path of a file to append to.
+     */
+    public static final String AUDIT_SINKS = "AUTH_LIB_AUDIT_SINKS";
+
+    /**
+     * System property with the share of the accesses recorded in the audit, between 0 and 1, 1 by default.
+     */
+    public static final String AUDIT_SAMPLE_RATE = "AUTH_LIB_AUDIT_SAMPLE_RATE";
+
+    /**
+     * System property with the number of secrets expected in each persistent store, see
+     * {@link BloomFilteredSecretStore}. Set it to answer lookups of keys a store does not hold without calling its
+     * backend; lookups are not filtered unless it is set.
+     */
+    public static final String LOOKUP_FILTER_KEYS = "AUTH_LIB_LOOKUP_FILTER_KEYS";
+
+    // bounds the memory tier, and how long changes made by other processes stay unnoticed
+    // when the persistent store does not notify of changes
+    private static final long MEMORY_TIER_SIZE = 1000;
+    private static final Duration MEMORY_TIER_TTL = Duration.ofMinutes(5);
+
+    // tiered stores by write policy and persistent store, created once and returned to every caller: each one
+    // listens to its persistent store, and a write-back one runs a thread, for the life of the process
+    private static final Map<TieredSecretStore.WritePolicy,
+            ConcurrentMap<SecretStore<?>, SecretStore<?>>> TIERED_STORES;
+
     private static final Logger logger = LoggerFactory.getLogger(StorageProvider.class);
 
     private static final List<SecretStore<StoredToken>> PERSISTED_TOKEN_STORE_CANDIDATES;
@@ -63,39 +171,154 @@ public final class StorageProvider {
 
     private static final List<SecretStore<StoredCredential>> PERSISTED_CREDENTIAL_STORE_CANDIDATES;
 
+    // stores keeping the secrets for the user's session in the native storage, without saving them to disk
+    private static final SecretStore<StoredToken> SESSION_TOKEN_STORE;
+
+    private static final SecretStore<StoredTokenPair> SESSION_TOKENPAIR_STORE;
+
+    private static final SecretStore<StoredCredential> SESSION_CREDENTIAL_STORE;
+
+    // named in-memory stores shared by the components of the process
+    private static final SharedStoreRegistry SHARED_STORES = new SharedStoreRegistry();
+
     private StorageProvider() {
     }
 
     static {
+        final Map<TieredSecretStore.WritePolicy, ConcurrentMap<SecretStore<?>, SecretStore<?>>> tieredStores =
+                new EnumMap<>(TieredSecretStore.WritePolicy.class);
+        for (final TieredSecretStore.WritePolicy writePolicy : TieredSecretStore.WritePolicy.values()) {
+            tieredStores.put(writePolicy, new ConcurrentHashMap<>());
+        }
+        TIERED_STORES = Collections.unmodifiableMap(tieredStores);
+
+        final List<SecretStoreProvider> providers = loadProviders();
+        List<SecretStoreProvider> persistent = selectFallbackChain(providers);
+        if (persistent.isEmpty()) {
+            final SecretStoreProvider provider = selectProvider(providers, true);
+            persistent = provider != null ? Collections.singletonList(provider) : Collections.emptyList();
+        }
+        final SecretStoreProvider session = selectProvider(providers, false);
+
         final List<SecretStore<StoredCredential>> credentialStoreCandidates = new ArrayList<>();
         final List<SecretStore<StoredToken>> tokenStoreCandidates = new ArrayList<>();
         final List<SecretStore<StoredTokenPair>> tokenPairStoreCandidates = new ArrayList<>();
 
-        if (CredManagerBackedSecureStore.isSupported()) {
-            credentialStoreCandidates.add(new CredManagerBackedCredentialStore());
-            tokenStoreCandidates.add(new CredManagerBackedTokenStore());
-            tokenPairStoreCandidates.add(new CredManagerBackedTokenPairStore());
+        final List<SecretStore<StoredCredential>> sessionCredentialStores = new ArrayList<>();
+        final List<SecretStore<StoredToken>> sessionTokenStores = new ArrayList<>();
+        final List<SecretStore<StoredTokenPair>> sessionTokenPairStores = new ArrayList<>();
+
+        if (!persistent.isEmpty()) {
+            logger.info("Using the {} stores", persistent.stream().map(SecretStoreProvider::getName)
+                    .collect(Collectors.joining(", then ")));
+
+            final RetryPolicy retryPolicy = getRetryPolicy();
+            final int maxConcurrentCalls = getPositiveInt(MAX_CONCURRENT_CALLS);
+            final double maxCallsPerSecond = getMaxCallsPerSecond();
+            if (maxConcurrentCalls > 0 || maxCallsPerSecond > 0) {
+                logger.info("Bounding the calls of each persistent backend to {} in progress, {} per second",
+                        maxConcurrentCalls > 0 ? maxConcurrentCalls : "any number",
+                        maxCallsPerSecond > 0 ? maxCallsPerSecond : "any number");
+            }
+            final List<Backend> backends = persistent.stream()
+                    .map(provider -> new Backend(provider, retryPolicy, maxConcurrentCalls, maxCallsPerSecond))
+                    .collect(Collectors.toList());
+            credentialStoreCandidates.add(chain(backends, SecretStoreProvider::createCredentialStore));
+            tokenStoreCandidates.add(chain(backends, SecretStoreProvider::createTokenStore));
+            tokenPairStoreCandidates.add(chain(backends, SecretStoreProvider::createTokenPairStore));
+        }
+
+        if (session != null) {
+            logger.info("Using the {} stores for the session", session.getName());
+            if (persistent.isEmpty()) {
+                // e.g. the kernel keyring on a headless host, where persistent stores would be null otherwise
+                logger.info("No persistent store is supported. Set {} to \"{}\" to also use the {} stores, which do "
+                        + "not survive a reboot, as persistent stores.", FALLBACK_CHAIN, session.getName(),
+                        session.getName());
+            }
+
+            sessionCredentialStores.add(session.createCredentialStore());
+            sessionTokenStores.add(session.createTokenStore());
+            sessionTokenPairStores.add(session.createTokenPairStore());
         }
 
-        if (KeychainSecurityCliStore.isSupported()) {
-            credentialStoreCandidates.add(new KeychainSecurityBackedCredentialStore());
-            tokenStoreCandidates.add(new KeychainSecurityBackedTokenStore());
-            tokenPairStoreCandidates.add(new KeychainSecurityBackedTokenPairStore());
+        // stores reporting changes themselves need no journal
+        final Path journalDirectory = persistent.stream().allMatch(SecretStoreProvider::isReportingChanges)
+                ? null : getChangeJournalDirectory();
+        if (journalDirectory != null) {
+            logger.info("Recording the changes of the persistent stores in {}", journalDirectory);
+
+            journal(credentialStoreCandidates, journalDirectory.resolve("credentials.journal"));
+            journal(tokenStoreCandidates, journalDirectory.resolve("tokens.journal"));
+            journal(tokenPairStoreCandidates, journalDirectory.resolve("tokenpairs.journal"));
+        }
+
+        final int offloadThreads = getOffloadThreads();
+        if (offloadThreads > 0) {
+            // more threads than the backend runs calls at the same time would only wait for each other
+            int threads = offloadThreads;
+            for (final SecretStoreProvider provider : persistent) {
+                threads = Math.min(threads, provider.getMaxConcurrentCalls());
+            }
+            if (session != null) {
+                threads = Math.min(threads, session.getMaxConcurrentCalls());
+            }
+            logger.info("Running the calls of the persistent stores on {} threads", threads);
+
+            final ExecutorService executor = OffloadingSecretStore.newExecutor(threads);
+            offload(credentialStoreCandidates, executor);
+            offload(tokenStoreCandidates, executor);
+            offload(tokenPairStoreCandidates, executor);
+            offload(sessionCredentialStores, executor);
+            offload(sessionTokenStores, executor);
+            offload(sessionTokenPairStores, executor);
+        }
+
+        final int lookupFilterKeys = getPositiveInt(LOOKUP_FILTER_KEYS);
+        if (lookupFilterKeys > 0) {
+            logger.info("Filtering the lookups of the persistent stores, sized for {} keys", lookupFilterKeys);
+
+            filter(credentialStoreCandidates, lookupFilterKeys);
+            filter(tokenStoreCandidates, lookupFilterKeys);
+            filter(tokenPairStoreCandidates, lookupFilterKeys);
         }
 
-        if (LibSecretBackedSecureStore.isSupported()) {
-            credentialStoreCandidates.add(new LibSecretBackedCredentialStore());
-            tokenStoreCandidates.add(new LibSecretBackedTokenStore());
-            tokenPairStoreCandidates.add(new LibSecretBackedTokenPairStore());
-        } else if (GnomeKeyringBackedSecureStore.isSupported()) {
-            credentialStoreCandidates.add(new GnomeKeyringBackedCredentialStore());
-            tokenStoreCandidates.add(new GnomeKeyringBackedTokenStore());
-            tokenPairStoreCandidates.add(new GnomeKeyringBackedTokenPairStore());
+        final AccessEventPipeline auditPipeline = createAuditPipeline();
+        if (auditPipeline != null) {
+            final String persistentName = persistent.stream().map(SecretStoreProvider::getName)
+                    .collect(Collectors.joining(","));
+            audit(credentialStoreCandidates, persistentName, auditPipeline);
+            audit(tokenStoreCandidates, persistentName, auditPipeline);
+            audit(tokenPairStoreCandidates, persistentName, auditPipeline);
+            if (session != null) {
+                audit(sessionCredentialStores, session.getName(), auditPipeline);
+                audit(sessionTokenStores, session.getName(), auditPipeline);
+                audit(sessionTokenPairStores, session.getName(), auditPipeline);
+            }
         }
 
         PERSISTED_TOKEN_STORE_CANDIDATES = Collections.unmodifiableList(tokenStoreCandidates);
         PERSISTED_TOKENPAIR_STORE_CANDIDATES = Collections.unmodifiableList(tokenPairStoreCandidates);
         PERSISTED_CREDENTIAL_STORE_CANDIDATES = Collections.unmodifiableList(credentialStoreCandidates);
+
+        SESSION_TOKEN_STORE = sessionTokenStores.isEmpty() ? null : sessionTokenStores.get(0);
+        SESSION_TOKENPAIR_STORE = sessionTokenPairStores.isEmpty() ? null : sessionTokenPairStores.get(0);
+        SESSION_CREDENTIAL_STORE = sessionCredentialStores.isEmpty() ? null : sessionCredentialStores.get(0);
+    }
+
+    /**
+     * Returns a token store for the specific requirements, with an in-memory tier
+     * in front of a persistent store. The tiered store is created once, and shared by the callers asking for
+     * the same persistent store and tiering option.
+     *
+     * @param persist true for persistent storage
+     * @param secureOption secure or non-secure storage
+     * @param tieringOption in-memory tier for a persistent store
+     * @return store
+     */
+    public static SecretStore<StoredToken> getTokenStorage(final boolean persist, final SecureOption secureOption,
+                                                           final TieringOption tieringOption) {
+        return tiered(persist, getTokenStorage(persist, secureOption), tieringOption);
     }
 
     /**
@@ -108,23 +331,53 @@ public final class StorageProvider {
     public static SecretStore<StoredToken> getTokenStorage(final boolean persist, final SecureOption secureOption) {
         Objects.requireNonNull(secureOption, "secureOption cannot be null");
 
-        logger.info("Getting a {} token store that {} be secure", persist ? "persistent" : "non-persistent",
+        logger.debug("Getting a {} token store that {} be secure", persist ? "persistent" : "non-persistent",
                 secureOption == SecureOption.REQUIRED ? "required" : "preferred");
 
-        final NonPersistentStoreGenerator<StoredToken> inMemoryStoreGenerator = new NonPersistentStoreGenerator<>() {
-            @Override
-            public SecretStore<StoredToken> getInsecureNonPersistentStore() {
-                return new InsecureInMemoryStore<>();
-            }
+        return getStore(persist, secureOption, PERSISTED_TOKEN_STORE_CANDIDATES,
+                nonPersistentStoreGenerator(InsecureInMemoryStore::new, SESSION_TOKEN_STORE));
+    }
 
-            @Override
-            public SecretStore<StoredToken> getSecureNonPersistentStore() {
-                logger.warn("Do not have any secure non-persistent stores available.");
-                return null;
-            }
-        };
+    /**
+     * Returns a token store for the specific requirements, sharing its secrets with the other non-persistent
+     * token stores of the same name in the process. Non-persistent stores which need not be secure are the
+     * in-memory stores of the name, even where a secure session store is available; they are cleared when the
+     * process exits, and their size and time-to-live are set with
+     * {@link #configureSharedStorage(String, long, Duration)}. Persistent stores, and the non-persistent stores
+     * required to be secure, which are the stores of the session, are shared by the whole process whatever the
+     * name.
+     *
+     * @param persist true for persistent storage
+     * @param secureOption secure or non-secure storage
+     * @param name name of the shared store
+     * @return store
+     */
+    public static SecretStore<StoredToken> getTokenStorage(final boolean persist, final SecureOption secureOption,
+                                                           final String name) {
+        Objects.requireNonNull(secureOption, "secureOption cannot be null");
+        Objects.requireNonNull(name, "name cannot be null");
 
-        return getStore(persist, secureOption, PERSISTED_TOKEN_STORE_CANDIDATES, inMemoryStoreGenerator);
+        logger.debug("Getting a {} token store named {} that {} be secure",
+                persist ? "persistent" : "non-persistent", name,
+                secureOption == SecureOption.REQUIRED ? "required" : "preferred");
+
+        return getNamedStore(persist, secureOption, PERSISTED_TOKEN_STORE_CANDIDATES,
+                () -> SHARED_STORES.getTokenStore(name), SESSION_TOKEN_STORE);
+    }
+
+    /**
+     * Returns a token pair store for the specific requirements, with an in-memory tier
+     * in front of a persistent store. The tiered store is created once, and shared by the callers asking for
+     * the same persistent store and tiering option.
+     *
+     * @param persist true for persistent storage
+     * @param secureOption secure or non-secure storage
+     * @param tieringOption in-memory tier for a persistent store
+     * @return store
+     */
+    public static SecretStore<StoredTokenPair> getTokenPairStorage(final boolean persist, final SecureOption secureOption,
+                                                                   final TieringOption tieringOption) {
+        return tiered(persist, getTokenPairStorage(persist, secureOption), tieringOption);
     }
 
     /**
@@ -137,23 +390,53 @@ public final class StorageProvider {
     public static SecretStore<StoredTokenPair> getTokenPairStorage(final boolean persist, final SecureOption secureOption) {
         Objects.requireNonNull(secureOption, "secureOption cannot be null");
 
-        logger.info("Getting a {} tokenPair store that {} be secure", persist ? "persistent" : "non-persistent",
+        logger.debug("Getting a {} tokenPair store that {} be secure", persist ? "persistent" : "non-persistent",
                 secureOption == SecureOption.REQUIRED ? "required" : "preferred");
 
-        final NonPersistentStoreGenerator<StoredTokenPair> inMemoryStoreGenerator = new NonPersistentStoreGenerator<>() {
-            @Override
-            public SecretStore<StoredTokenPair> getInsecureNonPersistentStore() {
-                return new InsecureInMemoryStore<>();
-            }
+        return getStore(persist, secureOption, PERSISTED_TOKENPAIR_STORE_CANDIDATES,
+                nonPersistentStoreGenerator(InsecureInMemoryStore::new, SESSION_TOKENPAIR_STORE));
+    }
 
-            @Override
-            public SecretStore<StoredTokenPair> getSecureNonPersistentStore() {
-                logger.warn("Do not have any secure non-persistent stores available.");
-                return null;
-            }
-        };
+    /**
+     * Returns a token pair store for the specific requirements, sharing its secrets with the other non-persistent
+     * token pair stores of the same name in the process. Non-persistent stores which need not be secure are the
+     * in-memory stores of the name, even where a secure session store is available; they are cleared when the
+     * process exits, and their size and time-to-live are set with
+     * {@link #configureSharedStorage(String, long, Duration)}. Persistent stores, and the non-persistent stores
+     * required to be secure, which are the stores of the session, are shared by the whole process whatever the
+     * name.
+     *
+     * @param persist true for persistent storage
+     * @param secureOption secure or non-secure storage
+     * @param name name of the shared store
+     * @return store
+     */
+    public static SecretStore<StoredTokenPair> getTokenPairStorage(final boolean persist, final SecureOption secureOption,
+                                                                   final String name) {
+        Objects.requireNonNull(secureOption, "secureOption cannot be null");
+        Objects.requireNonNull(name, "name cannot be null");
 
-        return getStore(persist, secureOption, PERSISTED_TOKENPAIR_STORE_CANDIDATES, inMemoryStoreGenerator);
+        logger.debug("Getting a {} tokenPair store named {} that {} be secure",
+                persist ? "persistent" : "non-persistent", name,
+                secureOption == SecureOption.REQUIRED ? "required" : "preferred");
+
+        return getNamedStore(persist, secureOption, PERSISTED_TOKENPAIR_STORE_CANDIDATES,
+                () -> SHARED_STORES.getTokenPairStore(name), SESSION_TOKENPAIR_STORE);
+    }
+
+    /**
+     * Returns a credential store for the specific requirements, with an in-memory tier
+     * in front of a persistent store. The tiered store is created once, and shared by the callers asking for
+     * the same persistent store and tiering option.
+     *
+     * @param persist true for persistent storage
+     * @param secureOption secure or non-secure storage
+     * @param tieringOption in-memory tier for a persistent store
+     * @return store
+     */
+    public static SecretStore<StoredCredential> getCredentialStorage(final boolean persist, final SecureOption secureOption,
+                                                                     final TieringOption tieringOption) {
+        return tiered(persist, getCredentialStorage(persist, secureOption), tieringOption);
     }
 
     /**
@@ -166,23 +449,373 @@ public final class StorageProvider {
     public static SecretStore<StoredCredential> getCredentialStorage(final boolean persist, final SecureOption secureOption) {
         Objects.requireNonNull(secureOption, "secureOption cannot be null");
 
-        logger.info("Getting a {} credential store that {} be secure", persist ? "persistent" : "non-persistent",
+        logger.debug("Getting a {} credential store that {} be secure", persist ? "persistent" : "non-persistent",
+                secureOption == SecureOption.REQUIRED ? "required" : "preferred");
+
+        return getStore(persist, secureOption, PERSISTED_CREDENTIAL_STORE_CANDIDATES,
+                nonPersistentStoreGenerator(InsecureInMemoryStore::new, SESSION_CREDENTIAL_STORE));
+    }
+
+    /**
+     * Returns a credential store for the specific requirements, sharing its secrets with the other non-persistent
+     * credential stores of the same name in the process. Non-persistent stores which need not be secure are the
+     * in-memory stores of the name, even where a secure session store is available; they are cleared when the
+     * process exits, and their size and time-to-live are set with
+     * {@link #configureSharedStorage(String, long, Duration)}. Persistent stores, and the non-persistent stores
+     * required to be secure, which are the stores of the session, are shared by the whole process whatever the
+     * name.
+     *
+     * @param persist true for persistent storage
+     * @param secureOption secure or non-secure storage
+     * @param name name of the shared store
+     * @return store
+     */
+    public static SecretStore<StoredCredential> getCredentialStorage(final boolean persist, final SecureOption secureOption,
+                                                                     final String name) {
+        Objects.requireNonNull(secureOption, "secureOption cannot be null");
+        Objects.requireNonNull(name, "name cannot be null");
+
+        logger.debug("Getting a {} credential store named {} that {} be secure",
+                persist ? "persistent" : "non-persistent", name,
                 secureOption == SecureOption.REQUIRED ? "required" : "preferred");
 
-        final NonPersistentStoreGenerator<StoredCredential> inMemoryStoreGenerator = new NonPersistentStoreGenerator<>() {
+        return getNamedStore(persist, secureOption, PERSISTED_CREDENTIAL_STORE_CANDIDATES,
+                () -> SHARED_STORES.getCredentialStore(name), SESSION_CREDENTIAL_STORE);
+    }
+
+    /**
+     * Configures the in-memory stores of a name, returned for non-persistent stores which need not be secure, see
+     * {@link #getTokenStorage(boolean, SecureOption, String)}. Call it before the stores are first used: they are
+     * unbounded and their secrets never expire otherwise.
+     *
+     * @param name name of the shared stores
+     * @param maximumSize maximum number of secrets of each store, or {@link InsecureInMemoryStore#UNBOUNDED}
+     * @param timeToLive time-to-live of the secrets, or {@code null} if they do not expire
+     * @return {@code true} if the stores were configured
+     *         {@code false} if the stores of this name are already in use
+     */
+    public static boolean configureSharedStorage(final String name, final long maximumSize,
+                                                 final Duration timeToLive) {
+        return SHARED_STORES.configure(name, maximumSize, timeToLive);
+    }
+
+    /**
+     * Deletes the secrets of the in-memory stores of a name, and clears their values, see
+     * {@link StoredSecret#clear()}. The secrets of all shared stores are cleared when the process exits. The
+     * secrets of the session stores, returned for non-persistent stores required to be secure, are not deleted.
+     *
+     * @param name name of the shared stores
+     */
+    public static void clearSharedStorage(final String name) {
+        SHARED_STORES.clear(name);
+    }
+
+    /**
+     * Resolve a named non-persistent store from the shared stores before the secure session store, which has no
+     * names: the secrets of the names are not merged, and their configuration applies.
+     */
+    private static <E extends StoredSecret> SecretStore<E> getNamedStore(final boolean persist,
+                                                                         final SecureOption secureOption,
+                                                                         final List<SecretStore<E>> stores,
+                                                                         final Supplier<SecretStore<E>> sharedStore,
+                                                                         final SecretStore<E> sessionStore) {
+        if (!persist && secureOption == SecureOption.PREFERRED) {
+            return sharedStore.get();
+        }
+
+        return getStore(persist, secureOption, stores, nonPersistentStoreGenerator(sharedStore, sessionStore));
+    }
+
+    private static <E extends StoredSecret> NonPersistentStoreGenerator<E> nonPersistentStoreGenerator(
+            final Supplier<SecretStore<E>> insecureStore, final SecretStore<E> sessionStore) {
+        return new NonPersistentStoreGenerator<>() {
             @Override
-            public SecretStore<StoredCredential> getInsecureNonPersistentStore() {
-                return new InsecureInMemoryStore<>();
+            public SecretStore<E> getInsecureNonPersistentStore() {
+                return insecureStore.get();
             }
 
             @Override
-            public SecretStore<StoredCredential> getSecureNonPersistentStore() {
-                logger.warn("Do not have any secure non-persistent stores available.");
-                return null;
+            public SecretStore<E> getSecureNonPersistentStore() {
+                if (sessionStore == null) {
+                    logger.warn("Do not have any secure non-persistent stores available.");
+                }
+                return sessionStore;
             }
         };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E extends StoredSecret> SecretStore<E> tiered(final boolean persist, final SecretStore<E> store,
+                                                                  final TieringOption tieringOption) {
+        Objects.requireNonNull(tieringOption, "tieringOption cannot be null");
+
+        if (!persist || store == null || tieringOption == TieringOption.NONE) {
+            return store;
+        }
+
+        final TieredSecretStore.WritePolicy writePolicy = tieringOption == TieringOption.WRITE_BACK
+                ? TieredSecretStore.WritePolicy.WRITE_BACK : TieredSecretStore.WritePolicy.WRITE_THROUGH;
+        // the tiered store of a persistent store holds secrets of the same type
+        return (SecretStore<E>) TIERED_STORES.get(writePolicy).computeIfAbsent(store, persistent -> {
+            logger.debug("Adding a {} in-memory tier", tieringOption);
+
+            return new TieredSecretStore<>(new InsecureInMemoryStore<E>(MEMORY_TIER_SIZE, MEMORY_TIER_TTL), store,
+                    true, writePolicy, TieredSecretStore.DEFAULT_NEGATIVE_TTL);
+        });
+    }
+
+    /**
+     * Load the providers of the stores, built-in and third-party ones, by decreasing priority.
+     *
+     * @return providers
+     */
+    static List<SecretStoreProvider> loadProviders() {
+        final List<SecretStoreProvider> providers = new ArrayList<>();
+        final Iterator<SecretStoreProvider> iterator =
+                ServiceLoader.load(SecretStoreProvider.class, StorageProvider.class.getClassLoader()).iterator();
+        while (true) {
+            try {
+                if (!iterator.hasNext()) {
+                    break;
+                }
+                providers.add(iterator.next());
+            } catch (final ServiceConfigurationError e) {
+                logger.warn("Cannot load a secret store provider, skipping it.", e);
+            }
+        }
+
+        providers.sort(Comparator.comparingInt(SecretStoreProvider::getPriority).reversed());
+        return providers;
+    }
+
+    /**
+     * Select the supported provider with the highest priority, preferring secure providers. Providers are probed
+     * in order until one is supported, so the backends of the other providers are not loaded.
+     *
+     * @param providers providers by decreasing priority
+     * @param persistent {@code true} for a provider of persistent stores, otherwise of secure session stores
+     * @return provider, or {@code null} if none is supported
+     */
+    static SecretStoreProvider selectProvider(final List<SecretStoreProvider> providers, final boolean persistent) {
+        final SecretStoreProvider secure = selectProvider(providers, persistent, true);
+        if (secure != null || !persistent) {
+            // insecure non-persistent stores are kept in memory
+            return secure;
+        }
+
+        return selectProvider(providers, true, false);
+    }
+
+    /**
+     * Select the supported providers of the fallback chain, see {@link #FALLBACK_CHAIN}.
+     *
+     * @param providers providers by decreasing priority
+     * @return providers of the chain, empty if no chain is configured or none of its providers is supported
+     */
+    static List<SecretStoreProvider> selectFallbackChain(final List<SecretStoreProvider> providers) {
+        final String value = System.getProperty(FALLBACK_CHAIN);
+        if (value == null || value.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        final List<SecretStoreProvider> chain = new ArrayList<>();
+        for (final String name : value.split(",")) {
+            final SecretStoreProvider provider = providers.stream()
+                    .filter(candidate -> candidate.getName().equalsIgnoreCase(name.trim()))
+                    .findFirst()
+                    .orElse(null);
+            if (provider == null) {
+                logger.warn("Unknown provider {} in {}, skipping it.", name.trim(), FALLBACK_CHAIN);
+            } else if (!chain.contains(provider) && isSupported(provider)) {
+                chain.add(provider);
+            }
+        }
+        return chain;
+    }
+
+    private static SecretStoreProvider selectProvider(final List<SecretStoreProvider> providers,
+                                                      final boolean persistent, final boolean secure) {
+        for (final SecretStoreProvider provider : providers) {
+            if (provider.isPersistent() == persistent && provider.isSecure() == secure && isSupported(provider)) {
+                return provider;
+            }
+        }
+
+        return null;
+    }
+
+    private static boolean isSupported(final SecretStoreProvider provider) {
+        try {
+            return provider.isLikelySupported() && provider.isSupported();
+        } catch (final RuntimeException | LinkageError e) {
+            logger.warn("Probing the {} stores failed, skipping them.", provider.getName(), e);
+            return false;
+        }
+    }
+
+    private static <E extends StoredSecret> SecretStore<E> chain(
+            final List<Backend> backends, final Function<SecretStoreProvider, SecretStore<E>> factory) {
+        if (backends.size() == 1) {
+            return backends.get(0).create(factory);
+        }
+
+        final Map<SecretStore<E>, CircuitBreaker> chain = new LinkedHashMap<>();
+        for (final Backend backend : backends) {
+            chain.put(backend.create(factory), backend.breaker);
+        }
+        return new ResilientSecretStore<>(chain);
+    }
+
+    private static <E extends StoredSecret> void offload(final List<SecretStore<E>> stores,
+                                                         final ExecutorService executor) {
+        stores.replaceAll(store -> new OffloadingSecretStore<>(store, executor));
+    }
+
+    private static <E extends StoredSecret> void filter(final List<SecretStore<E>> stores, final int expectedKeys) {
+        stores.replaceAll(store -> new BloomFilteredSecretStore<>(store, expectedKeys,
+                BloomFilteredSecretStore.DEFAULT_FALSE_POSITIVE_RATE,
+                BloomFilteredSecretStore.DEFAULT_REBUILD_INTERVAL));
+    }
+
+    private static <E extends StoredSecret> void audit(final List<SecretStore<E>> stores, final String name,
+                                                       final AccessEventPipeline pipeline) {
+        stores.replaceAll(store -> new AuditedSecretStore<>(store, name, pipeline));
+    }
+
+    private static <E extends StoredSecret> void journal(final List<SecretStore<E>> stores, final Path journal) {
+        stores.replaceAll(store -> {
+            try {
+                return new JournaledSecretStore<>(store, journal);
+            } catch (final IOException e) {
+                logger.warn("Cannot open the change journal {}, changes are not shared.", journal, e);
+                return store;
+            }
+        });
+    }
+
+    private static Path getChangeJournalDirectory() {
+        final String value = System.getProperty(CHANGE_JOURNAL_DIRECTORY);
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+
+        try {
+            return Paths.get(value.trim());
+        } catch (final InvalidPathException e) {
+            logger.warn("Invalid directory {} in {}, not recording changes.", value, CHANGE_JOURNAL_DIRECTORY);
+            return null;
+        }
+    }
+
+    private static int getOffloadThreads() {
+        final String value = System.getProperty(OFFLOAD_THREADS);
+        if (value == null) {
+            return 0;
+        }
+
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (final NumberFormatException e) {
+            logger.warn("Invalid number of threads {} in {}, not offloading.", value, OFFLOAD_THREADS);
+            return 0;
+        }
+    }
+
+    private static AccessEventPipeline createAuditPipeline() {
+        final String value = System.getProperty(AUDIT_SINKS);
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+
+        final List<AccessEventSink> sinks = new ArrayList<>();
+        for (final String name : value.split(",")) {
+            final String sink = name.trim();
+            try {
+                if (sink.equals("log")) {
+                    sinks.add(new Slf4jAccessEventSink());
+                } else if (sink.equals("jfr")) {
+                    sinks.add(new JfrAccessEventSink());
+                } else if (sink.startsWith("json:")) {
+                    sinks.add(new JsonFileAccessEventSink(Paths.get(sink.substring("json:".length()))));
+                } else {
+                    logger.warn("Unknown access event sink {} in {}, skipping it.", sink, AUDIT_SINKS);
+                }
+            } catch (final IOException | InvalidPathException | LinkageError e) {
+                logger.warn("Cannot create the access event sink {}, skipping it.", sink, e);
+            }
+        }
+        if (sinks.isEmpty()) {
+            return null;
+        }
+
+        double sampleRate = 1;
+        final String rate = System.getProperty(AUDIT_SAMPLE_RATE);
+        if (rate != null) {
+            try {
+                sampleRate = Math.min(1, Math.max(0, Double.parseDouble(rate.trim())));
+            } catch (final NumberFormatException e) {
+                logger.warn("Invalid rate {} in {}, recording all accesses.", rate, AUDIT_SAMPLE_RATE);
+            }
+        }
+
+        logger.info("Recording the accesses to the stores in {}", sinks);
+        final AccessEventPipeline pipeline = new AccessEventPipeline(sinks, sampleRate,
+                AccessEventPipeline.DEFAULT_CAPACITY, AccessEventPipeline.DEFAULT_BATCH_SIZE,
+                AccessEventPipeline.DEFAULT_FLUSH_INTERVAL, null);
+        // writes the events left in the ring on exit
+        Runtime.getRuntime().addShutdownHook(new Thread(pipeline::close, "credential-audit-shutdown"));
+        return pipeline;
+    }
+
+    private static int getPositiveInt(final String property) {
+        final String value = System.getProperty(property);
+        if (value == null) {
+            return 0;
+        }
+
+        try {
+            return Math.max(0, Integer.parseInt(value.trim()));
+        } catch (final NumberFormatException e) {
+            logger.warn("Invalid number {} in {}, ignoring it.", value, property);
+            return 0;
+        }
+    }
 
-        return getStore(persist, secureOption, PERSISTED_CREDENTIAL_STORE_CANDIDATES, inMemoryStoreGenerator);
+    private static double getMaxCallsPerSecond() {
+        final String value = System.getProperty(MAX_CALLS_PER_SECOND);
+        if (value == null) {
+            return 0;
+        }
+
+        try {
+            final double rate = Double.parseDouble(value.trim());
+            return rate > 0 && !Double.isInfinite(rate) ? rate : 0;
+        } catch (final NumberFormatException e) {
+            logger.warn("Invalid rate {} in {}, not limiting the rate.", value, MAX_CALLS_PER_SECOND);
+            return 0;
+        }
+    }
+
+    private static RetryPolicy getRetryPolicy() {
+        final String value = System.getProperty(RETRY_ATTEMPTS);
+        if (value == null) {
+            return null;
+        }
+
+        final int attempts;
+        try {
+            attempts = Integer.parseInt(value.trim());
+        } catch (final NumberFormatException e) {
+            logger.warn("Invalid number of attempts {} in {}, not retrying.", value, RETRY_ATTEMPTS);
+            return null;
+        }
+        if (attempts <= 1) {
+            return null;
+        }
+
+        logger.info("Retrying reads of the persistent stores failing transiently up to {} times", attempts - 1);
+        return new RetryPolicy(attempts, RetryPolicy.DEFAULT_INITIAL_BACKOFF, RetryPolicy.DEFAULT_MAX_BACKOFF,
+                RetryPolicy.DEFAULT_DEADLINE);
     }
 
     private static <E extends StoredSecret> SecretStore<E> findSecureStore(final List<SecretStore<E>> stores) {
@@ -235,4 +868,38 @@ public final class StorageProvider {
         SecretStore<E> getInsecureNonPersistentStore();
         SecretStore<E> getSecureNonPersistentStore();
     }
+
+    /**
+     * Persistent backend, with the guards shared by its credential, token and token pair stores
+     */
+    private static final class Backend {
+        final SecretStoreProvider provider;
+        final CircuitBreaker breaker;
+        final Bulkhead bulkhead;
+        final RateLimiter rateLimiter;
+        final RetryPolicy retryPolicy;
+
+        Backend(final SecretStoreProvider provider, final RetryPolicy retryPolicy, final int maxConcurrentCalls,
+                final double maxCallsPerSecond) {
+            this.provider = provider;
+            this.breaker = new CircuitBreaker(provider.getName());
+            this.bulkhead = maxConcurrentCalls > 0
+                    ? new Bulkhead(provider.getName(), Math.min(maxConcurrentCalls, provider.getMaxConcurrentCalls()))
+                    : null;
+            this.rateLimiter = maxCallsPerSecond > 0 ? new RateLimiter(provider.getName(), maxCallsPerSecond) : null;
+            this.retryPolicy = retryPolicy;
+        }
+
+        <E extends StoredSecret> SecretStore<E> create(final Function<SecretStoreProvider, SecretStore<E>> factory) {
+            SecretStore<E> store = factory.apply(provider);
+            if (bulkhead != null || rateLimiter != null) {
+                store = new ThrottledSecretStore<>(store, bulkhead, rateLimiter);
+            }
+            // each retry waits for the bulkhead again, and all complete before the breaker counts a failure
+            if (retryPolicy != null) {
+                store = new RetryingSecretStore<>(store, retryPolicy);
+            }
+            return store;
+        }
+    }
 }
@@ -0,0 +1,142 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.audit;
+
+import java.util.Objects;
+
+/**
+ * Access to a secret store, recorded by an {@link AccessEventPipeline}.
+ *
+ * The key of the secret is only known by its hash, so that events can be correlated without revealing key names.
+ */
+public final class AccessEvent {
+
+    /**
+     * Operation on the store
+     */
+    public enum Operation {
+        /**
+         * {@code get} or {@code getResult}
+         */
+        GET,
+
+        /**
+         * {@code add}
+         */
+        ADD,
+
+        /**
+         * {@code delete}
+         */
+        DELETE,
+
+        /**
+         * {@code putIfAbsent}
+         */
+        PUT_IF_ABSENT,
+
+        /**
+         * {@code replace}
+         */
+        REPLACE,
+
+        /**
+         * {@code keys}
+         */
+        KEYS,
+
+        /**
+         * {@code scan}
+         */
+        SCAN
+    }
+
+    private final long timestamp;
+    private final String store;
+    private final Operation operation;
+    private final String keyHash;
+    private final String outcome;
+    private final long durationNanos;
+    private final String thread;
+
+    /**
+     * Creates an event.
+     *
+     * @param timestamp time of the access, in milliseconds since the epoch
+     * @param store name of the store
+     * @param operation operation on the store
+     * @param keyHash hash of the key, or of the prefix of a scan; {@code null} if there is none
+     * @param outcome outcome of the operation, see {@link #getOutcome()}
+     * @param durationNanos duration of the operation, in nanoseconds
+     * @param thread name of the calling thread
+     */
+    public AccessEvent(final long timestamp, final String store, final Operation operation, final String keyHash,
+                       final String outcome, final long durationNanos, final String thread) {
+        this.timestamp = timestamp;
+        this.store = Objects.requireNonNull(store, "store cannot be null");
+        this.operation = Objects.requireNonNull(operation, "operation cannot be null");
+        this.keyHash = keyHash;
+        this.outcome = Objects.requireNonNull(outcome, "outcome cannot be null");
+        this.durationNanos = durationNanos;
+        this.thread = thread;
+    }
+
+    /**
+     * @return time of the access, in milliseconds since the epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return name of the store
+     */
+    public String getStore() {
+        return store;
+    }
+
+    /**
+     * @return operation on the store
+     */
+    public Operation getOperation() {
+        return operation;
+    }
+
+    /**
+     * @return hash of the key, or of the prefix of a scan; {@code null} if there is none
+     */
+    public String getKeyHash() {
+        return keyHash;
+    }
+
+    /**
+     * Outcome of the operation: the status of a read, e.g. {@code FOUND} or {@code LOCKED}, {@code SUCCEEDED} or
+     * {@code FAILED} for a write, or {@code ERROR} for an operation which threw.
+     *
+     * @return outcome of the operation
+     */
+    public String getOutcome() {
+        return outcome;
+    }
+
+    /**
+     * @return duration of the operation, in nanoseconds
+     */
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * @return name of the calling thread
+     */
+    public String getThread() {
+        return thread;
+    }
+
+    @Override
+    public String toString() {
+        return operation + " " + store + (keyHash != null ? " " + keyHash : "") + " " + outcome + " in "
+                + durationNanos / 1000 + " us";
+    }
+}
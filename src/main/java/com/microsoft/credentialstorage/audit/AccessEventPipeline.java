@@ -0,0 +1,266 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.audit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Records the accesses to secret stores off the calling threads, and writes them to sinks in batches.
+ *
+ * Recording an access costs the calling thread a sampling draw and an append to a lock-free ring buffer; it never
+ * blocks. A consumer thread drains the ring in batches, hashes the keys with a salted SHA-256, and passes the
+ * events to the sinks. When the ring is full, e.g. because a sink is slow, events are dropped and counted.
+ *
+ * Keys are hashed with a salt, random for each pipeline unless one is given: hashes of the same key are equal
+ * within a pipeline, or across pipelines sharing a salt, but do not reveal the key.
+ */
+public final class AccessEventPipeline implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(AccessEventPipeline.class);
+
+    /**
+     * Default number of events the ring holds
+     */
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    /**
+     * Default maximum number of events passed to the sinks at once
+     */
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    /**
+     * Default time the consumer waits for events when the ring is empty
+     */
+    public static final Duration DEFAULT_FLUSH_INTERVAL = Duration.ofMillis(100);
+
+    // hex characters of the key hashes, enough to tell keys apart in an audit
+    private static final int KEY_HASH_LENGTH = 16;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final List<AccessEventSink> sinks;
+    private final double sampleRate;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final byte[] salt;
+    private final MessageDigest digest;
+
+    private final RingBuffer<Access> ring;
+    private final Thread consumer;
+    private volatile boolean closed;
+
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * Creates a pipeline recording all accesses, with the default capacity and a random salt.
+     *
+     * @param sinks sinks of the events
+     */
+    public AccessEventPipeline(final List<AccessEventSink> sinks) {
+        this(sinks, 1, DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE, DEFAULT_FLUSH_INTERVAL, null);
+    }
+
+    /**
+     * Creates a pipeline.
+     *
+     * @param sinks sinks of the events
+     * @param sampleRate share of the accesses recorded, between 0 and 1
+     * @param capacity number of events the ring holds
+     * @param batchSize maximum number of events passed to the sinks at once
+     * @param flushInterval time the consumer waits for events when the ring is empty
+     * @param salt salt of the key hashes, or {@code null} for a random one
+     */
+    public AccessEventPipeline(final List<AccessEventSink> sinks, final double sampleRate, final int capacity,
+                               final int batchSize, final Duration flushInterval, final String salt) {
+        Objects.requireNonNull(sinks, "sinks cannot be null");
+        Objects.requireNonNull(flushInterval, "flushInterval cannot be null");
+        if (!(sampleRate >= 0 && sampleRate <= 1)) {
+            throw new IllegalArgumentException("sampleRate must be between 0 and 1");
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+
+        this.sinks = Collections.unmodifiableList(new ArrayList<>(sinks));
+        this.sampleRate = sampleRate;
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = Math.max(1, flushInterval.toNanos());
+        this.salt = salt != null ? salt.getBytes(StandardCharsets.UTF_8) : randomSalt();
+        this.digest = sha256();
+        this.ring = new RingBuffer<>(capacity);
+
+        this.consumer = new Thread(this::consume, "credential-audit");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    /**
+     * Record an access, unless it is not sampled or the ring is full. Does not block.
+     *
+     * @param store name of the store
+     * @param operation operation on the store
+     * @param key key of the secret, or prefix of a scan; {@code null} if there is none
+     * @param outcome outcome of the operation, see {@link AccessEvent#getOutcome()}
+     * @param durationNanos duration of the operation, in nanoseconds
+     */
+    public void record(final String store, final AccessEvent.Operation operation, final String key,
+                       final String outcome, final long durationNanos) {
+        if (closed || sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return;
+        }
+
+        final Access access = new Access(System.currentTimeMillis(), store, operation, key, outcome, durationNanos,
+                Thread.currentThread().getName());
+        if (ring.offer(access)) {
+            recorded.increment();
+        } else {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * @return number of events recorded in the ring
+     */
+    public long getRecordedCount() {
+        return recorded.sum();
+    }
+
+    /**
+     * @return number of events dropped because the ring was full
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Stop recording, write the events left in the ring to the sinks and close them.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        LockSupport.unpark(consumer);
+        try {
+            consumer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void consume() {
+        final List<AccessEvent> batch = new ArrayList<>(batchSize);
+        while (true) {
+            // read before draining, so that events recorded before closing are drained
+            final boolean closing = closed;
+            Access access;
+            while (batch.size() < batchSize && (access = ring.poll()) != null) {
+                batch.add(access.toEvent(this));
+            }
+
+            if (!batch.isEmpty()) {
+                publish(batch);
+                batch.clear();
+            } else if (closing) {
+                break;
+            } else {
+                LockSupport.parkNanos(this, flushIntervalNanos);
+            }
+        }
+
+        for (final AccessEventSink sink : sinks) {
+            try {
+                sink.close();
+            } catch (final RuntimeException e) {
+                logger.warn("Closing the access event sink {} failed.", sink, e);
+            }
+        }
+    }
+
+    private void publish(final List<AccessEvent> batch) {
+        final List<AccessEvent> events = Collections.unmodifiableList(batch);
+        for (final AccessEventSink sink : sinks) {
+            try {
+                sink.accept(events);
+            } catch (final RuntimeException e) {
+                logger.warn("Writing {} access events to {} failed.", events.size(), sink, e);
+            }
+        }
+    }
+
+    // called from the consumer thread only
+    private String hash(final String key) {
+        if (key == null) {
+            return null;
+        }
+
+        digest.update(salt);
+        final byte[] hash = digest.digest(key.getBytes(StandardCharsets.UTF_8));
+        final char[] hex = new char[KEY_HASH_LENGTH];
+        for (int i = 0; i < KEY_HASH_LENGTH / 2; i++) {
+            hex[2 * i] = HEX[(hash[i] >> 4) & 0xf];
+            hex[2 * i + 1] = HEX[hash[i] & 0xf];
+        }
+        return new String(hex);
+    }
+
+    private static byte[] randomSalt() {
+        final byte[] salt = new byte[16];
+        new SecureRandom().nextBytes(salt);
+        return salt;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            // every Java platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Access as recorded by the calling thread, with its key in clear until the consumer hashes it
+     */
+    private static final class Access {
+        final long timestamp;
+        final String store;
+        final AccessEvent.Operation operation;
+        final String key;
+        final String outcome;
+        final long durationNanos;
+        final String thread;
+
+        Access(final long timestamp, final String store, final AccessEvent.Operation operation, final String key,
+               final String outcome, final long durationNanos, final String thread) {
+            this.timestamp = timestamp;
+            this.store = store;
+            this.operation = operation;
+            this.key = key;
+            this.outcome = outcome;
+            this.durationNanos = durationNanos;
+            this.thread = thread;
+        }
+
+        AccessEvent toEvent(final AccessEventPipeline pipeline) {
+            return new AccessEvent(timestamp, store, operation, pipeline.hash(key), outcome, durationNanos, thread);
+        }
+    }
+}
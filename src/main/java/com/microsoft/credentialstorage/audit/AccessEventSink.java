@@ -0,0 +1,29 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.audit;
+
+import java.util.List;
+
+/**
+ * Destination of the access events of an {@link AccessEventPipeline}, e.g. a log or a file.
+ *
+ * Sinks are called from the consumer thread of the pipeline only, with batches of events in the order they were
+ * recorded, so they need not be thread-safe.
+ */
+public interface AccessEventSink extends AutoCloseable {
+
+    /**
+     * Write a batch of events.
+     *
+     * @param events events, in the order they were recorded
+     */
+    void accept(List<AccessEvent> events);
+
+    /**
+     * Flush and release the resources of the sink, once the pipeline is closed.
+     */
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,74 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.audit;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import java.util.List;
+
+/**
+ * Emits the access events as {@code com.microsoft.credentialstorage.Access} events of Java Flight Recorder, so
+ * that they show in recordings next to the threads and I/O of the application. Events are only committed while a
+ * recording enables them.
+ *
+ * Requires the {@code jdk.jfr} module.
+ */
+public final class JfrAccessEventSink implements AccessEventSink {
+
+    @Override
+    public void accept(final List<AccessEvent> events) {
+        for (final AccessEvent event : events) {
+            final AccessJfrEvent jfrEvent = new AccessJfrEvent();
+            if (!jfrEvent.isEnabled()) {
+                return;
+            }
+
+            jfrEvent.store = event.getStore();
+            jfrEvent.operation = event.getOperation().name();
+            jfrEvent.keyHash = event.getKeyHash();
+            jfrEvent.outcome = event.getOutcome();
+            jfrEvent.accessDuration = event.getDurationNanos();
+            jfrEvent.callingThread = event.getThread();
+            jfrEvent.commit();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "jfr";
+    }
+
+    @Name("com.microsoft.credentialstorage.Access")
+    @Label("Secret Store Access")
+    @Category("Credential Secure Storage")
+    @Description("Access to a secret store, with the hash of the key")
+    // committed on the consumer thread of the pipeline, whose stack says nothing of the access
+    @StackTrace(false)
+    static final class AccessJfrEvent extends Event {
+        @Label("Store")
+        String store;
+
+        @Label("Operation")
+        String operation;
+
+        @Label("Key Hash")
+        String keyHash;
+
+        @Label("Outcome")
+        String outcome;
+
+        @Label("Access Duration")
+        @Timespan(Timespan.NANOSECONDS)
+        long accessDuration;
+
+        @Label("Calling Thread")
+        String callingThread;
+    }
+}
@@ -0,0 +1,107 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.audit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Appends the access events to a file as JSON lines, one object per event, flushed after each batch:
+ *
+ * <pre>{@code
+ * {"timestamp":"2024-05-02T09:14:03.120Z","store":"libsecret","operation":"GET","keyHash":"3f2a9c0e5b71d846",
+ *  "outcome":"FOUND","durationMicros":812,"thread":"main"}
+ * }</pre>
+ */
+public final class JsonFileAccessEventSink implements AccessEventSink {
+    private static final Logger logger = LoggerFactory.getLogger(JsonFileAccessEventSink.class);
+
+    private final Path file;
+    private final Writer writer;
+    private final StringBuilder line = new StringBuilder();
+
+    /**
+     * Opens the file, creating it if needed.
+     *
+     * @param file file to append the events to
+     * @throws IOException if the file cannot be opened
+     */
+    public JsonFileAccessEventSink(final Path file) throws IOException {
+        this.file = Objects.requireNonNull(file, "file cannot be null");
+        this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public void accept(final List<AccessEvent> events) {
+        try {
+            for (final AccessEvent event : events) {
+                line.setLength(0);
+                line.append("{\"timestamp\":");
+                appendString(Instant.ofEpochMilli(event.getTimestamp()).toString());
+                line.append(",\"store\":");
+                appendString(event.getStore());
+                line.append(",\"operation\":");
+                appendString(event.getOperation().name());
+                line.append(",\"keyHash\":");
+                appendString(event.getKeyHash());
+                line.append(",\"outcome\":");
+                appendString(event.getOutcome());
+                line.append(",\"durationMicros\":").append(event.getDurationNanos() / 1000);
+                line.append(",\"thread\":");
+                appendString(event.getThread());
+                line.append("}\n");
+                writer.append(line);
+            }
+            writer.flush();
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            writer.close();
+        } catch (final IOException e) {
+            logger.warn("Closing the access log {} failed.", file, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return file.toString();
+    }
+
+    private void appendString(final String value) {
+        if (value == null) {
+            line.append("null");
+            return;
+        }
+
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                line.append('\\').append(c);
+            } else if (c < 0x20) {
+                line.append(String.format("\\u%04x", (int) c));
+            } else {
+                line.append(c);
+            }
+        }
+        line.append('"');
+    }
+}
@@ -0,0 +1,81 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.audit;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free queue of many producers and a single consumer.
+ *
+ * Producers claim a slot by advancing the tail, then publish their element in it; the consumer takes the elements
+ * in order and frees their slots. A producer never waits: when all slots are taken, its element is refused.
+ *
+ * @param <T> element type
+ */
+final class RingBuffer<T> {
+    private final AtomicReferenceArray<T> slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    // written by the consumer only
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * @param capacity number of slots, rounded up to a power of two
+     */
+    RingBuffer(final int capacity) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity must be between 1 and 2^30");
+        }
+
+        final int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * @return number of slots
+     */
+    int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Add an element, from any thread.
+     *
+     * @param element element to add
+     * @return {@code false} if all slots are taken
+     */
+    boolean offer(final T element) {
+        long claimed;
+        do {
+            claimed = tail.get();
+            // the consumer freed the slot of the element one lap before, then advanced the head
+            if (claimed - head.get() >= slots.length()) {
+                return false;
+            }
+        } while (!tail.compareAndSet(claimed, claimed + 1));
+
+        slots.lazySet((int) claimed & mask, element);
+        return true;
+    }
+
+    /**
+     * Take the next element, from the consumer thread only.
+     *
+     * @return next element, or {@code null} if there is none or it is not published yet
+     */
+    T poll() {
+        final long next = head.get();
+        final int index = (int) next & mask;
+        final T element = slots.get(index);
+        if (element == null) {
+            return null;
+        }
+
+        slots.lazySet(index, null);
+        head.lazySet(next + 1);
+        return element;
+    }
+}
@@ -0,0 +1,34 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.audit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+/**
+ * Logs the access events at INFO level to the {@code com.microsoft.credentialstorage.audit} logger, so that they
+ * can be routed apart from the other logs of the library.
+ */
+public final class Slf4jAccessEventSink implements AccessEventSink {
+    private static final Logger logger = LoggerFactory.getLogger("com.microsoft.credentialstorage.audit");
+
+    @Override
+    public void accept(final List<AccessEvent> events) {
+        if (!logger.isInfoEnabled()) {
+            return;
+        }
+
+        for (final AccessEvent event : events) {
+            logger.info("{} {} key {} {} in {} us on {}", event.getOperation(), event.getStore(), event.getKeyHash(),
+                    event.getOutcome(), event.getDurationNanos() / 1000, event.getThread());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "slf4j";
+    }
+}
@@ -0,0 +1,159 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.composite;
+
+import com.microsoft.credentialstorage.SecretResult;
+import com.microsoft.credentialstorage.SecretStore;
+import com.microsoft.credentialstorage.SecretStoreListener;
+import com.microsoft.credentialstorage.audit.AccessEvent;
+import com.microsoft.credentialstorage.audit.AccessEventPipeline;
+import com.microsoft.credentialstorage.model.StoredSecret;
+
+import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Store recording its accesses in an {@link AccessEventPipeline}, with their outcome and duration.
+ *
+ * Recording does not block the caller: the keys are hashed and the events written to the sinks on the consumer
+ * thread of the pipeline.
+ *
+ * @param <E> secret type to store
+ */
+public final class AuditedSecretStore<E extends StoredSecret> implements SecretStore<E> {
+    private static final String SUCCEEDED = "SUCCEEDED";
+    private static final String FAILED = "FAILED";
+    private static final String ERROR = "ERROR";
+
+    private final SecretStore<E> delegate;
+    private final String name;
+    private final AccessEventPipeline pipeline;
+
+    /**
+     * Creates a store.
+     *
+     * @param delegate store to record the accesses of
+     * @param name name of the store in the events, e.g. the name of its backend
+     * @param pipeline pipeline recording the accesses, which may be shared with other stores
+     */
+    public AuditedSecretStore(final SecretStore<E> delegate, final String name, final AccessEventPipeline pipeline) {
+        this.delegate = Objects.requireNonNull(delegate, "delegate cannot be null");
+        this.name = Objects.requireNonNull(name, "name cannot be null");
+        this.pipeline = Objects.requireNonNull(pipeline, "pipeline cannot be null");
+    }
+
+    @Override
+    public E get(final String key) {
+        Objects.requireNonNull(key, "key cannot be null");
+
+        return call(AccessEvent.Operation.GET, key, () -> delegate.get(key));
+    }
+
+    @Override
+    public SecretResult<E> getResult(final String key) {
+        Objects.requireNonNull(key, "key cannot be null");
+
+        return call(AccessEvent.Operation.GET, key, () -> delegate.getResult(key));
+    }
+
+    @Override
+    public boolean add(final String key, final E secret) {
+        Objects.requireNonNull(key, "key cannot be null");
+        Objects.requireNonNull(secret, "secret cannot be null");
+
+        return call(AccessEvent.Operation.ADD, key, () -> delegate.add(key, secret));
+    }
+
+    @Override
+    public boolean delete(final String key) {
+        Objects.requireNonNull(key, "key cannot be null");
+
+        return call(AccessEvent.Operation.DELETE, key, () -> delegate.delete(key));
+    }
+
+    @Override
+    public boolean putIfAbsent(final String key, final E secret) {
+        Objects.requireNonNull(key, "key cannot be null");
+        Objects.requireNonNull(secret, "secret cannot be null");
+
+        return call(AccessEvent.Operation.PUT_IF_ABSENT, key, () -> delegate.putIfAbsent(key, secret));
+    }
+
+    @Override
+    public boolean replace(final String key, final E expected, final E updated) {
+        Objects.requireNonNull(key, "key cannot be null");
+        Objects.requireNonNull(expected, "expected cannot be null");
+        Objects.requireNonNull(updated, "updated cannot be null");
+
+        return call(AccessEvent.Operation.REPLACE, key, () -> delegate.replace(key, expected, updated));
+    }
+
+    /**
+     * List the keys of the underlying store. Only opening the stream is recorded, as the keys are read lazily.
+     *
+     * @return keys of the secrets
+     */
+    @Override
+    public Stream<String> keys() {
+        return call(AccessEvent.Operation.KEYS, null, delegate::keys);
+    }
+
+    /**
+     * List the keys of the underlying store starting with a prefix, recorded with the hash of the prefix.
+     *
+     * @param prefix
+     *      prefix of the keys
+     *
+     * @return keys of the secrets starting with the prefix
+     */
+    @Override
+    public Stream<String> scan(final String prefix) {
+        Objects.requireNonNull(prefix, "prefix cannot be null");
+
+        return call(AccessEvent.Operation.SCAN, prefix, () -> delegate.scan(prefix));
+    }
+
+    @Override
+    public boolean isSecure() {
+        return delegate.isSecure();
+    }
+
+    @Override
+    public void addListener(final SecretStoreListener listener) {
+        delegate.addListener(listener);
+    }
+
+    @Override
+    public void removeListener(final SecretStoreListener listener) {
+        delegate.removeListener(listener);
+    }
+
+    private <T> T call(final AccessEvent.Operation operation, final String key, final Supplier<T> call) {
+        final long startedAt = System.nanoTime();
+        final T value;
+        try {
+            value = call.get();
+        } catch (final RuntimeException | Error e) {
+            pipeline.record(name, operation, key, ERROR, System.nanoTime() - startedAt);
+            throw e;
+        }
+
+        pipeline.record(name, operation, key, outcome(operation, value), System.nanoTime() - startedAt);
+        return value;
+    }
+
+    private static String outcome(final AccessEvent.Operation operation, final Object value) {
+        if (value instanceof SecretResult) {
+            return ((SecretResult<?>) value).getStatus().name();
+        }
+        if (value instanceof Boolean) {
+            return (Boolean) value ? SUCCEEDED : FAILED;
+        }
+        if (operation == AccessEvent.Operation.GET) {
+            return value != null ? SecretResult.Status.FOUND.name() : SecretResult.Status.NOT_FOUND.name();
+        }
+        return SUCCEEDED;
+    }
+}
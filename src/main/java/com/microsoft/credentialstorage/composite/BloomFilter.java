@@ -0,0 +1,127 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.composite;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bloom filter of keys, safe for concurrent use.
+ *
+ * Each key sets a few bits. A key whose bits are all set may have been added; a key with a clear bit was not. Keys
+ * cannot be removed: a filter tracking a changing set of keys is rebuilt instead.
+ */
+final class BloomFilter {
+    private static final double LN2 = Math.log(2);
+
+    private final AtomicLongArray bits;
+    private final int size;
+    private final int hashCount;
+    private final LongAdder keyCount = new LongAdder();
+
+    /**
+     * @param expectedKeys number of keys the filter is sized for
+     * @param falsePositiveRate share of absent keys the filter reports as possibly present, with the expected keys
+     */
+    BloomFilter(final int expectedKeys, final double falsePositiveRate) {
+        if (expectedKeys <= 0) {
+            throw new IllegalArgumentException("expectedKeys must be positive");
+        }
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1");
+        }
+
+        final double optimalBits = -expectedKeys * Math.log(falsePositiveRate) / (LN2 * LN2);
+        final int words = (int) Math.min(Integer.MAX_VALUE / Long.SIZE, Math.ceil(optimalBits / Long.SIZE));
+        this.size = words * Long.SIZE;
+        this.hashCount = Math.max(1, (int) Math.round(optimalBits / expectedKeys * LN2));
+        this.bits = new AtomicLongArray(words);
+    }
+
+    /**
+     * @return number of bits
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return number of bits of each key
+     */
+    int hashCount() {
+        return hashCount;
+    }
+
+    /**
+     * @return number of keys added, counting keys added several times once per addition
+     */
+    long keyCount() {
+        return keyCount.sum();
+    }
+
+    /**
+     * Add a key, which may already have been added.
+     *
+     * @param key key to add
+     */
+    void add(final String key) {
+        final long hash = hash(key);
+        for (int i = 0; i < hashCount; i++) {
+            set(index(hash, i));
+        }
+        keyCount.increment();
+    }
+
+    /**
+     * @param key key to look up
+     * @return {@code false} if the key was not added
+     */
+    boolean mightContain(final String key) {
+        final long hash = hash(key);
+        for (int i = 0; i < hashCount; i++) {
+            final int index = index(hash, i);
+            if ((bits.get(index >>> 6) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void set(final int index) {
+        final int word = index >>> 6;
+        final long mask = 1L << index;
+        long value;
+        do {
+            value = bits.get(word);
+            if ((value & mask) != 0) {
+                return;
+            }
+        } while (!bits.compareAndSet(word, value, value | mask));
+    }
+
+    // double hashing of two halves of a 64-bit hash, see Kirsch and Mitzenmacher
+    private int index(final long hash, final int i) {
+        int combined = (int) hash + i * (int) (hash >>> 32);
+        if (combined < 0) {
+            combined = ~combined;
+        }
+        return combined % size;
+    }
+
+    // FNV-1a over the characters, then the finalizer of MurmurHash3 to spread the bits
+    private static long hash(final String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,408 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.composite;
+
+import com.microsoft.credentialstorage.SecretResult;
+import com.microsoft.credentialstorage.SecretStore;
+import com.microsoft.credentialstorage.SecretStoreListener;
+import com.microsoft.credentialstorage.model.StoredSecret;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+/**
+ * Store answering lookups of keys it definitely does not hold without calling the underlying store.
+ *
+ * A Bloom filter of the keys is built from {@link SecretStore#keys()} in the background, then the keys written
+ * through this store are added to it: a lookup of a key absent from the filter returns
+ * {@link SecretResult.Status#NOT_FOUND} at once, other lookups reach the underlying store. Until the filter is built,
+ * or if the underlying store cannot list its keys, all lookups reach the underlying store.
+ *
+ * Deleted keys stay in the filter, and only cost a lookup of the underlying store, until the filter is rebuilt,
+ * which happens when it is older than the rebuild interval. If the underlying store notifies of changes, see
+ * {@link SecretStore#addListener(SecretStoreListener)}, keys added by other processes are added to the filter as
+ * soon as they are reported; otherwise they are only found once the filter is rebuilt.
+ *
+ * @param <E> secret type to store
+ */
+public final class BloomFilteredSecretStore<E extends StoredSecret> implements SecretStore<E>, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(BloomFilteredSecretStore.class);
+
+    /**
+     * Default number of keys the filter is sized for, until it is rebuilt with more keys
+     */
+    public static final int DEFAULT_EXPECTED_KEYS = 1000;
+
+    /**
+     * Default share of lookups of absent keys reaching the underlying store
+     */
+    public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+
+    /**
+     * Default age of the filter after which it is rebuilt from the keys of the underlying store
+     */
+    public static final Duration DEFAULT_REBUILD_INTERVAL = Duration.ofMinutes(5);
+
+    private final SecretStore<E> delegate;
+    private final int expectedKeys;
+    private final double falsePositiveRate;
+    private final long rebuildIntervalNanos;
+    private final LongSupplier ticker;
+    private final Executor executor;
+
+    // excludes writes updating the filters while a rebuild starts or ends, so that none is missed
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile BloomFilter filter;
+    private BloomFilter building;
+    private volatile long builtAt;
+    private volatile boolean unsupported;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private final SecretStoreListener updater = new SecretStoreListener() {
+        @Override
+        public void secretChanged(final String key) {
+            markPresent(key);
+        }
+
+        @Override
+        public void secretsChanged() {
+            invalidate();
+        }
+    };
+    private final boolean updating;
+
+    private final LongAdder filtered = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+    private final LongAdder rebuilds = new LongAdder();
+
+    /**
+     * Creates a store with the default filter size, false positive rate and rebuild interval.
+     *
+     * @param delegate store to filter the lookups of
+     */
+    public BloomFilteredSecretStore(final SecretStore<E> delegate) {
+        this(delegate, DEFAULT_EXPECTED_KEYS, DEFAULT_FALSE_POSITIVE_RATE, DEFAULT_REBUILD_INTERVAL);
+    }
+
+    /**
+     * Creates a store.
+     *
+     * @param delegate store to filter the lookups of
+     * @param expectedKeys number of keys the filter is sized for, until it is rebuilt with more keys
+     * @param falsePositiveRate share of lookups of absent keys reaching the underlying store, between 0 and 1
+     * @param rebuildInterval age of the filter after which it is rebuilt from the keys of the underlying store
+     */
+    public BloomFilteredSecretStore(final SecretStore<E> delegate, final int expectedKeys,
+                                    final double falsePositiveRate, final Duration rebuildInterval) {
+        this(delegate, expectedKeys, falsePositiveRate, rebuildInterval, System::nanoTime, Rebuilder.EXECUTOR);
+    }
+
+    BloomFilteredSecretStore(final SecretStore<E> delegate, final int expectedKeys, final double falsePositiveRate,
+                             final Duration rebuildInterval, final LongSupplier ticker, final Executor executor) {
+        this.delegate = Objects.requireNonNull(delegate, "delegate cannot be null");
+        Objects.requireNonNull(rebuildInterval, "rebuildInterval cannot be null");
+        if (expectedKeys <= 0) {
+            throw new IllegalArgumentException("expectedKeys must be positive");
+        }
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1");
+        }
+        if (rebuildInterval.isNegative() || rebuildInterval.isZero()) {
+            throw new IllegalArgumentException("rebuildInterval must be positive");
+        }
+
+        this.expectedKeys = expectedKeys;
+        this.falsePositiveRate = falsePositiveRate;
+        this.rebuildIntervalNanos = rebuildInterval.toNanos();
+        this.ticker = Objects.requireNonNull(ticker, "ticker cannot be null");
+        this.executor = Objects.requireNonNull(executor, "executor cannot be null");
+        this.updating = subscribe(delegate, updater);
+
+        this.builtAt = ticker.getAsLong();
+        requestRebuild();
+    }
+
+    @Override
+    public E get(final String key) {
+        return getResult(key).getValue();
+    }
+
+    /**
+     * Read the secret from the underlying store, unless the filter tells the key is absent.
+     *
+     * @param key for which a secret is associated with
+     * @return result of the read, {@link SecretResult.Status#NOT_FOUND} for a key absent from the filter
+     */
+    @Override
+    public SecretResult<E> getResult(final String key) {
+        Objects.requireNonNull(key, "key cannot be null");
+
+        if (ticker.getAsLong() - builtAt >= rebuildIntervalNanos) {
+            requestRebuild();
+        }
+
+        final BloomFilter current = filter;
+        if (current != null && !current.mightContain(key)) {
+            filtered.increment();
+            return SecretResult.notFound();
+        }
+
+        final SecretResult<E> result = delegate.getResult(key);
+        if (current != null && result.getStatus() == SecretResult.Status.NOT_FOUND) {
+            falsePositives.increment();
+        }
+        return result;
+    }
+
+    /**
+     * Save the secret to the underlying store, and add its key to the filter. The key is added even if the write
+     * failed, as it may have been applied.
+     *
+     * @param key for which a secret is associated with
+     * @param secret secret to be stored
+     * @return outcome of the write to the underlying store
+     */
+    @Override
+    public boolean add(final String key, final E secret) {
+        Objects.requireNonNull(key, "key cannot be null");
+        Objects.requireNonNull(secret, "secret cannot be null");
+
+        try {
+            return delegate.add(key, secret);
+        } finally {
+            markPresent(key);
+        }
+    }
+
+    @Override
+    public boolean putIfAbsent(final String key, final E secret) {
+        Objects.requireNonNull(key, "key cannot be null");
+        Objects.requireNonNull(secret, "secret cannot be null");
+
+        final boolean written = delegate.putIfAbsent(key, secret);
+        if (written) {
+            markPresent(key);
+        }
+        return written;
+    }
+
+    @Override
+    public boolean replace(final String key, final E expected, final E updated) {
+        Objects.requireNonNull(key, "key cannot be null");
+        Objects.requireNonNull(expected, "expected cannot be null");
+        Objects.requireNonNull(updated, "updated cannot be null");
+
+        final boolean written = delegate.replace(key, expected, updated);
+        if (written) {
+            markPresent(key);
+        }
+        return written;
+    }
+
+    /**
+     * Delete the secret from the underlying store. The key stays in the filter until it is rebuilt: removing it
+     * could hide other keys, e.g. if it was added by another process and never reached the filter.
+     *
+     * @param key for which a secret is associated with
+     * @return outcome of the deletion from the underlying store
+     */
+    @Override
+    public boolean delete(final String key) {
+        return delegate.delete(key);
+    }
+
+    @Override
+    public Stream<String> keys() {
+        return delegate.keys();
+    }
+
+    @Override
+    public Stream<String> scan(final String prefix) {
+        return delegate.scan(prefix);
+    }
+
+    @Override
+    public boolean isSecure() {
+        return delegate.isSecure();
+    }
+
+    @Override
+    public void addListener(final SecretStoreListener listener) {
+        delegate.addListener(listener);
+    }
+
+    @Override
+    public void removeListener(final SecretStoreListener listener) {
+        delegate.removeListener(listener);
+    }
+
+    /**
+     * @return {@code true} if lookups are filtered, i.e. the filter is built and has not been invalidated
+     */
+    public boolean isFiltering() {
+        return filter != null;
+    }
+
+    /**
+     * @return {@code true} if the underlying store notifies of changes and the filter is updated on changes
+     */
+    public boolean isUpdatedOnChange() {
+        return updating;
+    }
+
+    /**
+     * Stop updating the filter on the changes reported by the underlying store.
+     */
+    @Override
+    public void close() {
+        if (updating) {
+            delegate.removeListener(updater);
+        }
+    }
+
+    /**
+     * @return number of lookups answered by the filter, without calling the underlying store
+     */
+    public long getFilteredCount() {
+        return filtered.sum();
+    }
+
+    /**
+     * @return number of lookups the filter let through, for which the underlying store found no secret
+     */
+    public long getFalsePositiveCount() {
+        return falsePositives.sum();
+    }
+
+    /**
+     * @return number of filters built from the keys of the underlying store
+     */
+    public long getRebuildCount() {
+        return rebuilds.sum();
+    }
+
+    private static <E extends StoredSecret> boolean subscribe(final SecretStore<E> store,
+                                                              final SecretStoreListener listener) {
+        try {
+            store.addListener(listener);
+            return true;
+        } catch (final UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+    private void markPresent(final String key) {
+        lock.readLock().lock();
+        try {
+            final BloomFilter current = filter;
+            if (current != null) {
+                current.add(key);
+            }
+            if (building != null) {
+                building.add(key);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void invalidate() {
+        lock.writeLock().lock();
+        try {
+            invalidations.incrementAndGet();
+            filter = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        requestRebuild();
+    }
+
+    private void requestRebuild() {
+        if (unsupported || !rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            executor.execute(this::rebuild);
+        } catch (final RejectedExecutionException e) {
+            rebuilding.set(false);
+        }
+    }
+
+    private void rebuild() {
+        boolean invalidated = false;
+        try {
+            final long invalidationCount = invalidations.get();
+            final BloomFilter current = filter;
+            final long keyCount = current != null ? 2 * current.keyCount() : 0;
+            final BloomFilter next = new BloomFilter(
+                    (int) Math.min(Integer.MAX_VALUE, Math.max(expectedKeys, keyCount)), falsePositiveRate);
+
+            // keys written from now on are added to the next filter as well, the listing may miss them
+            lock.writeLock().lock();
+            try {
+                building = next;
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            boolean built = false;
+            try (Stream<String> keys = delegate.keys()) {
+                keys.forEach(next::add);
+                built = true;
+            } catch (final UnsupportedOperationException e) {
+                logger.warn("The store cannot list its keys, lookups are not filtered.");
+                unsupported = true;
+            } catch (final RuntimeException e) {
+                logger.warn("Listing the keys of the store failed, lookups are not filtered until the next rebuild.",
+                        e);
+            }
+
+            lock.writeLock().lock();
+            try {
+                building = null;
+                builtAt = ticker.getAsLong();
+                // changes may have been missed by the listing
+                invalidated = invalidations.get() != invalidationCount;
+                if (built && !invalidated) {
+                    filter = next;
+                    rebuilds.increment();
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            rebuilding.set(false);
+        }
+
+        if (invalidated) {
+            requestRebuild();
+        }
+    }
+
+    /**
+     * Daemon thread rebuilding the filters of this process, created on first use.
+     */
+    private static final class Rebuilder {
+        static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "credential-bloom-filter");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,195 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.composite;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounds the calls in progress to a storage backend, see {@link ThrottledSecretStore}.
+ *
+ * A backend such as the keyring daemon serves a few calls at a time at best; with many more in progress its
+ * latency grows for every application of the session. Calls beyond the bound wait in a queue, in order of arrival,
+ * and are rejected if the queue is full or they waited too long. A queue of 0 calls rejects calls right away.
+ *
+ * A bulkhead may be shared by the stores of the same backend, so that all of them are bounded together.
+ */
+public final class Bulkhead {
+
+    /**
+     * Default number of calls waiting in the queue
+     */
+    public static final int DEFAULT_MAX_QUEUED_CALLS = 1000;
+
+    /**
+     * Default time a call waits in the queue before it is rejected
+     */
+    public static final Duration DEFAULT_MAX_WAIT = Duration.ofSeconds(5);
+
+    private final String name;
+    private final int maxConcurrentCalls;
+    private final int maxQueuedCalls;
+    private final Duration maxWait;
+
+    private final Semaphore permits;
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final LongAdder permitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder queueWaitNanos = new LongAdder();
+    private final LongAccumulator maxQueueWaitNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Creates a bulkhead with the default queue.
+     *
+     * @param name name of the backend, for logging
+     * @param maxConcurrentCalls number of calls in progress
+     */
+    public Bulkhead(final String name, final int maxConcurrentCalls) {
+        this(name, maxConcurrentCalls, DEFAULT_MAX_QUEUED_CALLS, DEFAULT_MAX_WAIT);
+    }
+
+    /**
+     * Creates a bulkhead.
+     *
+     * @param name name of the backend, for logging
+     * @param maxConcurrentCalls number of calls in progress
+     * @param maxQueuedCalls number of calls waiting in the queue; 0 rejects calls beyond the bound right away
+     * @param maxWait time a call waits in the queue before it is rejected
+     */
+    public Bulkhead(final String name, final int maxConcurrentCalls, final int maxQueuedCalls,
+                    final Duration maxWait) {
+        Objects.requireNonNull(name, "name cannot be null");
+        Objects.requireNonNull(maxWait, "maxWait cannot be null");
+        if (maxConcurrentCalls <= 0) {
+            throw new IllegalArgumentException("maxConcurrentCalls must be positive");
+        }
+        if (maxQueuedCalls < 0) {
+            throw new IllegalArgumentException("maxQueuedCalls cannot be negative");
+        }
+        if (maxWait.isNegative()) {
+            throw new IllegalArgumentException("maxWait cannot be negative");
+        }
+
+        this.name = name;
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.maxQueuedCalls = maxQueuedCalls;
+        this.maxWait = maxWait;
+        this.permits = new Semaphore(maxConcurrentCalls, true);
+    }
+
+    /**
+     * @return name of the backend
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return number of calls in progress
+     */
+    public int getMaxConcurrentCalls() {
+        return maxConcurrentCalls;
+    }
+
+    /**
+     * @return time a call waits in the queue before it is rejected
+     */
+    public Duration getMaxWait() {
+        return maxWait;
+    }
+
+    /**
+     * Wait for the permission to call the backend, to be released with {@link #release()} once the call completes.
+     * The thread being interrupted while waiting rejects the call, keeping its interrupt status.
+     *
+     * @return {@code true} if the call is permitted, {@code false} if it is rejected
+     */
+    public boolean acquire() {
+        final boolean acquired = tryAcquire();
+        if (acquired) {
+            permitted.increment();
+        } else {
+            rejected.increment();
+        }
+        return acquired;
+    }
+
+    /**
+     * Release the permission of a call which completed.
+     */
+    public void release() {
+        permits.release();
+    }
+
+    /**
+     * @return number of calls waiting in the queue
+     */
+    public int getQueuedCount() {
+        return queued.get();
+    }
+
+    /**
+     * @return number of calls permitted
+     */
+    public long getPermittedCount() {
+        return permitted.sum();
+    }
+
+    /**
+     * @return number of calls rejected, with a full queue or after waiting too long
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return total time calls waited in the queue, in nanoseconds
+     */
+    public long getQueueWaitNanos() {
+        return queueWaitNanos.sum();
+    }
+
+    /**
+     * @return longest time a call waited in the queue, in nanoseconds
+     */
+    public long getMaxQueueWaitNanos() {
+        return maxQueueWaitNanos.get();
+    }
+
+    private boolean tryAcquire() {
+        try {
+            // unlike tryAcquire(), does not overtake the calls in the queue
+            if (permits.tryAcquire(0, TimeUnit.NANOSECONDS)) {
+                return true;
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        if (queued.incrementAndGet() > maxQueuedCalls) {
+            queued.decrementAndGet();
+            return false;
+        }
+
+        final long startedAt = System.nanoTime();
+        try {
+            return permits.tryAcquire(maxWait.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            queued.decrementAndGet();
+            final long waited = System.nanoTime() - startedAt;
+            queueWaitNanos.add(waited);
+            maxQueueWaitNanos.accumulate(waited);
+        }
+    }
+}
@@ -0,0 +1,326 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.composite;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breaker of a storage backend, see {@link ResilientSecretStore}.
+ *
+ * The outcomes of the last calls are kept in a window. Once the window has enough calls and the rate of failed
+ * or of slow calls reaches its threshold, the breaker opens and calls are rejected without reaching the backend.
+ * After a while, it lets a few calls through to probe the backend: it closes again if they all succeed in time,
+ * and opens again otherwise.
+ *
+ * A breaker may be shared by the stores of the same backend, so that all of them stop calling a backend which
+ * stopped responding.
+ */
+public final class CircuitBreaker {
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    /**
+     * State of a circuit breaker
+     */
+    public enum State {
+        /**
+         * Calls reach the backend
+         */
+        CLOSED,
+
+        /**
+         * Calls are rejected
+         */
+        OPEN,
+
+        /**
+         * A few calls reach the backend to probe whether it recovered
+         */
+        HALF_OPEN
+    }
+
+    /**
+     * Default number of calls in the window
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 20;
+
+    /**
+     * Default number of calls in the window before the breaker may open
+     */
+    public static final int DEFAULT_MINIMUM_CALLS = 5;
+
+    /**
+     * Default rate of failed calls opening the breaker
+     */
+    public static final double DEFAULT_FAILURE_RATE_THRESHOLD = 0.5;
+
+    /**
+     * Default duration from which a call is slow, far below the timeouts of D-Bus calls
+     */
+    public static final Duration DEFAULT_SLOW_CALL_DURATION = Duration.ofSeconds(2);
+
+    /**
+     * Default rate of slow calls opening the breaker
+     */
+    public static final double DEFAULT_SLOW_CALL_RATE_THRESHOLD = 0.8;
+
+    /**
+     * Default time the breaker stays open before probing the backend
+     */
+    public static final Duration DEFAULT_OPEN_DURATION = Duration.ofSeconds(30);
+
+    /**
+     * Default number of probing calls
+     */
+    public static final int DEFAULT_HALF_OPEN_CALLS = 3;
+
+    private static final byte SUCCESS = 0;
+    private static final byte FAILURE = 1;
+    private static final byte SLOW = 2;
+
+    private final String name;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long slowCallNanos;
+    private final double slowCallRateThreshold;
+    private final long openNanos;
+    private final int halfOpenCalls;
+    private final LongSupplier ticker;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // outcomes of the last calls, as a ring
+    private final byte[] window;
+    private int windowCount;
+    private int windowNext;
+    private int failures;
+    private int slowCalls;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int halfOpenPermits;
+    private int halfOpenSucceeded;
+
+    /**
+     * Creates a circuit breaker with the default thresholds.
+     *
+     * @param name name of the backend, for logging
+     */
+    public CircuitBreaker(final String name) {
+        this(name, DEFAULT_WINDOW_SIZE, DEFAULT_MINIMUM_CALLS, DEFAULT_FAILURE_RATE_THRESHOLD,
+                DEFAULT_SLOW_CALL_DURATION, DEFAULT_SLOW_CALL_RATE_THRESHOLD, DEFAULT_OPEN_DURATION,
+                DEFAULT_HALF_OPEN_CALLS);
+    }
+
+    /**
+     * Creates a circuit breaker.
+     *
+     * @param name name of the backend, for logging
+     * @param windowSize number of calls in the window
+     * @param minimumCalls number of calls in the window before the breaker may open
+     * @param failureRateThreshold rate of failed calls opening the breaker, between 0 and 1
+     * @param slowCallDuration duration from which a call is slow
+     * @param slowCallRateThreshold rate of slow calls opening the breaker, between 0 and 1
+     * @param openDuration time the breaker stays open before probing the backend
+     * @param halfOpenCalls number of probing calls, which must all succeed in time to close the breaker
+     */
+    public CircuitBreaker(final String name, final int windowSize, final int minimumCalls,
+                          final double failureRateThreshold, final Duration slowCallDuration,
+                          final double slowCallRateThreshold, final Duration openDuration, final int halfOpenCalls) {
+        this(name, windowSize, minimumCalls, failureRateThreshold, slowCallDuration, slowCallRateThreshold,
+                openDuration, halfOpenCalls, System::nanoTime);
+    }
+
+    CircuitBreaker(final String name, final int windowSize, final int minimumCalls,
+                   final double failureRateThreshold, final Duration slowCallDuration,
+                   final double slowCallRateThreshold, final Duration openDuration, final int halfOpenCalls,
+                   final LongSupplier ticker) {
+        this.name = Objects.requireNonNull(name, "name cannot be null");
+        if (windowSize <= 0 || minimumCalls <= 0 || minimumCalls > windowSize) {
+            throw new IllegalArgumentException("minimumCalls must be between 1 and windowSize");
+        }
+        if (failureRateThreshold <= 0 || failureRateThreshold > 1
+                || slowCallRateThreshold <= 0 || slowCallRateThreshold > 1) {
+            throw new IllegalArgumentException("Thresholds must be between 0 and 1");
+        }
+        if (slowCallDuration.isNegative() || openDuration.isNegative()) {
+            throw new IllegalArgumentException("Durations cannot be negative");
+        }
+        if (halfOpenCalls <= 0) {
+            throw new IllegalArgumentException("halfOpenCalls must be positive");
+        }
+
+        this.window = new byte[windowSize];
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallNanos = slowCallDuration.toNanos();
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.halfOpenCalls = halfOpenCalls;
+        this.ticker = Objects.requireNonNull(ticker, "ticker cannot be null");
+    }
+
+    /**
+     * @return name of the backend
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return current state, an open breaker whose open duration has elapsed is reported half-open
+     */
+    public State getState() {
+        lock.lock();
+        try {
+            if (state == State.OPEN && ticker.getAsLong() - openedAt >= openNanos) {
+                return State.HALF_OPEN;
+            }
+            return state;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ask for a call to the backend. A permitted call must be reported with {@link #onSuccess(long)} or
+     * {@link #onFailure(long)}.
+     *
+     * @return {@code false} if the call is rejected
+     */
+    public boolean tryAcquire() {
+        lock.lock();
+        try {
+            if (state == State.OPEN) {
+                if (ticker.getAsLong() - openedAt < openNanos) {
+                    return false;
+                }
+                transition(State.HALF_OPEN);
+                halfOpenPermits = halfOpenCalls;
+                halfOpenSucceeded = 0;
+            }
+
+            if (state == State.HALF_OPEN) {
+                if (halfOpenPermits == 0) {
+                    return false;
+                }
+                halfOpenPermits--;
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return current time of the breaker's clock, to measure calls with
+     */
+    public long now() {
+        return ticker.getAsLong();
+    }
+
+    /**
+     * Report a permitted call which succeeded.
+     *
+     * @param startedAt time the call started at, from {@link #now()}
+     */
+    public void onSuccess(final long startedAt) {
+        record(ticker.getAsLong() - startedAt >= slowCallNanos ? SLOW : SUCCESS);
+    }
+
+    /**
+     * Report a permitted call which failed.
+     *
+     * @param startedAt time the call started at, from {@link #now()}
+     */
+    public void onFailure(final long startedAt) {
+        record(FAILURE);
+    }
+
+    private void record(final byte outcome) {
+        lock.lock();
+        try {
+            switch (state) {
+                case HALF_OPEN:
+                    if (outcome != SUCCESS) {
+                        open();
+                    } else if (++halfOpenSucceeded == halfOpenCalls) {
+                        transition(State.CLOSED);
+                        resetWindow();
+                    }
+                    break;
+
+                case CLOSED:
+                    addToWindow(outcome);
+                    if (windowCount >= minimumCalls && (failures >= failureRateThreshold * windowCount
+                            || slowCalls >= slowCallRateThreshold * windowCount)) {
+                        open();
+                    }
+                    break;
+
+                default:
+                    // a call permitted before the breaker opened
+                    break;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // with the lock held
+    private void open() {
+        transition(State.OPEN);
+        openedAt = ticker.getAsLong();
+        resetWindow();
+    }
+
+    // with the lock held
+    private void transition(final State next) {
+        if (state != next) {
+            if (next == State.OPEN) {
+                logger.warn("Circuit breaker of {} is now {}, calls are rejected", name, next);
+            } else {
+                logger.info("Circuit breaker of {} is now {}", name, next);
+            }
+            state = next;
+        }
+    }
+
+    // with the lock held
+    private void addToWindow(final byte outcome) {
+        if (windowCount == window.length) {
+            remove(window[windowNext]);
+        } else {
+            windowCount++;
+        }
+        window[windowNext] = outcome;
+        windowNext = (windowNext + 1) % window.length;
+
+        if (outcome == FAILURE) {
+            failures++;
+        } else if (outcome == SLOW) {
+            slowCalls++;
+        }
+    }
+
+    private void remove(final byte outcome) {
+        if (outcome == FAILURE) {
+            failures--;
+        } else if (outcome == SLOW) {
+            slowCalls--;
+        }
+    }
+
+    // with the lock held
+    private void resetWindow() {
+        windowCount = 0;
+        windowNext = 0;
+        failures = 0;
+        slowCalls = 0;
+    }
+}
@@ -0,0 +1,405 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.composite;
+
+import com.microsoft.credentialstorage.SecretResult;
+import com.microsoft.credentialstorage.SecretStore;
+import com.microsoft.credentialstorage.SecretStoreListener;
+import com.microsoft.credentialstorage.implementation.SecretStoreListeners;
+import com.microsoft.credentialstorage.model.StoredSecret;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Store recording its changes in a journal file shared by the processes using the same underlying storage, so that
+ * they can be notified of each other's changes, see {@link SecretStore#addListener(SecretStoreListener)}.
+ *
+ * This is the portable way of notifying changes for stores whose native storage does not report them. Every process
+ * writing to the storage must go through a store with the same journal, changes made by other programs are not
+ * seen. The journal is watched with a {@link WatchService}, backed by inotify on Linux, and is also checked
+ * periodically since some platforms and file systems only poll or do not report changes at all.
+ *
+ * Each record holds the key of a changed secret, never the secret itself. The journal is created readable by its
+ * owner only where the file system supports it, and is truncated once it exceeds a maximum size; listeners of
+ * other processes which had not read it yet are told that changes may have been missed.
+ *
+ * @param <E> secret type to store
+ */
+public final class JournaledSecretStore<E extends StoredSecret> implements SecretStore<E>, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(JournaledSecretStore.class);
+
+    /**
+     * Default size above which the journal is truncated
+     */
+    public static final long DEFAULT_MAX_SIZE = 1024 * 1024;
+
+    private static final Duration POLL_INTERVAL = Duration.ofSeconds(1);
+
+    // a journal starts with a header naming its generation, which changes when it is truncated
+    private static final String HEADER_PREFIX = "journal ";
+    private static final int HEADER_LENGTH = HEADER_PREFIX.length() + 36 + 1;
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    // file locks are held by the process, stores of the same process must not lock a journal concurrently
+    private static final ReentrantLock JOURNAL_LOCK = new ReentrantLock();
+
+    private final SecretStore<E> delegate;
+    private final Path journal;
+    private final long maxSize;
+    private final String id = UUID.randomUUID().toString();
+    private final FileChannel channel;
+
+    private final SecretStoreListeners listeners = new SecretStoreListeners();
+
+    private final ReentrantLock watchLock = new ReentrantLock();
+    private WatchService watchService;
+    private String readHeader;
+    private long readPosition;
+
+    /**
+     * Creates a store with a journal of the default maximum size.
+     *
+     * @param delegate store to record the changes of
+     * @param journal journal file, created if it does not exist
+     * @throws IOException if the journal cannot be opened
+     */
+    public JournaledSecretStore(final SecretStore<E> delegate, final Path journal) throws IOException {
+        this(delegate, journal, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Creates a store with a journal.
+     *
+     * @param delegate store to record the changes of
+     * @param journal journal file, created if it does not exist
+     * @param maxSize size in bytes above which the journal is truncated
+     * @throws IOException if the journal cannot be opened
+     */
+    public JournaledSecretStore(final SecretStore<E> delegate, final Path journal, final long maxSize)
+            throws IOException {
+        this.delegate = Objects.requireNonNull(delegate, "delegate cannot be null");
+        this.journal = Objects.requireNonNull(journal, "journal cannot be null").toAbsolutePath();
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        this.maxSize = maxSize;
+
+        createJournal(this.journal);
+        this.channel = FileChannel.open(this.journal, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            JOURNAL_LOCK.lock();
+            try {
+                final FileLock fileLock = channel.lock();
+                try {
+                    if (channel.size() < HEADER_LENGTH) {
+                        startGeneration();
+                    }
+                } finally {
+                    fileLock.release();
+                }
+            } finally {
+                JOURNAL_LOCK.unlock();
+            }
+        } catch (final IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public E get(final String key) {
+        return delegate.get(key);
+    }
+
+    @Override
+    public SecretResult<E> getResult(final String key) {
+        return delegate.getResult(key);
+    }
+
+    @Override
+    public boolean add(final String key, final E secret) {
+        Objects.requireNonNull(key, "key cannot be null");
+
+        final boolean added = delegate.add(key, secret);
+        if (added) {
+            record(key);
+        }
+        return added;
+    }
+
+    @Override
+    public boolean delete(final String key) {
+        Objects.requireNonNull(key, "key cannot be null");
+
+        final boolean deleted = delegate.delete(key);
+        if (deleted) {
+            record(key);
+        }
+        return deleted;
+    }
+
+    @Override
+    public boolean putIfAbsent(final String key, final E secret) {
+        Objects.requireNonNull(key, "key cannot be null");
+
+        final boolean added = delegate.putIfAbsent(key, secret);
+        if (added) {
+            record(key);
+        }
+        return added;
+    }
+
+    @Override
+    public boolean replace(final String key, final E expected, final E updated) {
+        Objects.requireNonNull(key, "key cannot be null");
+
+        final boolean replaced = delegate.replace(key, expected, updated);
+        if (replaced) {
+            record(key);
+        }
+        return replaced;
+    }
+
+    @Override
+    public Stream<String> keys() {
+        return delegate.keys();
+    }
+
+    @Override
+    public Stream<String> scan(final String prefix) {
+        return delegate.scan(prefix);
+    }
+
+    @Override
+    public boolean isSecure() {
+        return delegate.isSecure();
+    }
+
+    /**
+     * Register a listener notified of the changes made through this store, and of those recorded in the journal
+     * by other stores. The journal is watched from the first registration on.
+     *
+     * @param listener listener to notify
+     */
+    @Override
+    public void addListener(final SecretStoreListener listener) {
+        listeners.add(listener);
+        watch();
+    }
+
+    @Override
+    public void removeListener(final SecretStoreListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Stop watching the journal and close it.
+     */
+    @Override
+    public void close() {
+        watchLock.lock();
+        try {
+            if (watchService != null) {
+                watchService.close();
+            }
+            channel.close();
+        } catch (final IOException e) {
+            logger.warn("Closing the change journal failed.", e);
+        } finally {
+            watchLock.unlock();
+        }
+    }
+
+    private void record(final String key) {
+        listeners.fireSecretChanged(key);
+
+        final byte[] record = (id + " " + URLEncoder.encode(key, StandardCharsets.UTF_8) + "\n")
+                .getBytes(StandardCharsets.UTF_8);
+
+        JOURNAL_LOCK.lock();
+        try {
+            final FileLock fileLock = channel.lock();
+            try {
+                long position = channel.size();
+                if (position + record.length > maxSize) {
+                    startGeneration();
+                    position = HEADER_LENGTH;
+                }
+                final ByteBuffer buffer = ByteBuffer.wrap(record);
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position);
+                }
+            } finally {
+                fileLock.release();
+            }
+        } catch (final IOException e) {
+            // other processes do not learn about the change until their cached copy expires
+            logger.warn("Recording a change in the journal failed.", e);
+        } finally {
+            JOURNAL_LOCK.unlock();
+        }
+    }
+
+    private void watch() {
+        watchLock.lock();
+        try {
+            if (watchService != null || !channel.isOpen()) {
+                return;
+            }
+
+            JOURNAL_LOCK.lock();
+            try {
+                final FileLock fileLock = channel.lock();
+                try {
+                    readHeader = readHeader();
+                    readPosition = channel.size();
+                } finally {
+                    fileLock.release();
+                }
+            } finally {
+                JOURNAL_LOCK.unlock();
+            }
+
+            watchService = journal.getFileSystem().newWatchService();
+            journal.getParent().register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+            final WatchService service = watchService;
+            final Thread thread = new Thread(() -> runWatcher(service),
+                    "credential-journal-watcher-" + THREAD_COUNT.incrementAndGet());
+            thread.setDaemon(true);
+            thread.start();
+        } catch (final IOException e) {
+            logger.warn("Watching the change journal failed, changes of other processes are not reported.", e);
+        } finally {
+            watchLock.unlock();
+        }
+    }
+
+    private void runWatcher(final WatchService service) {
+        try {
+            while (true) {
+                final WatchKey key = service.poll(POLL_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    // events only wake the watcher up, the journal is read in any case
+                    key.pollEvents();
+                    key.reset();
+                }
+                readJournal();
+            }
+        } catch (final ClosedWatchServiceException | InterruptedException e) {
+            // closed
+        }
+    }
+
+    private void readJournal() {
+        final String records;
+        boolean truncated = false;
+
+        JOURNAL_LOCK.lock();
+        try {
+            final FileLock fileLock = channel.lock();
+            try {
+                final String header = readHeader();
+                if (!header.equals(readHeader)) {
+                    truncated = true;
+                    readHeader = header;
+                    readPosition = HEADER_LENGTH;
+                }
+
+                final long size = channel.size();
+                if (size <= readPosition) {
+                    records = "";
+                } else {
+                    final ByteBuffer buffer = ByteBuffer.allocate((int) (size - readPosition));
+                    while (buffer.hasRemaining() && channel.read(buffer, readPosition + buffer.position()) >= 0) {
+                        // read until the end
+                    }
+                    readPosition = size;
+                    records = new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+                }
+            } finally {
+                fileLock.release();
+            }
+        } catch (final IOException e) {
+            if (channel.isOpen()) {
+                logger.warn("Reading the change journal failed.", e);
+            }
+            return;
+        } finally {
+            JOURNAL_LOCK.unlock();
+        }
+
+        if (truncated) {
+            listeners.fireSecretsChanged();
+        }
+
+        for (final String record : records.split("\n")) {
+            final int separator = record.indexOf(' ');
+            if (separator < 0 || record.startsWith(id + " ")) {
+                // changes of this store were reported when they were made
+                continue;
+            }
+            listeners.fireSecretChanged(URLDecoder.decode(record.substring(separator + 1), StandardCharsets.UTF_8));
+        }
+    }
+
+    // with the journal locked
+    private void startGeneration() throws IOException {
+        final ByteBuffer header = ByteBuffer.wrap((HEADER_PREFIX + UUID.randomUUID() + "\n")
+                .getBytes(StandardCharsets.US_ASCII));
+        channel.truncate(0);
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+    }
+
+    // with the journal locked
+    private String readHeader() throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+            // read the whole header
+        }
+        return new String(header.array(), 0, header.position(), StandardCharsets.US_ASCII);
+    }
+
+    private static void createJournal(final Path journal) throws IOException {
+        Files.createDirectories(journal.getParent());
+        try {
+            if (journal.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+                Files.createFile(journal,
+                        PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+            } else {
+                Files.createFile(journal);
+            }
+        } catch (final FileAlreadyExistsException e) {
+            // shared with other processes
+        }
+    }
+}
@@ -0,0 +1,215 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.composite;
+
+import com.microsoft.credentialstorage.SecretResult;
+import com.microsoft.credentialstorage.SecretStore;
+import com.microsoft.credentialstorage.SecretStoreListener;
+import com.microsoft.credentialstorage.model.StoredSecret;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Runs the calls of a store on a small pool of platform threads, for callers running on virtual threads.
+ *
+ * Native backend calls block the calling thread, and a virtual thread blocked in a native call pins its carrier
+ * thread. With many virtual threads calling a store, all carrier threads may end up pinned and the scheduler
+ * starves. Callers of this store instead wait for the pool, which does not pin their carrier thread, and at most
+ * as many native calls as the pool has threads are in progress at any time.
+ *
+ * The pool should be sized for the backend: calls to Windows Credential Manager are serialized, so a single
+ * thread is enough, while calls to the secret service may overlap. Calls of a store must not be made from the
+ * threads of its own pool.
+ *
+ * @param <E> secret type to store
+ */
+public final class OffloadingSecretStore<E extends StoredSecret> implements SecretStore<E>, AutoCloseable {
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private final SecretStore<E> delegate;
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+
+    /**
+     * Creates a store running the calls on its own pool.
+     *
+     * @param delegate store to run the calls of
+     * @param threads number of platform threads of the pool
+     */
+    public OffloadingSecretStore(final SecretStore<E> delegate, final int threads) {
+        this(delegate, newExecutor(threads), true);
+    }
+
+    /**
+     * Creates a store running the calls on a pool shared with other stores of the same backend.
+     * The pool is not shut down when the store is closed.
+     *
+     * @param delegate store to run the calls of
+     * @param executor pool of platform threads, see {@link #newExecutor(int)}
+     */
+    public OffloadingSecretStore(final SecretStore<E> delegate, final ExecutorService executor) {
+        this(delegate, executor, false);
+    }
+
+    private OffloadingSecretStore(final SecretStore<E> delegate, final ExecutorService executor,
+                                  final boolean ownsExecutor) {
+        this.delegate = Objects.requireNonNull(delegate, "delegate cannot be null");
+        this.executor = Objects.requireNonNull(executor, "executor cannot be null");
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    /**
+     * Creates a pool of daemon platform threads to run the calls of stores on.
+     *
+     * @param threads number of threads
+     * @return pool
+     */
+    public static ExecutorService newExecutor(final int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("threads must be positive");
+        }
+
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            final Thread thread = new Thread(runnable, "credential-backend-" + THREAD_COUNT.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public E get(final String key) {
+        Objects.requireNonNull(key, "key cannot be null");
+
+        return call(() -> delegate.get(key));
+    }
+
+    @Override
+    public SecretResult<E> getResult(final String key) {
+        Objects.requireNonNull(key, "key cannot be null");
+
+        return call(() -> delegate.getResult(key));
+    }
+
+    @Override
+    public boolean add(final String key, final E secret) {
+        Objects.requireNonNull(key, "key cannot be null");
+        Objects.requireNonNull(secret, "secret cannot be null");
+
+        return call(() -> delegate.add(key, secret));
+    }
+
+    @Override
+    public boolean delete(final String key) {
+        Objects.requireNonNull(key, "key cannot be null");
+
+        return call(() -> delegate.delete(key));
+    }
+
+    @Override
+    public boolean putIfAbsent(final String key, final E secret) {
+        Objects.requireNonNull(key, "key cannot be null");
+        Objects.requireNonNull(secret, "secret cannot be null");
+
+        return call(() -> delegate.putIfAbsent(key, secret));
+    }
+
+    @Override
+    public boolean replace(final String key, final E expected, final E updated) {
+        Objects.requireNonNull(key, "key cannot be null");
+        Objects.requireNonNull(expected, "expected cannot be null");
+        Objects.requireNonNull(updated, "updated cannot be null");
+
+        return call(() -> delegate.replace(key, expected, updated));
+    }
+
+    /**
+     * List the keys of the underlying store. The keys are read on the pool before returning,
+     * rather than lazily.
+     *
+     * @return keys of the secrets
+     */
+    @Override
+    public Stream<String> keys() {
+        return call(() -> collect(delegate.keys())).stream();
+    }
+
+    /**
+     * List the keys of the underlying store starting with a prefix. The keys are read on the pool before
+     * returning, rather than lazily.
+     *
+     * @param prefix
+     *      prefix of the keys
+     *
+     * @return keys of the secrets starting with the prefix
+     */
+    @Override
+    public Stream<String> scan(final String prefix) {
+        Objects.requireNonNull(prefix, "prefix cannot be null");
+
+        return call(() -> collect(delegate.scan(prefix))).stream();
+    }
+
+    @Override
+    public boolean isSecure() {
+        return delegate.isSecure();
+    }
+
+    @Override
+    public void addListener(final SecretStoreListener listener) {
+        delegate.addListener(listener);
+    }
+
+    @Override
+    public void removeListener(final SecretStoreListener listener) {
+        delegate.removeListener(listener);
+    }
+
+    /**
+     * Shut down the pool if it is owned by this store. Calls in progress complete.
+     */
+    @Override
+    public void close() {
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+
+    private static List<String> collect(final Stream<String> keys) {
+        try (Stream<String> stream = keys) {
+            return stream.collect(Collectors.toList());
+        }
+    }
+
+    private <T> T call(final Callable<T> task) {
+        final Future<T> future = executor.submit(task);
+        try {
+            // parks the caller, which unmounts a virtual thread from its carrier thread
+            return future.get();
+        } catch (final InterruptedException e) {
+            // a native call in progress cannot be interrupted, it completes on the pool
+            future.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for the secret store");
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+}
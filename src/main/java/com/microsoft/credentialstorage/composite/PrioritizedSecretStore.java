@@ -0,0 +1,193 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.composite;
+
+import com.microsoft.credentialstorage.SecretResult;
+import com.microsoft.credentialstorage.SecretStore;
+import com.microsoft.credentialstorage.SecretStoreListener;
+import com.microsoft.credentialstorage.SecretStoreTimeoutException;
+import com.microsoft.credentialstorage.model.StoredSecret;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Store running its calls in a lane of a {@link PriorityScheduler}, so that interactive lookups do not wait
+ * behind bulk background work on the same backend.
+ *
+ * Create one store per lane over the same store and scheduler, e.g. an interactive store for the lookups of the
+ * application and a background store for token rotation:
+ *
+ * <pre>{@code
+ * PriorityScheduler scheduler = new PriorityScheduler(2);
+ * SecretStore<StoredToken> interactive = new PrioritizedSecretStore<>(store, scheduler, Lane.INTERACTIVE);
+ * SecretStore<StoredToken> background = new PrioritizedSecretStore<>(store, scheduler, Lane.BACKGROUND);
+ * }</pre>
+ *
+ * A call whose thread is interrupted while it waits for its turn does not reach the backend: reads report
+ * {@link SecretResult.Status#TIMEOUT}, writes return {@code false} and listing the keys throws a
+ * {@link SecretStoreTimeoutException}.
+ *
+ * @param <E> secret type to store
+ */
+public final class PrioritizedSecretStore<E extends StoredSecret> implements SecretStore<E> {
+    private static final Logger logger = LoggerFactory.getLogger(PrioritizedSecretStore.class);
+
+    private final SecretStore<E> delegate;
+    private final PriorityScheduler scheduler;
+    private final PriorityScheduler.Lane lane;
+
+    /**
+     * Creates a store.
+     *
+     * @param delegate store to schedule the calls of
+     * @param scheduler scheduler of the backend, shared with the stores of the other lanes
+     * @param lane lane of the calls of this store
+     */
+    public PrioritizedSecretStore(final SecretStore<E> delegate, final PriorityScheduler scheduler,
+                                  final PriorityScheduler.Lane lane) {
+        this.delegate = Objects.requireNonNull(delegate, "delegate cannot be null");
+        this.scheduler = Objects.requireNonNull(scheduler, "scheduler cannot be null");
+        this.lane = Objects.requireNonNull(lane, "lane cannot be null");
+    }
+
+    /**
+     * @return lane of the calls of this store
+     */
+    public PriorityScheduler.Lane getLane() {
+        return lane;
+    }
+
+    @Override
+    public E get(final String key) {
+        return getResult(key).getValue();
+    }
+
+    @Override
+    public SecretResult<E> getResult(final String key) {
+        Objects.requireNonNull(key, "key cannot be null");
+
+        final SecretResult<E> result = call(() -> delegate.getResult(key));
+        if (result == null) {
+            return SecretResult.failed(SecretResult.Status.TIMEOUT, null, 0,
+                    "Interrupted while waiting for the secret store");
+        }
+        return result;
+    }
+
+    @Override
+    public boolean add(final String key, final E secret) {
+        Objects.requireNonNull(key, "key cannot be null");
+        Objects.requireNonNull(secret, "secret cannot be null");
+
+        return write(() -> delegate.add(key, secret));
+    }
+
+    @Override
+    public boolean delete(final String key) {
+        Objects.requireNonNull(key, "key cannot be null");
+
+        return write(() -> delegate.delete(key));
+    }
+
+    @Override
+    public boolean putIfAbsent(final String key, final E secret) {
+        Objects.requireNonNull(key, "key cannot be null");
+        Objects.requireNonNull(secret, "secret cannot be null");
+
+        return write(() -> delegate.putIfAbsent(key, secret));
+    }
+
+    @Override
+    public boolean replace(final String key, final E expected, final E updated) {
+        Objects.requireNonNull(key, "key cannot be null");
+        Objects.requireNonNull(expected, "expected cannot be null");
+        Objects.requireNonNull(updated, "updated cannot be null");
+
+        return write(() -> delegate.replace(key, expected, updated));
+    }
+
+    /**
+     * List the keys of the underlying store. The keys are read before returning, rather than lazily, so that the
+     * call does not hold its place while the stream is consumed.
+     *
+     * @return keys of the secrets
+     */
+    @Override
+    public Stream<String> keys() {
+        return list(delegate::keys);
+    }
+
+    /**
+     * List the keys of the underlying store starting with a prefix, read before returning.
+     *
+     * @param prefix
+     *      prefix of the keys
+     *
+     * @return keys of the secrets starting with the prefix
+     */
+    @Override
+    public Stream<String> scan(final String prefix) {
+        Objects.requireNonNull(prefix, "prefix cannot be null");
+
+        return list(() -> delegate.scan(prefix));
+    }
+
+    @Override
+    public boolean isSecure() {
+        return delegate.isSecure();
+    }
+
+    @Override
+    public void addListener(final SecretStoreListener listener) {
+        delegate.addListener(listener);
+    }
+
+    @Override
+    public void removeListener(final SecretStoreListener listener) {
+        delegate.removeListener(listener);
+    }
+
+    private boolean write(final Supplier<Boolean> operation) {
+        final Boolean saved = call(operation);
+        if (saved == null) {
+            logger.warn("Interrupted while waiting to write the secret.");
+            return false;
+        }
+        return saved;
+    }
+
+    private Stream<String> list(final Supplier<Stream<String>> lister) {
+        final List<String> keys = call(() -> {
+            try (Stream<String> stream = lister.get()) {
+                return stream.collect(Collectors.toList());
+            }
+        });
+        if (keys == null) {
+            throw new SecretStoreTimeoutException("Interrupted while waiting to list the keys", Duration.ZERO);
+        }
+        return keys.stream();
+    }
+
+    /**
+     * @return result of the operation, or {@code null} if the thread was interrupted while waiting
+     */
+    private <T> T call(final Supplier<T> operation) {
+        if (!scheduler.acquire(lane)) {
+            return null;
+        }
+
+        try {
+            return operation.get();
+        } finally {
+            scheduler.release();
+        }
+    }
+}
@@ -0,0 +1,223 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.composite;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Schedules the calls to a storage backend in priority lanes, see {@link PrioritizedSecretStore}.
+ *
+ * At most a few calls run on the backend at a time. Calls beyond them wait in the queue of their lane; when a
+ * call completes, its place goes to a waiting call of the lane whose turn it is, by weighted fair queuing: while
+ * both lanes have waiting calls, the interactive lane gets as many places as its weight for each place the
+ * background lane gets. A lane without waiting calls leaves its share to the other one, so background work uses
+ * the capacity that interactive calls leave, but cannot hold it once they arrive.
+ *
+ * A scheduler is shared by the stores of the same backend, one per lane.
+ */
+public final class PriorityScheduler {
+
+    /**
+     * Lane of a call
+     */
+    public enum Lane {
+        /**
+         * Calls a user is waiting on, e.g. the lookup of a credential for a command
+         */
+        INTERACTIVE,
+
+        /**
+         * Bulk work, e.g. token rotation, prefetching or migration
+         */
+        BACKGROUND
+    }
+
+    /**
+     * Default weight of the interactive lane, for a weight of 1 of the background lane
+     */
+    public static final int DEFAULT_INTERACTIVE_WEIGHT = 8;
+
+    // passes of the lanes advance by STRIDE / weight for each call, the lane with the lowest pass is next
+    private static final long STRIDE = 1L << 20;
+
+    private final int maxConcurrentCalls;
+    private final Map<Lane, Long> strides = new EnumMap<>(Lane.class);
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<Lane, Queue<Ticket>> queues = new EnumMap<>(Lane.class);
+    private final Map<Lane, Long> passes = new EnumMap<>(Lane.class);
+    private long globalPass;
+    private int running;
+
+    private final Map<Lane, LongAdder> calls = new EnumMap<>(Lane.class);
+    private final Map<Lane, LongAdder> waitNanos = new EnumMap<>(Lane.class);
+
+    /**
+     * Creates a scheduler with the default weights.
+     *
+     * @param maxConcurrentCalls number of calls running on the backend at a time
+     */
+    public PriorityScheduler(final int maxConcurrentCalls) {
+        this(maxConcurrentCalls, DEFAULT_INTERACTIVE_WEIGHT, 1);
+    }
+
+    /**
+     * Creates a scheduler.
+     *
+     * @param maxConcurrentCalls number of calls running on the backend at a time
+     * @param interactiveWeight share of the places going to the interactive lane while both lanes have calls waiting
+     * @param backgroundWeight share of the places going to the background lane while both lanes have calls waiting
+     */
+    public PriorityScheduler(final int maxConcurrentCalls, final int interactiveWeight, final int backgroundWeight) {
+        if (maxConcurrentCalls <= 0) {
+            throw new IllegalArgumentException("maxConcurrentCalls must be positive");
+        }
+        if (interactiveWeight <= 0 || backgroundWeight <= 0) {
+            throw new IllegalArgumentException("Weights must be positive");
+        }
+
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        strides.put(Lane.INTERACTIVE, STRIDE / interactiveWeight);
+        strides.put(Lane.BACKGROUND, STRIDE / backgroundWeight);
+        for (final Lane lane : Lane.values()) {
+            queues.put(lane, new ArrayDeque<>());
+            passes.put(lane, 0L);
+            calls.put(lane, new LongAdder());
+            waitNanos.put(lane, new LongAdder());
+        }
+    }
+
+    /**
+     * @return number of calls running on the backend at a time
+     */
+    public int getMaxConcurrentCalls() {
+        return maxConcurrentCalls;
+    }
+
+    /**
+     * Wait for a place to call the backend, to be released with {@link #release()} once the call completes.
+     * The thread being interrupted while waiting gives up the call, keeping its interrupt status.
+     *
+     * @param lane lane of the call
+     * @return {@code true} if the call may run, {@code false} if the thread was interrupted
+     */
+    public boolean acquire(final Lane lane) {
+        Objects.requireNonNull(lane, "lane cannot be null");
+
+        final long startedAt = System.nanoTime();
+        lock.lock();
+        try {
+            final Queue<Ticket> queue = queues.get(lane);
+            if (queue.isEmpty()) {
+                // an idle lane does not save up turns while it has no calls
+                passes.put(lane, Math.max(passes.get(lane), globalPass));
+            }
+
+            final Ticket ticket = new Ticket(lock.newCondition());
+            queue.add(ticket);
+            dispatch();
+            while (!ticket.granted) {
+                try {
+                    ticket.condition.await();
+                } catch (final InterruptedException e) {
+                    if (ticket.granted) {
+                        // granted while interrupted, pass the place on
+                        running--;
+                    } else {
+                        queue.remove(ticket);
+                    }
+                    dispatch();
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        calls.get(lane).increment();
+        waitNanos.get(lane).add(System.nanoTime() - startedAt);
+        return true;
+    }
+
+    /**
+     * Release the place of a call which completed, to the next waiting call.
+     */
+    public void release() {
+        lock.lock();
+        try {
+            running--;
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param lane lane of the calls
+     * @return number of calls of the lane waiting for a place
+     */
+    public int getQueuedCount(final Lane lane) {
+        lock.lock();
+        try {
+            return queues.get(lane).size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param lane lane of the calls
+     * @return number of calls of the lane which got a place
+     */
+    public long getCallCount(final Lane lane) {
+        return calls.get(lane).sum();
+    }
+
+    /**
+     * @param lane lane of the calls
+     * @return total time calls of the lane waited for a place, in nanoseconds
+     */
+    public long getWaitNanos(final Lane lane) {
+        return waitNanos.get(lane).sum();
+    }
+
+    // the lock is held
+    private void dispatch() {
+        while (running < maxConcurrentCalls) {
+            Lane next = null;
+            for (final Lane lane : Lane.values()) {
+                if (!queues.get(lane).isEmpty() && (next == null || passes.get(lane) < passes.get(next))) {
+                    next = lane;
+                }
+            }
+            if (next == null) {
+                return;
+            }
+
+            final Ticket ticket = queues.get(next).poll();
+            globalPass = passes.get(next);
+            passes.put(next, globalPass + strides.get(next));
+            running++;
+            ticket.granted = true;
+            ticket.condition.signal();
+        }
+    }
+
+    private static final class Ticket {
+        final Condition condition;
+        boolean granted;
+
+        Ticket(final Condition condition) {
+            this.condition = condition;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.composite;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket bounding the rate of calls to a storage backend, see {@link ThrottledSecretStore}.
+ *
+ * The bucket holds up to a burst of permits and is refilled at a steady rate. A call takes a permit, or reserves
+ * the next one and waits until it is refilled; a call which would wait longer than the maximum wait is rejected
+ * without taking a permit. Calls therefore wait in order of arrival, and at most as many as are refilled during the
+ * maximum wait are waiting at any time.
+ *
+ * A rate limiter may be shared by the stores of the same backend, so that all of them are bounded together.
+ */
+public final class RateLimiter {
+
+    /**
+     * Default time a call waits for a permit before it is rejected
+     */
+    public static final Duration DEFAULT_MAX_WAIT = Duration.ofSeconds(5);
+
+    private final String name;
+    private final double permitsPerNano;
+    private final int burst;
+    private final long maxWaitNanos;
+    private final LongSupplier ticker;
+    private final Sleeper sleeper;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // negative while calls wait for reserved permits
+    private double permits;
+    private long refilledAt;
+
+    private final LongAdder permitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+
+    /**
+     * Creates a rate limiter with a burst of a second of permits and the default maximum wait.
+     *
+     * @param name name of the backend, for logging
+     * @param permitsPerSecond rate of calls
+     */
+    public RateLimiter(final String name, final double permitsPerSecond) {
+        this(name, permitsPerSecond, (int) Math.max(1, Math.ceil(permitsPerSecond)), DEFAULT_MAX_WAIT);
+    }
+
+    /**
+     * Creates a rate limiter.
+     *
+     * @param name name of the backend, for logging
+     * @param permitsPerSecond rate of calls
+     * @param burst number of calls which may be made at once after the backend was idle
+     * @param maxWait time a call waits for a permit before it is rejected
+     */
+    public RateLimiter(final String name, final double permitsPerSecond, final int burst, final Duration maxWait) {
+        this(name, permitsPerSecond, burst, maxWait, System::nanoTime, TimeUnit.NANOSECONDS::sleep);
+    }
+
+    RateLimiter(final String name, final double permitsPerSecond, final int burst, final Duration maxWait,
+                final LongSupplier ticker, final Sleeper sleeper) {
+        Objects.requireNonNull(name, "name cannot be null");
+        Objects.requireNonNull(maxWait, "maxWait cannot be null");
+        if (!(permitsPerSecond > 0) || Double.isInfinite(permitsPerSecond)) {
+            throw new IllegalArgumentException("permitsPerSecond must be positive");
+        }
+        if (burst <= 0) {
+            throw new IllegalArgumentException("burst must be positive");
+        }
+        if (maxWait.isNegative()) {
+            throw new IllegalArgumentException("maxWait cannot be negative");
+        }
+
+        this.name = name;
+        this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = burst;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.ticker = Objects.requireNonNull(ticker, "ticker cannot be null");
+        this.sleeper = Objects.requireNonNull(sleeper, "sleeper cannot be null");
+
+        this.permits = burst;
+        this.refilledAt = ticker.getAsLong();
+    }
+
+    /**
+     * @return name of the backend
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return time a call waits for a permit before it is rejected
+     */
+    public Duration getMaxWait() {
+        return Duration.ofNanos(maxWaitNanos);
+    }
+
+    /**
+     * Wait for a permit to call the backend. The thread being interrupted while waiting rejects the call, keeping
+     * its interrupt status.
+     *
+     * @return {@code true} if the call is permitted, {@code false} if it is rejected
+     */
+    public boolean acquire() {
+        final long delay;
+        lock.lock();
+        try {
+            final long now = ticker.getAsLong();
+            permits = Math.min(burst, permits + (now - refilledAt) * permitsPerNano);
+            refilledAt = now;
+
+            delay = permits >= 1 ? 0 : (long) Math.ceil((1 - permits) / permitsPerNano);
+            if (delay > maxWaitNanos) {
+                rejected.increment();
+                return false;
+            }
+            permits -= 1;
+        } finally {
+            lock.unlock();
+        }
+
+        if (delay > 0) {
+            try {
+                sleeper.sleep(delay);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                giveBack();
+                rejected.increment();
+                return false;
+            }
+            waitNanos.add(delay);
+        }
+
+        permitted.increment();
+        return true;
+    }
+
+    /**
+     * @return number of calls permitted
+     */
+    public long getPermittedCount() {
+        return permitted.sum();
+    }
+
+    /**
+     * @return number of calls rejected, which would have waited too long
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return total time calls waited for a permit, in nanoseconds
+     */
+    public long getWaitNanos() {
+        return waitNanos.sum();
+    }
+
+    private void giveBack() {
+        lock.lock();
+        try {
+            permits = Math.min(burst, permits + 1);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,437 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.composite;
+
+import com.microsoft.credentialstorage.SecretResult;
+import com.microsoft.credentialstorage.SecretStore;
+import com.microsoft.credentialstorage.SecretStoreListener;
+import com.microsoft.credentialstorage.model.StoredSecret;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Store falling back to the next store of a chain when a backend fails, e.g. libsecret, then the kernel keyring.
+ *
+ * Each store of the chain has a {@link CircuitBreaker}. Calls go to the first store whose breaker permits them; a
+ * call which throws, or a write which is not saved, counts as a failure and moves on to the next store. Once a
+ * breaker opens, its store is skipped without waiting for it until the breaker probes it again. When no store
+ * permits a call, it fails fast: reads return {@code null} and writes {@code false}.
+ *
+ * A secret saved to a store is deleted from the later stores of the chain, and a secret saved to a fallback store
+ * while an earlier one was failing is deleted from the earlier stores once they recover, before they are read again,
+ * so that their stale copies do not shadow it. The earlier stores are skipped by reads until the deletion is
+ * confirmed; writes of a key and deletions of its stale copies are serialized. Reads which find no secret in a store
+ * go on with the next ones, and deletions apply to all stores. Fallback stores should be cheap to read, like the
+ * kernel keyring or memory.
+ *
+ * @param <E> secret type to store
+ */
+public final class ResilientSecretStore<E extends StoredSecret> implements SecretStore<E> {
+    private static final Logger logger = LoggerFactory.getLogger(ResilientSecretStore.class);
+    private static final int KEY_LOCKS = 64;
+
+    private final Map<SecretStore<E>, CircuitBreaker> chain;
+    private final List<Map.Entry<SecretStore<E>, CircuitBreaker>> tiers;
+    // index of the first store holding the current secret of keys whose earlier stores may hold stale copies
+    private final ConcurrentMap<String, Integer> staleBefore = new ConcurrentHashMap<>();
+    private final ReentrantLock[] keyLocks = new ReentrantLock[KEY_LOCKS];
+
+    /**
+     * Creates a store with a circuit breaker of default thresholds for each store.
+     *
+     * @param chain stores in order of preference
+     */
+    public ResilientSecretStore(final List<SecretStore<E>> chain) {
+        this(withBreakers(chain));
+    }
+
+    /**
+     * Creates a store with the circuit breakers of the backends, which may be shared with other stores.
+     *
+     * @param chain circuit breakers by store, in order of preference
+     */
+    public ResilientSecretStore(final Map<SecretStore<E>, CircuitBreaker> chain) {
+        Objects.requireNonNull(chain, "chain cannot be null");
+        if (chain.isEmpty()) {
+            throw new IllegalArgumentException("chain cannot be empty");
+        }
+        chain.forEach((store, breaker) -> {
+            Objects.requireNonNull(store, "store cannot be null");
+            Objects.requireNonNull(breaker, "breaker cannot be null");
+        });
+
+        this.chain = Collections.unmodifiableMap(new LinkedHashMap<>(chain));
+        this.tiers = new ArrayList<>(this.chain.entrySet());
+        for (int i = 0; i < KEY_LOCKS; i++) {
+            keyLocks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * @return circuit breakers by store, in order of preference
+     */
+    public Map<SecretStore<E>, CircuitBreaker> getChain() {
+        return chain;
+    }
+
+    @Override
+    public E get(final String key) {
+        return getResult(key).getValue();
+    }
+
+    /**
+     * Read the secret from the first store which has it. A read which fails, e.g. with a backend reporting
+     * {@link SecretResult.Status#UNAVAILABLE}, counts as a failure of its store. Stores which may hold a stale
+     * copy of the secret, saved before a later store took a write while they were failing, are not read: the copy
+     * is deleted from them first, once their breaker permits it, and they are skipped until it is.
+     *
+     * @param key for which a secret is associated with
+     * @return the secret found; not found only if all stores permitting the read report it missing;
+     *         otherwise the first failure
+     */
+    @Override
+    public SecretResult<E> getResult(final String key) {
+        Objects.requireNonNull(key, "key cannot be null");
+
+        if (!staleBefore.containsKey(key)) {
+            return read(key, 0);
+        }
+        // the marker is read again under the lock, a write may have cleared it meanwhile
+        return withKeyLock(key, () -> {
+            final Integer current = staleBefore.get(key);
+            if (current == null) {
+                return read(key, 0);
+            }
+
+            boolean invalidated = true;
+            boolean answered = false;
+            for (int i = 0; i < current; i++) {
+                final Map.Entry<SecretStore<E>, CircuitBreaker> tier = tiers.get(i);
+                final Outcome<Boolean> outcome = call(tier, store -> store.delete(key), result -> true);
+                invalidated &= outcome != null && (outcome.value || isAbsent(tier, key));
+                answered |= outcome != null;
+            }
+            if (invalidated) {
+                staleBefore.remove(key, current);
+            }
+
+            if (current < tiers.size()) {
+                return read(key, current);
+            }
+            // deleted while stores were failing
+            return answered ? SecretResult.<E>notFound() : unavailable();
+        });
+    }
+
+    private SecretResult<E> read(final String key, final int from) {
+        SecretResult<E> failure = null;
+        boolean answered = false;
+        for (int i = from; i < tiers.size(); i++) {
+            final Outcome<SecretResult<E>> outcome = call(tiers.get(i), store -> store.getResult(key),
+                    result -> !result.isFailure());
+            if (outcome == null) {
+                continue;
+            }
+            if (outcome.value.isFound()) {
+                return outcome.value;
+            }
+            if (outcome.value.isFailure()) {
+                failure = failure != null ? failure : outcome.value;
+            } else {
+                answered = true;
+            }
+        }
+
+        if (failure != null) {
+            return failure;
+        }
+        return answered ? SecretResult.notFound() : unavailable();
+    }
+
+    private static <E extends StoredSecret> SecretResult<E> unavailable() {
+        return SecretResult.failed(SecretResult.Status.UNAVAILABLE, null, 0, "No store of the chain is available");
+    }
+
+    @Override
+    public boolean add(final String key, final E secret) {
+        Objects.requireNonNull(key, "key cannot be null");
+        Objects.requireNonNull(secret, "secret cannot be null");
+
+        return write(key, store -> store.add(key, secret));
+    }
+
+    /**
+     * Delete a secret from all stores whose breaker permits it, since it may have been saved to fallback stores.
+     *
+     * @param key key of the secret
+     * @return {@code true} if a store deleted the secret
+     */
+    @Override
+    public boolean delete(final String key) {
+        Objects.requireNonNull(key, "key cannot be null");
+
+        return withKeyLock(key, () -> {
+            boolean deleted = false;
+            boolean complete = true;
+            for (final Map.Entry<SecretStore<E>, CircuitBreaker> tier : tiers) {
+                // not found is no failure
+                final Outcome<Boolean> outcome = call(tier, store -> store.delete(key), result -> true);
+                deleted |= outcome != null && outcome.value;
+                complete &= outcome != null && (outcome.value || isAbsent(tier, key));
+            }
+
+            if (complete) {
+                staleBefore.remove(key);
+            } else {
+                // the stores which were skipped may still hold the secret, deleted when they are read again
+                staleBefore.put(key, tiers.size());
+            }
+            return deleted;
+        });
+    }
+
+    @Override
+    public boolean putIfAbsent(final String key, final E secret) {
+        Objects.requireNonNull(key, "key cannot be null");
+        Objects.requireNonNull(secret, "secret cannot be null");
+
+        return conditionalWrite(key, store -> store.putIfAbsent(key, secret));
+    }
+
+    @Override
+    public boolean replace(final String key, final E expected, final E updated) {
+        Objects.requireNonNull(key, "key cannot be null");
+        Objects.requireNonNull(expected, "expected cannot be null");
+        Objects.requireNonNull(updated, "updated cannot be null");
+
+        return conditionalWrite(key, store -> store.replace(key, expected, updated));
+    }
+
+    /**
+     * List the keys of all stores whose breaker permits it, read before returning.
+     *
+     * @return keys of the secrets
+     */
+    @Override
+    public Stream<String> keys() {
+        return collectKeys(SecretStore::keys);
+    }
+
+    /**
+     * List the keys starting with a prefix of all stores whose breaker permits it, read before returning.
+     *
+     * @param prefix
+     *      prefix of the keys
+     *
+     * @return keys of the secrets starting with the prefix
+     */
+    @Override
+    public Stream<String> scan(final String prefix) {
+        Objects.requireNonNull(prefix, "prefix cannot be null");
+
+        return collectKeys(store -> store.scan(prefix));
+    }
+
+    /**
+     * The chain is as secure as its least secure store
+     *
+     * @return {@code true} if all stores are secure
+     */
+    @Override
+    public boolean isSecure() {
+        return chain.keySet().stream().allMatch(SecretStore::isSecure);
+    }
+
+    /**
+     * Register a listener with the stores which can notify of changes.
+     *
+     * @param listener listener to notify
+     * @throws UnsupportedOperationException if no store can notify of changes
+     */
+    @Override
+    public void addListener(final SecretStoreListener listener) {
+        boolean added = false;
+        for (final SecretStore<E> store : chain.keySet()) {
+            try {
+                store.addListener(listener);
+                added = true;
+            } catch (final UnsupportedOperationException e) {
+                // this store does not notify of changes
+            }
+        }
+
+        if (!added) {
+            throw new UnsupportedOperationException("No store of the chain can notify of changes");
+        }
+    }
+
+    @Override
+    public void removeListener(final SecretStoreListener listener) {
+        for (final SecretStore<E> store : chain.keySet()) {
+            try {
+                store.removeListener(listener);
+            } catch (final UnsupportedOperationException e) {
+                // this store does not notify of changes
+            }
+        }
+    }
+
+    private boolean write(final String key, final Function<SecretStore<E>, Boolean> operation) {
+        return withKeyLock(key, () -> {
+            for (int i = 0; i < tiers.size(); i++) {
+                final Outcome<Boolean> outcome = call(tiers.get(i), operation, saved -> saved);
+                if (outcome != null && outcome.value) {
+                    written(key, i);
+                    return true;
+                }
+            }
+
+            logger.warn("No store of the chain saved the secret.");
+            return false;
+        });
+    }
+
+    private boolean conditionalWrite(final String key, final Function<SecretStore<E>, Boolean> operation) {
+        return withKeyLock(key, () -> {
+            for (int i = 0; i < tiers.size(); i++) {
+                // a condition which does not hold is no failure, the secret is not written to other stores then
+                final Outcome<Boolean> outcome = call(tiers.get(i), operation, result -> true);
+                if (outcome != null) {
+                    if (outcome.value) {
+                        written(key, i);
+                    }
+                    return outcome.value;
+                }
+            }
+
+            logger.warn("No store of the chain is available.");
+            return false;
+        });
+    }
+
+    /**
+     * Delete the copies of a secret saved to a store from the later stores, which would be read if the store
+     * failed, and remember that the earlier stores are stale. Called under the lock of the key.
+     */
+    private void written(final String key, final int index) {
+        for (int i = index + 1; i < tiers.size(); i++) {
+            final Map.Entry<SecretStore<E>, CircuitBreaker> tier = tiers.get(i);
+            final Outcome<Boolean> outcome = call(tier, store -> store.delete(key), result -> true);
+            if (outcome == null || !outcome.value && !isAbsent(tier, key)) {
+                logger.warn("A previous secret may be left in a fallback store, read if the earlier stores fail.");
+            }
+        }
+
+        if (index == 0) {
+            staleBefore.remove(key);
+        } else {
+            staleBefore.put(key, index);
+        }
+    }
+
+    /**
+     * @return whether a store confirms that it has no secret for a key, e.g. after a deletion which reported none
+     */
+    private boolean isAbsent(final Map.Entry<SecretStore<E>, CircuitBreaker> tier, final String key) {
+        final Outcome<SecretResult<E>> outcome = call(tier, store -> store.getResult(key),
+                result -> !result.isFailure());
+        return outcome != null && outcome.value.getStatus() == SecretResult.Status.NOT_FOUND;
+    }
+
+    /**
+     * Run an operation while no other write of the key, or deletion of its stale copies, runs.
+     */
+    private <T> T withKeyLock(final String key, final Supplier<T> operation) {
+        final int hash = key.hashCode();
+        final ReentrantLock lock = keyLocks[(hash ^ (hash >>> 16)) & (KEY_LOCKS - 1)];
+        lock.lock();
+        try {
+            return operation.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Stream<String> collectKeys(final Function<SecretStore<E>, Stream<String>> lister) {
+        final Set<String> keys = new LinkedHashSet<>();
+        for (final Map.Entry<SecretStore<E>, CircuitBreaker> tier : chain.entrySet()) {
+            final Outcome<List<String>> outcome = call(tier, store -> {
+                try (Stream<String> storeKeys = lister.apply(store)) {
+                    return storeKeys.collect(Collectors.toList());
+                }
+            }, result -> true);
+            if (outcome != null) {
+                keys.addAll(outcome.value);
+            }
+        }
+        return new ArrayList<>(keys).stream();
+    }
+
+    /**
+     * Call a store if its breaker permits it. A value which does not satisfy {@code succeeded} is returned, but
+     * counts as a failure.
+     *
+     * @return outcome of the call, or {@code null} if it was rejected or threw
+     */
+    private <T> Outcome<T> call(final Map.Entry<SecretStore<E>, CircuitBreaker> tier,
+                                final Function<SecretStore<E>, T> operation, final Predicate<T> succeeded) {
+        final CircuitBreaker breaker = tier.getValue();
+        if (!breaker.tryAcquire()) {
+            return null;
+        }
+
+        final long startedAt = breaker.now();
+        final T value;
+        try {
+            value = operation.apply(tier.getKey());
+        } catch (final RuntimeException e) {
+            breaker.onFailure(startedAt);
+            logger.warn("Calling the {} store failed, falling back to the next store.", breaker.getName(), e);
+            return null;
+        }
+
+        if (succeeded.test(value)) {
+            breaker.onSuccess(startedAt);
+        } else {
+            breaker.onFailure(startedAt);
+        }
+        return new Outcome<>(value);
+    }
+
+    private static <E extends StoredSecret> Map<SecretStore<E>, CircuitBreaker> withBreakers(
+            final List<SecretStore<E>> chain) {
+        Objects.requireNonNull(chain, "chain cannot be null");
+
+        final Map<SecretStore<E>, CircuitBreaker> breakers = new LinkedHashMap<>();
+        for (final SecretStore<E> store : chain) {
+            breakers.put(store, new CircuitBreaker(store.getClass().getSimpleName()));
+        }
+        return breakers;
+    }
+
+    private static final class Outcome<T> {
+        final T value;
+
+        Outcome(final T value) {
+            this.value = value;
+        }
+    }
+}
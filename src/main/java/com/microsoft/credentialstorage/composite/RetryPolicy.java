@@ -0,0 +1,197 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.composite;
+
+import com.microsoft.credentialstorage.SecretResult;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Retry policy for reads failing with a transient error of the backend, see {@link RetryingSecretStore}.
+ *
+ * Transient errors are those of a backend restarting or busy, told apart by the native error of the
+ * {@link SecretResult}: D-Bus errors while the keyring daemon is restarting, such as {@code ServiceUnknown} or
+ * {@code NoReply}, a missing logon session on Windows, or a keychain which is not available yet on macOS. Missing
+ * secrets, locked collections and other errors are not retried.
+ *
+ * The delay before each retry doubles, up to a maximum, and is randomized so that processes failing together do
+ * not retry together. No retry starts once it would end after the deadline of the read.
+ */
+public final class RetryPolicy {
+
+    /**
+     * Default number of attempts of a read, including the first one
+     */
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+
+    /**
+     * Default delay before the first retry
+     */
+    public static final Duration DEFAULT_INITIAL_BACKOFF = Duration.ofMillis(100);
+
+    /**
+     * Default maximum delay before a retry
+     */
+    public static final Duration DEFAULT_MAX_BACKOFF = Duration.ofSeconds(1);
+
+    /**
+     * Default time from the first attempt after which no retry starts, below the timeouts of D-Bus calls
+     */
+    public static final Duration DEFAULT_DEADLINE = Duration.ofSeconds(5);
+
+    // GDBusError codes, of a daemon which is not running or does not reply
+    private static final String DBUS_ERROR = "g-dbus-error-quark";
+    private static final int DBUS_ERROR_SERVICE_UNKNOWN = 2;
+    private static final int DBUS_ERROR_NAME_HAS_NO_OWNER = 3;
+    private static final int DBUS_ERROR_NO_REPLY = 4;
+    private static final int DBUS_ERROR_TIMEOUT = 12;
+    private static final int DBUS_ERROR_DISCONNECTED = 15;
+    private static final int DBUS_ERROR_TIMED_OUT = 20;
+
+    // GIOErrorEnum codes, cancellations of the caller are not retried
+    private static final String IO_ERROR = "g-io-error-quark";
+    private static final int IO_ERROR_CLOSED = 18;
+    private static final int IO_ERROR_TIMED_OUT = 24;
+
+    // GetLastError codes
+    private static final String WIN32_ERROR = "win32";
+    private static final int ERROR_NO_SUCH_LOGON_SESSION = 1312;
+    private static final int RPC_S_SERVER_UNAVAILABLE = 1722;
+
+    // exit codes of the security tool, the low byte of the OSStatus
+    private static final String SECURITY_ERROR = "security";
+    private static final int ERR_SEC_IN_DARK_WAKE = 24;
+    private static final int ERR_SEC_NOT_AVAILABLE = 53;
+    private static final int ERR_SEC_IO = 220;
+
+    // GnomeKeyringResult codes
+    private static final String GNOME_KEYRING_ERROR = "gnome-keyring";
+    private static final int GNOME_KEYRING_RESULT_NO_KEYRING_DAEMON = 2;
+    private static final int GNOME_KEYRING_RESULT_IO_ERROR = 6;
+
+    private final int maxAttempts;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+    private final long deadlineNanos;
+    private final LongSupplier ticker;
+    private final Sleeper sleeper;
+    // random delay between 0 and its argument
+    private final LongUnaryOperator jitter;
+
+    /**
+     * Creates a policy with the default attempts, backoff and deadline.
+     */
+    public RetryPolicy() {
+        this(DEFAULT_MAX_ATTEMPTS, DEFAULT_INITIAL_BACKOFF, DEFAULT_MAX_BACKOFF, DEFAULT_DEADLINE);
+    }
+
+    /**
+     * Creates a policy.
+     *
+     * @param maxAttempts number of attempts of a read, including the first one; 1 disables retries
+     * @param initialBackoff delay before the first retry, doubled for each following retry
+     * @param maxBackoff maximum delay before a retry
+     * @param deadline time from the first attempt after which no retry starts
+     */
+    public RetryPolicy(final int maxAttempts, final Duration initialBackoff, final Duration maxBackoff,
+                       final Duration deadline) {
+        this(maxAttempts, initialBackoff, maxBackoff, deadline, System::nanoTime, TimeUnit.NANOSECONDS::sleep,
+                bound -> ThreadLocalRandom.current().nextLong(bound + 1));
+    }
+
+    RetryPolicy(final int maxAttempts, final Duration initialBackoff, final Duration maxBackoff,
+                final Duration deadline, final LongSupplier ticker, final Sleeper sleeper,
+                final LongUnaryOperator jitter) {
+        if (maxAttempts <= 0) {
+            throw new IllegalArgumentException("maxAttempts must be positive");
+        }
+        if (initialBackoff.isNegative() || maxBackoff.isNegative() || deadline.isNegative()) {
+            throw new IllegalArgumentException("Durations cannot be negative");
+        }
+
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffNanos = initialBackoff.toNanos();
+        this.maxBackoffNanos = Math.max(maxBackoff.toNanos(), initialBackoffNanos);
+        this.deadlineNanos = deadline.toNanos();
+        this.ticker = Objects.requireNonNull(ticker, "ticker cannot be null");
+        this.sleeper = Objects.requireNonNull(sleeper, "sleeper cannot be null");
+        this.jitter = Objects.requireNonNull(jitter, "jitter cannot be null");
+    }
+
+    /**
+     * @return number of attempts of a read, including the first one
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Whether a read failed with a transient error of the backend, and may succeed if retried.
+     *
+     * @param result result of a read
+     * @return {@code true} if the read should be retried
+     */
+    public static boolean isTransient(final SecretResult<?> result) {
+        if (!result.isFailure() || result.getErrorDomain() == null) {
+            return false;
+        }
+
+        final int code = result.getErrorCode();
+        switch (result.getErrorDomain()) {
+            case DBUS_ERROR:
+                return code == DBUS_ERROR_SERVICE_UNKNOWN || code == DBUS_ERROR_NAME_HAS_NO_OWNER
+                        || code == DBUS_ERROR_NO_REPLY || code == DBUS_ERROR_TIMEOUT
+                        || code == DBUS_ERROR_DISCONNECTED || code == DBUS_ERROR_TIMED_OUT;
+            case IO_ERROR:
+                return code == IO_ERROR_CLOSED || code == IO_ERROR_TIMED_OUT;
+            case WIN32_ERROR:
+                return code == ERROR_NO_SUCH_LOGON_SESSION || code == RPC_S_SERVER_UNAVAILABLE;
+            case SECURITY_ERROR:
+                return code == ERR_SEC_IN_DARK_WAKE || code == ERR_SEC_NOT_AVAILABLE || code == ERR_SEC_IO;
+            case GNOME_KEYRING_ERROR:
+                return code == GNOME_KEYRING_RESULT_NO_KEYRING_DAEMON || code == GNOME_KEYRING_RESULT_IO_ERROR;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return current time of the policy's clock, to start the deadline of a read with
+     */
+    long now() {
+        return ticker.getAsLong();
+    }
+
+    /**
+     * Delay before a retry: half of the exponential backoff, plus a random part of up to the other half.
+     *
+     * @param retry number of the retry, from 1
+     * @param startedAt time the first attempt started at, from {@link #now()}
+     * @return delay in nanoseconds, or -1 if no retry is left or it would end after the deadline
+     */
+    long delayNanos(final int retry, final long startedAt) {
+        if (retry >= maxAttempts) {
+            return -1;
+        }
+
+        long backoff = initialBackoffNanos;
+        for (int i = 1; i < retry && backoff < maxBackoffNanos; i++) {
+            backoff = backoff > maxBackoffNanos / 2 ? maxBackoffNanos : backoff * 2;
+        }
+        final long delay = backoff / 2 + jitter.applyAsLong(backoff - backoff / 2);
+        if (ticker.getAsLong() + delay - startedAt > deadlineNanos) {
+            return -1;
+        }
+        return delay;
+    }
+
+    void sleep(final long nanos) throws InterruptedException {
+        sleeper.sleep(nanos);
+    }
+}
@@ -0,0 +1,164 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.composite;
+
+import com.microsoft.credentialstorage.SecretResult;
+import com.microsoft.credentialstorage.SecretStore;
+import com.microsoft.credentialstorage.SecretStoreListener;
+import com.microsoft.credentialstorage.model.StoredSecret;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Store retrying reads which fail with a transient error of the backend, e.g. while the keyring daemon restarts
+ * after the D-Bus session bus activated it, see {@link RetryPolicy}.
+ *
+ * Only reads are retried: they report the native error of the backend through {@link #getResult(String)}, and
+ * repeating them has no effect. Writes report no error to classify, so they are passed on as they are.
+ *
+ * @param <E> secret type to store
+ */
+public final class RetryingSecretStore<E extends StoredSecret> implements SecretStore<E> {
+    private static final Logger logger = LoggerFactory.getLogger(RetryingSecretStore.class);
+
+    private final SecretStore<E> delegate;
+    private final RetryPolicy policy;
+
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder recovered = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+
+    /**
+     * Creates a store retrying with the default policy.
+     *
+     * @param delegate store to retry the reads of
+     */
+    public RetryingSecretStore(final SecretStore<E> delegate) {
+        this(delegate, new RetryPolicy());
+    }
+
+    /**
+     * Creates a store.
+     *
+     * @param delegate store to retry the reads of
+     * @param policy attempts, backoff and deadline of the reads, which may be shared with other stores
+     */
+    public RetryingSecretStore(final SecretStore<E> delegate, final RetryPolicy policy) {
+        this.delegate = Objects.requireNonNull(delegate, "delegate cannot be null");
+        this.policy = Objects.requireNonNull(policy, "policy cannot be null");
+    }
+
+    @Override
+    public E get(final String key) {
+        return getResult(key).getValue();
+    }
+
+    /**
+     * Read the secret, retrying while the read fails with a transient error and the policy permits it.
+     * The thread being interrupted while waiting ends the retries, keeping its interrupt status.
+     *
+     * @param key for which a secret is associated with
+     * @return result of the last attempt
+     */
+    @Override
+    public SecretResult<E> getResult(final String key) {
+        Objects.requireNonNull(key, "key cannot be null");
+
+        final long startedAt = policy.now();
+        SecretResult<E> result = delegate.getResult(key);
+        for (int retry = 1; RetryPolicy.isTransient(result); retry++) {
+            final long delay = policy.delayNanos(retry, startedAt);
+            if (delay < 0) {
+                exhausted.increment();
+                logger.warn("Reading the secret still failed after {} attempts: {}", retry, result);
+                return result;
+            }
+
+            logger.debug("Reading the secret failed transiently, retrying: {}", result);
+            try {
+                policy.sleep(delay);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return result;
+            }
+
+            retries.increment();
+            result = delegate.getResult(key);
+            if (!result.isFailure()) {
+                recovered.increment();
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean add(final String key, final E secret) {
+        return delegate.add(key, secret);
+    }
+
+    @Override
+    public boolean delete(final String key) {
+        return delegate.delete(key);
+    }
+
+    @Override
+    public boolean putIfAbsent(final String key, final E secret) {
+        return delegate.putIfAbsent(key, secret);
+    }
+
+    @Override
+    public boolean replace(final String key, final E expected, final E updated) {
+        return delegate.replace(key, expected, updated);
+    }
+
+    @Override
+    public Stream<String> keys() {
+        return delegate.keys();
+    }
+
+    @Override
+    public Stream<String> scan(final String prefix) {
+        return delegate.scan(prefix);
+    }
+
+    @Override
+    public boolean isSecure() {
+        return delegate.isSecure();
+    }
+
+    @Override
+    public void addListener(final SecretStoreListener listener) {
+        delegate.addListener(listener);
+    }
+
+    @Override
+    public void removeListener(final SecretStoreListener listener) {
+        delegate.removeListener(listener);
+    }
+
+    /**
+     * @return number of reads repeated after a transient failure
+     */
+    public long getRetryCount() {
+        return retries.sum();
+    }
+
+    /**
+     * @return number of reads which succeeded after failing transiently, whether the secret was found or not
+     */
+    public long getRecoveredCount() {
+        return recovered.sum();
+    }
+
+    /**
+     * @return number of reads which still failed transiently when the policy permitted no further attempt
+     */
+    public long getExhaustedCount() {
+        return exhausted.sum();
+    }
+}
@@ -0,0 +1,603 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.composite;
+
+import com.microsoft.credentialstorage.SecretResult;
+import com.microsoft.credentialstorage.SecretStore;
+import com.microsoft.credentialstorage.SecretStoreListener;
+import com.microsoft.credentialstorage.model.StoredSecret;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Store spreading its secrets over several underlying stores, e.g. segments of a file vault, so that each of them
+ * holds only a part of a very large number of secrets.
+ *
+ * Keys are placed on a consistent hash ring with a number of virtual nodes per shard. Changing the shards with
+ * {@link #rebalance(Map)} only moves the keys whose shard changed, about {@code 1/n} of them when an n-th shard is
+ * added. Shards are named, and the names, not the order of the shards, decide where keys go, so every process
+ * sharing the stores must use the same names.
+ *
+ * Listing keys and bulk reads and writes fan out to the shards in parallel on an executor. An executor owned by
+ * the store has a thread per shard, also once shards are added.
+ *
+ * @param <E> secret type to store
+ */
+public final class ShardedSecretStore<E extends StoredSecret> implements SecretStore<E>, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ShardedSecretStore.class);
+
+    /**
+     * Default number of positions of each shard on the ring
+     */
+    public static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    private static final int KEY_LOCKS = 64;
+
+    private final int virtualNodes;
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+
+    private final ReentrantLock rebalanceLock = new ReentrantLock();
+    // serialize writes with the migration of the same key, so that a migrated copy neither revives a deleted secret
+    // nor overwrites a newer one, and no write lands on a shard the key was already moved away from
+    private final ReentrantLock[] keyLocks = new ReentrantLock[KEY_LOCKS];
+    // listeners registered with the shards, and with the shards added by a rebalancing
+    private final List<SecretStoreListener> listeners = new CopyOnWriteArrayList<>();
+    private final ReentrantLock listenerLock = new ReentrantLock();
+
+    private volatile Topology<E> topology;
+
+    /**
+     * Creates a store with the default number of virtual nodes, fanning out on its own pool with a thread per shard.
+     *
+     * @param shards underlying stores by name
+     */
+    public ShardedSecretStore(final Map<String, SecretStore<E>> shards) {
+        this(shards, DEFAULT_VIRTUAL_NODES, OffloadingSecretStore.newExecutor(Math.max(1, shards.size())), true);
+    }
+
+    /**
+     * Creates a store fanning out on an executor, which is not shut down when the store is closed.
+     *
+     * @param shards underlying stores by name
+     * @param virtualNodes number of positions of each shard on the ring
+     * @param executor executor for parallel operations
+     */
+    public ShardedSecretStore(final Map<String, SecretStore<E>> shards, final int virtualNodes,
+                              final ExecutorService executor) {
+        this(shards, virtualNodes, executor, false);
+    }
+
+    private ShardedSecretStore(final Map<String, SecretStore<E>> shards, final int virtualNodes,
+                               final ExecutorService executor, final boolean ownsExecutor) {
+        if (virtualNodes <= 0) {
+            throw new IllegalArgumentException("virtualNodes must be positive");
+        }
+
+        this.virtualNodes = virtualNodes;
+        this.executor = Objects.requireNonNull(executor, "executor cannot be null");
+        this.ownsExecutor = ownsExecutor;
+        this.topology = new Topology<>(new Ring<>(shards, virtualNodes), null);
+
+        for (int i = 0; i < KEY_LOCKS; i++) {
+            keyLocks[i] = new ReentrantLock();
+        }
+    }
+
+    @Override
+    public E get(final String key) {
+        return getResult(key).getValue();
+    }
+
+    @Override
+    public SecretResult<E> getResult(final String key) {
+        Objects.requireNonNull(key, "key cannot be null");
+
+        final Topology<E> current = topology;
+        final SecretResult<E> result = current.ring.shardOf(key).getResult(key);
+        if (result.getStatus() != SecretResult.Status.NOT_FOUND
+                || current.previous == null && topology == current) {
+            return result;
+        }
+
+        // not migrated yet, or moved meanwhile: read both shards while the key cannot move
+        return withKeyLock(key, latest -> {
+            final SecretResult<E> moved = latest.ring.shardOf(key).getResult(key);
+            if (moved.getStatus() != SecretResult.Status.NOT_FOUND || latest.previous == null) {
+                return moved;
+            }
+            return latest.previous.shardOf(key).getResult(key);
+        });
+    }
+
+    @Override
+    public boolean add(final String key, final E secret) {
+        Objects.requireNonNull(key, "key cannot be null");
+        Objects.requireNonNull(secret, "secret cannot be null");
+
+        return withKeyLock(key, current -> current.ring.shardOf(key).add(key, secret));
+    }
+
+    @Override
+    public boolean delete(final String key) {
+        Objects.requireNonNull(key, "key cannot be null");
+
+        return withKeyLock(key, current -> {
+            final SecretStore<E> shard = current.ring.shardOf(key);
+            final boolean deleted = shard.delete(key);
+            if (current.previous == null) {
+                return deleted;
+            }
+            final SecretStore<E> previousShard = current.previous.shardOf(key);
+            return (previousShard != shard && previousShard.delete(key)) || deleted;
+        });
+    }
+
+    /**
+     * Save a secret unless there is one. While rebalancing, a secret not moved to its new shard yet counts.
+     */
+    @Override
+    public boolean putIfAbsent(final String key, final E secret) {
+        Objects.requireNonNull(key, "key cannot be null");
+        Objects.requireNonNull(secret, "secret cannot be null");
+
+        return withKeyLock(key, current -> {
+            if (current.previous != null && current.previous.shardOf(key).get(key) != null) {
+                return false;
+            }
+            return current.ring.shardOf(key).putIfAbsent(key, secret);
+        });
+    }
+
+    /**
+     * Replace a secret if it is still the expected secret. While rebalancing, a secret not moved to its new shard
+     * yet is replaced by moving the updated secret.
+     */
+    @Override
+    public boolean replace(final String key, final E expected, final E updated) {
+        Objects.requireNonNull(key, "key cannot be null");
+        Objects.requireNonNull(expected, "expected cannot be null");
+        Objects.requireNonNull(updated, "updated cannot be null");
+
+        return withKeyLock(key, current -> {
+            final SecretStore<E> shard = current.ring.shardOf(key);
+            if (current.previous != null) {
+                final SecretStore<E> previousShard = current.previous.shardOf(key);
+                if (previousShard != shard && shard.get(key) == null) {
+                    if (!expected.equals(previousShard.get(key)) || !shard.putIfAbsent(key, updated)) {
+                        return false;
+                    }
+                    previousShard.delete(key);
+                    return true;
+                }
+            }
+            return shard.replace(key, expected, updated);
+        });
+    }
+
+    /**
+     * Read secrets, the shards are read in parallel.
+     *
+     * @param keys keys of the secrets
+     * @return secrets by key, without the keys with no secret
+     */
+    public Map<String, E> getAll(final Collection<String> keys) {
+        Objects.requireNonNull(keys, "keys cannot be null");
+
+        final Map<String, E> secrets = new HashMap<>();
+        fanOut(groupByShard(keys, Function.identity()), (shard, shardKeys) -> {
+            final Map<String, E> found = new HashMap<>();
+            for (final String key : shardKeys) {
+                final E secret = get(key);
+                if (secret != null) {
+                    found.put(key, secret);
+                }
+            }
+            return found;
+        }).forEach(secrets::putAll);
+        return secrets;
+    }
+
+    /**
+     * Save secrets, the shards are written in parallel.
+     *
+     * @param secrets secrets by key
+     * @return keys of the secrets which could not be saved
+     */
+    public List<String> addAll(final Map<String, E> secrets) {
+        Objects.requireNonNull(secrets, "secrets cannot be null");
+
+        final List<String> failed = new ArrayList<>();
+        fanOut(groupByShard(secrets.entrySet(), Map.Entry::getKey), (shard, entries) -> {
+            final List<String> shardFailed = new ArrayList<>();
+            for (final Map.Entry<String, E> entry : entries) {
+                if (!add(entry.getKey(), entry.getValue())) {
+                    shardFailed.add(entry.getKey());
+                }
+            }
+            return shardFailed;
+        }).forEach(failed::addAll);
+        return failed;
+    }
+
+    /**
+     * List the keys of all shards, read in parallel before returning.
+     *
+     * @return keys of the secrets
+     */
+    @Override
+    public Stream<String> keys() {
+        return collectKeys(SecretStore::keys);
+    }
+
+    /**
+     * List the keys of all shards starting with a prefix, scanned in parallel before returning.
+     *
+     * @param prefix
+     *      prefix of the keys
+     *
+     * @return keys of the secrets starting with the prefix
+     */
+    @Override
+    public Stream<String> scan(final String prefix) {
+        Objects.requireNonNull(prefix, "prefix cannot be null");
+
+        return collectKeys(shard -> shard.scan(prefix));
+    }
+
+    /**
+     * The sharded store is as secure as its least secure shard
+     *
+     * @return {@code true} if all shards are secure
+     */
+    @Override
+    public boolean isSecure() {
+        return topology.ring.shards.values().stream().allMatch(SecretStore::isSecure);
+    }
+
+    /**
+     * Register a listener with every shard, and with the shards added by later rebalancings.
+     *
+     * @param listener listener to notify
+     */
+    @Override
+    public void addListener(final SecretStoreListener listener) {
+        Objects.requireNonNull(listener, "listener cannot be null");
+
+        listenerLock.lock();
+        try {
+            shardsOf(topology).forEach(shard -> shard.addListener(listener));
+            listeners.add(listener);
+        } finally {
+            listenerLock.unlock();
+        }
+    }
+
+    @Override
+    public void removeListener(final SecretStoreListener listener) {
+        listenerLock.lock();
+        try {
+            listeners.remove(listener);
+            shardsOf(topology).forEach(shard -> shard.removeListener(listener));
+        } finally {
+            listenerLock.unlock();
+        }
+    }
+
+    /**
+     * Replace the shards, and move the secrets whose shard changed to their new shard.
+     *
+     * Reads, writes and deletions may continue meanwhile: keys not moved yet are read from their previous shard,
+     * secrets are written to their new shard, and deleted from both. A secret written to its new shard while
+     * rebalancing is not overwritten by the moved copy. Shards no longer used must hold no secret afterwards, unless
+     * moving some secrets failed.
+     *
+     * @param shards new underlying stores by name, keeping the names of the shards which remain
+     * @return number of secrets moved
+     */
+    public int rebalance(final Map<String, SecretStore<E>> shards) {
+        final Ring<E> next = new Ring<>(shards, virtualNodes);
+
+        rebalanceLock.lock();
+        try {
+            final Ring<E> current = topology.ring;
+            listenerLock.lock();
+            try {
+                // the new shards report the changes of the keys moved to them
+                for (final SecretStore<E> shard : added(current, next)) {
+                    listeners.forEach(listener -> addListener(shard, listener));
+                }
+                topology = new Topology<>(next, current);
+            } finally {
+                listenerLock.unlock();
+            }
+            resizeExecutor(Math.max(current.shards.size(), shards.size()));
+            try {
+                // wait for the writes which chose their shard before, so that the keys they write are migrated
+                for (final ReentrantLock lock : keyLocks) {
+                    lock.lock();
+                    lock.unlock();
+                }
+
+                int moved = 0;
+                for (final int shardMoved : fanOut(current.shards, (name, shard) -> migrate(shard, next))) {
+                    moved += shardMoved;
+                }
+                logger.info("Moved {} secrets to {} shards", moved, shards.size());
+                return moved;
+            } finally {
+                listenerLock.lock();
+                try {
+                    topology = new Topology<>(next, null);
+                    for (final SecretStore<E> shard : added(next, current)) {
+                        listeners.forEach(shard::removeListener);
+                    }
+                } finally {
+                    listenerLock.unlock();
+                }
+                resizeExecutor(shards.size());
+            }
+        } finally {
+            rebalanceLock.unlock();
+        }
+    }
+
+    /**
+     * Shut down the pool if it is owned by this store.
+     */
+    @Override
+    public void close() {
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+
+    private int migrate(final SecretStore<E> shard, final Ring<E> next) {
+        final List<String> keys;
+        try (Stream<String> shardKeys = shard.keys()) {
+            keys = shardKeys.filter(key -> next.shardOf(key) != shard).collect(Collectors.toList());
+        }
+
+        int moved = 0;
+        for (final String key : keys) {
+            final ReentrantLock lock = keyLock(key);
+            lock.lock();
+            try {
+                final E secret = shard.get(key);
+                if (secret == null) {
+                    continue;
+                }
+                // a secret written meanwhile is newer
+                final SecretStore<E> target = next.shardOf(key);
+                if (target.putIfAbsent(key, secret) || target.get(key) != null) {
+                    if (shard.delete(key)) {
+                        moved++;
+                    }
+                } else {
+                    logger.warn("Moving a secret to its new shard failed, it stays in its previous shard.");
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return moved;
+    }
+
+    /**
+     * @return shards of a ring which are not shards of another ring
+     */
+    private static <E extends StoredSecret> Set<SecretStore<E>> added(final Ring<E> from, final Ring<E> to) {
+        final Set<SecretStore<E>> shards = Collections.newSetFromMap(new IdentityHashMap<>());
+        shards.addAll(to.shards.values());
+        from.shards.values().forEach(shards::remove);
+        return shards;
+    }
+
+    private static <E extends StoredSecret> Set<SecretStore<E>> shardsOf(final Topology<E> topology) {
+        final Set<SecretStore<E>> shards = Collections.newSetFromMap(new IdentityHashMap<>());
+        shards.addAll(topology.ring.shards.values());
+        if (topology.previous != null) {
+            shards.addAll(topology.previous.shards.values());
+        }
+        return shards;
+    }
+
+    private static <E extends StoredSecret> void addListener(final SecretStore<E> shard,
+                                                             final SecretStoreListener listener) {
+        try {
+            shard.addListener(listener);
+        } catch (final UnsupportedOperationException e) {
+            logger.warn("A new shard does not notify of changes, its changes are not reported.");
+        }
+    }
+
+    /**
+     * Keep a thread per shard in an owned pool, so that fanning out does not queue behind other shards.
+     */
+    private void resizeExecutor(final int threads) {
+        if (!ownsExecutor || !(executor instanceof ThreadPoolExecutor)) {
+            return;
+        }
+
+        final ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+        if (threads > pool.getMaximumPoolSize()) {
+            pool.setMaximumPoolSize(threads);
+            pool.setCorePoolSize(threads);
+        } else {
+            pool.setCorePoolSize(threads);
+            pool.setMaximumPoolSize(threads);
+        }
+    }
+
+    private Stream<String> collectKeys(final Function<SecretStore<E>, Stream<String>> lister) {
+        final Topology<E> current = topology;
+        final Map<String, SecretStore<E>> shards = new LinkedHashMap<>(current.ring.shards);
+        if (current.previous != null) {
+            // keys not moved yet, listed once
+            current.previous.shards.forEach((name, shard) -> {
+                if (!shards.containsValue(shard)) {
+                    shards.put("previous " + name, shard);
+                }
+            });
+        }
+
+        final List<List<String>> keys = fanOut(shards, (name, shard) -> {
+            try (Stream<String> shardKeys = lister.apply(shard)) {
+                return shardKeys.collect(Collectors.toList());
+            }
+        });
+        final Stream<String> all = keys.stream().flatMap(List::stream);
+        return current.previous != null ? all.distinct() : all;
+    }
+
+    private <T> Map<SecretStore<E>, List<T>> groupByShard(final Collection<T> items, final Function<T, String> key) {
+        final Ring<E> current = topology.ring;
+        final Map<SecretStore<E>, List<T>> groups = new LinkedHashMap<>();
+        for (final T item : items) {
+            groups.computeIfAbsent(current.shardOf(key.apply(item)), shard -> new ArrayList<>()).add(item);
+        }
+        return groups;
+    }
+
+    private <K, V, R> List<R> fanOut(final Map<K, V> tasks, final ShardTask<K, V, R> task) {
+        final List<CompletableFuture<R>> futures = new ArrayList<>(tasks.size());
+        for (final Map.Entry<K, V> entry : tasks.entrySet()) {
+            futures.add(CompletableFuture.supplyAsync(() -> task.run(entry.getKey(), entry.getValue()), executor));
+        }
+
+        final List<R> results = new ArrayList<>(futures.size());
+        try {
+            for (final CompletableFuture<R> future : futures) {
+                results.add(future.join());
+            }
+        } catch (final CompletionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+        return results;
+    }
+
+    /**
+     * Run an operation on the topology while its key cannot be migrated. The topology is read under the lock, so
+     * that a rebalancing started meanwhile is seen.
+     */
+    private <T> T withKeyLock(final String key, final Function<Topology<E>, T> operation) {
+        final ReentrantLock lock = keyLock(key);
+        lock.lock();
+        try {
+            return operation.apply(topology);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ReentrantLock keyLock(final String key) {
+        final int hash = key.hashCode();
+        return keyLocks[(hash ^ (hash >>> 16)) & (KEY_LOCKS - 1)];
+    }
+
+    /**
+     * 64-bit FNV-1a of the UTF-8 bytes, with the finalizer of MurmurHash3 to spread the bits of similar keys.
+     */
+    static long hash(final String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (final byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private interface ShardTask<K, V, R> {
+        R run(K key, V value);
+    }
+
+    /**
+     * Shards of the store, published at once so that an operation never mixes the rings of two rebalancings
+     */
+    private static final class Topology<E extends StoredSecret> {
+        final Ring<E> ring;
+        // ring before the rebalancing in progress, whose shards may still hold keys not migrated yet
+        final Ring<E> previous;
+
+        Topology(final Ring<E> ring, final Ring<E> previous) {
+            this.ring = ring;
+            this.previous = previous;
+        }
+    }
+
+    private static final class Ring<E extends StoredSecret> {
+        final Map<String, SecretStore<E>> shards;
+        final long[] positions;
+        final List<SecretStore<E>> owners;
+
+        Ring(final Map<String, SecretStore<E>> shards, final int virtualNodes) {
+            Objects.requireNonNull(shards, "shards cannot be null");
+            if (shards.isEmpty()) {
+                throw new IllegalArgumentException("shards cannot be empty");
+            }
+            this.shards = Collections.unmodifiableMap(new LinkedHashMap<>(shards));
+
+            final TreeMap<Long, SecretStore<E>> ring = new TreeMap<>();
+            for (final Map.Entry<String, SecretStore<E>> shard : this.shards.entrySet()) {
+                Objects.requireNonNull(shard.getValue(), "shard cannot be null");
+                for (int node = 0; node < virtualNodes; node++) {
+                    ring.put(hash(shard.getKey() + "#" + node), shard.getValue());
+                }
+            }
+
+            this.positions = ring.keySet().stream().mapToLong(Long::longValue).toArray();
+            this.owners = new ArrayList<>(ring.values());
+        }
+
+        SecretStore<E> shardOf(final String key) {
+            final long hash = hash(key);
+            // first position at or after the key's hash, wrapping around
+            int low = 0;
+            int high = positions.length;
+            while (low < high) {
+                final int middle = (low + high) >>> 1;
+                if (positions[middle] < hash) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return owners.get(low == positions.length ? 0 : low);
+        }
+    }
+}
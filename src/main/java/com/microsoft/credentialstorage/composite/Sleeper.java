@@ -0,0 +1,11 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.composite;
+
+/**
+ * Sleeps while waiting to call a backend, replaced in tests.
+ */
+interface Sleeper {
+    void sleep(long nanos) throws InterruptedException;
+}
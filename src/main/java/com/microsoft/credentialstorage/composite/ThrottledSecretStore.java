@@ -0,0 +1,207 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.composite;
+
+import com.microsoft.credentialstorage.SecretResult;
+import com.microsoft.credentialstorage.SecretStore;
+import com.microsoft.credentialstorage.SecretStoreListener;
+import com.microsoft.credentialstorage.SecretStoreTimeoutException;
+import com.microsoft.credentialstorage.model.StoredSecret;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Store bounding the calls to its backend with a {@link RateLimiter} and a {@link Bulkhead}, so that a spike of
+ * calls waits in this process instead of overwhelming a backend shared with the rest of the session.
+ *
+ * Calls first wait for a permit of the rate limiter, then for a place in the bulkhead, which they hold until the
+ * backend call completes. A call rejected by either one does not reach the backend: reads report
+ * {@link SecretResult.Status#TIMEOUT}, writes return {@code false} and listing the keys throws a
+ * {@link SecretStoreTimeoutException}.
+ *
+ * @param <E> secret type to store
+ */
+public final class ThrottledSecretStore<E extends StoredSecret> implements SecretStore<E> {
+    private static final Logger logger = LoggerFactory.getLogger(ThrottledSecretStore.class);
+
+    private final SecretStore<E> delegate;
+    private final Bulkhead bulkhead;
+    private final RateLimiter rateLimiter;
+
+    /**
+     * Creates a store bounding the calls in progress.
+     *
+     * @param delegate store to bound the calls of
+     * @param bulkhead bulkhead of the backend, which may be shared with other stores
+     */
+    public ThrottledSecretStore(final SecretStore<E> delegate, final Bulkhead bulkhead) {
+        this(delegate, bulkhead, null);
+    }
+
+    /**
+     * Creates a store bounding the calls in progress and their rate.
+     *
+     * @param delegate store to bound the calls of
+     * @param bulkhead bulkhead of the backend, or {@code null} to only bound the rate
+     * @param rateLimiter rate limiter of the backend, or {@code null} to only bound the calls in progress
+     */
+    public ThrottledSecretStore(final SecretStore<E> delegate, final Bulkhead bulkhead,
+                                final RateLimiter rateLimiter) {
+        this.delegate = Objects.requireNonNull(delegate, "delegate cannot be null");
+        if (bulkhead == null && rateLimiter == null) {
+            throw new IllegalArgumentException("A bulkhead or a rate limiter is required");
+        }
+
+        this.bulkhead = bulkhead;
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    public E get(final String key) {
+        return getResult(key).getValue();
+    }
+
+    @Override
+    public SecretResult<E> getResult(final String key) {
+        Objects.requireNonNull(key, "key cannot be null");
+
+        final SecretResult<E> result = call(() -> delegate.getResult(key));
+        if (result == null) {
+            logger.debug("Reading the secret was rejected to protect the backend.");
+            return SecretResult.failed(SecretResult.Status.TIMEOUT, null, 0,
+                    "The read was rejected to protect the backend");
+        }
+        return result;
+    }
+
+    @Override
+    public boolean add(final String key, final E secret) {
+        Objects.requireNonNull(key, "key cannot be null");
+        Objects.requireNonNull(secret, "secret cannot be null");
+
+        return write(() -> delegate.add(key, secret));
+    }
+
+    @Override
+    public boolean delete(final String key) {
+        Objects.requireNonNull(key, "key cannot be null");
+
+        return write(() -> delegate.delete(key));
+    }
+
+    @Override
+    public boolean putIfAbsent(final String key, final E secret) {
+        Objects.requireNonNull(key, "key cannot be null");
+        Objects.requireNonNull(secret, "secret cannot be null");
+
+        return write(() -> delegate.putIfAbsent(key, secret));
+    }
+
+    @Override
+    public boolean replace(final String key, final E expected, final E updated) {
+        Objects.requireNonNull(key, "key cannot be null");
+        Objects.requireNonNull(expected, "expected cannot be null");
+        Objects.requireNonNull(updated, "updated cannot be null");
+
+        return write(() -> delegate.replace(key, expected, updated));
+    }
+
+    /**
+     * List the keys of the underlying store. The keys are read before returning, rather than lazily, so that the
+     * call does not hold its place in the bulkhead while the stream is consumed.
+     *
+     * @return keys of the secrets
+     * @throws SecretStoreTimeoutException if the call was rejected
+     */
+    @Override
+    public Stream<String> keys() {
+        return list(delegate::keys);
+    }
+
+    /**
+     * List the keys of the underlying store starting with a prefix, read before returning.
+     *
+     * @param prefix
+     *      prefix of the keys
+     *
+     * @return keys of the secrets starting with the prefix
+     * @throws SecretStoreTimeoutException if the call was rejected
+     */
+    @Override
+    public Stream<String> scan(final String prefix) {
+        Objects.requireNonNull(prefix, "prefix cannot be null");
+
+        return list(() -> delegate.scan(prefix));
+    }
+
+    @Override
+    public boolean isSecure() {
+        return delegate.isSecure();
+    }
+
+    @Override
+    public void addListener(final SecretStoreListener listener) {
+        delegate.addListener(listener);
+    }
+
+    @Override
+    public void removeListener(final SecretStoreListener listener) {
+        delegate.removeListener(listener);
+    }
+
+    private boolean write(final Supplier<Boolean> operation) {
+        final Boolean saved = call(operation);
+        if (saved == null) {
+            logger.warn("Writing the secret was rejected to protect the backend.");
+            return false;
+        }
+        return saved;
+    }
+
+    private Stream<String> list(final Supplier<Stream<String>> lister) {
+        final List<String> keys = call(() -> {
+            try (Stream<String> stream = lister.get()) {
+                return stream.collect(Collectors.toList());
+            }
+        });
+        if (keys == null) {
+            throw new SecretStoreTimeoutException("Listing the keys was rejected to protect the backend",
+                    maxWait());
+        }
+        return keys.stream();
+    }
+
+    /**
+     * @return result of the operation, or {@code null} if the call was rejected
+     */
+    private <T> T call(final Supplier<T> operation) {
+        if (rateLimiter != null && !rateLimiter.acquire()) {
+            return null;
+        }
+        if (bulkhead != null && !bulkhead.acquire()) {
+            return null;
+        }
+
+        try {
+            return operation.get();
+        } finally {
+            if (bulkhead != null) {
+                bulkhead.release();
+            }
+        }
+    }
+
+    private Duration maxWait() {
+        final Duration bulkheadWait = bulkhead != null ? bulkhead.getMaxWait() : Duration.ZERO;
+        final Duration rateLimiterWait = rateLimiter != null ? rateLimiter.getMaxWait() : Duration.ZERO;
+        return bulkheadWait.plus(rateLimiterWait);
+    }
+}
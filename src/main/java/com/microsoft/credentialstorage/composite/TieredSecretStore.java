@@ -0,0 +1,410 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.composite;
+
+import com.microsoft.credentialstorage.SecretResult;
+import com.microsoft.credentialstorage.SecretStore;
+import com.microsoft.credentialstorage.SecretStoreListener;
+import com.microsoft.credentialstorage.model.StoredSecret;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Two-level store: a fast, usually in-memory, first tier in front of a persistent second tier.
+ *
+ * Reads are served from the first tier when possible; secrets read from the second tier are copied to the first tier
+ * if read promotion is enabled. Keys found absent from the second tier are remembered for a while, so repeated
+ * lookups of missing secrets do not reach the second tier either. Writes go to both tiers, either synchronously
+ * ({@link WritePolicy#WRITE_THROUGH}) or with the second tier updated in the background
+ * ({@link WritePolicy#WRITE_BACK}).
+ *
+ * If the second tier notifies of changes, see {@link SecretStore#addListener(SecretStoreListener)}, changed secrets
+ * are invalidated in the first tier as soon as they are reported. Otherwise changes made to the second tier by other
+ * processes become visible once the first tier entry is evicted or expires, so the first tier should have a
+ * time-to-live. The store is as secure as its second tier; the first tier only keeps secrets in the memory of this
+ * process.
+ *
+ * @param <E> secret type to store
+ */
+public final class TieredSecretStore<E extends StoredSecret> implements SecretStore<E>, AutoCloseable {
+    /**
+     * How writes reach the second tier.
+     */
+    public enum WritePolicy {
+        /**
+         * Writes are applied to the second tier before returning, and report its outcome
+         */
+        WRITE_THROUGH,
+
+        /**
+         * Writes are applied to the first tier and queued for the second tier, see {@link WriteBehindSecretStore}
+         */
+        WRITE_BACK
+    }
+
+    /**
+     * Default time a key absent from the second tier is remembered
+     */
+    public static final Duration DEFAULT_NEGATIVE_TTL = Duration.ofSeconds(30);
+
+    private static final int MAX_NEGATIVE_ENTRIES = 10_000;
+
+    private final SecretStore<E> firstTier;
+    private final SecretStore<E> secondTier;
+    private final WriteBehindSecretStore<E> writeBehind;
+    private final boolean promoteOnRead;
+    private final WritePolicy writePolicy;
+    private final long negativeTtlNanos;
+    private final LongSupplier ticker;
+
+    // key to the time its absence was last confirmed
+    private final ConcurrentMap<String, Long> absentKeys = new ConcurrentHashMap<>();
+
+    private final AtomicLong writes = new AtomicLong();
+
+    private final SecretStoreListener invalidator = new SecretStoreListener() {
+        @Override
+        public void secretChanged(final String key) {
+            invalidate(key);
+        }
+
+        @Override
+        public void secretsChanged() {
+            invalidateAll();
+        }
+    };
+    private final boolean invalidating;
+
+    private final LongAdder firstTierHits = new LongAdder();
+    private final LongAdder negativeHits = new LongAdder();
+    private final LongAdder secondTierReads = new LongAdder();
+
+    /**
+     * Creates a write-through store promoting reads, with the default negative lookup time-to-live.
+     *
+     * @param firstTier fast store in front
+     * @param secondTier persistent store
+     */
+    public TieredSecretStore(final SecretStore<E> firstTier, final SecretStore<E> secondTier) {
+        this(firstTier, secondTier, true, WritePolicy.WRITE_THROUGH, DEFAULT_NEGATIVE_TTL);
+    }
+
+    /**
+     * Creates a tiered store.
+     *
+     * @param firstTier fast store in front
+     * @param secondTier persistent store
+     * @param promoteOnRead copy secrets read from the second tier to the first tier
+     * @param writePolicy how writes reach the second tier
+     * @param negativeTtl how long a key absent from the second tier is remembered, zero to disable
+     */
+    public TieredSecretStore(final SecretStore<E> firstTier, final SecretStore<E> secondTier,
+                             final boolean promoteOnRead, final WritePolicy writePolicy, final Duration negativeTtl) {
+        this(firstTier, secondTier, promoteOnRead, writePolicy, negativeTtl, System::nanoTime);
+    }
+
+    TieredSecretStore(final SecretStore<E> firstTier, final SecretStore<E> secondTier,
+                      final boolean promoteOnRead, final WritePolicy writePolicy, final Duration negativeTtl,
+                      final LongSupplier ticker) {
+        this.firstTier = Objects.requireNonNull(firstTier, "firstTier cannot be null");
+        this.writePolicy = Objects.requireNonNull(writePolicy, "writePolicy cannot be null");
+        Objects.requireNonNull(secondTier, "secondTier cannot be null");
+        Objects.requireNonNull(negativeTtl, "negativeTtl cannot be null");
+        if (negativeTtl.isNegative()) {
+            throw new IllegalArgumentException("negativeTtl cannot be negative");
+        }
+
+        this.writeBehind = writePolicy == WritePolicy.WRITE_BACK ? new WriteBehindSecretStore<>(secondTier) : null;
+        this.secondTier = writeBehind != null ? writeBehind : secondTier;
+        this.promoteOnRead = promoteOnRead;
+        this.negativeTtlNanos = negativeTtl.toNanos();
+        this.ticker = Objects.requireNonNull(ticker, "ticker cannot be null");
+        this.invalidating = subscribe(this.secondTier, invalidator);
+    }
+
+    @Override
+    public E get(final String key) {
+        return getResult(key).getValue();
+    }
+
+    /**
+     * Read the secret from the first tier, or from the second tier. Only a secret the second tier reports
+     * {@link SecretResult.Status#NOT_FOUND} is remembered as absent: a failed read, e.g. of a locked collection,
+     * reaches the second tier again on the next lookup.
+     *
+     * @param key for which a secret is associated with
+     * @return result of the read
+     */
+    @Override
+    public SecretResult<E> getResult(final String key) {
+        Objects.requireNonNull(key, "key cannot be null");
+
+        final E cached = firstTier.get(key);
+        if (cached != null) {
+            firstTierHits.increment();
+            return SecretResult.found(cached);
+        }
+
+        if (isKnownAbsent(key)) {
+            negativeHits.increment();
+            return SecretResult.notFound();
+        }
+
+        secondTierReads.increment();
+        final long writeCount = writes.get();
+        final SecretResult<E> result = secondTier.getResult(key);
+        if (result.getStatus() == SecretResult.Status.NOT_FOUND) {
+            // a concurrent write may have added the secret after the read
+            if (writes.get() == writeCount) {
+                rememberAbsent(key);
+            }
+        } else if (result.isFound() && promoteOnRead && writes.get() == writeCount) {
+            firstTier.add(key, result.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * Save the secret to both tiers.
+     *
+     * @param key for which a secret is associated with
+     * @param secret secret to be stored
+     * @return outcome of the write to the second tier for {@link WritePolicy#WRITE_THROUGH};
+     *         outcome of the write to the first tier for {@link WritePolicy#WRITE_BACK}
+     */
+    @Override
+    public boolean add(final String key, final E secret) {
+        Objects.requireNonNull(key, "key cannot be null");
+        Objects.requireNonNull(secret, "secret cannot be null");
+
+        writes.incrementAndGet();
+        absentKeys.remove(key);
+
+        if (writePolicy == WritePolicy.WRITE_BACK) {
+            writeBehind.addAsync(key, secret);
+            return firstTier.add(key, secret);
+        }
+
+        if (secondTier.add(key, secret)) {
+            firstTier.add(key, secret);
+            return true;
+        }
+
+        // the previous secret may or may not have been replaced
+        firstTier.delete(key);
+        return false;
+    }
+
+    /**
+     * Save the secret unless one is stored for the key, as decided by the second tier. The first tier is not
+     * consulted, it may not hold all secrets.
+     *
+     * @param key for which a secret is associated with
+     * @param secret secret to be stored
+     * @return {@code true} if the secret was stored
+     */
+    @Override
+    public boolean putIfAbsent(final String key, final E secret) {
+        Objects.requireNonNull(key, "key cannot be null");
+        Objects.requireNonNull(secret, "secret cannot be null");
+
+        return writeConditionally(key, secret, () -> secondTier.putIfAbsent(key, secret));
+    }
+
+    /**
+     * Replace the secret if it is still the expected secret, as decided by the second tier. The first tier is not
+     * consulted, it may be stale.
+     *
+     * @param key for which a secret is associated with
+     * @param expected secret expected to be stored
+     * @param updated secret to be stored
+     * @return {@code true} if the secret was replaced
+     */
+    @Override
+    public boolean replace(final String key, final E expected, final E updated) {
+        Objects.requireNonNull(key, "key cannot be null");
+        Objects.requireNonNull(expected, "expected cannot be null");
+        Objects.requireNonNull(updated, "updated cannot be null");
+
+        return writeConditionally(key, updated, () -> secondTier.replace(key, expected, updated));
+    }
+
+    /**
+     * Delete the secret from both tiers.
+     *
+     * @param key for which a secret is associated with
+     * @return outcome of the deletion from the second tier for {@link WritePolicy#WRITE_THROUGH};
+     *         {@code true} for {@link WritePolicy#WRITE_BACK}
+     */
+    @Override
+    public boolean delete(final String key) {
+        Objects.requireNonNull(key, "key cannot be null");
+
+        // a read of the second tier running meanwhile does not promote the deleted secret
+        writes.incrementAndGet();
+        firstTier.delete(key);
+
+        final boolean deleted;
+        if (writePolicy == WritePolicy.WRITE_BACK) {
+            writeBehind.deleteAsync(key);
+            deleted = true;
+        } else {
+            deleted = secondTier.delete(key);
+        }
+
+        // a deletion which failed may have left the secret in the second tier
+        if (deleted) {
+            rememberAbsent(key);
+        }
+        return deleted;
+    }
+
+    /**
+     * List the keys of the second tier, which holds all secrets.
+     *
+     * @return keys of the secrets
+     */
+    @Override
+    public Stream<String> keys() {
+        return secondTier.keys();
+    }
+
+    /**
+     * The tiered store is as secure as its second tier
+     *
+     * @return security of the second tier
+     */
+    @Override
+    public boolean isSecure() {
+        return secondTier.isSecure();
+    }
+
+    /**
+     * Register a listener with the second tier, which holds all secrets.
+     *
+     * @param listener listener to notify
+     */
+    @Override
+    public void addListener(final SecretStoreListener listener) {
+        secondTier.addListener(listener);
+    }
+
+    @Override
+    public void removeListener(final SecretStoreListener listener) {
+        secondTier.removeListener(listener);
+    }
+
+    /**
+     * @return {@code true} if the second tier notifies of changes and the first tier is invalidated on changes
+     */
+    public boolean isInvalidatedOnChange() {
+        return invalidating;
+    }
+
+    /**
+     * Apply writes still pending for the second tier.
+     */
+    @Override
+    public void close() {
+        if (invalidating) {
+            secondTier.removeListener(invalidator);
+        }
+        if (writeBehind != null) {
+            writeBehind.close();
+        }
+    }
+
+    /**
+     * @return number of reads served by the first tier
+     */
+    public long getFirstTierHitCount() {
+        return firstTierHits.sum();
+    }
+
+    /**
+     * @return number of reads answered from the remembered absent keys
+     */
+    public long getNegativeHitCount() {
+        return negativeHits.sum();
+    }
+
+    /**
+     * @return number of reads which reached the second tier
+     */
+    public long getSecondTierReadCount() {
+        return secondTierReads.sum();
+    }
+
+    private boolean writeConditionally(final String key, final E secret, final BooleanSupplier write) {
+        writes.incrementAndGet();
+        absentKeys.remove(key);
+
+        final boolean written = write.getAsBoolean();
+        if (written) {
+            firstTier.add(key, secret);
+        } else {
+            // the first tier missed a change, or the write failed
+            firstTier.delete(key);
+        }
+        return written;
+    }
+
+    private static <E extends StoredSecret> boolean subscribe(final SecretStore<E> store,
+                                                              final SecretStoreListener listener) {
+        try {
+            store.addListener(listener);
+            return true;
+        } catch (final UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+    private void invalidate(final String key) {
+        // a read of the second tier in progress must not promote the secret it read before the change
+        writes.incrementAndGet();
+        absentKeys.remove(key);
+        firstTier.delete(key);
+    }
+
+    private void invalidateAll() {
+        writes.incrementAndGet();
+        absentKeys.clear();
+        try (Stream<String> keys = firstTier.keys()) {
+            keys.collect(Collectors.toList()).forEach(firstTier::delete);
+        }
+    }
+
+    private boolean isKnownAbsent(final String key) {
+        final Long confirmedAt = absentKeys.get(key);
+        if (confirmedAt == null) {
+            return false;
+        }
+        if (ticker.getAsLong() - confirmedAt < negativeTtlNanos) {
+            return true;
+        }
+
+        absentKeys.remove(key, confirmedAt);
+        return false;
+    }
+
+    private void rememberAbsent(final String key) {
+        if (negativeTtlNanos == 0) {
+            return;
+        }
+        if (absentKeys.size() >= MAX_NEGATIVE_ENTRIES) {
+            // lookups of many distinct missing keys, a full reset is cheaper than tracking their age
+            absentKeys.clear();
+        }
+        absentKeys.put(key, ticker.getAsLong());
+    }
+}
@@ -0,0 +1,492 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.composite;
+
+import com.microsoft.credentialstorage.SecretResult;
+import com.microsoft.credentialstorage.SecretStore;
+import com.microsoft.credentialstorage.SecretStoreListener;
+import com.microsoft.credentialstorage.model.StoredSecret;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Write-behind layer over a persistent store, batching writes from bursts of callers.
+ *
+ * Writes are queued and applied to the underlying store by a background thread. Writes to a key that is still
+ * pending replace the pending write, so only the latest secret of a key reaches the store. Reads see pending writes.
+ *
+ * {@link #addAsync(String, StoredSecret)} and {@link #deleteAsync(String)} return as soon as the write is queued,
+ * and are applied once the number of pending keys reaches the batch size or the oldest pending write is older than
+ * the maximum delay. {@link #add(String, StoredSecret)} and {@link #delete(String)} wait until their write is
+ * applied and report its outcome, so they are applied right away, with the writes pending meanwhile: writes of
+ * concurrent callers queued while a batch is applied form the next batch. Pending writes are applied on
+ * {@link #close()} and, for stores not closed yet, by a single shutdown hook shared by all stores. A secret must not
+ * be cleared until its write completes.
+ *
+ * @param <E> secret type to store
+ */
+public final class WriteBehindSecretStore<E extends StoredSecret> implements SecretStore<E>, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(WriteBehindSecretStore.class);
+
+    /**
+     * Default maximum number of pending keys before a batch is applied
+     */
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    /**
+     * Default maximum time a write stays pending
+     */
+    public static final Duration DEFAULT_MAX_DELAY = Duration.ofMillis(50);
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private final SecretStore<E> delegate;
+    private final int batchSize;
+    private final long maxDelayNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // batches are applied one at a time, in the order they were taken
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final ScheduledExecutorService flusher;
+
+    // guarded by lock
+    private Map<String, PendingWrite<E>> pending = new LinkedHashMap<>();
+    private Map<String, PendingWrite<E>> flushing = Collections.emptyMap();
+    private ScheduledFuture<?> scheduledFlush;
+    private boolean closed;
+
+    private final LongAdder batchCount = new LongAdder();
+    private final LongAdder coalescedCount = new LongAdder();
+
+    /**
+     * Creates a write-behind store with the default batch size and delay.
+     *
+     * @param delegate store to apply the writes to
+     */
+    public WriteBehindSecretStore(final SecretStore<E> delegate) {
+        this(delegate, DEFAULT_BATCH_SIZE, DEFAULT_MAX_DELAY);
+    }
+
+    /**
+     * Creates a write-behind store.
+     *
+     * @param delegate store to apply the writes to
+     * @param batchSize number of pending keys which triggers applying them
+     * @param maxDelay maximum time a write stays pending
+     */
+    public WriteBehindSecretStore(final SecretStore<E> delegate, final int batchSize, final Duration maxDelay) {
+        Objects.requireNonNull(delegate, "delegate cannot be null");
+        Objects.requireNonNull(maxDelay, "maxDelay cannot be null");
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        if (maxDelay.isNegative()) {
+            throw new IllegalArgumentException("maxDelay cannot be negative");
+        }
+
+        this.delegate = delegate;
+        this.batchSize = batchSize;
+        this.maxDelayNanos = maxDelay.toNanos();
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "credential-write-behind-" + THREAD_COUNT.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        ShutdownHook.OPEN_STORES.add(this);
+    }
+
+    @Override
+    public E get(final String key) {
+        return getResult(key).getValue();
+    }
+
+    @Override
+    public SecretResult<E> getResult(final String key) {
+        Objects.requireNonNull(key, "key cannot be null");
+
+        lock.lock();
+        try {
+            PendingWrite<E> write = pending.get(key);
+            if (write == null) {
+                write = flushing.get(key);
+            }
+            if (write != null) {
+                // a pending deletion has no secret
+                return SecretResult.of(write.secret);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        return delegate.getResult(key);
+    }
+
+    /**
+     * List the keys of the underlying store, with the pending writes applied.
+     *
+     * @return keys of the secrets
+     */
+    @Override
+    public Stream<String> keys() {
+        final Map<String, PendingWrite<E>> writes;
+        lock.lock();
+        try {
+            writes = new HashMap<>(flushing);
+            writes.putAll(pending);
+        } finally {
+            lock.unlock();
+        }
+
+        final Stream<String> added = writes.entrySet().stream()
+                .filter(entry -> entry.getValue().secret != null)
+                .map(Map.Entry::getKey);
+        return Stream.concat(delegate.keys().filter(key -> !writes.containsKey(key)), added);
+    }
+
+    /**
+     * Save the secret and wait until it is written to the underlying store.
+     *
+     * @param key for which a secret is associated with
+     * @param secret secret to be stored
+     * @return {@code true} if the secret was written successfully
+     */
+    @Override
+    public boolean add(final String key, final E secret) {
+        Objects.requireNonNull(key, "key cannot be null");
+        Objects.requireNonNull(secret, "secret cannot be null");
+
+        return await(enqueue(key, secret, true));
+    }
+
+    /**
+     * Delete the secret and wait until it is deleted from the underlying store.
+     *
+     * @param key for which a secret is associated with
+     * @return {@code true} if the secret was deleted successfully
+     */
+    @Override
+    public boolean delete(final String key) {
+        Objects.requireNonNull(key, "key cannot be null");
+
+        return await(enqueue(key, null, true));
+    }
+
+    /**
+     * Apply the pending writes, then save the secret to the underlying store unless a secret is stored for the key.
+     * The condition is evaluated by the underlying store, so it is as atomic as the underlying store makes it.
+     *
+     * @param key for which a secret is associated with
+     * @param secret secret to be stored
+     * @return {@code true} if the secret was stored
+     */
+    @Override
+    public boolean putIfAbsent(final String key, final E secret) {
+        Objects.requireNonNull(key, "key cannot be null");
+        Objects.requireNonNull(secret, "secret cannot be null");
+
+        flush();
+        return delegate.putIfAbsent(key, secret);
+    }
+
+    /**
+     * Apply the pending writes, then replace the secret in the underlying store if it is still the expected secret.
+     * The condition is evaluated by the underlying store, so it is as atomic as the underlying store makes it.
+     *
+     * @param key for which a secret is associated with
+     * @param expected secret expected to be stored
+     * @param updated secret to be stored
+     * @return {@code true} if the secret was replaced
+     */
+    @Override
+    public boolean replace(final String key, final E expected, final E updated) {
+        Objects.requireNonNull(key, "key cannot be null");
+        Objects.requireNonNull(expected, "expected cannot be null");
+        Objects.requireNonNull(updated, "updated cannot be null");
+
+        flush();
+        return delegate.replace(key, expected, updated);
+    }
+
+    /**
+     * Queue a write of the secret.
+     *
+     * @param key for which a secret is associated with
+     * @param secret secret to be stored
+     * @return completes with the outcome of the write applied for the key, which is a later write
+     *         if this one was replaced while pending
+     */
+    public CompletableFuture<Boolean> addAsync(final String key, final E secret) {
+        Objects.requireNonNull(key, "key cannot be null");
+        Objects.requireNonNull(secret, "secret cannot be null");
+
+        return enqueue(key, secret, false);
+    }
+
+    /**
+     * Queue a deletion of the secret.
+     *
+     * @param key for which a secret is associated with
+     * @return completes with the outcome of the write applied for the key, which is a later write
+     *         if this one was replaced while pending
+     */
+    public CompletableFuture<Boolean> deleteAsync(final String key) {
+        Objects.requireNonNull(key, "key cannot be null");
+
+        return enqueue(key, null, false);
+    }
+
+    /**
+     * Apply all pending writes and wait until they are written.
+     */
+    public void flush() {
+        final CompletableFuture<Void> done;
+        lock.lock();
+        try {
+            final List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+            pending.values().forEach(write -> futures.addAll(write.futures));
+            flushing.values().forEach(write -> futures.addAll(write.futures));
+            done = CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+            if (!pending.isEmpty()) {
+                submitFlush();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        // failures are reported to the writers
+        done.exceptionally(e -> null).join();
+    }
+
+    /**
+     * Apply the pending writes and stop the background thread. Further writes are rejected.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        } finally {
+            lock.unlock();
+        }
+
+        flushPending();
+        flusher.shutdown();
+        ShutdownHook.OPEN_STORES.remove(this);
+    }
+
+    @Override
+    public boolean isSecure() {
+        return delegate.isSecure();
+    }
+
+    @Override
+    public void addListener(final SecretStoreListener listener) {
+        delegate.addListener(listener);
+    }
+
+    @Override
+    public void removeListener(final SecretStoreListener listener) {
+        delegate.removeListener(listener);
+    }
+
+    /**
+     * @return number of keys with a pending write
+     */
+    public int getPendingCount() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of batches applied to the underlying store
+     */
+    public long getBatchCount() {
+        return batchCount.sum();
+    }
+
+    /**
+     * @return number of pending writes replaced by a later write to the same key
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.sum();
+    }
+
+    /**
+     * @param waiting {@code true} if the caller waits for the write, which is then applied without delay
+     */
+    private CompletableFuture<Boolean> enqueue(final String key, final E secret, final boolean waiting) {
+        final CompletableFuture<Boolean> future = new CompletableFuture<>();
+
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Write-behind store is closed");
+            }
+
+            final PendingWrite<E> replaced = pending.remove(key);
+            final PendingWrite<E> write = new PendingWrite<>(secret);
+            if (replaced != null) {
+                write.futures.addAll(replaced.futures);
+                coalescedCount.increment();
+            }
+            write.futures.add(future);
+            pending.put(key, write);
+
+            if (waiting || pending.size() >= batchSize) {
+                submitFlush();
+            } else if (scheduledFlush == null) {
+                scheduledFlush = flusher.schedule(this::flushPending, maxDelayNanos, TimeUnit.NANOSECONDS);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        return future;
+    }
+
+    // requires lock
+    private void submitFlush() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+        }
+        scheduledFlush = flusher.schedule(this::flushPending, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Apply the pending writes, one batch at a time. Runs on the background thread, and on the
+     * calling thread for {@link #close()} and at shutdown.
+     */
+    private void flushPending() {
+        flushLock.lock();
+        try {
+            while (true) {
+                final Map<String, PendingWrite<E>> batch;
+                lock.lock();
+                try {
+                    if (pending.isEmpty()) {
+                        return;
+                    }
+                    batch = pending;
+                    flushing = batch;
+                    pending = new LinkedHashMap<>();
+                    if (scheduledFlush != null) {
+                        scheduledFlush.cancel(false);
+                        scheduledFlush = null;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+
+                try {
+                    apply(batch);
+                } finally {
+                    lock.lock();
+                    try {
+                        flushing = Collections.emptyMap();
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void apply(final Map<String, PendingWrite<E>> batch) {
+        batchCount.increment();
+        logger.debug("Writing a batch of {} secrets", batch.size());
+
+        for (final Map.Entry<String, PendingWrite<E>> entry : batch.entrySet()) {
+            final PendingWrite<E> write = entry.getValue();
+            try {
+                final boolean result = write.secret != null
+                        ? delegate.add(entry.getKey(), write.secret)
+                        : delegate.delete(entry.getKey());
+                if (!result) {
+                    logger.warn("Writing secret for {} failed.", entry.getKey());
+                }
+                write.futures.forEach(future -> future.complete(result));
+            } catch (final RuntimeException e) {
+                logger.error("Writing secret for {} failed.", entry.getKey(), e);
+                write.futures.forEach(future -> future.completeExceptionally(e));
+            }
+        }
+    }
+
+    private static boolean await(final CompletableFuture<Boolean> future) {
+        try {
+            return future.join();
+        } catch (final CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Latest pending write of a key and the writers waiting for it.
+     */
+    private static final class PendingWrite<E> {
+        final E secret;
+        final List<CompletableFuture<Boolean>> futures = new ArrayList<>(1);
+
+        PendingWrite(final E secret) {
+            this.secret = secret;
+        }
+    }
+
+    /**
+     * Single shutdown hook applying the pending writes of the stores not closed yet, registered on first use.
+     */
+    private static final class ShutdownHook {
+        static final Set<WriteBehindSecretStore<?>> OPEN_STORES = ConcurrentHashMap.newKeySet();
+
+        static {
+            Runtime.getRuntime().addShutdownHook(
+                    new Thread(ShutdownHook::flushAll, "credential-write-behind-shutdown"));
+        }
+
+        private static void flushAll() {
+            for (final WriteBehindSecretStore<?> store : OPEN_STORES) {
+                try {
+                    store.flushPending();
+                } catch (final RuntimeException e) {
+                    logger.error("Applying pending writes at shutdown failed. {}", e.getMessage());
+                }
+            }
+        }
+    }
+}
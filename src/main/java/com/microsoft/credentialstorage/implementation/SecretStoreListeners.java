@@ -0,0 +1,71 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.implementation;
+
+import com.microsoft.credentialstorage.SecretStoreListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Listeners registered with a store. A failing listener is logged and does not prevent the others
+ * from being notified.
+ */
+public final class SecretStoreListeners {
+    private static final Logger logger = LoggerFactory.getLogger(SecretStoreListeners.class);
+
+    private final List<SecretStoreListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param listener listener to add
+     */
+    public void add(final SecretStoreListener listener) {
+        listeners.add(Objects.requireNonNull(listener, "listener cannot be null"));
+    }
+
+    /**
+     * @param listener listener to remove
+     */
+    public void remove(final SecretStoreListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @return {@code true} if no listener is registered
+     */
+    public boolean isEmpty() {
+        return listeners.isEmpty();
+    }
+
+    /**
+     * Notify the listeners of a change to a secret.
+     *
+     * @param key key of the secret
+     */
+    public void fireSecretChanged(final String key) {
+        for (final SecretStoreListener listener : listeners) {
+            try {
+                listener.secretChanged(key);
+            } catch (final RuntimeException e) {
+                logger.error("Secret store listener failed.", e);
+            }
+        }
+    }
+
+    /**
+     * Notify the listeners that changes may have been missed.
+     */
+    public void fireSecretsChanged() {
+        for (final SecretStoreListener listener : listeners) {
+            try {
+                listener.secretsChanged();
+            } catch (final RuntimeException e) {
+                logger.error("Secret store listener failed.", e);
+            }
+        }
+    }
+}
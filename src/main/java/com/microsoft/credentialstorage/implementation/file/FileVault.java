@@ -0,0 +1,1233 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.implementation.file;
+
+import com.microsoft.credentialstorage.implementation.posix.kernelkeyring.KeyUtilsLibrary;
+import com.sun.jna.LastErrorException;
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+import com.sun.jna.ptr.PointerByReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Encrypted vault of secrets in a directory, for hosts without a keyring daemon.
+ *
+ * Secrets are appended to a log, each record encrypted with AES-GCM under a key derived from a passphrase.
+ * A memory-mapped hash index points every key to its latest record, so lookups read a single record.
+ * Writers are serialized across processes with a file lock, and concurrent writers share a single fsync
+ * of the log. Superseded records are dropped by a background compaction once they make up most of the log.
+ *
+ * The directory holds three files:
+ * <ul>
+ *     <li>{@code vault.log}, the header with the key derivation parameters followed by the records</li>
+ *     <li>{@code vault.idx}, the index, which is rebuilt from the log whenever it does not match it</li>
+ *     <li>{@code vault.lock}, the file lock and a generation counter bumped whenever the files are replaced</li>
+ * </ul>
+ */
+public final class FileVault implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(FileVault.class);
+
+    /**
+     * System property for the vault directory, {@code ~/.credential-secure-storage} by default
+     */
+    public static final String VAULT_DIRECTORY = "AUTH_LIB_FILE_VAULT_DIR";
+
+    /**
+     * System property or environment variable for the vault passphrase
+     */
+    public static final String VAULT_PASSPHRASE = "AUTH_LIB_FILE_VAULT_PASSPHRASE";
+
+    /**
+     * Description of the "user" key in the kernel user keyring holding the passphrase,
+     * if it is not configured otherwise
+     */
+    public static final String VAULT_KEY_DESCRIPTION = "Credential Secure Storage:VaultKey";
+
+    static final int DEFAULT_ITERATIONS = 600_000;
+
+    private static final String LOG_FILE = "vault.log";
+    private static final String INDEX_FILE = "vault.idx";
+    private static final String LOCK_FILE = "vault.lock";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String RESIZE_SUFFIX = ".resize";
+
+    private static final int MAGIC = 0x43535356; // CSSV
+    private static final int VERSION = 1;
+
+    private static final int LOG_HEADER_SIZE = 80;
+    private static final int ITERATIONS_OFFSET = 8;
+    private static final int SALT_OFFSET = 16;
+    private static final int LOG_ID_OFFSET = 32;
+    private static final int VERIFIER_OFFSET = 40;
+    private static final int VERIFIER_LENGTH = VaultCipher.NONCE_LENGTH + VaultCipher.TAG_LENGTH;
+
+    private static final int RECORD_HEADER_SIZE = Integer.BYTES + Long.BYTES + Long.BYTES + 1;
+    private static final int MIN_RECORD_SIZE = RECORD_HEADER_SIZE + VaultCipher.NONCE_LENGTH + VaultCipher.TAG_LENGTH;
+    private static final int MAX_RECORD_SIZE = 1 << 20;
+    private static final byte OP_PUT = 1;
+    private static final byte OP_DELETE = 2;
+
+    private static final long COMPACTION_THRESHOLD = 1 << 20;
+
+    private static final int KEYS_PAGE_SIZE = 64;
+
+    private static final Set<StandardOpenOption> CREATE_OPTIONS =
+            EnumSet.of(StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+    // FileLock is held per process, threads of this process are serialized per directory in addition
+    private static final ConcurrentMap<Path, ReentrantLock> PROCESS_LOCKS = new ConcurrentHashMap<>();
+
+    private static volatile FileVault defaultVault;
+    // opening the default vault derives its key and reads its log, not under a monitor pinning virtual threads
+    private static final ReentrantLock DEFAULT_VAULT_LOCK = new ReentrantLock();
+
+    private final Path directory;
+    private final Path logPath;
+    private final Path indexPath;
+    private final VaultCipher cipher;
+    private final byte[] salt;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ReentrantLock processLock;
+    private final FileChannel lockChannel;
+    private final MappedByteBuffer generationBuffer;
+
+    private volatile FileChannel logChannel;
+    private volatile VaultIndex index;
+    private long generation;
+    private volatile boolean closed;
+
+    // group commit of the appended records, guarded by syncLock
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final Condition syncDone = syncLock.newCondition();
+    private long appended;
+    private long synced;
+    private boolean syncing;
+
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+
+    private FileVault(final Path directory, final char[] passphrase, final int iterations) throws IOException {
+        this.directory = directory;
+        this.logPath = directory.resolve(LOG_FILE);
+        this.indexPath = directory.resolve(INDEX_FILE);
+        this.processLock = PROCESS_LOCKS.computeIfAbsent(directory, d -> new ReentrantLock());
+
+        createDirectory(directory);
+        this.lockChannel = FileChannel.open(directory.resolve(LOCK_FILE), CREATE_OPTIONS, ownerOnly());
+        try {
+            this.generationBuffer = lockChannel.map(FileChannel.MapMode.READ_WRITE, 0, Long.BYTES);
+
+            final FileLock fileLock = lockFiles();
+            try {
+                this.logChannel = FileChannel.open(logPath, CREATE_OPTIONS, ownerOnly());
+                final ByteBuffer header;
+                if (logChannel.size() < LOG_HEADER_SIZE) {
+                    // new vault, or one whose creation did not complete
+                    this.salt = VaultCipher.randomBytes(VaultCipher.SALT_LENGTH);
+                    this.cipher = VaultCipher.fromPassphrase(passphrase, salt, iterations);
+                    writeHeader(logChannel, iterations, VaultCipher.randomLong());
+                    header = readHeader(logChannel);
+                } else {
+                    header = readHeader(logChannel);
+                    this.salt = readSalt(header);
+                    this.cipher = VaultCipher.fromPassphrase(passphrase, salt, header.getInt(ITERATIONS_OFFSET));
+                }
+                verifyHeader(header);
+
+                this.generation = generationBuffer.getLong(0);
+                openIndex(header.getLong(LOG_ID_OFFSET));
+            } finally {
+                unlockFiles(fileLock);
+            }
+        } catch (final GeneralSecurityException e) {
+            closeAfterFailure();
+            throw new IOException("Opening vault in " + directory + " failed.", e);
+        } catch (final IOException | RuntimeException e) {
+            closeAfterFailure();
+            throw e;
+        }
+    }
+
+    /**
+     * Open the vault in a directory, creating it if it does not exist.
+     *
+     * @param directory directory of the vault
+     * @param passphrase passphrase of the vault
+     * @return vault
+     * @throws IOException if the vault cannot be opened, or the passphrase is wrong
+     */
+    public static FileVault open(final Path directory, final char[] passphrase) throws IOException {
+        return open(directory, passphrase, DEFAULT_ITERATIONS);
+    }
+
+    static FileVault open(final Path directory, final char[] passphrase, final int iterations) throws IOException {
+        Objects.requireNonNull(directory, "directory cannot be null");
+        Objects.requireNonNull(passphrase, "passphrase cannot be null");
+
+        return new FileVault(directory.toAbsolutePath().normalize(), passphrase, iterations);
+    }
+
+    /**
+     * Return the vault configured by the {@value #VAULT_DIRECTORY} and {@value #VAULT_PASSPHRASE} settings
+     * or the {@value #VAULT_KEY_DESCRIPTION} kernel key. The vault is opened on first use and kept open.
+     *
+     * @return vault
+     * @throws IOException if no passphrase is configured or the vault cannot be opened
+     */
+    public static FileVault getDefault() throws IOException {
+        FileVault vault = defaultVault;
+        if (vault == null) {
+            DEFAULT_VAULT_LOCK.lock();
+            try {
+                vault = defaultVault;
+                if (vault == null) {
+                    final char[] passphrase = getConfiguredPassphrase();
+                    if (passphrase == null) {
+                        throw new IOException("No passphrase for the file vault is configured.");
+                    }
+                    try {
+                        vault = open(getConfiguredDirectory(), passphrase);
+                    } finally {
+                        Arrays.fill(passphrase, (char) 0);
+                    }
+                    defaultVault = vault;
+                }
+            } finally {
+                DEFAULT_VAULT_LOCK.unlock();
+            }
+        }
+        return vault;
+    }
+
+    /**
+     * Check whether a passphrase for the default vault is configured.
+     *
+     * @return {@code true} if {@link #getDefault()} has a passphrase to open the vault with
+     */
+    public static boolean isConfigured() {
+        final char[] passphrase = getConfiguredPassphrase();
+        if (passphrase == null) {
+            return false;
+        }
+
+        Arrays.fill(passphrase, (char) 0);
+        return true;
+    }
+
+    /**
+     * Read a secret.
+     *
+     * @param type type of the secret
+     * @param key key of the secret
+     * @param mapper creates the result from the account and the secret, the secret is cleared afterwards
+     * @param <T> result type
+     * @return result of the mapper, or {@code null} if there is no such secret
+     */
+    public <T> T read(final String type, final String key, final BiFunction<String, char[], T> mapper)
+            throws IOException {
+        final long hash = cipher.hash(type, key);
+        for (int attempt = 0; ; attempt++) {
+            lock.readLock().lock();
+            try {
+                ensureOpen();
+                if (generation == generationBuffer.getLong(0)) {
+                    final long offset = index.get(hash);
+                    if (offset == VaultIndex.NOT_FOUND) {
+                        return null;
+                    }
+
+                    final byte[] plaintext = readRecord(offset, hash);
+                    if (plaintext != null) {
+                        try {
+                            return decodeSecret(plaintext, type, key, mapper);
+                        } finally {
+                            Arrays.fill(plaintext, (byte) 0);
+                        }
+                    }
+                    if (attempt > 0) {
+                        throw new IOException("Record of " + type + " " + key + " is damaged.");
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            // the files were replaced by another process, or the index does not match the log
+            refreshLocked(attempt > 0 || generation == generationBuffer.getLong(0));
+        }
+    }
+
+    /**
+     * Add or replace a secret. The secret is durable when the method returns.
+     *
+     * @param type type of the secret
+     * @param key key of the secret
+     * @param account account of the secret
+     * @param secret the secret
+     */
+    public void write(final String type, final String key, final String account, final char[] secret)
+            throws IOException {
+        final byte[] plaintext = encodeSecret(type, key, account, secret);
+        try {
+            append(OP_PUT, cipher.hash(type, key), plaintext);
+        } finally {
+            Arrays.fill(plaintext, (byte) 0);
+        }
+    }
+
+    /**
+     * Add or replace secrets if the current secrets are the expected ones. The condition is tested and the
+     * secrets are written with the vault locked, so the write is atomic with respect to all writers of the vault,
+     * in this and other processes. The secrets are durable when the method returns.
+     *
+     * @param type type of the secrets
+     * @param expected key to a predicate tested with the current account and secret of the key, both {@code null}
+     *                 if there is no such secret; the secret is cleared afterwards
+     * @param updated key to the account and secret to write if all predicates hold
+     * @return {@code true} if the secrets were written
+     */
+    public boolean writeIf(final String type, final Map<String, BiPredicate<String, char[]>> expected,
+                           final Map<String, Map.Entry<String, char[]>> updated) throws IOException {
+        final byte[] ops = new byte[updated.size()];
+        final long[] hashes = new long[updated.size()];
+        final byte[][] plaintexts = new byte[updated.size()][];
+        try {
+            int i = 0;
+            for (final Map.Entry<String, Map.Entry<String, char[]>> write : updated.entrySet()) {
+                ops[i] = OP_PUT;
+                hashes[i] = cipher.hash(type, write.getKey());
+                plaintexts[i] = encodeSecret(type, write.getKey(), write.getValue().getKey(), write.getValue().getValue());
+                i++;
+            }
+
+            return appendIf(() -> {
+                for (final Map.Entry<String, BiPredicate<String, char[]>> condition : expected.entrySet()) {
+                    if (!readLocked(type, condition.getKey(), condition.getValue()::test)) {
+                        return false;
+                    }
+                }
+                return true;
+            }, ops, hashes, plaintexts) >= 0;
+        } finally {
+            for (final byte[] plaintext : plaintexts) {
+                if (plaintext != null) {
+                    Arrays.fill(plaintext, (byte) 0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Delete a secret. The deletion is durable when the method returns.
+     *
+     * @param type type of the secret
+     * @param key key of the secret
+     * @return {@code true} if the secret existed; nothing is written otherwise
+     */
+    public boolean delete(final String type, final String key) throws IOException {
+        final long hash = cipher.hash(type, key);
+        return appendIf(() -> index.get(hash) != VaultIndex.NOT_FOUND, new byte[] {OP_DELETE}, new long[] {hash},
+                new byte[][] {encodeSecret(type, key, null, null)}) > 0;
+    }
+
+    /**
+     * List the keys of the secrets of a type.
+     *
+     * The index only holds keyed hashes, so the entries are snapshotted and their records are decrypted
+     * a page at a time as the stream is consumed. Secrets deleted in the meantime are skipped; secrets
+     * added in the meantime are not listed.
+     *
+     * @param type type of the secrets
+     * @return keys of the secrets, the stream throws {@link UncheckedIOException} if the vault cannot be read
+     */
+    public Stream<String> keys(final String type) throws IOException {
+        Objects.requireNonNull(type, "type cannot be null");
+
+        final long[] hashes = snapshotHashes();
+        final Spliterator<String> spliterator = new Spliterators.AbstractSpliterator<String>(hashes.length,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            private final Queue<String> page = new ArrayDeque<>(KEYS_PAGE_SIZE);
+            private int next;
+
+            @Override
+            public boolean tryAdvance(final Consumer<? super String> action) {
+                while (page.isEmpty() && next < hashes.length) {
+                    final int end = Math.min(next + KEYS_PAGE_SIZE, hashes.length);
+                    try {
+                        readKeys(type, hashes, next, end, page);
+                    } catch (final IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    next = end;
+                }
+
+                final String key = page.poll();
+                if (key == null) {
+                    return false;
+                }
+                action.accept(key);
+                return true;
+            }
+        };
+
+        return StreamSupport.stream(spliterator, false);
+    }
+
+    /**
+     * Rewrite the log with the latest record of each secret only.
+     */
+    public void compact() throws IOException {
+        lock.writeLock().lock();
+        try {
+            ensureOpen();
+            final FileLock fileLock = lockFiles();
+            try {
+                refresh();
+                compactFiles();
+            } finally {
+                unlockFiles(fileLock);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (!closed) {
+                closed = true;
+                try {
+                    logChannel.force(false);
+                    index.close();
+                    logChannel.close();
+                } finally {
+                    lockChannel.close();
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    long getLogSize() throws IOException {
+        lock.readLock().lock();
+        try {
+            ensureOpen();
+            return logChannel.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private long[] snapshotHashes() throws IOException {
+        while (true) {
+            lock.readLock().lock();
+            try {
+                ensureOpen();
+                if (generation == generationBuffer.getLong(0)) {
+                    final long[] hashes = new long[index.getLiveCount()];
+                    final int[] count = new int[1];
+                    index.forEach((hash, offset) -> {
+                        if (count[0] < hashes.length) {
+                            hashes[count[0]++] = hash;
+                        }
+                    });
+                    return Arrays.copyOf(hashes, count[0]);
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            refreshLocked(false);
+        }
+    }
+
+    /**
+     * Decrypt the records of a range of hashes and collect the keys of the given type.
+     */
+    private void readKeys(final String type, final long[] hashes, final int from, final int to,
+                          final Queue<String> keys) throws IOException {
+        while (true) {
+            lock.readLock().lock();
+            try {
+                ensureOpen();
+                // compaction keeps the salt, so the hashes stay valid when the files are replaced
+                if (generation == generationBuffer.getLong(0)) {
+                    for (int i = from; i < to; i++) {
+                        final long offset = index.get(hashes[i]);
+                        if (offset == VaultIndex.NOT_FOUND) {
+                            continue;
+                        }
+
+                        final byte[] plaintext = readRecord(offset, hashes[i]);
+                        if (plaintext == null) {
+                            logger.warn("Skipping a damaged record of the vault in {}.", directory);
+                            continue;
+                        }
+                        try {
+                            final ByteBuffer buffer = ByteBuffer.wrap(plaintext);
+                            if (type.equals(readString(buffer))) {
+                                keys.add(readString(buffer));
+                            }
+                        } finally {
+                            Arrays.fill(plaintext, (byte) 0);
+                        }
+                    }
+                    return;
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            refreshLocked(false);
+        }
+    }
+
+    private boolean append(final byte op, final long hash, final byte[] plaintext) throws IOException {
+        return appendIf(null, new byte[] {op}, new long[] {hash}, new byte[][] {plaintext}) > 0;
+    }
+
+    /**
+     * Append records, if the condition holds once the vault is locked.
+     *
+     * @param condition tested with the vault locked and refreshed, {@code null} to append unconditionally
+     * @return -1 if the condition does not hold, otherwise the number of records which replaced a record
+     */
+    private int appendIf(final LockedCondition condition, final byte[] ops, final long[] hashes,
+                         final byte[][] plaintexts) throws IOException {
+        int existed = 0;
+        final long ticket;
+        final boolean compact;
+
+        lock.writeLock().lock();
+        try {
+            ensureOpen();
+            final FileLock fileLock = lockFiles();
+            try {
+                refresh();
+
+                if (condition != null && !condition.test()) {
+                    return -1;
+                }
+
+                long offset = logChannel.size();
+                long deadBytes = index.getDeadBytes();
+                for (int i = 0; i < ops.length; i++) {
+                    final long sequence = index.getLastSequence() + 1;
+                    final byte[] record = encodeRecord(ops[i], sequence, hashes[i], plaintexts[i]);
+                    writeFully(logChannel, ByteBuffer.wrap(record), offset);
+
+                    final long previous = ops[i] == OP_PUT ? index.put(hashes[i], offset) : index.remove(hashes[i]);
+                    if (previous != VaultIndex.NOT_FOUND) {
+                        existed++;
+                        deadBytes += readRecordLength(previous);
+                    }
+                    if (ops[i] == OP_DELETE) {
+                        // a deletion only needs to be kept until the next compaction
+                        deadBytes += record.length;
+                    }
+                    offset += record.length;
+
+                    index.setDeadBytes(deadBytes);
+                    index.setLastSequence(sequence);
+                    index.setIndexedLength(offset);
+
+                    if (index.needsResize()) {
+                        resizeIndex(indexPath);
+                    }
+                }
+
+                compact = deadBytes > offset - LOG_HEADER_SIZE - deadBytes && offset > COMPACTION_THRESHOLD;
+            } finally {
+                unlockFiles(fileLock);
+            }
+            ticket = nextTicket();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        sync(ticket);
+
+        if (compact) {
+            scheduleCompaction();
+        }
+        return existed;
+    }
+
+    /**
+     * Read the current secret of a key, with the vault locked and refreshed.
+     */
+    private <T> T readLocked(final String type, final String key, final BiFunction<String, char[], T> mapper)
+            throws IOException {
+        final long hash = cipher.hash(type, key);
+        final long offset = index.get(hash);
+        if (offset == VaultIndex.NOT_FOUND) {
+            return mapper.apply(null, null);
+        }
+
+        final byte[] plaintext = readRecord(offset, hash);
+        if (plaintext == null) {
+            throw new IOException("Record of " + type + " " + key + " is damaged.");
+        }
+        try {
+            return decodeSecret(plaintext, type, key, mapper);
+        } finally {
+            Arrays.fill(plaintext, (byte) 0);
+        }
+    }
+
+    private interface LockedCondition {
+        boolean test() throws IOException;
+    }
+
+    private long nextTicket() {
+        syncLock.lock();
+        try {
+            return ++appended;
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * Wait until the appended record is durable. The first waiting writer forces the log on behalf of all records
+     * appended so far, the writers arriving meanwhile wait for the next force.
+     *
+     * @param ticket ticket of the appended record
+     */
+    private void sync(final long ticket) throws IOException {
+        syncLock.lock();
+        try {
+            while (synced < ticket) {
+                if (syncing) {
+                    syncDone.awaitUninterruptibly();
+                    continue;
+                }
+
+                syncing = true;
+                final long target = appended;
+                final FileChannel channel = logChannel;
+                final VaultIndex syncedIndex = index;
+                syncLock.unlock();
+                try {
+                    channel.force(false);
+                    syncedIndex.force();
+                } catch (final ClosedChannelException e) {
+                    // the log was replaced by a compaction, which forced the records to the new log
+                    if (channel == logChannel && !closed) {
+                        throw e;
+                    }
+                } finally {
+                    syncLock.lock();
+                    syncing = false;
+                    syncDone.signalAll();
+                }
+                synced = Math.max(synced, target);
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private void markSynced() {
+        syncLock.lock();
+        try {
+            synced = appended;
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private void scheduleCompaction() {
+        if (compactionScheduled.compareAndSet(false, true)) {
+            Compactor.EXECUTOR.execute(() -> {
+                try {
+                    compact();
+                } catch (final IOException e) {
+                    logger.warn("Compacting vault in {} failed. {}", directory, e.getMessage());
+                } finally {
+                    compactionScheduled.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Reopen the files if they were replaced, then make the index cover the whole log.
+     *
+     * @param rebuild rebuild the index from the log even if it looks up to date
+     */
+    private void refreshLocked(final boolean rebuild) throws IOException {
+        lock.writeLock().lock();
+        try {
+            ensureOpen();
+            final FileLock fileLock = lockFiles();
+            try {
+                if (rebuild && generation == generationBuffer.getLong(0)) {
+                    rebuildIndex(readHeader(logChannel).getLong(LOG_ID_OFFSET));
+                } else {
+                    refresh();
+                }
+            } finally {
+                unlockFiles(fileLock);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // requires the write lock and the file lock
+    private void refresh() throws IOException {
+        final long currentGeneration = generationBuffer.getLong(0);
+        if (currentGeneration != generation) {
+            index.close();
+            logChannel.close();
+            logChannel = FileChannel.open(logPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+            final ByteBuffer header = readHeader(logChannel);
+            if (!Arrays.equals(salt, readSalt(header))) {
+                throw new IOException("Vault in " + directory + " was replaced, it has to be reopened.");
+            }
+
+            generation = currentGeneration;
+            openIndex(header.getLong(LOG_ID_OFFSET));
+            markSynced();
+            return;
+        }
+
+        final long size = logChannel.size();
+        final long indexedLength = index.getIndexedLength();
+        if (indexedLength < size) {
+            // records appended by a writer that failed before updating the index
+            indexRecords(indexedLength, indexPath);
+        } else if (indexedLength > size) {
+            rebuildIndex(readHeader(logChannel).getLong(LOG_ID_OFFSET));
+        }
+    }
+
+    // requires the file lock
+    private void openIndex(final long logId) throws IOException {
+        index = VaultIndex.open(indexPath, logId);
+        if (index == null || index.getIndexedLength() > logChannel.size()) {
+            rebuildIndex(logId);
+        } else if (index.getIndexedLength() < logChannel.size()) {
+            indexRecords(index.getIndexedLength(), indexPath);
+        }
+    }
+
+    private void rebuildIndex(final long logId) throws IOException {
+        if (logChannel.size() > LOG_HEADER_SIZE) {
+            logger.info("Rebuilding index of vault in {}", directory);
+        }
+
+        closeQuietly(index);
+        index = null;
+        final Path temp = directory.resolve(INDEX_FILE + TEMP_SUFFIX);
+        index = VaultIndex.create(temp, logId, 0);
+        index.setIndexedLength(LOG_HEADER_SIZE);
+        indexRecords(LOG_HEADER_SIZE, temp);
+        index.force();
+        Files.move(temp, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        bumpGeneration();
+    }
+
+    /**
+     * Add the records from an offset to the end of the log to the index. A damaged record at the end of the log
+     * is the remainder of an interrupted write and is truncated.
+     */
+    private void indexRecords(final long from, final Path indexFile) throws IOException {
+        final long size = logChannel.size();
+        final ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        long offset = from;
+        while (offset < size) {
+            final byte[] record = readRawRecord(logChannel, offset, header);
+            final byte[] plaintext = record == null ? null : decryptRecord(record);
+            if (plaintext == null) {
+                logger.warn("Truncating damaged end of vault log in {} at {}", directory, offset);
+                logChannel.truncate(offset);
+                logChannel.force(false);
+                break;
+            }
+            Arrays.fill(plaintext, (byte) 0);
+
+            final ByteBuffer recordHeader = ByteBuffer.wrap(record);
+            final long sequence = recordHeader.getLong(Integer.BYTES);
+            final long hash = recordHeader.getLong(Integer.BYTES + Long.BYTES);
+            final byte op = recordHeader.get(RECORD_HEADER_SIZE - 1);
+
+            final long previous = op == OP_PUT ? index.put(hash, offset) : index.remove(hash);
+            long deadBytes = index.getDeadBytes();
+            if (previous != VaultIndex.NOT_FOUND) {
+                deadBytes += readRecordLength(previous);
+            }
+            if (op == OP_DELETE) {
+                deadBytes += record.length;
+            }
+            index.setDeadBytes(deadBytes);
+            index.setLastSequence(Math.max(index.getLastSequence(), sequence));
+            offset += record.length;
+            index.setIndexedLength(offset);
+
+            if (index.needsResize()) {
+                resizeIndex(indexFile);
+            }
+        }
+    }
+
+    /**
+     * Replace the index with a larger copy.
+     *
+     * @param indexFile location of the index, the vault index or the one being rebuilt
+     */
+    private void resizeIndex(final Path indexFile) throws IOException {
+        final long logId = readHeader(logChannel).getLong(LOG_ID_OFFSET);
+        final Path temp = directory.resolve(INDEX_FILE + RESIZE_SUFFIX);
+        final VaultIndex resized = VaultIndex.create(temp, logId, index.getLiveCount() * 2L);
+        try {
+            index.forEach(resized::put);
+            resized.setIndexedLength(index.getIndexedLength());
+            resized.setDeadBytes(index.getDeadBytes());
+            resized.setLastSequence(index.getLastSequence());
+            resized.force();
+            Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException | RuntimeException e) {
+            resized.close();
+            throw e;
+        }
+
+        index.close();
+        index = resized;
+        if (indexFile.equals(indexPath)) {
+            bumpGeneration();
+        }
+    }
+
+    // requires the write lock and the file lock
+    private void compactFiles() throws IOException {
+        final long sizeBefore = logChannel.size();
+        final long logId = VaultCipher.randomLong();
+        final Path tempLog = directory.resolve(LOG_FILE + TEMP_SUFFIX);
+        final Path tempIndex = directory.resolve(INDEX_FILE + TEMP_SUFFIX);
+
+        final FileChannel compactedLog = FileChannel.open(tempLog, EnumSet.of(StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING), ownerOnly());
+        VaultIndex compactedIndex = null;
+        try {
+            writeHeader(compactedLog, readHeader(logChannel).getInt(ITERATIONS_OFFSET), logId);
+
+            compactedIndex = VaultIndex.create(tempIndex, logId, index.getLiveCount());
+            final VaultIndex target = compactedIndex;
+            final ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+            final long[] position = {LOG_HEADER_SIZE};
+            index.forEach((hash, offset) -> {
+                final byte[] record = readRawRecord(logChannel, offset, recordHeader);
+                if (record == null) {
+                    throw new IOException("Record at " + offset + " of the vault log is damaged.");
+                }
+                writeFully(compactedLog, ByteBuffer.wrap(record), position[0]);
+                target.put(hash, position[0]);
+                position[0] += record.length;
+            });
+            compactedIndex.setIndexedLength(position[0]);
+            compactedIndex.setLastSequence(index.getLastSequence());
+
+            compactedLog.force(false);
+            compactedIndex.force();
+
+            // the log first: should the index move fail, it is rebuilt for the new log identifier
+            Files.move(tempLog, logPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.move(tempIndex, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException | RuntimeException e) {
+            closeQuietly(compactedIndex);
+            compactedLog.close();
+            Files.deleteIfExists(tempLog);
+            Files.deleteIfExists(tempIndex);
+            throw e;
+        }
+
+        closeQuietly(index);
+        closeQuietly(logChannel);
+        logChannel = compactedLog;
+        index = compactedIndex;
+        bumpGeneration();
+        markSynced();
+
+        logger.info("Compacted vault in {} from {} to {} bytes", directory, sizeBefore, logChannel.size());
+    }
+
+    private void closeAfterFailure() {
+        closeQuietly(index);
+        closeQuietly(logChannel);
+        closeQuietly(lockChannel);
+    }
+
+    private void bumpGeneration() {
+        generation = generationBuffer.getLong(0) + 1;
+        generationBuffer.putLong(0, generation);
+    }
+
+    // released with unlockFiles
+    private FileLock lockFiles() throws IOException {
+        processLock.lock();
+        try {
+            return lockChannel.lock();
+        } catch (final IOException | RuntimeException e) {
+            processLock.unlock();
+            throw e;
+        }
+    }
+
+    private void unlockFiles(final FileLock fileLock) throws IOException {
+        try {
+            fileLock.release();
+        } finally {
+            processLock.unlock();
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new ClosedChannelException();
+        }
+    }
+
+    /**
+     * Read and decrypt the record of a key.
+     *
+     * @return plaintext, or {@code null} if the record does not belong to the key or is damaged
+     */
+    private byte[] readRecord(final long offset, final long hash) throws IOException {
+        final byte[] record = readRawRecord(logChannel, offset, ByteBuffer.allocate(RECORD_HEADER_SIZE));
+        if (record == null || ByteBuffer.wrap(record).getLong(Integer.BYTES + Long.BYTES) != hash) {
+            return null;
+        }
+        return decryptRecord(record);
+    }
+
+    private byte[] decryptRecord(final byte[] record) {
+        try {
+            return cipher.decrypt(Arrays.copyOf(record, RECORD_HEADER_SIZE), record, RECORD_HEADER_SIZE,
+                    record.length - RECORD_HEADER_SIZE);
+        } catch (final GeneralSecurityException e) {
+            return null;
+        }
+    }
+
+    private long readRecordLength(final long offset) throws IOException {
+        final ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+        readFully(logChannel, length, offset);
+        return length.getInt(0);
+    }
+
+    /**
+     * Read a complete record.
+     *
+     * @return record, or {@code null} if the record is incomplete or its length is invalid
+     */
+    private static byte[] readRawRecord(final FileChannel channel, final long offset, final ByteBuffer header)
+            throws IOException {
+        header.clear();
+        if (offset + RECORD_HEADER_SIZE > channel.size()) {
+            return null;
+        }
+        readFully(channel, header, offset);
+
+        final int length = header.getInt(0);
+        if (length < MIN_RECORD_SIZE || length > MAX_RECORD_SIZE || offset + length > channel.size()) {
+            return null;
+        }
+
+        final byte[] record = new byte[length];
+        readFully(channel, ByteBuffer.wrap(record), offset);
+        return record;
+    }
+
+    private byte[] encodeRecord(final byte op, final long sequence, final long hash, final byte[] plaintext)
+            throws IOException {
+        final int length = RECORD_HEADER_SIZE + VaultCipher.NONCE_LENGTH + plaintext.length + VaultCipher.TAG_LENGTH;
+        if (length > MAX_RECORD_SIZE) {
+            throw new IOException("Secret is too large for the vault.");
+        }
+
+        final ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE)
+                .putInt(length)
+                .putLong(sequence)
+                .putLong(hash)
+                .put(op);
+        try {
+            final byte[] encrypted = cipher.encrypt(header.array(), plaintext);
+            return ByteBuffer.allocate(length).put(header.array()).put(encrypted).array();
+        } catch (final GeneralSecurityException e) {
+            throw new IOException("Encrypting secret failed.", e);
+        }
+    }
+
+    /**
+     * Plaintext of a record: type, key and account as length prefixed UTF-8 strings followed by the secret.
+     * The account and the secret are omitted for a deletion.
+     */
+    private static byte[] encodeSecret(final String type, final String key, final String account, final char[] secret) {
+        final byte[] typeBytes = type.getBytes(StandardCharsets.UTF_8);
+        final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        final byte[] accountBytes = account == null ? new byte[0] : account.getBytes(StandardCharsets.UTF_8);
+        final ByteBuffer secretBuffer = StandardCharsets.UTF_8.encode(CharBuffer.wrap(secret == null ? new char[0] : secret));
+        try {
+            final ByteBuffer plaintext = ByteBuffer.allocate(3 * Integer.BYTES + typeBytes.length + keyBytes.length
+                    + accountBytes.length + secretBuffer.remaining());
+            plaintext.putInt(typeBytes.length).put(typeBytes)
+                    .putInt(keyBytes.length).put(keyBytes)
+                    .putInt(accountBytes.length).put(accountBytes)
+                    .put(secretBuffer);
+            return plaintext.array();
+        } finally {
+            Arrays.fill(secretBuffer.array(), (byte) 0);
+        }
+    }
+
+    private static <T> T decodeSecret(final byte[] plaintext, final String type, final String key,
+                                      final BiFunction<String, char[], T> mapper) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(plaintext);
+        final String recordType = readString(buffer);
+        final String recordKey = readString(buffer);
+        if (!type.equals(recordType) || !key.equals(recordKey)) {
+            // keyed hash collision, practically impossible
+            throw new IOException("Vault index entry of " + type + " " + key + " points to another secret.");
+        }
+
+        final String account = readString(buffer);
+        final CharBuffer secretBuffer = StandardCharsets.UTF_8.decode(buffer);
+        final char[] secret = new char[secretBuffer.remaining()];
+        secretBuffer.get(secret);
+        Arrays.fill(secretBuffer.array(), (char) 0);
+        try {
+            return mapper.apply(account, secret);
+        } finally {
+            Arrays.fill(secret, (char) 0);
+        }
+    }
+
+    private static String readString(final ByteBuffer buffer) throws IOException {
+        final int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IOException("Unexpected format of a vault record.");
+        }
+        final String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    /**
+     * Write the log header: magic, version, iterations, salt, log identifier and a verifier of the passphrase,
+     * which is the authentication tag of an empty plaintext.
+     */
+    private void writeHeader(final FileChannel channel, final int iterations, final long logId) throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(iterations).putInt(0).put(salt).putLong(logId);
+        try {
+            header.put(cipher.encrypt(Arrays.copyOf(header.array(), VERIFIER_OFFSET), new byte[0]));
+        } catch (final GeneralSecurityException e) {
+            throw new IOException("Creating vault header failed.", e);
+        }
+
+        channel.truncate(0);
+        header.clear();
+        writeFully(channel, header, 0);
+        channel.force(true);
+    }
+
+    private static ByteBuffer readHeader(final FileChannel channel) throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_SIZE);
+        readFully(channel, header, 0);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            throw new IOException("Unexpected format of the vault log.");
+        }
+        return header;
+    }
+
+    private static byte[] readSalt(final ByteBuffer header) {
+        return Arrays.copyOfRange(header.array(), SALT_OFFSET, SALT_OFFSET + VaultCipher.SALT_LENGTH);
+    }
+
+    private void verifyHeader(final ByteBuffer header) throws IOException {
+        try {
+            cipher.decrypt(Arrays.copyOf(header.array(), VERIFIER_OFFSET), header.array(), VERIFIER_OFFSET,
+                    VERIFIER_LENGTH);
+        } catch (final GeneralSecurityException e) {
+            throw new IOException("Wrong passphrase for the vault in " + directory + ".", e);
+        }
+    }
+
+    private static void readFully(final FileChannel channel, final ByteBuffer buffer, final long offset)
+            throws IOException {
+        long position = offset;
+        while (buffer.hasRemaining()) {
+            final int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of the vault file.");
+            }
+            position += read;
+        }
+    }
+
+    private static void writeFully(final FileChannel channel, final ByteBuffer buffer, final long offset)
+            throws IOException {
+        long position = offset;
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void createDirectory(final Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            if (isPosix()) {
+                Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(
+                        PosixFilePermissions.fromString("rwx------")));
+            } else {
+                Files.createDirectories(directory);
+            }
+        }
+    }
+
+    private static FileAttribute<?>[] ownerOnly() {
+        if (isPosix()) {
+            return new FileAttribute<?>[] {
+                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------"))
+            };
+        }
+        return new FileAttribute<?>[0];
+    }
+
+    private static boolean isPosix() {
+        return FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+    }
+
+    private static void closeQuietly(final Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (final IOException e) {
+                logger.debug("Closing vault file failed.", e);
+            }
+        }
+    }
+
+    private static Path getConfiguredDirectory() {
+        final String value = System.getProperty(VAULT_DIRECTORY);
+        if (value != null && !value.trim().isEmpty()) {
+            return Paths.get(value.trim());
+        }
+        return Paths.get(System.getProperty("user.home"), ".credential-secure-storage");
+    }
+
+    private static char[] getConfiguredPassphrase() {
+        String value = System.getProperty(VAULT_PASSPHRASE);
+        if (value == null || value.isEmpty()) {
+            value = System.getenv(VAULT_PASSPHRASE);
+        }
+        if (value != null && !value.isEmpty()) {
+            return value.toCharArray();
+        }
+
+        return readKernelKey();
+    }
+
+    /**
+     * Read the passphrase from the {@value #VAULT_KEY_DESCRIPTION} key in the kernel user keyring,
+     * e.g. added at login with {@code keyctl padd user "Credential Secure Storage:VaultKey" @u}.
+     *
+     * @return passphrase, or {@code null} if there is no such key
+     */
+    private static char[] readKernelKey() {
+        if (!"Linux".equals(System.getProperty("os.name"))) {
+            return null;
+        }
+
+        final PointerByReference buffer = new PointerByReference();
+        try {
+            final KeyUtilsLibrary keyUtils = KeyUtilsLibrary.INSTANCE;
+            final int serial = keyUtils.keyctl_search(KeyUtilsLibrary.KEY_SPEC_USER_KEYRING,
+                    KeyUtilsLibrary.KEY_TYPE_USER, VAULT_KEY_DESCRIPTION, 0).intValue();
+            final int length = keyUtils.keyctl_read_alloc(serial, buffer);
+            final byte[] payload = buffer.getValue().getByteArray(0, length);
+            buffer.getValue().clear(length);
+
+            final CharBuffer passphraseBuffer = StandardCharsets.UTF_8.decode(ByteBuffer.wrap(payload));
+            Arrays.fill(payload, (byte) 0);
+            final char[] passphrase = new char[passphraseBuffer.remaining()];
+            passphraseBuffer.get(passphrase);
+            Arrays.fill(passphraseBuffer.array(), (char) 0);
+            return passphrase.length > 0 ? passphrase : null;
+        } catch (final LastErrorException e) {
+            if (e.getErrorCode() != KeyUtilsLibrary.ENOKEY) {
+                logger.info("Reading vault key from the kernel keyring failed: {}", e.getMessage());
+            }
+        } catch (final Throwable t) {
+            logger.debug("Kernel keyring is not available.", t);
+        } finally {
+            final Pointer value = buffer.getValue();
+            if (value != null) {
+                Native.free(Pointer.nativeValue(value));
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Daemon thread compacting the vaults of this process, created on first use.
+     */
+    private static final class Compactor {
+        static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "credential-vault-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
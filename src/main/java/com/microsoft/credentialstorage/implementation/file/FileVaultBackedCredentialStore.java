@@ -0,0 +1,46 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.implementation.file;
+
+import com.microsoft.credentialstorage.model.StoredCredential;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * File vault store for a credential.
+ */
+public final class FileVaultBackedCredentialStore extends FileVaultBackedSecureStore<StoredCredential> {
+    public FileVaultBackedCredentialStore() {
+    }
+
+    public FileVaultBackedCredentialStore(final FileVault vault) {
+        super(vault);
+    }
+
+    @Override
+    public boolean add(final String key, final StoredCredential secret) {
+        Objects.requireNonNull(key, "key cannot be null");
+        Objects.requireNonNull(secret, "secret cannot be null");
+
+        logger.debug("Adding a {} for {}", getType(), key);
+
+        return writeSecret(key, secret.getUsername(), secret.getPassword());
+    }
+
+    @Override
+    protected Map<String, Map.Entry<String, char[]>> toRecords(final String key, final StoredCredential secret) {
+        return Map.of(key, Map.entry(secret.getUsername(), secret.getPassword()));
+    }
+
+    @Override
+    protected StoredCredential create(final String username, final char[] secret) {
+        return new StoredCredential(username, secret);
+    }
+
+    @Override
+    protected String getType() {
+        return "Credential";
+    }
+}
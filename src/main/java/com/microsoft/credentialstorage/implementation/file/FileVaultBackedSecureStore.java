@@ -0,0 +1,273 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.implementation.file;
+
+import com.microsoft.credentialstorage.SecretResult;
+import com.microsoft.credentialstorage.SecretStore;
+import com.microsoft.credentialstorage.model.StoredSecret;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
+import java.util.stream.Stream;
+
+/**
+ * Base class for stores in an encrypted {@link FileVault}.
+ *
+ * Unlike the keyring stores it does not need a desktop session or a daemon, so it suits headless hosts.
+ * It is only as secure as its passphrase, which is configured with {@value FileVault#VAULT_PASSPHRASE}
+ * or kept in the kernel keyring.
+ *
+ * @param <E> secret class to store
+ */
+public abstract class FileVaultBackedSecureStore<E extends StoredSecret> implements SecretStore<E> {
+    protected static final Logger logger = LoggerFactory.getLogger(FileVaultBackedSecureStore.class);
+
+    private final FileVault vault;
+
+    /**
+     * Creates a store using the default vault, see {@link FileVault#getDefault()}.
+     */
+    protected FileVaultBackedSecureStore() {
+        this.vault = null;
+    }
+
+    /**
+     * Creates a store using the specified vault.
+     *
+     * @param vault vault to store the secrets in
+     */
+    protected FileVaultBackedSecureStore(final FileVault vault) {
+        this.vault = Objects.requireNonNull(vault, "vault cannot be null");
+    }
+
+    /**
+     * Read a secret from the vault.
+     *
+     * @param key for which a secret is associated with
+     * @return secret
+     */
+    @Override
+    public E get(final String key) {
+        return getResult(key).getValue();
+    }
+
+    /**
+     * Read a secret from the vault, telling a missing secret from a vault which cannot be opened or read.
+     *
+     * @param key for which a secret is associated with
+     * @return result of the read; {@link SecretResult.Status#UNAVAILABLE} if the vault cannot be opened, e.g.
+     *         without a passphrase, {@link SecretResult.Status#FAILED} if it cannot be read, with the class of
+     *         the exception as domain
+     */
+    @Override
+    public SecretResult<E> getResult(final String key) {
+        Objects.requireNonNull(key, "key cannot be null");
+
+        logger.debug("Getting {} for {}", getType(), key);
+
+        return readSecretResult(key, this::create);
+    }
+
+    /**
+     * Delete a secret from the vault.
+     * @param key for which a secret is associated with
+     * @return true if operation succeeded
+     */
+    @Override
+    public boolean delete(final String key) {
+        Objects.requireNonNull(key, "key cannot be null");
+        logger.debug("Deleting {} for {}", getType(), key);
+
+        return deleteSecret(key);
+    }
+
+    /**
+     * Save a secret unless one is stored for the key, atomically for all processes using the vault,
+     * see {@link FileVault#writeIf(String, Map, Map)}.
+     *
+     * @param key for which a secret is associated with
+     * @param secret secret to be stored
+     * @return {@code true} if the secret was stored
+     */
+    @Override
+    public boolean putIfAbsent(final String key, final E secret) {
+        Objects.requireNonNull(key, "key cannot be null");
+        Objects.requireNonNull(secret, "secret cannot be null");
+        logger.debug("Adding a {} for {} if absent", getType(), key);
+
+        final Map<String, Map.Entry<String, char[]>> updated = toRecords(key, secret);
+        final Map<String, BiPredicate<String, char[]>> expected = new HashMap<>();
+        updated.keySet().forEach(recordKey -> expected.put(recordKey, (account, value) -> value == null));
+        return writeSecretsIf(expected, updated);
+    }
+
+    /**
+     * Replace a secret if it is still the expected secret, atomically for all processes using the vault,
+     * see {@link FileVault#writeIf(String, Map, Map)}.
+     *
+     * @param key for which a secret is associated with
+     * @param expected secret expected to be stored
+     * @param updated secret to be stored
+     * @return {@code true} if the secret was replaced
+     */
+    @Override
+    public boolean replace(final String key, final E expected, final E updated) {
+        Objects.requireNonNull(key, "key cannot be null");
+        Objects.requireNonNull(expected, "expected cannot be null");
+        Objects.requireNonNull(updated, "updated cannot be null");
+        logger.debug("Replacing a {} for {}", getType(), key);
+
+        return writeSecretsIf(matching(key, expected), toRecords(key, updated));
+    }
+
+    /**
+     * List the keys of the secrets of this type, decrypted page by page, see {@link FileVault#keys(String)}.
+     *
+     * @return keys of the secrets
+     */
+    @Override
+    public Stream<String> keys() {
+        logger.debug("Listing {} keys", getType());
+
+        try {
+            return getVault().keys(getType());
+        } catch (final IOException e) {
+            logger.error("Listing secrets failed. {}", e.getMessage());
+            return Stream.empty();
+        }
+    }
+
+    /**
+     * The vault is encrypted and considered secure
+     *
+     * @return {@code true} for the file vault
+     */
+    @Override
+    public boolean isSecure() {
+        return true;
+    }
+
+    /**
+     * Check whether the default vault can be opened, i.e. whether a passphrase is configured and matches the one
+     * the vault header was written with. The default vault is opened, and created if it does not exist.
+     *
+     * @return {@code true} if the default vault can be opened; {@code false} otherwise
+     */
+    public static boolean isSupported() {
+        if (!FileVault.isConfigured()) {
+            return false;
+        }
+
+        try {
+            FileVault.getDefault();
+            return true;
+        } catch (final IOException e) {
+            logger.warn("The file vault cannot be opened. {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Create a {@code Secret} from the string representation
+     *
+     * @param username
+     *      username for the secret
+     * @param secret
+     *      password, oauth2 access token, or Personal Access Token
+     *
+     * @return a {@code Secret} from the input
+     */
+    protected abstract E create(String username, char[] secret);
+
+    /**
+     * Return the type of this secure store, used to match the secret in the vault
+     *
+     * @return type string representation of the secret type
+     */
+    protected abstract String getType();
+
+    /**
+     * Records of a secret in the vault
+     *
+     * @param key key of the secret
+     * @param secret the secret
+     * @return record keys to their account and secret
+     */
+    protected abstract Map<String, Map.Entry<String, char[]>> toRecords(String key, E secret);
+
+    /**
+     * Predicates matching the records of a secret, as the secret would be read
+     *
+     * @param key key of the secret
+     * @param expected the secret
+     * @return record keys to a predicate of their account and secret
+     */
+    protected Map<String, BiPredicate<String, char[]>> matching(final String key, final E expected) {
+        return Map.of(key, (account, secret) -> secret != null && expected.equals(create(account, secret)));
+    }
+
+    protected <T> T readSecret(final String key, final BiFunction<String, char[], T> mapper) {
+        return readSecretResult(key, mapper).getValue();
+    }
+
+    protected <T> SecretResult<T> readSecretResult(final String key, final BiFunction<String, char[], T> mapper) {
+        final FileVault opened;
+        try {
+            opened = getVault();
+        } catch (final IOException e) {
+            logger.error("Opening the vault failed. {}", e.getMessage());
+            return toResult(SecretResult.Status.UNAVAILABLE, e);
+        }
+
+        try {
+            return SecretResult.of(opened.read(getType(), key, mapper));
+        } catch (final IOException e) {
+            logger.error("Getting secret failed. {}", e.getMessage());
+            return toResult(SecretResult.Status.FAILED, e);
+        }
+    }
+
+    protected boolean writeSecret(final String key, final String account, final char[] secret) {
+        try {
+            getVault().write(getType(), key, account, secret);
+            return true;
+        } catch (final IOException e) {
+            logger.error("Adding secret failed. {}", e.getMessage());
+            return false;
+        }
+    }
+
+    protected boolean writeSecretsIf(final Map<String, BiPredicate<String, char[]>> expected,
+                                     final Map<String, Map.Entry<String, char[]>> updated) {
+        try {
+            return getVault().writeIf(getType(), expected, updated);
+        } catch (final IOException e) {
+            logger.error("Adding secret failed. {}", e.getMessage());
+            return false;
+        }
+    }
+
+    protected boolean deleteSecret(final String key) {
+        try {
+            return getVault().delete(getType(), key);
+        } catch (final IOException e) {
+            logger.error("Deleting secret failed. {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private static <T> SecretResult<T> toResult(final SecretResult.Status status, final IOException e) {
+        return SecretResult.failed(status, e.getClass().getName(), 0, e.getMessage());
+    }
+
+    private FileVault getVault() throws IOException {
+        return vault != null ? vault : FileVault.getDefault();
+    }
+}
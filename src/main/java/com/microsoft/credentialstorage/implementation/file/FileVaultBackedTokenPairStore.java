@@ -0,0 +1,127 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.implementation.file;
+
+import com.microsoft.credentialstorage.SecretResult;
+import com.microsoft.credentialstorage.model.StoredToken;
+import com.microsoft.credentialstorage.model.StoredTokenPair;
+import com.microsoft.credentialstorage.model.StoredTokenType;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiPredicate;
+import java.util.stream.Stream;
+
+/**
+ * File vault store for a token pair.
+ */
+public final class FileVaultBackedTokenPairStore extends FileVaultBackedSecureStore<StoredTokenPair> {
+    private static final String ACCESS_TOKEN = "/accessToken";
+    private static final String REFRESH_TOKEN = "/refreshToken";
+
+    public FileVaultBackedTokenPairStore() {
+    }
+
+    public FileVaultBackedTokenPairStore(final FileVault vault) {
+        super(vault);
+    }
+
+    @Override
+    public SecretResult<StoredTokenPair> getResult(final String key) {
+        Objects.requireNonNull(key, "key cannot be null");
+
+        logger.debug("Getting {} for {}", getType(), key);
+
+        final SecretResult<StoredToken> accessToken = readSecretResult(key + ACCESS_TOKEN,
+                (userName, password) -> new StoredToken(password, StoredTokenType.ACCESS));
+        if (accessToken.isFailure()) {
+            return accessToken.asFailure();
+        }
+        final SecretResult<StoredToken> refreshToken = readSecretResult(key + REFRESH_TOKEN,
+                (userName, password) -> new StoredToken(password, StoredTokenType.REFRESH));
+        if (refreshToken.isFailure()) {
+            return refreshToken.asFailure();
+        }
+
+        // no token found
+        if (!accessToken.isFound() && !refreshToken.isFound()) {
+            return SecretResult.notFound();
+        }
+
+        return SecretResult.found(new StoredTokenPair(accessToken.getValue(), refreshToken.getValue()));
+    }
+
+    /**
+     * Save both tokens in a single write, so that readers never see the access token of one pair with the refresh
+     * token of another, see {@link FileVault#writeIf(String, Map, Map)}.
+     *
+     * @param key for which the token pair is associated with
+     * @param secret token pair to be stored
+     * @return {@code true} if the token pair was stored
+     */
+    @Override
+    public boolean add(final String key, final StoredTokenPair secret) {
+        Objects.requireNonNull(key, "key cannot be null");
+        Objects.requireNonNull(secret, "secret cannot be null");
+
+        logger.debug("Adding a {} for {}", getType(), key);
+
+        return writeSecretsIf(Map.of(), toRecords(key, secret));
+    }
+
+    @Override
+    public boolean delete(final String key) {
+        Objects.requireNonNull(key, "key cannot be null");
+
+        logger.debug("Deleting {} for {}", getType(), key);
+
+        final boolean accessDeleted = deleteSecret(key + ACCESS_TOKEN);
+        final boolean refreshDeleted = deleteSecret(key + REFRESH_TOKEN);
+        return accessDeleted && refreshDeleted;
+    }
+
+    /**
+     * List the keys of the token pairs, whose tokens are stored under the key with a suffix.
+     *
+     * @return keys of the token pairs
+     */
+    @Override
+    public Stream<String> keys() {
+        return super.keys()
+                .filter(key -> key.endsWith(ACCESS_TOKEN) || key.endsWith(REFRESH_TOKEN))
+                .map(key -> key.substring(0, key.lastIndexOf('/')))
+                .distinct();
+    }
+
+    @Override
+    protected Map<String, Map.Entry<String, char[]>> toRecords(final String key, final StoredTokenPair secret) {
+        return Map.of(
+                key + ACCESS_TOKEN, Map.entry(secret.getAccessToken().getType().getDescription(),
+                        secret.getAccessToken().getValue()),
+                key + REFRESH_TOKEN, Map.entry(secret.getRefreshToken().getType().getDescription(),
+                        secret.getRefreshToken().getValue()));
+    }
+
+    /**
+     * Match the token values only, like {@link #get(String)} which ignores the stored token types
+     */
+    @Override
+    protected Map<String, BiPredicate<String, char[]>> matching(final String key, final StoredTokenPair expected) {
+        return Map.of(
+                key + ACCESS_TOKEN, (account, secret) -> Arrays.equals(secret, expected.getAccessToken().getValue()),
+                key + REFRESH_TOKEN, (account, secret) -> Arrays.equals(secret, expected.getRefreshToken().getValue()));
+    }
+
+    @Override
+    protected StoredTokenPair create(final String username, final char[] secret) {
+        // not used
+        return null;
+    }
+
+    @Override
+    protected String getType() {
+        return "OAuth2Token";
+    }
+}
@@ -0,0 +1,47 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.implementation.file;
+
+import com.microsoft.credentialstorage.model.StoredToken;
+import com.microsoft.credentialstorage.model.StoredTokenType;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * File vault store for a token.
+ */
+public final class FileVaultBackedTokenStore extends FileVaultBackedSecureStore<StoredToken> {
+    public FileVaultBackedTokenStore() {
+    }
+
+    public FileVaultBackedTokenStore(final FileVault vault) {
+        super(vault);
+    }
+
+    @Override
+    protected StoredToken create(final String username, final char[] secret) {
+        return new StoredToken(secret, StoredTokenType.fromDescription(username));
+    }
+
+    @Override
+    public boolean add(final String key, final StoredToken token) {
+        Objects.requireNonNull(key, "key cannot be null");
+        Objects.requireNonNull(token, "secret cannot be null");
+
+        logger.debug("Adding a {} for {}", getType(), key);
+
+        return writeSecret(key, token.getType().getDescription(), token.getValue());
+    }
+
+    @Override
+    protected Map<String, Map.Entry<String, char[]>> toRecords(final String key, final StoredToken token) {
+        return Map.of(key, Map.entry(token.getType().getDescription(), token.getValue()));
+    }
+
+    @Override
+    protected String getType() {
+        return "Token";
+    }
+}
@@ -0,0 +1,63 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.implementation.file;
+
+import com.microsoft.credentialstorage.SecretStore;
+import com.microsoft.credentialstorage.SecretStoreProvider;
+import com.microsoft.credentialstorage.model.StoredCredential;
+import com.microsoft.credentialstorage.model.StoredToken;
+import com.microsoft.credentialstorage.model.StoredTokenPair;
+
+/**
+ * Provider of the encrypted file vault stores, used when a passphrase is configured.
+ */
+public final class FileVaultStoreProvider implements SecretStoreProvider {
+    @Override
+    public String getName() {
+        return "file vault";
+    }
+
+    @Override
+    public int getPriority() {
+        return 200;
+    }
+
+    @Override
+    public boolean isSecure() {
+        return true;
+    }
+
+    @Override
+    public boolean isPersistent() {
+        return true;
+    }
+
+    @Override
+    public boolean isLikelySupported() {
+        // on Linux, the passphrase may also be in the kernel keyring
+        return System.getProperty(FileVault.VAULT_PASSPHRASE) != null
+                || System.getenv(FileVault.VAULT_PASSPHRASE) != null
+                || System.getProperty("os.name").equals("Linux");
+    }
+
+    @Override
+    public boolean isSupported() {
+        return FileVaultBackedSecureStore.isSupported();
+    }
+
+    @Override
+    public SecretStore<StoredCredential> createCredentialStore() {
+        return new FileVaultBackedCredentialStore();
+    }
+
+    @Override
+    public SecretStore<StoredToken> createTokenStore() {
+        return new FileVaultBackedTokenStore();
+    }
+
+    @Override
+    public SecretStore<StoredTokenPair> createTokenPairStore() {
+        return new FileVaultBackedTokenPairStore();
+    }
+}
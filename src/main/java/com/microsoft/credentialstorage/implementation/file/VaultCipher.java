@@ -0,0 +1,151 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.implementation.file;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ * Keys and primitives of a file vault.
+ *
+ * A master key is derived from the passphrase with PBKDF2; separate keys for the AES-GCM record encryption
+ * and for the keyed hash of the index are derived from it, so the index does not reveal the secret keys.
+ */
+final class VaultCipher {
+    static final int SALT_LENGTH = 16;
+    static final int NONCE_LENGTH = 12;
+    static final int TAG_LENGTH = 16;
+
+    private static final String KDF_ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final String CIPHER_ALGORITHM = "AES/GCM/NoPadding";
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final int KEY_LENGTH_BITS = 256;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final SecretKeySpec recordKey;
+    private final SecretKeySpec indexKey;
+
+    private final ThreadLocal<Mac> indexMac = ThreadLocal.withInitial(this::newIndexMac);
+
+    private VaultCipher(final byte[] masterKey) throws GeneralSecurityException {
+        final byte[] recordKeyBytes = derive(masterKey, "credential-secure-storage/records");
+        final byte[] indexKeyBytes = derive(masterKey, "credential-secure-storage/index");
+        try {
+            this.recordKey = new SecretKeySpec(recordKeyBytes, "AES");
+            this.indexKey = new SecretKeySpec(indexKeyBytes, MAC_ALGORITHM);
+        } finally {
+            Arrays.fill(recordKeyBytes, (byte) 0);
+            Arrays.fill(indexKeyBytes, (byte) 0);
+        }
+    }
+
+    static VaultCipher fromPassphrase(final char[] passphrase, final byte[] salt, final int iterations)
+            throws GeneralSecurityException {
+        final PBEKeySpec spec = new PBEKeySpec(passphrase, salt, iterations, KEY_LENGTH_BITS);
+        try {
+            final byte[] masterKey = SecretKeyFactory.getInstance(KDF_ALGORITHM).generateSecret(spec).getEncoded();
+            try {
+                return new VaultCipher(masterKey);
+            } finally {
+                Arrays.fill(masterKey, (byte) 0);
+            }
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    static byte[] randomBytes(final int length) {
+        final byte[] bytes = new byte[length];
+        RANDOM.nextBytes(bytes);
+        return bytes;
+    }
+
+    static long randomLong() {
+        return RANDOM.nextLong();
+    }
+
+    /**
+     * Encrypt the plaintext.
+     *
+     * @param aad additional data authenticated with the ciphertext
+     * @param plaintext data to encrypt
+     * @return nonce followed by the ciphertext and the authentication tag
+     */
+    byte[] encrypt(final byte[] aad, final byte[] plaintext) throws GeneralSecurityException {
+        final byte[] nonce = randomBytes(NONCE_LENGTH);
+        final Cipher cipher = Cipher.getInstance(CIPHER_ALGORITHM);
+        cipher.init(Cipher.ENCRYPT_MODE, recordKey, new GCMParameterSpec(TAG_LENGTH * 8, nonce));
+        cipher.updateAAD(aad);
+
+        final byte[] output = new byte[NONCE_LENGTH + cipher.getOutputSize(plaintext.length)];
+        System.arraycopy(nonce, 0, output, 0, NONCE_LENGTH);
+        cipher.doFinal(plaintext, 0, plaintext.length, output, NONCE_LENGTH);
+        return output;
+    }
+
+    /**
+     * Decrypt and authenticate data produced by {@link #encrypt(byte[], byte[])}.
+     *
+     * @param aad additional data authenticated with the ciphertext
+     * @param input buffer holding the nonce, the ciphertext and the tag
+     * @param offset offset of the nonce in the buffer
+     * @param length length of the nonce, the ciphertext and the tag
+     * @return plaintext
+     * @throws GeneralSecurityException if the data or the additional data was tampered with
+     */
+    byte[] decrypt(final byte[] aad, final byte[] input, final int offset, final int length)
+            throws GeneralSecurityException {
+        final Cipher cipher = Cipher.getInstance(CIPHER_ALGORITHM);
+        cipher.init(Cipher.DECRYPT_MODE, recordKey, new GCMParameterSpec(TAG_LENGTH * 8, input, offset, NONCE_LENGTH));
+        cipher.updateAAD(aad);
+        return cipher.doFinal(input, offset + NONCE_LENGTH, length - NONCE_LENGTH);
+    }
+
+    /**
+     * Keyed hash of a secret key, used to locate it in the index.
+     *
+     * @param type type of the secret
+     * @param key key of the secret
+     * @return non-zero hash
+     */
+    long hash(final String type, final String key) {
+        final Mac mac = indexMac.get();
+        mac.update(type.getBytes(StandardCharsets.UTF_8));
+        mac.update((byte) 0);
+        final byte[] digest = mac.doFinal(key.getBytes(StandardCharsets.UTF_8));
+
+        long hash = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            hash = (hash << 8) | (digest[i] & 0xffL);
+        }
+
+        // zero marks an empty slot in the index
+        return hash == 0 ? 1 : hash;
+    }
+
+    private Mac newIndexMac() {
+        try {
+            final Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(indexKey);
+            return mac;
+        } catch (final GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] derive(final byte[] masterKey, final String label) throws GeneralSecurityException {
+        final Mac mac = Mac.getInstance(MAC_ALGORITHM);
+        mac.init(new SecretKeySpec(masterKey, MAC_ALGORITHM));
+        return mac.doFinal(label.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,269 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.implementation.file;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Memory-mapped open addressing hash table from the keyed hash of a secret key to the offset
+ * of its latest record in the vault log.
+ *
+ * The index is derived data: it records which log it belongs to and how much of it is indexed,
+ * and is rebuilt from the log whenever it does not match. Removed keys leave a tombstone so
+ * that linear probe sequences stay intact.
+ */
+final class VaultIndex implements Closeable {
+    static final long NOT_FOUND = 0L;
+
+    private static final int MAGIC = 0x43535349; // CSSI
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 64;
+    private static final int SLOT_SIZE = 16;
+    private static final int MIN_CAPACITY = 64;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int USED_OFFSET = 12;
+    private static final int LOG_ID_OFFSET = 16;
+    private static final int INDEXED_LENGTH_OFFSET = 24;
+    private static final int DEAD_BYTES_OFFSET = 32;
+    private static final int LAST_SEQUENCE_OFFSET = 40;
+    private static final int LIVE_OFFSET = 48;
+
+    private static final long TOMBSTONE = -1L;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final int mask;
+
+    private VaultIndex(final FileChannel channel, final MappedByteBuffer buffer, final int capacity) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Open an existing index.
+     *
+     * @param path index file
+     * @param logId identifier of the log the index has to belong to
+     * @return index, or {@code null} if the file is missing, damaged or belongs to another log
+     */
+    static VaultIndex open(final Path path, final long logId) throws IOException {
+        if (!path.toFile().isFile()) {
+            return null;
+        }
+
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            final long size = channel.size();
+            if (size >= HEADER_SIZE) {
+                final MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+                final int capacity = header.getInt(CAPACITY_OFFSET);
+                if (header.getInt(MAGIC_OFFSET) == MAGIC && header.getInt(VERSION_OFFSET) == VERSION
+                        && header.getLong(LOG_ID_OFFSET) == logId
+                        && Integer.bitCount(capacity) == 1 && size == HEADER_SIZE + (long) capacity * SLOT_SIZE) {
+                    final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                    return new VaultIndex(channel, buffer, capacity);
+                }
+            }
+        } catch (final IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+
+        channel.close();
+        return null;
+    }
+
+    /**
+     * Create an empty index, replacing the file if it exists.
+     *
+     * @param path index file
+     * @param logId identifier of the log the index belongs to
+     * @param expectedEntries number of keys the index should hold without growing
+     * @return index
+     */
+    static VaultIndex create(final Path path, final long logId, final long expectedEntries) throws IOException {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedEntries * 2 && capacity < (1 << 26)) {
+            capacity <<= 1;
+        }
+
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            final long size = HEADER_SIZE + (long) capacity * SLOT_SIZE;
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(VERSION_OFFSET, VERSION);
+            buffer.putInt(CAPACITY_OFFSET, capacity);
+            buffer.putLong(LOG_ID_OFFSET, logId);
+            // written last, a partially initialized file is never taken for a valid index
+            buffer.putInt(MAGIC_OFFSET, MAGIC);
+            return new VaultIndex(channel, buffer, capacity);
+        } catch (final IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Look up the record offset of a key.
+     *
+     * @param hash keyed hash of the key
+     * @return offset of the latest record, or {@link #NOT_FOUND}
+     */
+    long get(final long hash) {
+        for (int i = (int) hash & mask, probes = 0; probes < capacity; i = (i + 1) & mask, probes++) {
+            final long slotHash = buffer.getLong(slotPosition(i));
+            if (slotHash == 0L) {
+                return NOT_FOUND;
+            }
+            if (slotHash == hash) {
+                final long offset = buffer.getLong(slotPosition(i) + Long.BYTES);
+                return offset == TOMBSTONE ? NOT_FOUND : offset;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Point a key to a new record.
+     *
+     * @param hash keyed hash of the key
+     * @param offset offset of the record
+     * @return offset of the previous record of the key, or {@link #NOT_FOUND}
+     */
+    long put(final long hash, final long offset) {
+        final int position = findSlot(hash);
+        final long slotHash = buffer.getLong(position);
+        final long previous = slotHash == 0L ? TOMBSTONE : buffer.getLong(position + Long.BYTES);
+
+        // offset first, so that a concurrent reader never sees the hash without its offset
+        buffer.putLong(position + Long.BYTES, offset);
+        if (slotHash == 0L) {
+            buffer.putLong(position, hash);
+            buffer.putInt(USED_OFFSET, buffer.getInt(USED_OFFSET) + 1);
+        }
+
+        if (previous == TOMBSTONE) {
+            buffer.putInt(LIVE_OFFSET, buffer.getInt(LIVE_OFFSET) + 1);
+            return NOT_FOUND;
+        }
+        return previous;
+    }
+
+    /**
+     * Remove a key.
+     *
+     * @param hash keyed hash of the key
+     * @return offset of the removed record, or {@link #NOT_FOUND}
+     */
+    long remove(final long hash) {
+        final int position = findSlot(hash);
+        if (buffer.getLong(position) == 0L) {
+            return NOT_FOUND;
+        }
+
+        final long previous = buffer.getLong(position + Long.BYTES);
+        if (previous == TOMBSTONE) {
+            return NOT_FOUND;
+        }
+
+        buffer.putLong(position + Long.BYTES, TOMBSTONE);
+        buffer.putInt(LIVE_OFFSET, buffer.getInt(LIVE_OFFSET) - 1);
+        return previous;
+    }
+
+    /**
+     * Visit the live keys.
+     *
+     * @param visitor receives the keyed hash and the record offset of each live key
+     */
+    void forEach(final SlotVisitor visitor) throws IOException {
+        for (int i = 0; i < capacity; i++) {
+            final int position = slotPosition(i);
+            final long hash = buffer.getLong(position);
+            if (hash != 0L) {
+                final long offset = buffer.getLong(position + Long.BYTES);
+                if (offset != TOMBSTONE && offset != NOT_FOUND) {
+                    visitor.visit(hash, offset);
+                }
+            }
+        }
+    }
+
+    boolean needsResize() {
+        return (long) buffer.getInt(USED_OFFSET) * 2 > capacity;
+    }
+
+    int getLiveCount() {
+        return buffer.getInt(LIVE_OFFSET);
+    }
+
+    long getIndexedLength() {
+        return buffer.getLong(INDEXED_LENGTH_OFFSET);
+    }
+
+    void setIndexedLength(final long indexedLength) {
+        buffer.putLong(INDEXED_LENGTH_OFFSET, indexedLength);
+    }
+
+    long getDeadBytes() {
+        return buffer.getLong(DEAD_BYTES_OFFSET);
+    }
+
+    void setDeadBytes(final long deadBytes) {
+        buffer.putLong(DEAD_BYTES_OFFSET, deadBytes);
+    }
+
+    long getLastSequence() {
+        return buffer.getLong(LAST_SEQUENCE_OFFSET);
+    }
+
+    void setLastSequence(final long lastSequence) {
+        buffer.putLong(LAST_SEQUENCE_OFFSET, lastSequence);
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private int findSlot(final long hash) {
+        for (int i = (int) hash & mask, probes = 0; probes < capacity; i = (i + 1) & mask, probes++) {
+            final int position = slotPosition(i);
+            final long slotHash = buffer.getLong(position);
+            if (slotHash == hash || slotHash == 0L) {
+                return position;
+            }
+        }
+
+        throw new IllegalStateException("Vault index is full");
+    }
+
+    private static int slotPosition(final int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    /**
+     * Receives the live slots of the index.
+     */
+    interface SlotVisitor {
+        void visit(long hash, long offset) throws IOException;
+    }
+}
@@ -3,10 +3,13 @@
 
 package com.microsoft.credentialstorage.implementation.macosx;
 
+import com.microsoft.credentialstorage.SecretResult;
 import com.microsoft.credentialstorage.SecretStore;
 import com.microsoft.credentialstorage.model.StoredCredential;
 
+import java.util.Collections;
 import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * Keychain store for a credential.
@@ -16,19 +19,17 @@ public final class KeychainSecurityBackedCredentialStore extends KeychainSecurit
 
     @Override
     public StoredCredential get(final String key) {
-        final Map<String, Object> metaData = read(SecretKind.Credential, key);
-
-        final StoredCredential result;
-        if (!metaData.isEmpty()) {
-            final String userName = (String) metaData.get(ACCOUNT_METADATA);
-            final String password = (String) metaData.get(PASSWORD);
+        return toCredential(read(SecretKind.Credential, key));
+    }
 
-            result = new StoredCredential(userName, password.toCharArray());
-        } else {
-            result = null;
+    @Override
+    public SecretResult<StoredCredential> getResult(final String key) {
+        final SecretResult<Map<String, Object>> metaData = readResult(SecretKind.Credential, key);
+        if (metaData.isFailure()) {
+            return metaData.asFailure();
         }
 
-        return result;
+        return SecretResult.of(toCredential(metaData.isFound() ? metaData.getValue() : Collections.emptyMap()));
     }
 
     @Override
@@ -48,6 +49,16 @@ public final class KeychainSecurityBackedCredentialStore extends KeychainSecurit
         return deleteByKind(key, SecretKind.Credential);
     }
 
+    /**
+     * List the keys of the secrets, streamed from {@code security dump-keychain}.
+     *
+     * @return keys of the secrets
+     */
+    @Override
+    public Stream<String> keys() {
+        return listServices(SecretKind.Credential);
+    }
+
     /**
      * Keychain Access is secure
      *
@@ -57,4 +68,18 @@ public final class KeychainSecurityBackedCredentialStore extends KeychainSecurit
     public boolean isSecure() {
         return true;
     }
+
+    private static StoredCredential toCredential(final Map<String, Object> metaData) {
+        final StoredCredential result;
+        if (!metaData.isEmpty()) {
+            final String userName = (String) metaData.get(ACCOUNT_METADATA);
+            final String password = (String) metaData.get(PASSWORD);
+
+            result = new StoredCredential(userName, password.toCharArray());
+        } else {
+            result = null;
+        }
+
+        return result;
+    }
 }
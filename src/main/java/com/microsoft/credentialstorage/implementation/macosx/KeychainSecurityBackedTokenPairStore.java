@@ -3,10 +3,13 @@
 
 package com.microsoft.credentialstorage.implementation.macosx;
 
+import com.microsoft.credentialstorage.SecretResult;
 import com.microsoft.credentialstorage.SecretStore;
 import com.microsoft.credentialstorage.model.StoredTokenPair;
 
+import java.util.Collections;
 import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * Keychain store for a token pair.
@@ -15,29 +18,24 @@ public final class KeychainSecurityBackedTokenPairStore extends KeychainSecurity
 
     @Override
     public StoredTokenPair get(final String key) {
-        char[] accessToken, refreshToken;
-
-        final Map<String, Object> accessTokenMetaData = read(SecretKind.TokenPair_Access_Token, key);
-
-        if (accessTokenMetaData.size() > 0) {
-            accessToken = ((String) accessTokenMetaData.get(PASSWORD)).toCharArray();
-        } else {
-            accessToken = null;
-        }
-
-        final Map<String, Object> refreshTokenMetaData = read(SecretKind.TokenPair_Refresh_Token, key);
+        return toTokenPair(read(SecretKind.TokenPair_Access_Token, key),
+                read(SecretKind.TokenPair_Refresh_Token, key));
+    }
 
-        if (refreshTokenMetaData.size() > 0) {
-            refreshToken = ((String) refreshTokenMetaData.get(PASSWORD)).toCharArray();
-        } else {
-            refreshToken = null;
+    @Override
+    public SecretResult<StoredTokenPair> getResult(final String key) {
+        final SecretResult<Map<String, Object>> accessTokenMetaData = readResult(SecretKind.TokenPair_Access_Token, key);
+        if (accessTokenMetaData.isFailure()) {
+            return accessTokenMetaData.asFailure();
         }
-
-        if (accessToken != null && refreshToken != null) {
-            return new StoredTokenPair(accessToken, refreshToken);
+        final SecretResult<Map<String, Object>> refreshTokenMetaData = readResult(SecretKind.TokenPair_Refresh_Token, key);
+        if (refreshTokenMetaData.isFailure()) {
+            return refreshTokenMetaData.asFailure();
         }
 
-        return null;
+        return SecretResult.of(toTokenPair(
+                accessTokenMetaData.isFound() ? accessTokenMetaData.getValue() : Collections.emptyMap(),
+                refreshTokenMetaData.isFound() ? refreshTokenMetaData.getValue() : Collections.emptyMap()));
     }
 
     @Override
@@ -58,6 +56,16 @@ public final class KeychainSecurityBackedTokenPairStore extends KeychainSecurity
                 && deleteByKind(targetName, SecretKind.TokenPair_Refresh_Token);
     }
 
+    /**
+     * List the keys of the secrets, streamed from {@code security dump-keychain}.
+     *
+     * @return keys of the secrets
+     */
+    @Override
+    public Stream<String> keys() {
+        return listServices(SecretKind.TokenPair_Access_Token, SecretKind.TokenPair_Refresh_Token).distinct();
+    }
+
     /**
      * Keychain Access is secure
      *
@@ -67,4 +75,27 @@ public final class KeychainSecurityBackedTokenPairStore extends KeychainSecurity
     public boolean isSecure() {
         return true;
     }
+
+    private static StoredTokenPair toTokenPair(final Map<String, Object> accessTokenMetaData,
+                                               final Map<String, Object> refreshTokenMetaData) {
+        char[] accessToken, refreshToken;
+
+        if (accessTokenMetaData.size() > 0) {
+            accessToken = ((String) accessTokenMetaData.get(PASSWORD)).toCharArray();
+        } else {
+            accessToken = null;
+        }
+
+        if (refreshTokenMetaData.size() > 0) {
+            refreshToken = ((String) refreshTokenMetaData.get(PASSWORD)).toCharArray();
+        } else {
+            refreshToken = null;
+        }
+
+        if (accessToken != null && refreshToken != null) {
+            return new StoredTokenPair(accessToken, refreshToken);
+        }
+
+        return null;
+    }
 }
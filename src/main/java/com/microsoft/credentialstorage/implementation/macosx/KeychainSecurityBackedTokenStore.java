@@ -4,10 +4,13 @@
 package com.microsoft.credentialstorage.implementation.macosx;
 
 import com.microsoft.credentialstorage.model.StoredTokenType;
+import com.microsoft.credentialstorage.SecretResult;
 import com.microsoft.credentialstorage.SecretStore;
 import com.microsoft.credentialstorage.model.StoredToken;
 
+import java.util.Collections;
 import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * Keychain store for a token.
@@ -16,19 +19,17 @@ public final class KeychainSecurityBackedTokenStore extends KeychainSecurityCliS
 
     @Override
     public StoredToken get(final String key) {
-        final Map<String, Object> metaData = read(SecretKind.Token, key);
-
-        final StoredToken result;
-        if (metaData.size() > 0) {
-            final String typeName = (String) metaData.get(ACCOUNT_METADATA);
-            final String secret = (String) metaData.get(PASSWORD);
+        return toToken(read(SecretKind.Token, key));
+    }
 
-            result = new StoredToken(secret.toCharArray(), StoredTokenType.fromDescription(typeName));
-        } else {
-            result = null;
+    @Override
+    public SecretResult<StoredToken> getResult(final String key) {
+        final SecretResult<Map<String, Object>> metaData = readResult(SecretKind.Token, key);
+        if (metaData.isFailure()) {
+            return metaData.asFailure();
         }
 
-        return result;
+        return SecretResult.of(toToken(metaData.isFound() ? metaData.getValue() : Collections.emptyMap()));
     }
 
     @Override
@@ -42,6 +43,16 @@ public final class KeychainSecurityBackedTokenStore extends KeychainSecurityCliS
         return deleteByKind(targetName, SecretKind.Token);
     }
 
+    /**
+     * List the keys of the secrets, streamed from {@code security dump-keychain}.
+     *
+     * @return keys of the secrets
+     */
+    @Override
+    public Stream<String> keys() {
+        return listServices(SecretKind.Token);
+    }
+
     /**
      * Keychain Access is secure
      *
@@ -51,4 +62,18 @@ public final class KeychainSecurityBackedTokenStore extends KeychainSecurityCliS
     public boolean isSecure() {
         return true;
     }
+
+    private static StoredToken toToken(final Map<String, Object> metaData) {
+        final StoredToken result;
+        if (metaData.size() > 0) {
+            final String typeName = (String) metaData.get(ACCOUNT_METADATA);
+            final String secret = (String) metaData.get(PASSWORD);
+
+            result = new StoredToken(secret.toCharArray(), StoredTokenType.fromDescription(typeName));
+        } else {
+            result = null;
+        }
+
+        return result;
+    }
 }
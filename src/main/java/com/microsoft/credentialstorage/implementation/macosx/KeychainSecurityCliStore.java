@@ -3,6 +3,7 @@
 
 package com.microsoft.credentialstorage.implementation.macosx;
 
+import com.microsoft.credentialstorage.SecretResult;
 import com.microsoft.credentialstorage.model.StoredToken;
 
 import java.io.BufferedReader;
@@ -11,10 +12,19 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class KeychainSecurityCliStore {
 
@@ -22,6 +32,7 @@ public class KeychainSecurityCliStore {
     private static final String DELETE_GENERIC_PASSWORD = "delete-generic-password";
     private static final String FIND_GENERIC_PASSWORD = "find-generic-password";
     private static final String ADD_GENERIC_PASSWORD = "add-generic-password";
+    private static final String DUMP_KEYCHAIN = "dump-keychain";
     private static final String ACCOUNT_PARAMETER = "-a";
     private static final String SERVICE_PARAMETER = "-s";
     private static final String KIND_PARAMETER = "-D";
@@ -29,6 +40,7 @@ public class KeychainSecurityCliStore {
     private static final String UPDATE_IF_ALREADY_EXISTS = "-U";
     private static final int ITEM_NOT_FOUND_EXIT_CODE = 44;
     private static final int USER_INTERACTION_NOT_ALLOWED_EXIT_CODE = 36;
+    private static final String SECURITY_ERROR_DOMAIN = "security";
     private static final String INTERACTIVE_MODE = "-i";
 
     protected static final String ACCOUNT_METADATA = "acct";
@@ -40,6 +52,15 @@ public class KeychainSecurityCliStore {
                     "^(\\w+):\\s\"(.+)\""
             );
 
+    private static final String ITEM_START = "keychain: ";
+    private static final String GENERIC_PASSWORD_CLASS = "class: \"genp\"";
+
+    private static final Pattern DumpAttributeLinePattern = Pattern.compile
+            (
+                    //   ^\s*"(desc|svce)"<blob>="(.*)"$
+                    "^\\s*\"(desc|svce)\"<blob>=\"(.*)\"$"
+            );
+
     enum SecretKind {
         Credential,
         Token,
@@ -84,6 +105,83 @@ public class KeychainSecurityCliStore {
         }
     }
 
+    /**
+     * List the service names of the generic passwords of the given kinds, streaming the output
+     * of {@code security dump-keychain} as it is consumed. Closing the stream stops the process.
+     *
+     * @param kinds kinds of the secrets to list
+     * @return service names, which are the keys of the secrets
+     */
+    protected static Stream<String> listServices(final SecretKind... kinds) {
+        final Set<String> kindNames = new HashSet<>();
+        Arrays.stream(kinds).forEach(kind -> kindNames.add(kind.name()));
+
+        final Process process;
+        try {
+            process = new ProcessBuilder(SECURITY, DUMP_KEYCHAIN)
+                    .redirectError(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+        } catch (final IOException e) {
+            throw new Error(e);
+        }
+
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+        final Spliterator<String> spliterator = new Spliterators.AbstractSpliterator<String>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            private boolean genericPassword;
+            private String kind;
+            private String service;
+
+            @Override
+            public boolean tryAdvance(final Consumer<? super String> action) {
+                try {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (line.startsWith(ITEM_START)) {
+                            if (acceptItem(action)) {
+                                return true;
+                            }
+                        } else if (GENERIC_PASSWORD_CLASS.equals(line)) {
+                            genericPassword = true;
+                        } else {
+                            final Matcher matcher = DumpAttributeLinePattern.matcher(line);
+                            if (matcher.matches()) {
+                                if ("desc".equals(matcher.group(1))) {
+                                    kind = matcher.group(2);
+                                } else {
+                                    service = matcher.group(2);
+                                }
+                            }
+                        }
+                    }
+                    return acceptItem(action);
+                } catch (final IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            private boolean acceptItem(final Consumer<? super String> action) {
+                final boolean accepted = genericPassword && service != null && kindNames.contains(kind);
+                if (accepted) {
+                    action.accept(service);
+                }
+                genericPassword = false;
+                kind = null;
+                service = null;
+                return accepted;
+            }
+        };
+
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            process.destroy();
+            try {
+                reader.close();
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
     private static Map<String, Object> parseKeychainMetaData(final String metadata) {
         final Map<String, Object> result = new HashMap<>();
         parseKeychainMetaData(metadata, result);
@@ -263,15 +361,39 @@ public class KeychainSecurityCliStore {
             if (result == USER_INTERACTION_NOT_ALLOWED_EXIT_CODE) {
                 throw new SecurityException("User interaction is not allowed.");
             } else {
-                final String template = "%1$s exited with result %2$d.\nstdOut: %3$s\nstdErr: %4$s\n";
-                final String message = String.format(template, SECURITY, result, stdOut, stdErr);
-                throw new Error(message);
+                throw new Error(describe(result, stdOut, stdErr));
             }
         }
     }
 
+    private static String describe(final int result, final String stdOut, final String stdErr) {
+        final String template = "%1$s exited with result %2$d.\nstdOut: %3$s\nstdErr: %4$s\n";
+        return String.format(template, SECURITY, result, stdOut, stdErr);
+    }
+
     protected static Map<String, Object> read(final SecretKind secretKind, final String serviceName) {
+        final SecretResult<Map<String, Object>> result = readResult(secretKind, serviceName);
+        if (result.getStatus() == SecretResult.Status.LOCKED) {
+            throw new SecurityException("User interaction is not allowed.");
+        }
+        if (result.isFailure()) {
+            throw new Error(result.getMessage());
+        }
+
+        return result.isFound() ? result.getValue() : new HashMap<>();
+    }
+
+    /**
+     * Read the metadata and password of a generic password, telling a missing item from a failed call by the
+     * exit code of {@code security}.
+     *
+     * @param secretKind kind of the secret
+     * @param serviceName service name, which is the key of the secret
+     * @return result of the read, failures carry the exit code in the {@code security} domain
+     */
+    protected static SecretResult<Map<String, Object>> readResult(final SecretKind secretKind, final String serviceName) {
         final String stdOut, stdErr;
+        final int result;
         try {
             final ProcessBuilder processBuilder = new ProcessBuilder(
                 SECURITY,
@@ -283,20 +405,30 @@ public class KeychainSecurityCliStore {
 
             final Process process = processBuilder.start();
 
-            final int result = process.waitFor();
+            result = process.waitFor();
             stdOut = readToString(process.getInputStream());
             stdErr = readToString(process.getErrorStream());
-            if (result != 0 && result != ITEM_NOT_FOUND_EXIT_CODE) {
-                checkResult(result, stdOut, stdErr);
-            }
         } catch (final IOException | InterruptedException e) {
             throw new Error(e);
         }
 
+        if (result == ITEM_NOT_FOUND_EXIT_CODE) {
+            return SecretResult.notFound();
+        }
+        if (result == USER_INTERACTION_NOT_ALLOWED_EXIT_CODE) {
+            // the keychain is locked and cannot prompt for its password
+            return SecretResult.failed(SecretResult.Status.LOCKED, SECURITY_ERROR_DOMAIN, result,
+                    "User interaction is not allowed.");
+        }
+        if (result != 0) {
+            return SecretResult.failed(SecretResult.Status.FAILED, SECURITY_ERROR_DOMAIN, result,
+                    describe(result, stdOut, stdErr));
+        }
+
         final Map<String, Object> metaData = parseKeychainMetaData(stdOut);
         parseKeychainMetaData(stdErr, metaData);
 
-        return metaData;
+        return metaData.isEmpty() ? SecretResult.notFound() : SecretResult.found(metaData);
     }
 
     protected static void write(final SecretKind secretKind, final String serviceName, final String accountName, final char[] password) {
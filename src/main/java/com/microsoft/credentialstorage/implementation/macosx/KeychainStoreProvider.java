@@ -0,0 +1,60 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.implementation.macosx;
+
+import com.microsoft.credentialstorage.SecretStore;
+import com.microsoft.credentialstorage.SecretStoreProvider;
+import com.microsoft.credentialstorage.model.StoredCredential;
+import com.microsoft.credentialstorage.model.StoredToken;
+import com.microsoft.credentialstorage.model.StoredTokenPair;
+
+/**
+ * Provider of the macOS Keychain stores.
+ */
+public final class KeychainStoreProvider implements SecretStoreProvider {
+    @Override
+    public String getName() {
+        return "macOS Keychain";
+    }
+
+    @Override
+    public int getPriority() {
+        return 500;
+    }
+
+    @Override
+    public boolean isSecure() {
+        return true;
+    }
+
+    @Override
+    public boolean isPersistent() {
+        return true;
+    }
+
+    @Override
+    public boolean isLikelySupported() {
+        return System.getProperty("os.name").equals("Mac OS X");
+    }
+
+    @Override
+    public boolean isSupported() {
+        return KeychainSecurityCliStore.isSupported();
+    }
+
+    @Override
+    public SecretStore<StoredCredential> createCredentialStore() {
+        return new KeychainSecurityBackedCredentialStore();
+    }
+
+    @Override
+    public SecretStore<StoredToken> createTokenStore() {
+        return new KeychainSecurityBackedTokenStore();
+    }
+
+    @Override
+    public SecretStore<StoredTokenPair> createTokenPairStore() {
+        return new KeychainSecurityBackedTokenPairStore();
+    }
+}
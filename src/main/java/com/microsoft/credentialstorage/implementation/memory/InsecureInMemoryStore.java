@@ -3,42 +3,397 @@
 
 package com.microsoft.credentialstorage.implementation.memory;
 
+import com.microsoft.credentialstorage.SecretStoreListener;
+import com.microsoft.credentialstorage.implementation.SecretStoreListeners;
 import com.microsoft.credentialstorage.model.StoredSecret;
 import com.microsoft.credentialstorage.SecretStore;
 
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 /**
  * In-memory insecure store based on a hash map.
  *
+ * The store is unbounded by default. When a maximum size or a time-to-live is configured, the least recently
+ * written entries are evicted once the size is exceeded and entries expire after their time-to-live. Expiration
+ * is tracked by a {@link TimerWheel} advanced on writes, so no background thread is used. Evicted and expired
+ * secrets are cleared with {@link StoredSecret#clear()}.
+ *
+ * Listeners are notified of secrets added and deleted, not of evicted or expired secrets.
+ *
  * @param <E> secret type to store
  */
 public final class InsecureInMemoryStore<E extends StoredSecret> implements SecretStore<E> {
+    /**
+     * Maximum size value for a store without a capacity limit.
+     */
+    public static final long UNBOUNDED = Long.MAX_VALUE;
+
+    private static final long NO_EXPIRY = Long.MAX_VALUE;
+
+    private final ConcurrentMap<String, Entry<E>> store = new ConcurrentHashMap<>();
+
+    private final long maximumSize;
+    private final long timeToLiveNanos;
+    private final LongSupplier ticker;
+    private final long origin;
+
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final TimerWheel timerWheel;
+    private final Entry<E> writeOrder = new Entry<>(null, null, NO_EXPIRY);
+    private final Entry<E> rejected = new Entry<>(null, null, NO_EXPIRY);
+
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder expirationCount = new LongAdder();
 
-    private final ConcurrentMap<String, E> store = new ConcurrentHashMap<>();
+    private final SecretStoreListeners listeners = new SecretStoreListeners();
+
+    /**
+     * Creates an unbounded store whose entries never expire.
+     */
+    public InsecureInMemoryStore() {
+        this(UNBOUNDED, null);
+    }
+
+    /**
+     * Creates a store with a capacity limit and a default time-to-live.
+     *
+     * @param maximumSize maximum number of entries, or {@link #UNBOUNDED}
+     * @param timeToLive default time-to-live of an entry, or {@code null} if entries do not expire
+     */
+    public InsecureInMemoryStore(final long maximumSize, final Duration timeToLive) {
+        this(maximumSize, timeToLive, System::nanoTime);
+    }
+
+    InsecureInMemoryStore(final long maximumSize, final Duration timeToLive, final LongSupplier ticker) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("maximumSize must be positive");
+        }
+        if (timeToLive != null && (timeToLive.isNegative() || timeToLive.isZero())) {
+            throw new IllegalArgumentException("timeToLive must be positive");
+        }
+
+        this.maximumSize = maximumSize;
+        this.timeToLiveNanos = timeToLive == null ? NO_EXPIRY : toNanos(timeToLive);
+        this.ticker = Objects.requireNonNull(ticker, "ticker cannot be null");
+        this.origin = ticker.getAsLong();
+        this.timerWheel = new TimerWheel(0L);
+
+        writeOrder.writePrevious = writeOrder;
+        writeOrder.writeNext = writeOrder;
+    }
 
     @Override
     public E get(final String key) {
-        return store.get(key);
+        final Entry<E> entry = store.get(key);
+        if (entry == null) {
+            return null;
+        }
+
+        if (entry.hasExpired(now())) {
+            if (evictionLock.tryLock()) {
+                try {
+                    runMaintenance();
+                } finally {
+                    evictionLock.unlock();
+                }
+            }
+            return null;
+        }
+
+        return entry.secret;
     }
 
     @Override
     public boolean delete(final String key) {
-        if (store.containsKey(key)) {
-            return store.remove(key) != null;
+        final Entry<E> removed = store.remove(key);
+        if (removed == null) {
+            return false;
+        }
+
+        if (isTracked(removed)) {
+            evictionLock.lock();
+            try {
+                unlink(removed);
+                runMaintenance();
+            } finally {
+                evictionLock.unlock();
+            }
         }
 
+        listeners.fireSecretChanged(key);
         return true;
     }
 
     @Override
     public boolean add(final String key, final E secret) {
-        return store.put(key, secret) != null;
+        return add(key, secret, null);
+    }
+
+    /**
+     * Save the secret identified by the key with its own time-to-live.  Replace existing secret if it exists.
+     *
+     * @param key for which a secret is associated with
+     * @param secret secret to be stored
+     * @param timeToLive time-to-live of this entry, or {@code null} to use the store's default
+     * @return {@code true} if secret is added successfully
+     */
+    public boolean add(final String key, final E secret, final Duration timeToLive) {
+        Objects.requireNonNull(key, "key cannot be null");
+        Objects.requireNonNull(secret, "secret cannot be null");
+
+        return put(key, secret, timeToLive, null);
+    }
+
+    /**
+     * Save the secret unless a secret is stored for the key, atomically.
+     *
+     * @param key for which a secret is associated with
+     * @param secret secret to be stored
+     * @return {@code true} if the secret was stored
+     */
+    @Override
+    public boolean putIfAbsent(final String key, final E secret) {
+        Objects.requireNonNull(key, "key cannot be null");
+        Objects.requireNonNull(secret, "secret cannot be null");
+
+        return put(key, secret, null, Objects::isNull);
+    }
+
+    /**
+     * Replace the secret if it is still the expected secret, atomically.
+     *
+     * @param key for which a secret is associated with
+     * @param expected secret expected to be stored
+     * @param updated secret to be stored
+     * @return {@code true} if the secret was replaced
+     */
+    @Override
+    public boolean replace(final String key, final E expected, final E updated) {
+        Objects.requireNonNull(key, "key cannot be null");
+        Objects.requireNonNull(expected, "expected cannot be null");
+        Objects.requireNonNull(updated, "updated cannot be null");
+
+        return put(key, updated, null, expected::equals);
+    }
+
+    private boolean put(final String key, final E secret, final Duration timeToLive, final Predicate<E> condition) {
+        if (!isBounded() && timeToLive == null) {
+            final Entry<E> previous = putEntry(key, new Entry<>(key, secret, NO_EXPIRY), condition);
+            if (previous == rejected) {
+                return false;
+            }
+            if (previous != null && isTracked(previous)) {
+                evictionLock.lock();
+                try {
+                    unlink(previous);
+                } finally {
+                    evictionLock.unlock();
+                }
+            }
+            listeners.fireSecretChanged(key);
+            return true;
+        }
+
+        evictionLock.lock();
+        try {
+            final long now = now();
+            final long ttl = timeToLive == null ? timeToLiveNanos : toNanos(timeToLive);
+            final Entry<E> entry = new Entry<>(key, secret, ttl >= NO_EXPIRY - now ? NO_EXPIRY : now + ttl);
+
+            final Entry<E> previous = putEntry(key, entry, condition);
+            if (previous == rejected) {
+                return false;
+            }
+            if (previous != null) {
+                unlink(previous);
+            }
+            link(entry);
+
+            runMaintenance(now);
+            evictToMaximumSize();
+        } finally {
+            evictionLock.unlock();
+        }
+
+        listeners.fireSecretChanged(key);
+        return true;
+    }
+
+    /**
+     * Map the key to the entry if the condition holds for the current secret, {@code null} if there is none.
+     *
+     * @return previous entry, or {@link #rejected} if the condition does not hold
+     */
+    private Entry<E> putEntry(final String key, final Entry<E> entry, final Predicate<E> condition) {
+        if (condition == null) {
+            return store.put(key, entry);
+        }
+
+        while (true) {
+            final Entry<E> current = store.get(key);
+            final E currentSecret = current == null || current.hasExpired(now()) ? null : current.secret;
+            if (!condition.test(currentSecret)) {
+                return rejected;
+            }
+            // a concurrent write or deletion of the key makes the map operation fail, the condition is tested again
+            if (current == null ? store.putIfAbsent(key, entry) == null : store.replace(key, current, entry)) {
+                return current;
+            }
+        }
     }
 
     @Override
     public boolean isSecure() {
         return false;
     }
+
+    @Override
+    public void addListener(final SecretStoreListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeListener(final SecretStoreListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * List the keys of the unexpired entries, iterating the map without copying it.
+     *
+     * @return keys of the secrets
+     */
+    @Override
+    public Stream<String> keys() {
+        final long now = now();
+        return store.entrySet().stream()
+                .filter(entry -> !entry.getValue().hasExpired(now))
+                .map(Map.Entry::getKey);
+    }
+
+    /**
+     * Number of entries in the store, including expired entries that have not been removed yet.
+     *
+     * @return number of entries
+     */
+    public int size() {
+        return store.size();
+    }
+
+    /**
+     * Number of entries evicted because the maximum size was exceeded.
+     *
+     * @return eviction count
+     */
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    /**
+     * Number of entries removed because their time-to-live elapsed.
+     *
+     * @return expiration count
+     */
+    public long getExpirationCount() {
+        return expirationCount.sum();
+    }
+
+    private boolean isBounded() {
+        return maximumSize != UNBOUNDED || timeToLiveNanos != NO_EXPIRY;
+    }
+
+    private boolean isTracked(final Entry<E> entry) {
+        return isBounded() || entry.expiresAt != NO_EXPIRY;
+    }
+
+    private long now() {
+        return ticker.getAsLong() - origin;
+    }
+
+    private void runMaintenance() {
+        runMaintenance(now());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void runMaintenance(final long now) {
+        timerWheel.advance(now, timer -> expire((Entry<E>) timer));
+    }
+
+    private void expire(final Entry<E> entry) {
+        unlinkWriteOrder(entry);
+        if (store.remove(entry.key, entry)) {
+            entry.secret.clear();
+            expirationCount.increment();
+        }
+    }
+
+    private void evictToMaximumSize() {
+        while (store.size() > maximumSize && writeOrder.writeNext != writeOrder) {
+            final Entry<E> eldest = writeOrder.writeNext;
+            unlink(eldest);
+            if (store.remove(eldest.key, eldest)) {
+                eldest.secret.clear();
+                evictionCount.increment();
+            }
+        }
+    }
+
+    private void link(final Entry<E> entry) {
+        entry.writePrevious = writeOrder.writePrevious;
+        entry.writeNext = writeOrder;
+        writeOrder.writePrevious.writeNext = entry;
+        writeOrder.writePrevious = entry;
+
+        if (entry.expiresAt != NO_EXPIRY) {
+            timerWheel.schedule(entry);
+        }
+    }
+
+    private void unlink(final Entry<E> entry) {
+        unlinkWriteOrder(entry);
+        timerWheel.deschedule(entry);
+    }
+
+    private void unlinkWriteOrder(final Entry<E> entry) {
+        if (entry.writeNext != null) {
+            entry.writeNext.writePrevious = entry.writePrevious;
+            entry.writePrevious.writeNext = entry.writeNext;
+            entry.writeNext = null;
+            entry.writePrevious = null;
+        }
+    }
+
+    private static long toNanos(final Duration duration) {
+        try {
+            return duration.toNanos();
+        } catch (final ArithmeticException e) {
+            return NO_EXPIRY;
+        }
+    }
+
+    private static final class Entry<E extends StoredSecret> extends TimerWheel.Timer {
+        final String key;
+        final E secret;
+
+        Entry<E> writePrevious;
+        Entry<E> writeNext;
+
+        Entry(final String key, final E secret, final long expiresAt) {
+            this.key = key;
+            this.secret = secret;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean hasExpired(final long now) {
+            return expiresAt != NO_EXPIRY && expiresAt - now <= 0L;
+        }
+    }
 }
@@ -0,0 +1,151 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.implementation.memory;
+
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timer wheel used to expire in-memory entries in amortized constant time.
+ *
+ * Timers are placed in the finest wheel whose span covers their remaining time (roughly a second, a minute,
+ * an hour and a day per bucket) and cascade into finer wheels as the clock advances. The wheel is not thread-safe
+ * and does not own a thread; it is advanced by its owner while holding the owner's lock.
+ */
+final class TimerWheel {
+    private static final int[] BUCKETS = {64, 64, 32, 4, 1};
+
+    private static final long[] SPANS = {
+            1L << 30, // 1.07 seconds
+            1L << 36, // 1.14 minutes
+            1L << 42, // 1.22 hours
+            1L << 47, // 1.63 days
+            1L << 49, // 6.5 days
+            1L << 49  // 6.5 days
+    };
+
+    private static final int[] SHIFT = {30, 36, 42, 47, 49};
+
+    private final Timer[][] wheel;
+
+    private long nanos;
+
+    TimerWheel(final long nanos) {
+        this.nanos = nanos;
+        this.wheel = new Timer[BUCKETS.length][];
+        for (int i = 0; i < wheel.length; i++) {
+            wheel[i] = new Timer[BUCKETS[i]];
+            for (int j = 0; j < wheel[i].length; j++) {
+                wheel[i][j] = new Sentinel();
+            }
+        }
+    }
+
+    /**
+     * Schedule a timer to fire at its {@link Timer#expiresAt} time.
+     *
+     * @param timer timer that is not currently scheduled
+     */
+    void schedule(final Timer timer) {
+        final Timer sentinel = findBucket(timer.expiresAt);
+        timer.previous = sentinel.previous;
+        timer.next = sentinel;
+        sentinel.previous.next = timer;
+        sentinel.previous = timer;
+    }
+
+    /**
+     * Remove a timer from the wheel, if it is scheduled.
+     *
+     * @param timer timer to remove
+     */
+    void deschedule(final Timer timer) {
+        if (timer.next != null) {
+            timer.next.previous = timer.previous;
+            timer.previous.next = timer.next;
+            timer.next = null;
+            timer.previous = null;
+        }
+    }
+
+    /**
+     * Advance the wheel to the current time, handing every timer that is due to the consumer and
+     * cascading the remaining ones into finer wheels.
+     *
+     * @param currentTimeNanos current time in nanoseconds
+     * @param expired receives the timers that are due
+     */
+    void advance(final long currentTimeNanos, final Consumer<Timer> expired) {
+        final long previousTimeNanos = nanos;
+        nanos = currentTimeNanos;
+
+        for (int i = 0; i < SHIFT.length; i++) {
+            final long previousTicks = previousTimeNanos >>> SHIFT[i];
+            final long currentTicks = currentTimeNanos >>> SHIFT[i];
+            final long delta = currentTicks - previousTicks;
+            if (delta <= 0L) {
+                break;
+            }
+            expire(i, previousTicks, delta, expired);
+        }
+    }
+
+    private void expire(final int index, final long previousTicks, final long delta, final Consumer<Timer> expired) {
+        final Timer[] timerWheel = wheel[index];
+        final int mask = timerWheel.length - 1;
+
+        final int steps = (int) Math.min(1L + delta, timerWheel.length);
+        final int start = (int) (previousTicks & mask);
+        final int end = start + steps;
+
+        for (int i = start; i < end; i++) {
+            final Timer sentinel = timerWheel[i & mask];
+            Timer timer = sentinel.next;
+            sentinel.previous = sentinel;
+            sentinel.next = sentinel;
+
+            while (timer != sentinel) {
+                final Timer next = timer.next;
+                timer.previous = null;
+                timer.next = null;
+
+                if (timer.expiresAt - nanos > 0L) {
+                    // not due yet, cascade it down to a finer wheel
+                    schedule(timer);
+                } else {
+                    expired.accept(timer);
+                }
+                timer = next;
+            }
+        }
+    }
+
+    private Timer findBucket(final long time) {
+        final long duration = time - nanos;
+        final int length = wheel.length - 1;
+        for (int i = 0; i < length; i++) {
+            if (duration < SPANS[i + 1]) {
+                final long ticks = time >>> SHIFT[i];
+                final int index = (int) (ticks & (wheel[i].length - 1));
+                return wheel[i][index];
+            }
+        }
+        return wheel[length][0];
+    }
+
+    /**
+     * An element of the wheel's bucket lists.
+     */
+    abstract static class Timer {
+        long expiresAt;
+        Timer previous;
+        Timer next;
+    }
+
+    private static final class Sentinel extends Timer {
+        Sentinel() {
+            previous = this;
+            next = this;
+        }
+    }
+}
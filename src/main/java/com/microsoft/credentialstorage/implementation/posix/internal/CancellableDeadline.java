@@ -0,0 +1,114 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.implementation.posix.internal;
+
+import com.sun.jna.Pointer;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@code GCancellable} cancelled by a timer once a deadline passes, to bound the time native calls may block.
+ *
+ * Pass {@link #getCancellable()} to the calls made before the deadline, then close it.
+ */
+public final class CancellableDeadline implements AutoCloseable {
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "glib-deadline-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Duration timeout;
+    private final Pointer cancellable;
+    private final ScheduledFuture<?> timer;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // guarded by lock
+    private boolean cancelled;
+    private boolean closed;
+
+    private CancellableDeadline(final Duration timeout) {
+        this.timeout = timeout;
+        this.cancellable = GioLibrary.INSTANCE.g_cancellable_new();
+        this.timer = TIMER.schedule(this::cancel, timeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Start the timer of a deadline.
+     *
+     * @param timeout time until the calls are cancelled
+     * @return deadline
+     */
+    public static CancellableDeadline start(final Duration timeout) {
+        Objects.requireNonNull(timeout, "timeout cannot be null");
+        if (timeout.isNegative()) {
+            throw new IllegalArgumentException("timeout cannot be negative");
+        }
+
+        return new CancellableDeadline(timeout);
+    }
+
+    /**
+     * @return the {@code GCancellable} to pass to the native calls
+     */
+    public Pointer getCancellable() {
+        return cancellable;
+    }
+
+    /**
+     * @return time until the calls are cancelled
+     */
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * @return {@code true} if the deadline passed before the deadline was closed
+     */
+    public boolean isCancelled() {
+        lock.lock();
+        try {
+            return cancelled;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stop the timer and release the {@code GCancellable}.
+     */
+    @Override
+    public void close() {
+        timer.cancel(false);
+        lock.lock();
+        try {
+            if (!closed) {
+                closed = true;
+                GioLibrary.INSTANCE.g_object_unref(cancellable);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void cancel() {
+        lock.lock();
+        try {
+            if (!closed) {
+                cancelled = true;
+                // thread-safe, the blocked call returns with G_IO_ERROR_CANCELLED
+                GioLibrary.INSTANCE.g_cancellable_cancel(cancellable);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.implementation.posix.internal;
+
+import com.sun.jna.Pointer;
+import com.sun.jna.ptr.PointerByReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Subscription to the signals of a D-Bus interface on the session bus.
+ *
+ * Signals are received on the {@link GMainLoopThread} and handled on a thread of the subscription, so that handlers
+ * may make blocking calls, e.g. to look up the object a signal is about, without holding up the loop.
+ */
+public final class DBusSignalWatcher implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(DBusSignalWatcher.class);
+
+    private static final long SUBSCRIBE_TIMEOUT_SECONDS = 10;
+
+    // native code only gets the identifier of a subscription, the callback is never collected
+    private static final AtomicLong IDS = new AtomicLong();
+    private static final ConcurrentMap<Long, DBusSignalWatcher> WATCHERS = new ConcurrentHashMap<>();
+
+    private static final GioLibrary.GDBusSignalCallback SIGNAL = (connection, senderName, objectPath, interfaceName,
+                                                                  signalName, parameters, userData) -> {
+        final DBusSignalWatcher watcher = WATCHERS.get(Pointer.nativeValue(userData));
+        if (watcher != null) {
+            final String argument = getStringArgument(parameters);
+            watcher.executor.execute(() -> watcher.dispatch(signalName, objectPath, argument));
+        }
+    };
+
+    private final long id = IDS.incrementAndGet();
+    private final SignalHandler handler;
+    private final ExecutorService executor;
+    private Pointer connection;
+    private int subscription;
+
+    private DBusSignalWatcher(final SignalHandler handler, final String threadName) {
+        this.handler = handler;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, threadName);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Subscribe to the signals of an interface on the session bus.
+     *
+     * @param sender well-known or unique bus name of the sender, {@code null} for any sender
+     * @param interfaceName interface emitting the signals
+     * @param handler handler of the signals, called on a single thread in the order of the signals
+     * @param threadName name of the thread running the handler
+     * @return subscription, or {@code null} if there is no session bus
+     */
+    public static DBusSignalWatcher subscribe(final String sender, final String interfaceName,
+                                              final SignalHandler handler, final String threadName) {
+        Objects.requireNonNull(interfaceName, "interfaceName cannot be null");
+        Objects.requireNonNull(handler, "handler cannot be null");
+
+        final DBusSignalWatcher watcher = new DBusSignalWatcher(handler, threadName);
+        final CompletableFuture<Boolean> subscribed = new CompletableFuture<>();
+
+        // subscribed on the loop thread, whose context the signals are dispatched to
+        GMainLoopThread.getInstance().execute(() -> {
+            final PointerByReference error = new PointerByReference();
+            final Pointer connection = GioLibrary.INSTANCE.g_bus_get_sync(GioLibrary.G_BUS_TYPE_SESSION, null, error);
+            if (connection == null) {
+                if (error.getValue() != null) {
+                    GLibLibrary.INSTANCE.g_error_free(error.getValue());
+                }
+                subscribed.complete(false);
+                return;
+            }
+
+            WATCHERS.put(watcher.id, watcher);
+            watcher.connection = connection;
+            watcher.subscription = GioLibrary.INSTANCE.g_dbus_connection_signal_subscribe(connection, sender,
+                    interfaceName, null, null, null, GioLibrary.G_DBUS_SIGNAL_FLAGS_NONE,
+                    SIGNAL, new Pointer(watcher.id), null);
+            subscribed.complete(true);
+        });
+
+        try {
+            if (subscribed.get(SUBSCRIBE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                return watcher;
+            }
+            logger.info("No D-Bus session bus, not watching {}.", interfaceName);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (final ExecutionException | TimeoutException e) {
+            logger.warn("Subscribing to D-Bus signals of {} failed.", interfaceName, e);
+        }
+
+        watcher.executor.shutdown();
+        return null;
+    }
+
+    /**
+     * Unsubscribe, signals already received are still handled.
+     */
+    @Override
+    public void close() {
+        GMainLoopThread.getInstance().execute(() -> {
+            if (WATCHERS.remove(id) != null) {
+                GioLibrary.INSTANCE.g_dbus_connection_signal_unsubscribe(connection, subscription);
+                GioLibrary.INSTANCE.g_object_unref(connection);
+            }
+        });
+        executor.shutdown();
+    }
+
+    private void dispatch(final String signalName, final String objectPath, final String argument) {
+        try {
+            handler.signal(signalName, objectPath, argument);
+        } catch (final RuntimeException e) {
+            logger.error("D-Bus signal handler failed.", e);
+        }
+    }
+
+    private static String getStringArgument(final Pointer parameters) {
+        // the first argument, if it is a string or an object path
+        final String type = parameters != null ? GLibLibrary.INSTANCE.g_variant_get_type_string(parameters) : null;
+        if (type == null || !(type.startsWith("(s") || type.startsWith("(o"))) {
+            return null;
+        }
+
+        final Pointer child = GLibLibrary.INSTANCE.g_variant_get_child_value(parameters, 0);
+        try {
+            return GLibLibrary.INSTANCE.g_variant_get_string(child, null);
+        } finally {
+            GLibLibrary.INSTANCE.g_variant_unref(child);
+        }
+    }
+
+    /**
+     * Handler of the signals of a subscription
+     */
+    public interface SignalHandler {
+        /**
+         * @param signalName name of the signal
+         * @param objectPath object emitting the signal
+         * @param argument first argument of the signal if it is a string or an object path, otherwise {@code null}
+         */
+        void signal(String signalName, String objectPath, String argument);
+    }
+}
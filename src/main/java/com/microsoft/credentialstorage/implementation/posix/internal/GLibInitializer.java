@@ -3,6 +3,8 @@
 
 package com.microsoft.credentialstorage.implementation.posix.internal;
 
+import java.util.concurrent.locks.ReentrantLock;
+
 /**
  * Singleton-instance to make sure we only initialize glib once.
  *
@@ -12,6 +14,10 @@ public final class GLibInitializer {
 
     private final GLibLibrary GLIB_INSTANCE = GLibLibrary.INSTANCE;
 
+    // not a monitor, so virtual threads waiting for the native call do not pin their carrier thread
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // guarded by lock
     private boolean glibInitialized = false;
 
     private GLibInitializer() {
@@ -34,10 +40,15 @@ public final class GLibInitializer {
      * Initialize Glib library by setting an application name that will be printed in Glib logs and error messages.
      * @param appName application name
      */
-    public synchronized void initialize(final String appName) {
-        if (!glibInitialized) {
-            GLIB_INSTANCE.g_set_application_name(appName);
-            glibInitialized = true;
+    public void initialize(final String appName) {
+        lock.lock();
+        try {
+            if (!glibInitialized) {
+                GLIB_INSTANCE.g_set_application_name(appName);
+                glibInitialized = true;
+            }
+        } finally {
+            lock.unlock();
         }
     }
 }
@@ -3,6 +3,7 @@
 
 package com.microsoft.credentialstorage.implementation.posix.internal;
 
+import com.sun.jna.Callback;
 import com.sun.jna.Library;
 import com.sun.jna.Native;
 import com.sun.jna.Pointer;
@@ -19,6 +20,11 @@ public interface GLibLibrary extends Library {
     GLibLibrary INSTANCE = Native.load("glib-2.0", GLibLibrary.class);
 
     class GArray extends Structure {
+        /**
+         * Field offsets, to read an array without the reflection of a {@code Structure}
+         */
+        public static final int DATA_OFFSET = 0;
+        public static final int LEN_OFFSET = Native.POINTER_SIZE;
         @Override
         protected List<String> getFieldOrder() {
             return Arrays.asList("data", "len");
@@ -36,6 +42,11 @@ public interface GLibLibrary extends Library {
     }
 
     class GList extends Structure {
+        /**
+         * Field offsets, to walk a list without the reflection of a {@code Structure}
+         */
+        public static final int DATA_OFFSET = 0;
+        public static final int NEXT_OFFSET = Native.POINTER_SIZE;
         @Override
         protected List<String> getFieldOrder() {
             return Arrays.asList("data", "next", "prev");
@@ -53,13 +64,42 @@ public interface GLibLibrary extends Library {
         }
     }
 
+    /**
+     * Function run by a main loop, returns {@code false} to remove its source
+     */
+    interface GSourceFunc extends Callback {
+        boolean callback(Pointer user_data);
+    }
+
+    /**
+     * Completion of a GIO asynchronous operation, invoked on the thread-default main context
+     * of the thread that started the operation
+     */
+    interface GAsyncReadyCallback extends Callback {
+        void callback(Pointer source_object, Pointer res, Pointer user_data);
+    }
+
     void g_set_application_name(String application_name);
 
+    Pointer g_main_context_new();
+    void g_main_context_push_thread_default(Pointer context);
+    void g_main_context_invoke(Pointer context, GSourceFunc function, Pointer data);
+
+    Pointer g_main_loop_new(Pointer context, boolean is_running);
+    void g_main_loop_run(Pointer loop);
+
     Pointer g_array_new(int zero_terminated, int clear, int element_size);
 
     void g_error_free(Pointer error);
+    String g_quark_to_string(int quark);
+
+    String g_variant_get_type_string(Pointer value);
+    Pointer g_variant_get_child_value(Pointer value, long index_);
+    String g_variant_get_string(Pointer value, Pointer length);
+    void g_variant_unref(Pointer value);
 
     Pointer g_list_append(Pointer list, Pointer element);
+    void g_list_free(Pointer list);
 
     Pointer g_hash_table_new(Pointer hash_func, Pointer key_equal_func);
     boolean g_hash_table_insert(Pointer hash_table, Pointer key, Pointer value);
@@ -0,0 +1,177 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.implementation.posix.internal;
+
+import com.sun.jna.Pointer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Singleton thread running a GLib main loop on a private main context, which drives GIO asynchronous
+ * operations of the native libraries.
+ *
+ * Operations are started on the loop thread, so that their completions are dispatched to the same context,
+ * and complete a {@code CompletableFuture}. A single thread keeps any number of operations in flight.
+ * Futures are completed on the common pool, so dependent stages never block the loop.
+ */
+public final class GMainLoopThread {
+    private static final Logger logger = LoggerFactory.getLogger(GMainLoopThread.class);
+
+    // native code only gets the identifier of a task or operation, the callbacks are never collected
+    private static final AtomicLong IDS = new AtomicLong();
+    private static final ConcurrentMap<Long, Runnable> TASKS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<Long, PendingOperation<?>> OPERATIONS = new ConcurrentHashMap<>();
+
+    private static final GLibLibrary.GSourceFunc DISPATCH = userData -> {
+        final Runnable task = TASKS.remove(Pointer.nativeValue(userData));
+        if (task != null) {
+            try {
+                task.run();
+            } catch (final Throwable t) {
+                logger.error("Main loop task failed.", t);
+            }
+        }
+        // G_SOURCE_REMOVE
+        return false;
+    };
+
+    private static final GLibLibrary.GAsyncReadyCallback ASYNC_READY = (sourceObject, result, userData) -> {
+        final PendingOperation<?> operation = OPERATIONS.remove(Pointer.nativeValue(userData));
+        if (operation != null) {
+            operation.complete(sourceObject, result);
+        }
+    };
+
+    private final Pointer context;
+
+    private GMainLoopThread() {
+        this.context = GLibLibrary.INSTANCE.g_main_context_new();
+        final Pointer loop = GLibLibrary.INSTANCE.g_main_loop_new(context, false);
+
+        final Thread thread = new Thread(() -> {
+            GLibLibrary.INSTANCE.g_main_context_push_thread_default(context);
+            GLibLibrary.INSTANCE.g_main_loop_run(loop);
+        }, "glib-main-loop");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static class GMainLoopThreadHolder {
+        public static final GMainLoopThread INSTANCE = new GMainLoopThread();
+    }
+
+    /**
+     * Returns the singleton instance, starting the loop thread on first use.
+     * @return instance
+     */
+    public static GMainLoopThread getInstance() {
+        return GMainLoopThreadHolder.INSTANCE;
+    }
+
+    /**
+     * Run a task on the loop thread.
+     * @param task task to run
+     */
+    public void execute(final Runnable task) {
+        final long id = IDS.incrementAndGet();
+        TASKS.put(id, task);
+        GLibLibrary.INSTANCE.g_main_context_invoke(context, DISPATCH, new Pointer(id));
+    }
+
+    /**
+     * Start an asynchronous operation on the loop thread.
+     *
+     * @param operation operation to start
+     * @param <T> result type
+     * @return completes with the result of {@link AsyncOperation#finish(Pointer, Pointer)}
+     */
+    public <T> CompletableFuture<T> submit(final AsyncOperation<T> operation) {
+        final PendingOperation<T> pending = new PendingOperation<>(operation);
+        final long id = IDS.incrementAndGet();
+
+        execute(() -> {
+            OPERATIONS.put(id, pending);
+            try {
+                operation.start(ASYNC_READY, new Pointer(id));
+            } catch (final Throwable t) {
+                OPERATIONS.remove(id);
+                pending.fail(t);
+            }
+        });
+
+        return pending.future;
+    }
+
+    /**
+     * @return number of asynchronous operations started and not completed yet
+     */
+    public int getInFlightCount() {
+        return OPERATIONS.size();
+    }
+
+    /**
+     * GIO style asynchronous operation: a start function taking a {@code GAsyncReadyCallback},
+     * and a finish function called with the result from the callback.
+     *
+     * @param <T> result type
+     */
+    public interface AsyncOperation<T> {
+        /**
+         * Start the operation, runs on the loop thread.
+         *
+         * @param callback callback to pass to the start function
+         * @param userData user data to pass to the start function
+         */
+        void start(GLibLibrary.GAsyncReadyCallback callback, Pointer userData);
+
+        /**
+         * Collect the result of the operation, runs on the loop thread.
+         *
+         * @param sourceObject source object of the operation
+         * @param result {@code GAsyncResult} to pass to the finish function
+         * @return result
+         */
+        T finish(Pointer sourceObject, Pointer result);
+
+        /**
+         * Release the native resources of the operation once it has completed or failed to start.
+         */
+        default void release() {
+        }
+    }
+
+    private static final class PendingOperation<T> {
+        final AsyncOperation<T> operation;
+        final CompletableFuture<T> future = new CompletableFuture<>();
+
+        PendingOperation(final AsyncOperation<T> operation) {
+            this.operation = operation;
+        }
+
+        void complete(final Pointer sourceObject, final Pointer result) {
+            try {
+                final T value = operation.finish(sourceObject, result);
+                CompletableFuture.runAsync(() -> future.complete(value));
+            } catch (final Throwable t) {
+                logger.error("Asynchronous operation failed.", t);
+                CompletableFuture.runAsync(() -> future.completeExceptionally(t));
+            } finally {
+                operation.release();
+            }
+        }
+
+        void fail(final Throwable t) {
+            try {
+                operation.release();
+            } finally {
+                CompletableFuture.runAsync(() -> future.completeExceptionally(t));
+            }
+        }
+    }
+}
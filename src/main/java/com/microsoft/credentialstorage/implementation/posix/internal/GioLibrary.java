@@ -0,0 +1,50 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.implementation.posix.internal;
+
+import com.sun.jna.Callback;
+import com.sun.jna.Library;
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+import com.sun.jna.ptr.PointerByReference;
+
+/**
+ * Cancellation of GIO operations and subscription to D-Bus signals
+ */
+public interface GioLibrary extends Library {
+    GioLibrary INSTANCE = Native.load("gio-2.0", GioLibrary.class);
+
+    /**
+     * GBusType: G_BUS_TYPE_SESSION
+     */
+    int G_BUS_TYPE_SESSION = 2;
+
+    /**
+     * GDBusSignalFlags: G_DBUS_SIGNAL_FLAGS_NONE
+     */
+    int G_DBUS_SIGNAL_FLAGS_NONE = 0;
+
+    /**
+     * D-Bus signal, invoked on the thread-default main context of the thread that subscribed
+     */
+    interface GDBusSignalCallback extends Callback {
+        void callback(Pointer connection, String sender_name, String object_path, String interface_name,
+                      String signal_name, Pointer parameters, Pointer user_data);
+    }
+
+    Pointer g_cancellable_new();
+    void g_cancellable_cancel(Pointer cancellable);
+
+    Pointer g_bus_get_sync(int bus_type, Pointer cancellable, PointerByReference error);
+
+    int g_dbus_connection_signal_subscribe(Pointer connection, String sender, String interface_name, String member,
+                                           String object_path, String arg0, int flags,
+                                           GDBusSignalCallback callback, Pointer user_data,
+                                           Pointer user_data_free_func);
+    void g_dbus_connection_signal_unsubscribe(Pointer connection, int subscription_id);
+
+    String g_dbus_proxy_get_object_path(Pointer proxy);
+
+    void g_object_unref(Pointer object);
+}
@@ -0,0 +1,43 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.implementation.posix.internal;
+
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+
+/**
+ * Cheap checks of the D-Bus session bus, which do not load any native library.
+ */
+public final class SessionBus {
+    private SessionBus() {
+    }
+
+    /**
+     * Check whether a session bus is likely reachable: its address is set, its socket exists in the user's
+     * runtime directory, or a display is set, from which libdbus can launch one.
+     *
+     * @return {@code false} if there is certainly no session bus
+     */
+    public static boolean isLikelyAvailable() {
+        if (!System.getProperty("os.name").equals("Linux")) {
+            return false;
+        }
+
+        if (isSet(System.getenv("DBUS_SESSION_BUS_ADDRESS")) || isSet(System.getenv("DISPLAY"))) {
+            return true;
+        }
+
+        final String runtimeDirectory = System.getenv("XDG_RUNTIME_DIR");
+        try {
+            return isSet(runtimeDirectory) && Files.exists(Paths.get(runtimeDirectory, "bus"));
+        } catch (final InvalidPathException e) {
+            return false;
+        }
+    }
+
+    private static boolean isSet(final String value) {
+        return value != null && !value.isEmpty();
+    }
+}
@@ -0,0 +1,40 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.implementation.posix.kernelkeyring;
+
+import com.microsoft.credentialstorage.model.StoredCredential;
+
+import java.util.Objects;
+
+/**
+ * Kernel keyring store for a credential.
+ */
+public final class KernelKeyringBackedCredentialStore extends KernelKeyringBackedSecureStore<StoredCredential> {
+    public KernelKeyringBackedCredentialStore() {
+    }
+
+    public KernelKeyringBackedCredentialStore(final Keyring keyring) {
+        super(keyring);
+    }
+
+    @Override
+    public boolean add(final String key, final StoredCredential secret) {
+        Objects.requireNonNull(key, "key cannot be null");
+        Objects.requireNonNull(secret, "secret cannot be null");
+
+        logger.debug("Adding a {} for {}", getType(), key);
+
+        return writeSecret(key, secret.getUsername(), secret.getPassword());
+    }
+
+    @Override
+    protected StoredCredential create(final String username, final char[] secret) {
+        return new StoredCredential(username, secret);
+    }
+
+    @Override
+    protected String getType() {
+        return "Credential";
+    }
+}
@@ -0,0 +1,483 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.implementation.posix.kernelkeyring;
+
+import com.microsoft.credentialstorage.SecretResult;
+import com.microsoft.credentialstorage.SecretStore;
+import com.microsoft.credentialstorage.SecretStoreQuotaExceededException;
+import com.microsoft.credentialstorage.model.StoredSecret;
+import com.sun.jna.LastErrorException;
+import com.sun.jna.Native;
+import com.sun.jna.NativeLong;
+import com.sun.jna.Pointer;
+import com.sun.jna.ptr.PointerByReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static com.microsoft.credentialstorage.implementation.posix.kernelkeyring.KeyUtilsLibrary.KEY_TYPE_USER;
+
+/**
+ * Base class for Linux stores via the kernel key retention service.
+ *
+ * Secrets are kept in kernel memory as "user" keys in the session, user or persistent keyring, so no D-Bus
+ * secret service is needed. Keys do not survive a reboot; the persistent keyring also expires after a period
+ * of inactivity configured by the system administrator.
+ *
+ * The keys of all keyrings count against the quota of the user, by default 200 keys and 20000 bytes, see
+ * {@code /proc/sys/kernel/keys/maxkeys} and {@code maxbytes}. Writes of secrets which do not fit throw a
+ * {@link SecretStoreQuotaExceededException}.
+ *
+ * @param <E> secret class to store
+ */
+public abstract class KernelKeyringBackedSecureStore<E extends StoredSecret> implements SecretStore<E> {
+    protected static final Logger logger = LoggerFactory.getLogger(KernelKeyringBackedSecureStore.class);
+
+    protected static final KeyUtilsLibrary INSTANCE = getKeyUtilsLibrary();
+
+    protected static final String KERNEL_KEYRING = "AUTH_LIB_KERNEL_KEYRING";
+    protected static final String DESCRIPTION_PREFIX = "Credential Secure Storage";
+
+    private static final Charset UTF8 = StandardCharsets.UTF_8;
+    private static final String ERRNO_DOMAIN = "errno";
+    private static final int CURRENT_USER = -1;
+
+    // the processes of the user which do not possess the key, e.g. which reach the user keyring without it being
+    // linked to their session keyring, read, update and find it, and set its permissions once they updated it.
+    // Linking it to other keyrings, which may be shared with other users, is not permitted
+    private static final int KEY_PERMISSIONS = KeyUtilsLibrary.KEY_POS_VIEW | KeyUtilsLibrary.KEY_POS_READ
+            | KeyUtilsLibrary.KEY_POS_WRITE | KeyUtilsLibrary.KEY_POS_SEARCH | KeyUtilsLibrary.KEY_POS_SETATTR
+            | KeyUtilsLibrary.KEY_USR_VIEW | KeyUtilsLibrary.KEY_USR_READ | KeyUtilsLibrary.KEY_USR_WRITE
+            | KeyUtilsLibrary.KEY_USR_SEARCH | KeyUtilsLibrary.KEY_USR_SETATTR;
+
+    /**
+     * Kernel keyring to store the secrets in.
+     */
+    public enum Keyring {
+        /**
+         * Session keyring, shared by the processes of a login session
+         */
+        SESSION,
+
+        /**
+         * User keyring, shared by all processes of the user while any of them is running, whichever session they
+         * belong to, e.g. other applications and containers of the same uid
+         */
+        USER,
+
+        /**
+         * Persistent keyring of the user, which outlives the login sessions until it expires
+         */
+        PERSISTENT
+    }
+
+    private final Keyring keyring;
+
+    /**
+     * Creates a store using the keyring configured by the {@value #KERNEL_KEYRING} system property,
+     * or the user keyring if it is not set.
+     */
+    protected KernelKeyringBackedSecureStore() {
+        this(getConfiguredKeyring());
+    }
+
+    /**
+     * Creates a store using the specified keyring.
+     *
+     * @param keyring keyring to store the secrets in
+     */
+    protected KernelKeyringBackedSecureStore(final Keyring keyring) {
+        this.keyring = Objects.requireNonNull(keyring, "keyring cannot be null");
+    }
+
+    /**
+     * Read a secret from the kernel keyring.
+     *
+     * @param key for which a secret is associated with
+     * @return secret
+     */
+    @Override
+    public E get(final String key) {
+        return getResult(key).getValue();
+    }
+
+    /**
+     * Read a secret from the kernel keyring, telling a missing key from a failed syscall by its errno.
+     *
+     * @param key for which a secret is associated with
+     * @return result of the read; {@link SecretResult.Status#UNAVAILABLE} if the key management syscalls are
+     *         missing or not permitted, failures carry the errno in the {@code errno} domain
+     */
+    @Override
+    public SecretResult<E> getResult(final String key) {
+        Objects.requireNonNull(key, "key cannot be null");
+
+        logger.debug("Getting {} for {}", getType(), key);
+
+        return readSecretResult(key, this::create);
+    }
+
+    /**
+     * Delete a secret from the kernel keyring.
+     * @param key for which a secret is associated with
+     * @return true if operation succeeded
+     */
+    @Override
+    public boolean delete(final String key) {
+        Objects.requireNonNull(key, "key cannot be null");
+        logger.debug("Deleting {} for {}", getType(), key);
+
+        return deleteSecret(key);
+    }
+
+    /**
+     * List the keys of the secrets of this type. The serial numbers of the keys linked to the keyring are
+     * read at once; each key is described as the stream is consumed.
+     *
+     * @return keys of the secrets
+     */
+    @Override
+    public Stream<String> keys() {
+        if (INSTANCE == null) {
+            logger.warn("Kernel keyring is not available.");
+            return Stream.empty();
+        }
+
+        logger.debug("Listing {} keys", getType());
+
+        final int[] serials;
+        final PointerByReference buffer = new PointerByReference();
+        try {
+            // the payload of a keyring is the array of the serial numbers of its keys
+            final int length = INSTANCE.keyctl_read_alloc(getKeyringId(keyring), buffer);
+            serials = length > 0 ? buffer.getValue().getIntArray(0, length / Integer.BYTES) : new int[0];
+        } catch (final LastErrorException e) {
+            logger.error("Listing secrets failed. {}", e.getMessage());
+            return Stream.empty();
+        } finally {
+            free(buffer.getValue());
+        }
+
+        final String descriptionPrefix = getDescription("");
+        final Spliterator<String> spliterator = new Spliterators.AbstractSpliterator<String>(serials.length,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            private int index;
+
+            @Override
+            public boolean tryAdvance(final Consumer<? super String> action) {
+                while (index < serials.length) {
+                    final String description = describeUserKey(serials[index++]);
+                    if (description != null && description.startsWith(descriptionPrefix)) {
+                        action.accept(description.substring(descriptionPrefix.length()));
+                        return true;
+                    }
+                }
+                return false;
+            }
+        };
+
+        return StreamSupport.stream(spliterator, false);
+    }
+
+    /**
+     * The kernel keyring is considered secure
+     *
+     * @return {@code true} for the kernel keyring
+     */
+    @Override
+    public boolean isSecure() {
+        return true;
+    }
+
+    public static boolean isSupported() {
+        return isLinux() && isKernelKeyringSupported();
+    }
+
+    /**
+     * Create a {@code Secret} from the string representation
+     *
+     * @param username
+     *      username for the secret
+     * @param secret
+     *      password, oauth2 access token, or Personal Access Token
+     *
+     * @return a {@code Secret} from the input
+     */
+    protected abstract E create(String username, char[] secret);
+
+    /**
+     * Return the type of this secure store, used to match the secret in the kernel keyring
+     *
+     * @return type string representation of the secret type
+     */
+    protected abstract String getType();
+
+    /**
+     * Check for kernel keyring support on this platform. The key management syscalls may be missing
+     * or blocked, e.g. by the seccomp profile of a container.
+     *
+     * @return {@code true} if the kernel keyring is available; {@code false} otherwise
+     */
+    private static boolean isKernelKeyringSupported() {
+        try {
+            if (INSTANCE != null) {
+                // Searching for a key that does not exist requires the syscalls to be permitted
+                INSTANCE.keyctl_search(getKeyringId(getConfiguredKeyring()), KEY_TYPE_USER,
+                        DESCRIPTION_PREFIX + ":NullType:NullKey", 0);
+                return true;
+            }
+        } catch (final LastErrorException e) {
+            if (e.getErrorCode() == KeyUtilsLibrary.ENOKEY) {
+                return true;
+            }
+            logger.info("Kernel keyring is not available: {}", e.getMessage());
+        } catch (final Throwable t) {
+            logger.warn("Kernel keyring is not available.", t);
+        }
+
+        return false;
+    }
+
+    protected <T> T readSecret(final String key, final BiFunction<String, char[], T> mapper) {
+        return readSecretResult(key, mapper).getValue();
+    }
+
+    protected <T> SecretResult<T> readSecretResult(final String key, final BiFunction<String, char[], T> mapper) {
+        if (INSTANCE != null) {
+            final PointerByReference buffer = new PointerByReference();
+            byte[] payload = null;
+            try {
+                final int serial = findKey(key);
+                if (serial == 0) {
+                    return SecretResult.notFound();
+                }
+
+                final int length = INSTANCE.keyctl_read_alloc(serial, buffer);
+                payload = buffer.getValue().getByteArray(0, length);
+                buffer.getValue().clear(length);
+
+                // payload is the account and the secret separated by a NUL character
+                int separator = 0;
+                while (separator < payload.length && payload[separator] != 0) {
+                    separator++;
+                }
+                if (separator == payload.length) {
+                    logger.error("Unexpected payload format of the {} for {}", getType(), key);
+                    return SecretResult.failed(SecretResult.Status.FAILED, null, 0, "Unexpected payload format");
+                }
+
+                final String account = new String(payload, 0, separator, UTF8);
+                final char[] secret = decode(payload, separator + 1, payload.length - separator - 1);
+                try {
+                    return SecretResult.of(mapper.apply(account, secret));
+                } finally {
+                    Arrays.fill(secret, (char) 0);
+                }
+            } catch (final LastErrorException e) {
+                logger.error("Getting secret failed. {}", e.getMessage());
+                return toResult(e);
+            } finally {
+                if (payload != null) {
+                    Arrays.fill(payload, (byte) 0);
+                }
+                free(buffer.getValue());
+            }
+        }
+
+        logger.warn("Kernel keyring is not available.");
+        return SecretResult.failed(SecretResult.Status.UNAVAILABLE, null, 0, "Kernel keyring is not available");
+    }
+
+    protected boolean writeSecret(final String key, final String account, final char[] secret) {
+        if (INSTANCE != null) {
+            final byte[] payload = encode(account, secret);
+            try {
+                final int serial = INSTANCE.add_key(KEY_TYPE_USER, getDescription(key), payload,
+                        new NativeLong(payload.length), getKeyringId(keyring));
+
+                // by default the owning user may only view the key, it needs to be readable from other processes
+                INSTANCE.keyctl_setperm(serial, KEY_PERMISSIONS);
+                return true;
+            } catch (final LastErrorException e) {
+                if (e.getErrorCode() == KeyUtilsLibrary.EDQUOT) {
+                    throw new SecretStoreQuotaExceededException("The kernel key quota of the user is exhausted, "
+                            + "see /proc/sys/kernel/keys/maxkeys and maxbytes");
+                }
+                logger.error("Adding secret failed. {}", e.getMessage());
+                return false;
+            } finally {
+                Arrays.fill(payload, (byte) 0);
+            }
+        }
+
+        logger.warn("Kernel keyring is not available.");
+        return false;
+    }
+
+    protected boolean deleteSecret(final String key) {
+        if (INSTANCE != null) {
+            try {
+                final int serial = findKey(key);
+                if (serial == 0) {
+                    return false;
+                }
+
+                INSTANCE.keyctl_unlink(serial, getKeyringId(keyring));
+                return true;
+            } catch (final LastErrorException e) {
+                logger.error("Deleting secret failed. {}", e.getMessage());
+                return false;
+            }
+        }
+
+        logger.warn("Kernel keyring is not available.");
+        return false;
+    }
+
+    private static <T> SecretResult<T> toResult(final LastErrorException e) {
+        switch (e.getErrorCode()) {
+            case KeyUtilsLibrary.ENOSYS:
+            case KeyUtilsLibrary.EPERM:
+                // the syscalls are missing, or blocked e.g. by a seccomp profile
+                return SecretResult.failed(SecretResult.Status.UNAVAILABLE, ERRNO_DOMAIN, e.getErrorCode(),
+                        e.getMessage());
+            default:
+                return SecretResult.failed(SecretResult.Status.FAILED, ERRNO_DOMAIN, e.getErrorCode(),
+                        e.getMessage());
+        }
+    }
+
+    /**
+     * Find the serial number of the key holding the secret.
+     *
+     * @param key for which a secret is associated with
+     * @return serial number of the key, or {@code 0} if there is no such key
+     */
+    private int findKey(final String key) {
+        try {
+            return INSTANCE.keyctl_search(getKeyringId(keyring), KEY_TYPE_USER, getDescription(key), 0).intValue();
+        } catch (final LastErrorException e) {
+            switch (e.getErrorCode()) {
+                case KeyUtilsLibrary.ENOKEY:
+                case KeyUtilsLibrary.EKEYEXPIRED:
+                case KeyUtilsLibrary.EKEYREVOKED:
+                    return 0;
+                default:
+                    throw e;
+            }
+        }
+    }
+
+    /**
+     * Get the description of a "user" key.
+     *
+     * @param serial serial number of the key
+     * @return description, or {@code null} if the key is of another type or no longer accessible
+     */
+    private static String describeUserKey(final int serial) {
+        final PointerByReference buffer = new PointerByReference();
+        try {
+            INSTANCE.keyctl_describe_alloc(serial, buffer);
+
+            // type;uid;gid;perm;description
+            final String[] fields = buffer.getValue().getString(0, UTF8.name()).split(";", 5);
+            return fields.length == 5 && KEY_TYPE_USER.equals(fields[0]) ? fields[4] : null;
+        } catch (final LastErrorException e) {
+            // the key was removed, expired or is not viewable
+            return null;
+        } finally {
+            free(buffer.getValue());
+        }
+    }
+
+    private String getDescription(final String key) {
+        return DESCRIPTION_PREFIX + ":" + getType() + ":" + key;
+    }
+
+    private static int getKeyringId(final Keyring keyring) {
+        switch (keyring) {
+            case SESSION:
+                return KeyUtilsLibrary.KEY_SPEC_SESSION_KEYRING;
+            case PERSISTENT:
+                // fetching the persistent keyring also resets its expiration timer
+                return INSTANCE.keyctl_get_persistent(CURRENT_USER, KeyUtilsLibrary.KEY_SPEC_SESSION_KEYRING).intValue();
+            case USER:
+            default:
+                return KeyUtilsLibrary.KEY_SPEC_USER_KEYRING;
+        }
+    }
+
+    private static Keyring getConfiguredKeyring() {
+        final String value = System.getProperty(KERNEL_KEYRING);
+        if (value != null) {
+            try {
+                return Keyring.valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (final IllegalArgumentException e) {
+                logger.warn("Unknown kernel keyring {} in {}, using the user keyring.", value, KERNEL_KEYRING);
+            }
+        }
+
+        return Keyring.USER;
+    }
+
+    private static byte[] encode(final String account, final char[] secret) {
+        final byte[] accountBytes = account.getBytes(UTF8);
+        final ByteBuffer secretBuffer = UTF8.encode(CharBuffer.wrap(secret));
+        try {
+            final byte[] payload = new byte[accountBytes.length + 1 + secretBuffer.remaining()];
+            System.arraycopy(accountBytes, 0, payload, 0, accountBytes.length);
+            secretBuffer.get(payload, accountBytes.length + 1, secretBuffer.remaining());
+            return payload;
+        } finally {
+            Arrays.fill(secretBuffer.array(), (byte) 0);
+        }
+    }
+
+    private static char[] decode(final byte[] payload, final int offset, final int length) {
+        final CharBuffer secretBuffer = UTF8.decode(ByteBuffer.wrap(payload, offset, length));
+        try {
+            final char[] secret = new char[secretBuffer.remaining()];
+            secretBuffer.get(secret);
+            return secret;
+        } finally {
+            Arrays.fill(secretBuffer.array(), (char) 0);
+        }
+    }
+
+    private static void free(final Pointer buffer) {
+        if (buffer != null) {
+            Native.free(Pointer.nativeValue(buffer));
+        }
+    }
+
+    private static boolean isLinux() {
+        return System.getProperty("os.name").equals("Linux");
+    }
+
+    private static KeyUtilsLibrary getKeyUtilsLibrary() {
+        if (isLinux()) {
+            try {
+                return KeyUtilsLibrary.INSTANCE;
+            } catch (final Throwable t) {
+                logger.info("Kernel keyring is not available: libkeyutils could not be loaded, it is installed "
+                        + "with the keyutils-libs or libkeyutils1 package. {}", t.toString());
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,100 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.implementation.posix.kernelkeyring;
+
+import com.microsoft.credentialstorage.SecretResult;
+import com.microsoft.credentialstorage.model.StoredToken;
+import com.microsoft.credentialstorage.model.StoredTokenPair;
+import com.microsoft.credentialstorage.model.StoredTokenType;
+
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Kernel keyring store for a token pair.
+ */
+public final class KernelKeyringBackedTokenPairStore extends KernelKeyringBackedSecureStore<StoredTokenPair> {
+    private static final String ACCESS_TOKEN = "/accessToken";
+    private static final String REFRESH_TOKEN = "/refreshToken";
+
+    public KernelKeyringBackedTokenPairStore() {
+    }
+
+    public KernelKeyringBackedTokenPairStore(final Keyring keyring) {
+        super(keyring);
+    }
+
+    @Override
+    public SecretResult<StoredTokenPair> getResult(final String key) {
+        Objects.requireNonNull(key, "key cannot be null");
+
+        logger.debug("Getting {} for {}", getType(), key);
+
+        final SecretResult<StoredToken> accessToken = readSecretResult(key + ACCESS_TOKEN,
+                (userName, password) -> new StoredToken(password, StoredTokenType.ACCESS));
+        if (accessToken.isFailure()) {
+            return accessToken.asFailure();
+        }
+        final SecretResult<StoredToken> refreshToken = readSecretResult(key + REFRESH_TOKEN,
+                (userName, password) -> new StoredToken(password, StoredTokenType.REFRESH));
+        if (refreshToken.isFailure()) {
+            return refreshToken.asFailure();
+        }
+
+        // no token found
+        if (!accessToken.isFound() && !refreshToken.isFound()) {
+            return SecretResult.notFound();
+        }
+
+        return SecretResult.found(new StoredTokenPair(accessToken.getValue(), refreshToken.getValue()));
+    }
+
+    @Override
+    public boolean add(final String key, final StoredTokenPair secret) {
+        Objects.requireNonNull(key, "key cannot be null");
+        Objects.requireNonNull(secret, "secret cannot be null");
+
+        logger.debug("Adding a {} for {}", getType(), key);
+
+        return writeSecret(key + ACCESS_TOKEN,
+                    secret.getAccessToken().getType().getDescription(), secret.getAccessToken().getValue())
+                && writeSecret(key + REFRESH_TOKEN,
+                    secret.getRefreshToken().getType().getDescription(), secret.getRefreshToken().getValue());
+    }
+
+    @Override
+    public boolean delete(final String key) {
+        Objects.requireNonNull(key, "key cannot be null");
+
+        logger.debug("Deleting {} for {}", getType(), key);
+
+        final boolean accessDeleted = deleteSecret(key + ACCESS_TOKEN);
+        final boolean refreshDeleted = deleteSecret(key + REFRESH_TOKEN);
+        return accessDeleted && refreshDeleted;
+    }
+
+    /**
+     * List the keys of the token pairs, whose tokens are stored under the key with a suffix.
+     *
+     * @return keys of the token pairs
+     */
+    @Override
+    public Stream<String> keys() {
+        return super.keys()
+                .filter(key -> key.endsWith(ACCESS_TOKEN) || key.endsWith(REFRESH_TOKEN))
+                .map(key -> key.substring(0, key.lastIndexOf('/')))
+                .distinct();
+    }
+
+    @Override
+    protected StoredTokenPair create(final String username, final char[] secret) {
+        // not used
+        return null;
+    }
+
+    @Override
+    protected String getType() {
+        return "OAuth2Token";
+    }
+}
@@ -0,0 +1,41 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.implementation.posix.kernelkeyring;
+
+import com.microsoft.credentialstorage.model.StoredToken;
+import com.microsoft.credentialstorage.model.StoredTokenType;
+
+import java.util.Objects;
+
+/**
+ * Kernel keyring store for a token.
+ */
+public final class KernelKeyringBackedTokenStore extends KernelKeyringBackedSecureStore<StoredToken> {
+    public KernelKeyringBackedTokenStore() {
+    }
+
+    public KernelKeyringBackedTokenStore(final Keyring keyring) {
+        super(keyring);
+    }
+
+    @Override
+    protected StoredToken create(final String username, final char[] secret) {
+        return new StoredToken(secret, StoredTokenType.fromDescription(username));
+    }
+
+    @Override
+    public boolean add(final String key, final StoredToken token) {
+        Objects.requireNonNull(key, "key cannot be null");
+        Objects.requireNonNull(token, "secret cannot be null");
+
+        logger.debug("Adding a {} for {}", getType(), key);
+
+        return writeSecret(key, token.getType().getDescription(), token.getValue());
+    }
+
+    @Override
+    protected String getType() {
+        return "Token";
+    }
+}
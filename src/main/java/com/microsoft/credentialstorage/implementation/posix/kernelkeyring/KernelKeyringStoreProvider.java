@@ -0,0 +1,67 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.implementation.posix.kernelkeyring;
+
+import com.microsoft.credentialstorage.SecretStore;
+import com.microsoft.credentialstorage.SecretStoreProvider;
+import com.microsoft.credentialstorage.model.StoredCredential;
+import com.microsoft.credentialstorage.model.StoredToken;
+import com.microsoft.credentialstorage.model.StoredTokenPair;
+
+/**
+ * Provider of the Linux kernel keyring stores, for systems without a secret service. Kernel keyrings are kept in
+ * memory and do not survive a reboot, so they are session stores, which may also be named as fallbacks of the
+ * persistent stores with {@code AUTH_LIB_FALLBACK_CHAIN}.
+ *
+ * On a headless host without a secret service or a file vault passphrase, persistent stores required to be secure
+ * are therefore {@code null}, unless {@code AUTH_LIB_FALLBACK_CHAIN} names the kernel keyring; a hint is logged at
+ * startup then. The stores need {@code libkeyutils}, from the {@code keyutils-libs} or {@code libkeyutils1}
+ * package.
+ */
+public final class KernelKeyringStoreProvider implements SecretStoreProvider {
+    @Override
+    public String getName() {
+        return "kernel keyring";
+    }
+
+    @Override
+    public int getPriority() {
+        return 100;
+    }
+
+    @Override
+    public boolean isSecure() {
+        return true;
+    }
+
+    @Override
+    public boolean isPersistent() {
+        return false;
+    }
+
+    @Override
+    public boolean isLikelySupported() {
+        return System.getProperty("os.name").equals("Linux");
+    }
+
+    @Override
+    public boolean isSupported() {
+        return KernelKeyringBackedSecureStore.isSupported();
+    }
+
+    @Override
+    public SecretStore<StoredCredential> createCredentialStore() {
+        return new KernelKeyringBackedCredentialStore();
+    }
+
+    @Override
+    public SecretStore<StoredToken> createTokenStore() {
+        return new KernelKeyringBackedTokenStore();
+    }
+
+    @Override
+    public SecretStore<StoredTokenPair> createTokenPairStore() {
+        return new KernelKeyringBackedTokenPairStore();
+    }
+}
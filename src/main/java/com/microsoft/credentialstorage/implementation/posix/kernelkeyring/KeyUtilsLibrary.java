@@ -0,0 +1,214 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.implementation.posix.kernelkeyring;
+
+import com.sun.jna.LastErrorException;
+import com.sun.jna.Library;
+import com.sun.jna.Native;
+import com.sun.jna.NativeLong;
+import com.sun.jna.ptr.PointerByReference;
+
+/**
+ * Simple interface to the Linux kernel key retention service via libkeyutils.
+ *
+ * https://man7.org/linux/man-pages/man7/keyrings.7.html
+ */
+public interface KeyUtilsLibrary extends Library {
+
+    KeyUtilsLibrary INSTANCE = Native.load("keyutils", KeyUtilsLibrary.class);
+
+    /**
+     * Special keyring identifiers:
+     *   KEY_SPEC_THREAD_KEYRING,
+     *   KEY_SPEC_PROCESS_KEYRING,
+     *   KEY_SPEC_SESSION_KEYRING,
+     *   KEY_SPEC_USER_KEYRING,
+     *   KEY_SPEC_USER_SESSION_KEYRING
+     */
+    int KEY_SPEC_THREAD_KEYRING       = -1;
+    int KEY_SPEC_PROCESS_KEYRING      = -2;
+    int KEY_SPEC_SESSION_KEYRING      = -3;
+    int KEY_SPEC_USER_KEYRING         = -4;
+    int KEY_SPEC_USER_SESSION_KEYRING = -5;
+
+    /**
+     * Key permissions for the possessor and for the owning user
+     */
+    int KEY_POS_ALL = 0x3f000000;
+    int KEY_USR_ALL = 0x003f0000;
+
+    /**
+     * Key permissions for the possessor: view, read, write, search, link and set attributes
+     */
+    int KEY_POS_VIEW    = 0x01000000;
+    int KEY_POS_READ    = 0x02000000;
+    int KEY_POS_WRITE   = 0x04000000;
+    int KEY_POS_SEARCH  = 0x08000000;
+    int KEY_POS_LINK    = 0x10000000;
+    int KEY_POS_SETATTR = 0x20000000;
+
+    /**
+     * Key permissions for the owning user: view, read, write, search, link and set attributes
+     */
+    int KEY_USR_VIEW    = 0x00010000;
+    int KEY_USR_READ    = 0x00020000;
+    int KEY_USR_WRITE   = 0x00040000;
+    int KEY_USR_SEARCH  = 0x00080000;
+    int KEY_USR_LINK    = 0x00100000;
+    int KEY_USR_SETATTR = 0x00200000;
+
+    /**
+     * Key type for arbitrary user defined payloads
+     */
+    String KEY_TYPE_USER = "user";
+
+    /**
+     * Error codes reported through errno
+     */
+    int EPERM       = 1;
+    int ENOENT      = 2;
+    int EACCES      = 13;
+    int ENOSYS      = 38;
+    int EDQUOT      = 122;
+    int ENOKEY      = 126;
+    int EKEYEXPIRED = 127;
+    int EKEYREVOKED = 128;
+
+    /**
+     * Create or update a key and link it into a keyring.
+     *
+     * https://man7.org/linux/man-pages/man2/add_key.2.html
+     *
+     * @param type
+     *      key type, {@link #KEY_TYPE_USER}
+     * @param description
+     *      description of the key
+     * @param payload
+     *      payload of the key
+     * @param plen
+     *      length of the payload
+     * @param ringid
+     *      keyring to link the key to
+     *
+     * @return
+     *      serial number of the key
+     *
+     * @throws LastErrorException
+     *      errno
+     */
+    int add_key(String type, String description, byte[] payload, NativeLong plen, int ringid) throws LastErrorException;
+
+    /**
+     * Search a keyring tree for a key.
+     *
+     * https://man7.org/linux/man-pages/man3/keyctl_search.3.html
+     *
+     * @param ringid
+     *      keyring to search
+     * @param type
+     *      key type
+     * @param description
+     *      description of the key
+     * @param destringid
+     *      keyring to link the found key to, or 0
+     *
+     * @return
+     *      serial number of the key
+     *
+     * @throws LastErrorException
+     *      errno, {@link #ENOKEY} if the key is not found
+     */
+    NativeLong keyctl_search(int ringid, String type, String description, int destringid) throws LastErrorException;
+
+    /**
+     * Read the payload of a key into a buffer allocated with malloc.
+     *
+     * https://man7.org/linux/man-pages/man3/keyctl_read.3.html
+     *
+     * @param id
+     *      serial number of the key
+     * @param buffer
+     *      location to place the allocated buffer, it must be freed with {@link Native#free(long)}
+     *
+     * @return
+     *      length of the payload
+     *
+     * @throws LastErrorException
+     *      errno
+     */
+    int keyctl_read_alloc(int id, PointerByReference buffer) throws LastErrorException;
+
+    /**
+     * Describe a key into a buffer allocated with malloc. The description has the form
+     * {@code type;uid;gid;perm;description}.
+     *
+     * https://man7.org/linux/man-pages/man3/keyctl_describe.3.html
+     *
+     * @param id
+     *      serial number of the key
+     * @param buffer
+     *      location to place the allocated buffer, it must be freed with {@link Native#free(long)}
+     *
+     * @return
+     *      length of the description, without the terminating NUL
+     *
+     * @throws LastErrorException
+     *      errno
+     */
+    int keyctl_describe_alloc(int id, PointerByReference buffer) throws LastErrorException;
+
+    /**
+     * Unlink a key from a keyring.
+     *
+     * https://man7.org/linux/man-pages/man3/keyctl_unlink.3.html
+     *
+     * @param key
+     *      serial number of the key
+     * @param keyring
+     *      keyring to unlink the key from
+     *
+     * @return
+     *      0 on success
+     *
+     * @throws LastErrorException
+     *      errno
+     */
+    NativeLong keyctl_unlink(int key, int keyring) throws LastErrorException;
+
+    /**
+     * Change the permissions of a key.
+     *
+     * https://man7.org/linux/man-pages/man3/keyctl_setperm.3.html
+     *
+     * @param id
+     *      serial number of the key
+     * @param perm
+     *      permission mask
+     *
+     * @return
+     *      0 on success
+     *
+     * @throws LastErrorException
+     *      errno
+     */
+    NativeLong keyctl_setperm(int id, int perm) throws LastErrorException;
+
+    /**
+     * Get the persistent keyring of a user and link it to a keyring.
+     *
+     * https://man7.org/linux/man-pages/man3/keyctl_get_persistent.3.html
+     *
+     * @param uid
+     *      user id, -1 for the current user
+     * @param id
+     *      keyring to link the persistent keyring to
+     *
+     * @return
+     *      serial number of the persistent keyring
+     *
+     * @throws LastErrorException
+     *      errno
+     */
+    NativeLong keyctl_get_persistent(int uid, int id) throws LastErrorException;
+}
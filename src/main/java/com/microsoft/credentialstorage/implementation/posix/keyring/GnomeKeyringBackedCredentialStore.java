@@ -17,7 +17,7 @@ public final class GnomeKeyringBackedCredentialStore extends GnomeKeyringBackedS
         Objects.requireNonNull(secret, "secret cannot be null");
 
         if (INSTANCE != null && SCHEMA != null) {
-            logger.info("Adding a {} for {}", getType(), key);
+            logger.debug("Adding a {} for {}", getType(), key);
 
             final int result = writeSecret(key, secret.getUsername(), secret.getPassword());
 
@@ -5,14 +5,31 @@ package com.microsoft.credentialstorage.implementation.posix.keyring;
 
 import com.microsoft.credentialstorage.implementation.posix.internal.GLibLibrary;
 import com.microsoft.credentialstorage.model.StoredSecret;
+import com.microsoft.credentialstorage.SecretResult;
 import com.microsoft.credentialstorage.SecretStore;
+import com.microsoft.credentialstorage.SecretStoreTimeoutException;
 import com.microsoft.credentialstorage.implementation.posix.internal.GLibInitializer;
 import com.sun.jna.Pointer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
 import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static com.microsoft.credentialstorage.implementation.posix.keyring.GnomeKeyringLibrary.GNOME_KEYRING_ATTRIBUTE_SIZE;
 import static com.microsoft.credentialstorage.implementation.posix.keyring.GnomeKeyringLibrary.GNOME_KEYRING_ITEM_GENERIC_SECRET;
@@ -34,6 +51,14 @@ public abstract class GnomeKeyringBackedSecureStore<E extends StoredSecret> impl
     protected static final String ATTRIBUTE_KEY = "Key";
     protected static final String ATTRIBUTE_ACCOUNT = "Account";
 
+    private static final String GNOME_KEYRING_ERROR_DOMAIN = "gnome-keyring";
+
+    // the synchronous GNOME Keyring calls take no GCancellable, calls with a deadline run here; a thread stays
+    // busy until an abandoned call returns, so the pool is bounded and rejects calls while its threads are stuck
+    private static final int DEADLINE_THREADS = 4;
+    private static final int DEADLINE_QUEUE = 64;
+    private static final ThreadPoolExecutor DEADLINE_EXECUTOR = newDeadlineExecutor();
+
     /**
      * Read a secret from GNOME Keyring using its item API to get attributes containing username.
      *
@@ -42,11 +67,22 @@ public abstract class GnomeKeyringBackedSecureStore<E extends StoredSecret> impl
      */
     @Override
     public E get(final String key) {
+        return getResult(key).getValue();
+    }
+
+    /**
+     * Read a secret from GNOME Keyring, telling a missing secret from a failed call by its result code.
+     *
+     * @param key for which a secret is associated with
+     * @return result of the read, failures carry the {@code GnomeKeyringResult} in the {@code gnome-keyring} domain
+     */
+    @Override
+    public SecretResult<E> getResult(final String key) {
         Objects.requireNonNull(key, "key cannot be null");
 
-        logger.info("Getting {} for {}", getType(), key);
+        logger.debug("Getting {} for {}", getType(), key);
 
-        return readSecret(key, this::create);
+        return readSecretResult(key, this::create);
     }
 
     /**
@@ -57,12 +93,117 @@ public abstract class GnomeKeyringBackedSecureStore<E extends StoredSecret> impl
     @Override
     public boolean delete(final String key) {
         Objects.requireNonNull(key, "key cannot be null");
-        logger.info("Deleting {} for {}", getType(), key);
+        logger.debug("Deleting {} for {}", getType(), key);
 
         final int result = deleteSecret(key);
         return checkResult(result, "Could not delete secret from storage");
     }
 
+    /**
+     * Read a secret, giving up if it takes longer than the timeout.
+     *
+     * GNOME Keyring calls cannot be cancelled, so the call runs on a separate thread which is abandoned
+     * when the timeout elapses. Interrupting the calling thread also abandons the call. Few such threads are
+     * kept; while abandoned calls hold them and more calls are waiting, calls fail at once.
+     *
+     * @param key for which a secret is associated with
+     * @param timeout time the lookup may take
+     * @return secret
+     * @throws SecretStoreTimeoutException if the lookup did not complete in time, or could not be started
+     */
+    public E get(final String key, final Duration timeout) {
+        return withDeadline(timeout, () -> get(key), "Getting " + getType());
+    }
+
+    /**
+     * Save a secret, giving up if it takes longer than the timeout, see {@link #get(String, Duration)}.
+     *
+     * @param key for which a secret is associated with
+     * @param secret secret to be stored
+     * @param timeout time the write may take
+     * @return {@code true} if the secret was stored
+     * @throws SecretStoreTimeoutException if the write did not complete in time, it may still be applied
+     */
+    public boolean add(final String key, final E secret, final Duration timeout) {
+        return withDeadline(timeout, () -> add(key, secret), "Adding " + getType());
+    }
+
+    /**
+     * Delete a secret, giving up if it takes longer than the timeout, see {@link #get(String, Duration)}.
+     *
+     * @param key for which a secret is associated with
+     * @param timeout time the deletion may take
+     * @return {@code true} if the secret was deleted
+     * @throws SecretStoreTimeoutException if the deletion did not complete in time, it may still be applied
+     */
+    public boolean delete(final String key, final Duration timeout) {
+        return withDeadline(timeout, () -> delete(key), "Deleting " + getType());
+    }
+
+    /**
+     * List the keys of the secrets of this type.
+     *
+     * GNOME Keyring returns all matching items at once; the key attribute of each item is read as the stream
+     * is consumed. The items are released when the stream is closed.
+     *
+     * @return keys of the secrets
+     */
+    @Override
+    public Stream<String> keys() {
+        if (INSTANCE == null || SCHEMA == null) {
+            logger.warn("Gnome Keyring is not available.");
+            return Stream.empty();
+        }
+
+        logger.debug("Listing {} keys", getType());
+
+        final Pointer searchAttributes = GLibLibrary.INSTANCE.g_array_new(0, 0, GNOME_KEYRING_ATTRIBUTE_SIZE);
+        final Pointer[] foundList = new Pointer[1];
+        try {
+            INSTANCE.gnome_keyring_attribute_list_append_string(searchAttributes, ATTRIBUTE_TYPE, getType());
+
+            final int result = INSTANCE.gnome_keyring_find_items_sync(GNOME_KEYRING_ITEM_GENERIC_SECRET,
+                    searchAttributes, foundList);
+
+            if (result == GnomeKeyringLibrary.GNOME_KEYRING_RESULT_NO_MATCH
+                    || !checkResult(result, "Could not list the items in storage.")) {
+                if (foundList[0] != null) {
+                    INSTANCE.gnome_keyring_found_list_free(foundList[0]);
+                }
+                return Stream.empty();
+            }
+        } finally {
+            INSTANCE.gnome_keyring_attribute_list_free(searchAttributes);
+        }
+
+        final Pointer found = foundList[0];
+        if (found == null) {
+            return Stream.empty();
+        }
+
+        final Spliterator<String> spliterator = new Spliterators.AbstractSpliterator<String>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            private Pointer next = found;
+
+            @Override
+            public boolean tryAdvance(final Consumer<? super String> action) {
+                while (next != null) {
+                    final Pointer data = next.getPointer(GLibLibrary.GList.DATA_OFFSET);
+                    next = next.getPointer(GLibLibrary.GList.NEXT_OFFSET);
+
+                    final String key = data != null ? getAttribute(data, ATTRIBUTE_KEY) : null;
+                    if (key != null) {
+                        action.accept(key);
+                        return true;
+                    }
+                }
+                return false;
+            }
+        };
+
+        return StreamSupport.stream(spliterator, false).onClose(() -> INSTANCE.gnome_keyring_found_list_free(found));
+    }
+
     /**
      * GNOME Keyring is considered secure
      *
@@ -122,6 +263,10 @@ public abstract class GnomeKeyringBackedSecureStore<E extends StoredSecret> impl
     }
 
     protected <T> T readSecret(final String key, final BiFunction<String, char[], T> mapper) {
+        return readSecretResult(key, mapper).getValue();
+    }
+
+    protected <T> SecretResult<T> readSecretResult(final String key, final BiFunction<String, char[], T> mapper) {
         if (INSTANCE != null && SCHEMA != null) {
             final Pointer searchAttributes = GLibLibrary.INSTANCE.g_array_new(0, 0, GNOME_KEYRING_ATTRIBUTE_SIZE);
             final Pointer[] foundList = new Pointer[1];
@@ -134,40 +279,34 @@ public abstract class GnomeKeyringBackedSecureStore<E extends StoredSecret> impl
                 final int result = INSTANCE.gnome_keyring_find_items_sync(GNOME_KEYRING_ITEM_GENERIC_SECRET,
                         searchAttributes, foundList);
 
-                if (checkResult(result, "Could not find the item in storage.")) {
-                    if (foundList[0] != null && INSTANCE.g_list_length(foundList[0]) > 0) {
-                        final GnomeKeyringLibrary.GnomeKeyringFound item = INSTANCE.g_list_nth_data(foundList[0], 0);
-                        if (item != null && item.secret != null) {
-                            // iterate attribute to search username
-                            final GLibLibrary.GArray attrArray = new GLibLibrary.GArray(item.attributes);
-                            if (attrArray.len > 0) {
-                                // attrArray.data is actually array of GnomeKeyringAttribute, using dummy to convert it
-                                final GnomeKeyringLibrary.GnomeKeyringAttribute dummyArray = new GnomeKeyringLibrary.GnomeKeyringAttribute(attrArray.data);
-                                final GnomeKeyringLibrary.GnomeKeyringAttribute[] attrib =
-                                        (GnomeKeyringLibrary.GnomeKeyringAttribute[]) dummyArray.toArray(attrArray.len);
-
-                                for (GnomeKeyringLibrary.GnomeKeyringAttribute attr : attrib) {
-                                    if (ATTRIBUTE_ACCOUNT.equals(attr.name)) {
-                                        final String userName = attr.value;
-                                        final char[] secret = item.secret.toCharArray();
-                                        return mapper.apply(userName, secret);
-                                    }
-                                }
-                            }
-                        }
+                if (result == GnomeKeyringLibrary.GNOME_KEYRING_RESULT_NO_MATCH) {
+                    return SecretResult.notFound();
+                }
+                if (!checkResult(result, "Could not find the item in storage.")) {
+                    return toResult(result);
+                }
+
+                // the first item found, read from its GList node
+                final Pointer item = foundList[0] != null ? foundList[0].getPointer(GLibLibrary.GList.DATA_OFFSET) : null;
+                final Pointer secret = item != null ? item.getPointer(GnomeKeyringLibrary.GnomeKeyringFound.SECRET_OFFSET) : null;
+                if (secret != null) {
+                    // iterate attribute to search username
+                    final String userName = getAttribute(item, ATTRIBUTE_ACCOUNT);
+                    if (userName != null) {
+                        return SecretResult.found(mapper.apply(userName, secret.getString(0).toCharArray()));
                     }
                 }
+                return SecretResult.notFound();
             } finally {
                 if (foundList[0] != null) {
                     INSTANCE.gnome_keyring_found_list_free(foundList[0]);
                 }
                 INSTANCE.gnome_keyring_attribute_list_free(searchAttributes);
             }
-        } else {
-            logger.warn("Gnome Keyring is not available.");
         }
 
-        return null;
+        logger.warn("Gnome Keyring is not available.");
+        return toResult(GnomeKeyringLibrary.GNOME_KEYRING_RESULT_NO_KEYRING_DAEMON);
     }
 
     protected int writeSecret(final String key, final String account, final char[] secret) {
@@ -202,6 +341,78 @@ public abstract class GnomeKeyringBackedSecureStore<E extends StoredSecret> impl
         return GnomeKeyringLibrary.GNOME_KEYRING_RESULT_NO_KEYRING_DAEMON;
     }
 
+    private static <T> T withDeadline(final Duration timeout, final Supplier<T> operation, final String description) {
+        Objects.requireNonNull(timeout, "timeout cannot be null");
+
+        final Future<T> call;
+        try {
+            call = DEADLINE_EXECUTOR.submit(operation::get);
+        } catch (final RejectedExecutionException e) {
+            logger.warn("{} was not started, GNOME Keyring calls are stuck.", description);
+            throw new SecretStoreTimeoutException(description + " was not started, " + DEADLINE_THREADS
+                    + " earlier calls did not complete", timeout);
+        }
+        try {
+            return call.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (final TimeoutException e) {
+            call.cancel(true);
+            // a call still waiting for a thread does not keep its place
+            DEADLINE_EXECUTOR.purge();
+            throw new SecretStoreTimeoutException(description + " did not complete within " + timeout, timeout);
+        } catch (final InterruptedException e) {
+            call.cancel(true);
+            DEADLINE_EXECUTOR.purge();
+            Thread.currentThread().interrupt();
+            throw new CancellationException(description + " was interrupted");
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static ThreadPoolExecutor newDeadlineExecutor() {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(DEADLINE_THREADS, DEADLINE_THREADS,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(DEADLINE_QUEUE), runnable -> {
+                    final Thread thread = new Thread(runnable, "gnome-keyring-call");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Read a string attribute of a found item.
+     *
+     * @param item GnomeKeyringFound
+     * @param name attribute name
+     * @return attribute value, {@code null} if the item has no such attribute
+     */
+    private static String getAttribute(final Pointer item, final String name) {
+        final Pointer attributes = item.getPointer(GnomeKeyringLibrary.GnomeKeyringFound.ATTRIBUTES_OFFSET);
+        if (attributes == null) {
+            return null;
+        }
+
+        // GArray of GnomeKeyringAttribute, compared without reading the values of the other attributes
+        final Pointer data = attributes.getPointer(GLibLibrary.GArray.DATA_OFFSET);
+        final int length = attributes.getInt(GLibLibrary.GArray.LEN_OFFSET);
+        for (int i = 0; i < length; i++) {
+            final Pointer attribute = data.share((long) i * GNOME_KEYRING_ATTRIBUTE_SIZE);
+            final Pointer attributeName = attribute.getPointer(GnomeKeyringLibrary.GnomeKeyringAttribute.NAME_OFFSET);
+            if (attributeName != null && name.equals(attributeName.getString(0))) {
+                final Pointer value = attribute.getPointer(GnomeKeyringLibrary.GnomeKeyringAttribute.VALUE_OFFSET);
+                return value != null ? value.getString(0) : null;
+            }
+        }
+        return null;
+    }
+
     private static GnomeKeyringLibrary.PointerToPointer getGnomeKeyringInfoStruct() {
         // First make sure we can access gnome-keyring (ssh session may have trouble accessing gnome-keyring)     
         final GnomeKeyringLibrary.PointerToPointer keyring_info_container = new GnomeKeyringLibrary.PointerToPointer();
@@ -336,6 +547,26 @@ public abstract class GnomeKeyringBackedSecureStore<E extends StoredSecret> impl
         return System.getProperty("os.name").equals("Linux");
     }
 
+    private static <T> SecretResult<T> toResult(final int retCode) {
+        final SecretResult.Status status;
+        switch (retCode) {
+            case GnomeKeyringLibrary.GNOME_KEYRING_RESULT_DENIED:
+            case GnomeKeyringLibrary.GNOME_KEYRING_RESULT_CANCELLED:
+                // the user denied access to the keyring, or dismissed its unlock prompt
+                status = SecretResult.Status.LOCKED;
+                break;
+            case GnomeKeyringLibrary.GNOME_KEYRING_RESULT_NO_KEYRING_DAEMON:
+            case GnomeKeyringLibrary.GNOME_KEYRING_RESULT_NO_SUCH_KEYRING:
+            case GnomeKeyringLibrary.GNOME_KEYRING_RESULT_IO_ERROR:
+                status = SecretResult.Status.UNAVAILABLE;
+                break;
+            default:
+                status = SecretResult.Status.FAILED;
+                break;
+        }
+        return SecretResult.failed(status, GNOME_KEYRING_ERROR_DOMAIN, retCode, "GNOME Keyring result " + retCode);
+    }
+
     protected static boolean checkResult(final int retCode, final String message) {
         if (retCode != GnomeKeyringLibrary.GNOME_KEYRING_RESULT_OK) {
             logger.error(message);
@@ -3,11 +3,13 @@
 
 package com.microsoft.credentialstorage.implementation.posix.keyring;
 
+import com.microsoft.credentialstorage.SecretResult;
 import com.microsoft.credentialstorage.model.StoredToken;
 import com.microsoft.credentialstorage.model.StoredTokenPair;
 import com.microsoft.credentialstorage.model.StoredTokenType;
 
 import java.util.Objects;
+import java.util.stream.Stream;
 
 /**
  * GNOME Keyring store for a token pair.
@@ -17,22 +19,28 @@ public final class GnomeKeyringBackedTokenPairStore extends GnomeKeyringBackedSe
     private static final String REFRESH_TOKEN = "/refreshToken";
 
     @Override
-    public StoredTokenPair get(final String key) {
+    public SecretResult<StoredTokenPair> getResult(final String key) {
         Objects.requireNonNull(key, "key cannot be null");
 
-        logger.info("Getting {} for {}", getType(), key);
+        logger.debug("Getting {} for {}", getType(), key);
 
-        final StoredToken accessToken = readSecret(key + ACCESS_TOKEN,
+        final SecretResult<StoredToken> accessToken = readSecretResult(key + ACCESS_TOKEN,
                 (userName, password) -> new StoredToken(password, StoredTokenType.ACCESS));
-        final StoredToken refreshToken = readSecret(key + REFRESH_TOKEN,
+        if (accessToken.isFailure()) {
+            return accessToken.asFailure();
+        }
+        final SecretResult<StoredToken> refreshToken = readSecretResult(key + REFRESH_TOKEN,
                 (userName, password) -> new StoredToken(password, StoredTokenType.REFRESH));
+        if (refreshToken.isFailure()) {
+            return refreshToken.asFailure();
+        }
 
         // no token found
-        if (accessToken == null && refreshToken == null) {
-            return null;
+        if (!accessToken.isFound() && !refreshToken.isFound()) {
+            return SecretResult.notFound();
         }
 
-        return new StoredTokenPair(accessToken, refreshToken);
+        return SecretResult.found(new StoredTokenPair(accessToken.getValue(), refreshToken.getValue()));
     }
 
     @Override
@@ -40,7 +48,7 @@ public final class GnomeKeyringBackedTokenPairStore extends GnomeKeyringBackedSe
         Objects.requireNonNull(key, "key cannot be null");
         Objects.requireNonNull(secret, "secret cannot be null");
 
-        logger.info("Adding a {} for {}", getType(), key);
+        logger.debug("Adding a {} for {}", getType(), key);
 
         int result = writeSecret(key + ACCESS_TOKEN,
                 secret.getAccessToken().getType().getDescription(),
@@ -57,7 +65,7 @@ public final class GnomeKeyringBackedTokenPairStore extends GnomeKeyringBackedSe
     public boolean delete(String key) {
         Objects.requireNonNull(key, "key cannot be null");
 
-        logger.info("Deleting {} for {}", getType(), key);
+        logger.debug("Deleting {} for {}", getType(), key);
 
         int result = deleteSecret(key + ACCESS_TOKEN);
         checkResult(result, "Could not delete access token from storage");
@@ -66,6 +74,19 @@ public final class GnomeKeyringBackedTokenPairStore extends GnomeKeyringBackedSe
         return checkResult(result, "Could not delete refresh token from storage");
     }
 
+    /**
+     * List the keys of the token pairs, whose tokens are stored under the key with a suffix.
+     *
+     * @return keys of the token pairs
+     */
+    @Override
+    public Stream<String> keys() {
+        return super.keys()
+                .filter(key -> key.endsWith(ACCESS_TOKEN) || key.endsWith(REFRESH_TOKEN))
+                .map(key -> key.substring(0, key.lastIndexOf('/')))
+                .distinct();
+    }
+
     @Override
     protected StoredTokenPair create(String username, char[] secret) {
         // not used
@@ -22,7 +22,7 @@ public final class GnomeKeyringBackedTokenStore extends GnomeKeyringBackedSecure
         Objects.requireNonNull(key, "key cannot be null");
         Objects.requireNonNull(token, "secret cannot be null");
 
-        logger.info("Adding a {} for {}", getType(), key);
+        logger.debug("Adding a {} for {}", getType(), key);
 
         final int result = writeSecret(key, token.getType().getDescription(), token.getValue());
         return checkResult(result, "Could not save secret to the storage.");
@@ -82,7 +82,7 @@ public interface GnomeKeyringLibrary extends Library {
     int GNOME_KEYRING_ATTRIBUTE_TYPE_STRING         = 0;
     int GNOME_KEYRING_ATTRIBUTE_TYPE_UINT32         = 1;
 
-    int GNOME_KEYRING_ATTRIBUTE_SIZE                = Native.POINTER_SIZE * 3;
+    int GNOME_KEYRING_ATTRIBUTE_SIZE                = GnomeKeyringAttribute.SIZE;
 
     /**
      * Item Attributes — Attributes of individual keyring items.
@@ -102,6 +102,16 @@ public interface GnomeKeyringLibrary extends Library {
     }
 
     class GnomeKeyringAttribute extends Structure {
+        /**
+         * Field offsets, to read an attribute without the reflection of a {@code Structure}.
+         * The type is padded to the pointer size.
+         */
+        public static final int NAME_OFFSET = 0;
+        public static final int VALUE_OFFSET = Native.POINTER_SIZE * 2;
+        /**
+         * Size of an attribute, the stride of an attribute array.
+         */
+        public static final int SIZE = Native.POINTER_SIZE * 3;
 
         @Override
         protected List<String> getFieldOrder() {
@@ -151,6 +161,12 @@ public interface GnomeKeyringLibrary extends Library {
     }
 
     class GnomeKeyringFound extends Structure {
+        /**
+         * Field offsets, to read a found item without the reflection of a {@code Structure}.
+         * The item id is padded to the pointer size.
+         */
+        public static final int ATTRIBUTES_OFFSET = Native.POINTER_SIZE * 2;
+        public static final int SECRET_OFFSET = Native.POINTER_SIZE * 3;
         @Override
         protected List<String> getFieldOrder() {
             return Arrays.asList("keyring", "item_id", "attributes", "secret");
@@ -160,6 +176,8 @@ public interface GnomeKeyringLibrary extends Library {
         public int item_id;
         public Pointer attributes;
         public String secret;
+
+        public GnomeKeyringFound() {}
     }
 
     /**
@@ -0,0 +1,61 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.implementation.posix.keyring;
+
+import com.microsoft.credentialstorage.SecretStore;
+import com.microsoft.credentialstorage.SecretStoreProvider;
+import com.microsoft.credentialstorage.implementation.posix.internal.SessionBus;
+import com.microsoft.credentialstorage.model.StoredCredential;
+import com.microsoft.credentialstorage.model.StoredToken;
+import com.microsoft.credentialstorage.model.StoredTokenPair;
+
+/**
+ * Provider of the GNOME Keyring stores, for systems without libsecret.
+ */
+public final class GnomeKeyringStoreProvider implements SecretStoreProvider {
+    @Override
+    public String getName() {
+        return "GNOME Keyring";
+    }
+
+    @Override
+    public int getPriority() {
+        return 300;
+    }
+
+    @Override
+    public boolean isSecure() {
+        return true;
+    }
+
+    @Override
+    public boolean isPersistent() {
+        return true;
+    }
+
+    @Override
+    public boolean isLikelySupported() {
+        return SessionBus.isLikelyAvailable();
+    }
+
+    @Override
+    public boolean isSupported() {
+        return GnomeKeyringBackedSecureStore.isSupported();
+    }
+
+    @Override
+    public SecretStore<StoredCredential> createCredentialStore() {
+        return new GnomeKeyringBackedCredentialStore();
+    }
+
+    @Override
+    public SecretStore<StoredToken> createTokenStore() {
+        return new GnomeKeyringBackedTokenStore();
+    }
+
+    @Override
+    public SecretStore<StoredTokenPair> createTokenPairStore() {
+        return new GnomeKeyringBackedTokenPairStore();
+    }
+}
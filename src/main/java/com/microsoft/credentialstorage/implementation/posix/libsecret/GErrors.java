@@ -0,0 +1,92 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.implementation.posix.libsecret;
+
+import com.microsoft.credentialstorage.SecretResult;
+
+/**
+ * Classification of the {@code GError}s of libsecret calls, by the name of their domain quark and their code.
+ */
+final class GErrors {
+    static final String SECRET_ERROR = "secret-error";
+    static final String DBUS_ERROR = "g-dbus-error-quark";
+    static final String IO_ERROR = "g-io-error-quark";
+
+    // SecretError
+    static final int SECRET_ERROR_IS_LOCKED = 2;
+
+    // GDBusError
+    static final int DBUS_ERROR_SERVICE_UNKNOWN = 2;
+    static final int DBUS_ERROR_NAME_HAS_NO_OWNER = 3;
+    static final int DBUS_ERROR_NO_REPLY = 4;
+    static final int DBUS_ERROR_IO_ERROR = 5;
+    static final int DBUS_ERROR_NO_SERVER = 11;
+    static final int DBUS_ERROR_TIMEOUT = 12;
+    static final int DBUS_ERROR_DISCONNECTED = 15;
+    static final int DBUS_ERROR_TIMED_OUT = 20;
+
+    // GIOErrorEnum
+    static final int IO_ERROR_NOT_FOUND = 1;
+    static final int IO_ERROR_CLOSED = 18;
+    static final int IO_ERROR_CANCELLED = 19;
+    static final int IO_ERROR_TIMED_OUT = 24;
+
+    private GErrors() {
+    }
+
+    /**
+     * @param domain name of the domain quark, {@code null} if unknown
+     * @param code error code
+     * @return status of a read which failed with the error
+     */
+    static SecretResult.Status classify(final String domain, final int code) {
+        if (SECRET_ERROR.equals(domain)) {
+            return code == SECRET_ERROR_IS_LOCKED ? SecretResult.Status.LOCKED : SecretResult.Status.FAILED;
+        }
+
+        if (DBUS_ERROR.equals(domain)) {
+            switch (code) {
+                case DBUS_ERROR_SERVICE_UNKNOWN:
+                case DBUS_ERROR_NAME_HAS_NO_OWNER:
+                case DBUS_ERROR_IO_ERROR:
+                case DBUS_ERROR_NO_SERVER:
+                case DBUS_ERROR_DISCONNECTED:
+                    return SecretResult.Status.UNAVAILABLE;
+                case DBUS_ERROR_NO_REPLY:
+                case DBUS_ERROR_TIMEOUT:
+                case DBUS_ERROR_TIMED_OUT:
+                    return SecretResult.Status.TIMEOUT;
+                default:
+                    return SecretResult.Status.FAILED;
+            }
+        }
+
+        if (IO_ERROR.equals(domain)) {
+            switch (code) {
+                case IO_ERROR_NOT_FOUND:
+                case IO_ERROR_CLOSED:
+                    // no session bus, or the connection to it was closed
+                    return SecretResult.Status.UNAVAILABLE;
+                case IO_ERROR_CANCELLED:
+                case IO_ERROR_TIMED_OUT:
+                    return SecretResult.Status.TIMEOUT;
+                default:
+                    return SecretResult.Status.FAILED;
+            }
+        }
+
+        return SecretResult.Status.FAILED;
+    }
+
+    /**
+     * @param domain name of the domain quark, {@code null} if unknown
+     * @param code error code
+     * @param message description of the error
+     * @param <T> secret type
+     * @return result of a read which failed with the error
+     */
+    static <T> SecretResult<T> toResult(final String domain, final int code, final String message) {
+        return SecretResult.failed(classify(domain, code), domain, code, message);
+    }
+}
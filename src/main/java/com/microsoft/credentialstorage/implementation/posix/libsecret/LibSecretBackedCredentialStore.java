@@ -8,18 +8,35 @@ import com.microsoft.credentialstorage.model.StoredCredential;
 import com.sun.jna.ptr.PointerByReference;
 
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Libsecret store for a credential.
  */
 public final class LibSecretBackedCredentialStore extends LibSecretBackedSecureStore<StoredCredential> {
+    /**
+     * Creates a store saving the credentials to disk.
+     */
+    public LibSecretBackedCredentialStore() {
+        super();
+    }
+
+    /**
+     * Creates a store saving the credentials to disk, or keeping them in the session collection.
+     *
+     * @param sessionScoped {@code true} to keep the credentials in memory until the user's session ends
+     */
+    public LibSecretBackedCredentialStore(final boolean sessionScoped) {
+        super(sessionScoped);
+    }
+
     @Override
     public boolean add(final String key, StoredCredential secret) {
         Objects.requireNonNull(key, "key cannot be null");
         Objects.requireNonNull(secret, "secret cannot be null");
 
         if (INSTANCE != null && SCHEMA != null) {
-            logger.info("Adding a {} for {}", getType(), key);
+            logger.debug("Adding a {} for {}", getType(), key);
 
             final PointerByReference error = new PointerByReference();
             try {
@@ -35,6 +52,16 @@ public final class LibSecretBackedCredentialStore extends LibSecretBackedSecureS
         return false;
     }
 
+    @Override
+    public CompletableFuture<Boolean> addAsync(final String key, final StoredCredential secret) {
+        Objects.requireNonNull(key, "key cannot be null");
+        Objects.requireNonNull(secret, "secret cannot be null");
+
+        logger.debug("Adding a {} for {} asynchronously", getType(), key);
+
+        return writeSecretAsync(key, secret.getUsername(), secret.getPassword());
+    }
+
     @Override
     protected StoredCredential create(String username, char[] secret) {
         return new StoredCredential(username, secret);
@@ -3,21 +3,38 @@
 
 package com.microsoft.credentialstorage.implementation.posix.libsecret;
 
+import com.microsoft.credentialstorage.SecretResult;
 import com.microsoft.credentialstorage.SecretStore;
+import com.microsoft.credentialstorage.SecretStoreListener;
+import com.microsoft.credentialstorage.SecretStoreTimeoutException;
+import com.microsoft.credentialstorage.implementation.posix.internal.CancellableDeadline;
 import com.microsoft.credentialstorage.implementation.posix.internal.GLibInitializer;
 import com.microsoft.credentialstorage.implementation.posix.internal.GLibLibrary;
+import com.microsoft.credentialstorage.implementation.posix.internal.GMainLoopThread;
 import com.microsoft.credentialstorage.implementation.posix.libsecret.LibSecretLibrary.GError;
 import com.microsoft.credentialstorage.model.StoredSecret;
 import com.sun.jna.Memory;
+import com.sun.jna.Native;
 import com.sun.jna.Pointer;
 import com.sun.jna.Structure;
 import com.sun.jna.ptr.PointerByReference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import static com.microsoft.credentialstorage.implementation.posix.libsecret.LibSecretLibrary.SECRET_SEARCH_ALL;
 import static com.microsoft.credentialstorage.implementation.posix.libsecret.LibSecretLibrary.SECRET_SEARCH_LOAD_SECRETS;
 import static com.microsoft.credentialstorage.implementation.posix.libsecret.LibSecretLibrary.SECRET_SEARCH_UNLOCK;
 
@@ -38,6 +55,34 @@ public abstract class LibSecretBackedSecureStore<E extends StoredSecret> impleme
     protected static final String ATTRIBUTE_KEY = "Key";
     protected static final String ATTRIBUTE_ACCOUNT = "Account";
 
+    // deadline of the blocking calls made by the current thread
+    private static final ThreadLocal<Deadline> DEADLINE = new ThreadLocal<>();
+
+    // prefix of the type of the secrets of session-scoped stores
+    private static final String SESSION_TYPE_PREFIX = "Session";
+
+    private final boolean sessionScoped;
+
+    /**
+     * Creates a store saving the secrets to disk, in the default collection.
+     */
+    protected LibSecretBackedSecureStore() {
+        this(false);
+    }
+
+    /**
+     * Creates a store saving the secrets to disk, or keeping them in the session collection, which the secret
+     * service holds in memory until the user's session ends.
+     *
+     * Secrets of session-scoped stores have a type of their own, so that they are not mixed up with the secrets
+     * saved to disk under the same key.
+     *
+     * @param sessionScoped {@code true} to keep the secrets in the session collection
+     */
+    protected LibSecretBackedSecureStore(final boolean sessionScoped) {
+        this.sessionScoped = sessionScoped;
+    }
+
     /**
      * Read a secret from Libsecret using its item API to get attributes containing username.
      *
@@ -46,11 +91,23 @@ public abstract class LibSecretBackedSecureStore<E extends StoredSecret> impleme
      */
     @Override
     public E get(final String key) {
+        return getResult(key).getValue();
+    }
+
+    /**
+     * Read a secret from Libsecret, telling a missing secret from a failed search by the domain and code of
+     * the {@code GError}, or from an item which could not be unlocked.
+     *
+     * @param key for which a secret is associated with
+     * @return result of the read
+     */
+    @Override
+    public SecretResult<E> getResult(final String key) {
         Objects.requireNonNull(key, "key cannot be null");
 
-        logger.info("Getting {} for {}", getType(), key);
+        logger.debug("Getting {} for {}", getType(), key);
 
-        return readSecret(key, this::create);
+        return readSecretResult(key, this::create);
     }
 
     /**
@@ -61,7 +118,7 @@ public abstract class LibSecretBackedSecureStore<E extends StoredSecret> impleme
     @Override
     public boolean delete(final String key) {
         Objects.requireNonNull(key, "key cannot be null");
-        logger.info("Deleting {} for {}", getType(), key);
+        logger.debug("Deleting {} for {}", getType(), key);
 
         PointerByReference error = new PointerByReference();
         try {
@@ -74,6 +131,163 @@ public abstract class LibSecretBackedSecureStore<E extends StoredSecret> impleme
         }
     }
 
+    /**
+     * Read a secret, cancelling the lookup if it takes longer than the timeout.
+     *
+     * @param key for which a secret is associated with
+     * @param timeout time the lookup may take
+     * @return secret
+     * @throws SecretStoreTimeoutException if the lookup was cancelled
+     */
+    public E get(final String key, final Duration timeout) {
+        return withDeadline(timeout, () -> get(key), "Getting " + getType());
+    }
+
+    /**
+     * Read a secret, cancelling the lookup if it takes longer than the timeout.
+     *
+     * @param key for which a secret is associated with
+     * @param timeout time the lookup may take
+     * @return result of the read, {@link SecretResult.Status#TIMEOUT} if the lookup was cancelled
+     */
+    public SecretResult<E> getResult(final String key, final Duration timeout) {
+        try {
+            return withDeadline(timeout, () -> getResult(key), "Getting " + getType());
+        } catch (final SecretStoreTimeoutException e) {
+            return SecretResult.failed(SecretResult.Status.TIMEOUT, GErrors.IO_ERROR, GErrors.IO_ERROR_CANCELLED,
+                    e.getMessage());
+        }
+    }
+
+    /**
+     * Save a secret, cancelling the write if it takes longer than the timeout.
+     *
+     * @param key for which a secret is associated with
+     * @param secret secret to be stored
+     * @param timeout time the write may take
+     * @return {@code true} if the secret was stored
+     * @throws SecretStoreTimeoutException if the write was cancelled, it may or may not have been applied
+     */
+    public boolean add(final String key, final E secret, final Duration timeout) {
+        return withDeadline(timeout, () -> add(key, secret), "Adding " + getType());
+    }
+
+    /**
+     * Delete a secret, cancelling the deletion if it takes longer than the timeout.
+     *
+     * @param key for which a secret is associated with
+     * @param timeout time the deletion may take
+     * @return {@code true} if the secret was deleted
+     * @throws SecretStoreTimeoutException if the deletion was cancelled, it may or may not have been applied
+     */
+    public boolean delete(final String key, final Duration timeout) {
+        return withDeadline(timeout, () -> delete(key), "Deleting " + getType());
+    }
+
+    /**
+     * Read a secret without blocking the calling thread. The search runs on the GLib main loop thread,
+     * see {@link GMainLoopThread}.
+     *
+     * @param key for which a secret is associated with
+     * @return completes with the secret, or {@code null} if it is not found or the search failed
+     */
+    public CompletableFuture<E> getAsync(final String key) {
+        Objects.requireNonNull(key, "key cannot be null");
+
+        logger.debug("Getting {} for {} asynchronously", getType(), key);
+
+        return readSecretAsync(key, this::create);
+    }
+
+    /**
+     * Save a secret without blocking the calling thread. The secret can be cleared once the future completes.
+     *
+     * @param key for which a secret is associated with
+     * @param secret secret to be stored
+     * @return completes with {@code true} if the secret was stored
+     */
+    public abstract CompletableFuture<Boolean> addAsync(String key, E secret);
+
+    /**
+     * Delete a secret without blocking the calling thread.
+     *
+     * @param key for which a secret is associated with
+     * @return completes with {@code true} if the secret was deleted
+     */
+    public CompletableFuture<Boolean> deleteAsync(final String key) {
+        Objects.requireNonNull(key, "key cannot be null");
+
+        logger.debug("Deleting {} for {} asynchronously", getType(), key);
+
+        return deleteSecretAsync(key);
+    }
+
+    /**
+     * List the keys of the secrets of this type, in all collections.
+     *
+     * The Secret Service returns all matching items at once, without their secrets; the key attribute of each item
+     * is read as the stream is consumed. The items are released when the stream is closed.
+     *
+     * @return keys of the secrets
+     */
+    @Override
+    public Stream<String> keys() {
+        if (INSTANCE == null || SCHEMA == null) {
+            logger.warn("Libsecret is not available.");
+            return Stream.empty();
+        }
+
+        logger.debug("Listing {} keys", getType());
+
+        final PointerByReference error = new PointerByReference();
+        final Pointer items;
+        try (AttributeTable attributes = new AttributeTable()) {
+            attributes.put(ATTRIBUTE_TYPE, getStoredType());
+
+            // locked items are listed too, their attributes are readable without unlocking
+            items = INSTANCE.secret_service_search_sync(null, SCHEMA,
+                    attributes.table, SECRET_SEARCH_ALL, null, error);
+
+            if (!checkResult(error, "Could not list the items in storage.")) {
+                if (items != null) {
+                    freeItems(items);
+                }
+                return Stream.empty();
+            }
+        } finally {
+            if (error.getValue() != null) {
+                GLibLibrary.INSTANCE.g_error_free(error.getValue());
+            }
+        }
+
+        if (items == null) {
+            return Stream.empty();
+        }
+
+        final Spliterator<String> spliterator = new Spliterators.AbstractSpliterator<String>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            private Pointer next = items;
+
+            @Override
+            public boolean tryAdvance(final Consumer<? super String> action) {
+                while (next != null) {
+                    final Pointer data = next.getPointer(GLibLibrary.GList.DATA_OFFSET);
+                    next = next.getPointer(GLibLibrary.GList.NEXT_OFFSET);
+
+                    final String key = data != null ? getAttribute(data, ATTRIBUTE_KEY) : null;
+                    if (key != null) {
+                        remember(data, key);
+                        action.accept(key);
+                        return true;
+                    }
+                }
+                return false;
+            }
+        };
+
+        return StreamSupport.stream(spliterator, false).onClose(() -> freeItems(items));
+    }
+
     /**
      * Libsecret is considered secure
      *
@@ -84,6 +298,31 @@ public abstract class LibSecretBackedSecureStore<E extends StoredSecret> impleme
         return true;
     }
 
+    /**
+     * Register a listener notified of the changes to the secrets of this type reported by the secret service,
+     * whichever process made them. The listeners are shared by the stores of the same type.
+     *
+     * @param listener listener to notify
+     * @throws UnsupportedOperationException if the signals of the secret service cannot be received
+     */
+    @Override
+    public void addListener(final SecretStoreListener listener) {
+        final LibSecretChangeWatcher watcher = INSTANCE != null ? LibSecretChangeWatcher.getInstance() : null;
+        if (watcher == null) {
+            throw new UnsupportedOperationException("Changes of the secret service cannot be watched");
+        }
+
+        watcher.getListeners(getStoredType()).add(listener);
+    }
+
+    @Override
+    public void removeListener(final SecretStoreListener listener) {
+        final LibSecretChangeWatcher watcher = LibSecretChangeWatcher.getStartedInstance();
+        if (watcher != null) {
+            watcher.getListeners(getStoredType()).remove(listener);
+        }
+    }
+
     public static boolean isSupported() {
         return isLinux() && isLibSecretSupported();
     }
@@ -107,6 +346,26 @@ public abstract class LibSecretBackedSecureStore<E extends StoredSecret> impleme
      */
     protected abstract String getType();
 
+    /**
+     * Return the type of the secrets of this store as stored in Libsecret
+     *
+     * @return type of the secrets, distinct for session-scoped stores
+     */
+    protected final String getStoredType() {
+        return sessionScoped ? SESSION_TYPE_PREFIX + getType() : getType();
+    }
+
+    /**
+     * @return {@code true} if the secrets are kept in the session collection rather than saved to disk
+     */
+    public boolean isSessionScoped() {
+        return sessionScoped;
+    }
+
+    private String getCollection() {
+        return sessionScoped ? LibSecretLibrary.SECRET_COLLECTION_SESSION : LibSecretLibrary.SECRET_COLLECTION_DEFAULT;
+    }
+
     /**
      * Check for Libsecret support on this platform
      *
@@ -126,57 +385,82 @@ public abstract class LibSecretBackedSecureStore<E extends StoredSecret> impleme
     }
 
     protected <T> T readSecret(final String key, final BiFunction<String, char[], T> mapper) {
-        if (INSTANCE != null && SCHEMA != null) {
-            final Pointer searchAttributesHashTable = GLibLibrary.INSTANCE.g_hash_table_new(null, null);
+        return readSecretResult(key, mapper).getValue();
+    }
+
+    protected <T> SecretResult<T> readSecretResult(final String key, final BiFunction<String, char[], T> mapper) {
+        if (LibSecretDowncalls.isAvailable()) {
+            return LibSecretDowncalls.search(getStoredType(), key, getCancellableAddress(), mapper,
+                    item -> remember(new Pointer(item), key));
+        }
 
+        if (INSTANCE != null && SCHEMA != null) {
             final PointerByReference error = new PointerByReference();
-            try {
+            Pointer items = null;
+            try (AttributeTable attributes = new AttributeTable()) {
                 // set attributes to search
-                GLibLibrary.INSTANCE.g_hash_table_insert(searchAttributesHashTable, getPointer(ATTRIBUTE_TYPE), getPointer(getType()));
-                GLibLibrary.INSTANCE.g_hash_table_insert(searchAttributesHashTable, getPointer(ATTRIBUTE_KEY), getPointer(key));
+                attributes.put(ATTRIBUTE_TYPE, getStoredType());
+                attributes.put(ATTRIBUTE_KEY, key);
 
                 // find the item
-                Pointer item = INSTANCE.secret_service_search_sync(null, SCHEMA,
-                        searchAttributesHashTable, SECRET_SEARCH_UNLOCK | SECRET_SEARCH_LOAD_SECRETS, null, error);
+                items = INSTANCE.secret_service_search_sync(null, SCHEMA,
+                        attributes.table, SECRET_SEARCH_UNLOCK | SECRET_SEARCH_LOAD_SECRETS, getCancellable(), error);
 
-                if (checkResult(error, "Could not find the item in storage.")) {
-                    // iterate attribute to search username
-                    while (item != null) {
-                        final GLibLibrary.GList listItem = new GLibLibrary.GList(item);
+                if (error.getValue() != null) {
+                    return toResult(error, "Could not find the item in storage.");
+                }
 
-                        if (listItem.data != null) {
-                            T userName = getStoredSecret(listItem, mapper);
-                            if (userName != null) return userName;
-                        }
+                // iterate attribute to search username
+                boolean locked = false;
+                for (Pointer item = items; item != null; item = item.getPointer(GLibLibrary.GList.NEXT_OFFSET)) {
+                    final Pointer data = item.getPointer(GLibLibrary.GList.DATA_OFFSET);
+
+                    if (data != null) {
+                        remember(data, key);
+                        T userName = getStoredSecret(data, mapper);
+                        if (userName != null) return SecretResult.found(userName);
 
-                        item = listItem.next;
+                        // the user dismissed the unlock prompt, or no prompt can be shown
+                        locked |= INSTANCE.secret_item_get_locked(data);
                     }
                 }
+
+                return locked
+                        ? SecretResult.failed(SecretResult.Status.LOCKED, null, 0, "The item could not be unlocked")
+                        : SecretResult.notFound();
             } finally {
                 if (error.getValue() != null) {
                     GLibLibrary.INSTANCE.g_error_free(error.getValue());
                 }
 
-                GLibLibrary.INSTANCE.g_hash_table_destroy(searchAttributesHashTable);
+                // the list and its items are owned by the caller
+                if (items != null) {
+                    freeItems(items);
+                }
             }
-        } else {
-            logger.warn("Libsecret is not available.");
         }
 
-        return null;
+        logger.warn("Libsecret is not available.");
+        return SecretResult.failed(SecretResult.Status.UNAVAILABLE, null, 0, "Libsecret is not available");
     }
 
     protected boolean writeSecret(final String key, final String account, final char[] secret, final PointerByReference error) {
+        if (LibSecretDowncalls.isAvailable()) {
+            // errors are reported by the downcall
+            return LibSecretDowncalls.store(getStoredType(), key, account, secret, getCollection(),
+                    getCancellableAddress());
+        }
+
         if (INSTANCE != null && SCHEMA != null) {
             return INSTANCE.secret_password_store_sync(
                     SCHEMA,
-                    LibSecretLibrary.SECRET_COLLECTION_DEFAULT, // save to disk
+                    getCollection(), // save to disk, or keep in memory
                     key, //display name
                     new String(secret),
-                    null,
+                    getCancellable(),
                     error,
                     //attributes list
-                    ATTRIBUTE_TYPE, getType(),
+                    ATTRIBUTE_TYPE, getStoredType(),
                     ATTRIBUTE_KEY, key,
                     ATTRIBUTE_ACCOUNT, account,
                     null
@@ -188,12 +472,17 @@ public abstract class LibSecretBackedSecureStore<E extends StoredSecret> impleme
     }
 
     protected boolean deleteSecret(final String key, final PointerByReference error) {
+        if (LibSecretDowncalls.isAvailable()) {
+            // errors are reported by the downcall
+            return LibSecretDowncalls.clear(getStoredType(), key, getCancellableAddress());
+        }
+
         if (INSTANCE != null && SCHEMA != null) {
             return INSTANCE.secret_password_clear_sync(
                     SCHEMA,
-                    null,
+                    getCancellable(),
                     error,
-                    ATTRIBUTE_TYPE, getType(),
+                    ATTRIBUTE_TYPE, getStoredType(),
                     ATTRIBUTE_KEY, key,
                     null);
         }
@@ -202,6 +491,187 @@ public abstract class LibSecretBackedSecureStore<E extends StoredSecret> impleme
         return false;
     }
 
+    protected <T> CompletableFuture<T> readSecretAsync(final String key, final BiFunction<String, char[], T> mapper) {
+        if (INSTANCE == null || SCHEMA == null) {
+            logger.warn("Libsecret is not available.");
+            return CompletableFuture.completedFuture(null);
+        }
+
+        final AttributeTable attributes = new AttributeTable();
+        attributes.put(ATTRIBUTE_TYPE, getStoredType());
+        attributes.put(ATTRIBUTE_KEY, key);
+
+        return GMainLoopThread.getInstance().submit(new GMainLoopThread.AsyncOperation<T>() {
+            @Override
+            public void start(final GLibLibrary.GAsyncReadyCallback callback, final Pointer userData) {
+                INSTANCE.secret_service_search(null, SCHEMA, attributes.table,
+                        SECRET_SEARCH_UNLOCK | SECRET_SEARCH_LOAD_SECRETS, null, callback, userData);
+            }
+
+            @Override
+            public T finish(final Pointer sourceObject, final Pointer result) {
+                final PointerByReference error = new PointerByReference();
+                final Pointer items = INSTANCE.secret_service_search_finish(null, result, error);
+                try {
+                    if (checkResult(error, "Could not find the item in storage.")) {
+                        for (Pointer item = items; item != null; item = item.getPointer(GLibLibrary.GList.NEXT_OFFSET)) {
+                            final Pointer data = item.getPointer(GLibLibrary.GList.DATA_OFFSET);
+                            if (data != null) {
+                                final T secret = getStoredSecret(data, mapper);
+                                if (secret != null) {
+                                    return secret;
+                                }
+                            }
+                        }
+                    }
+                    return null;
+                } finally {
+                    if (error.getValue() != null) {
+                        GLibLibrary.INSTANCE.g_error_free(error.getValue());
+                    }
+                    if (items != null) {
+                        freeItems(items);
+                    }
+                }
+            }
+
+            @Override
+            public void release() {
+                attributes.close();
+            }
+        });
+    }
+
+    protected CompletableFuture<Boolean> writeSecretAsync(final String key, final String account, final char[] secret) {
+        if (INSTANCE == null || SCHEMA == null) {
+            logger.warn("Libsecret is not available.");
+            return CompletableFuture.completedFuture(false);
+        }
+
+        final AttributeTable attributes = new AttributeTable();
+        attributes.put(ATTRIBUTE_TYPE, getStoredType());
+        attributes.put(ATTRIBUTE_KEY, key);
+        attributes.put(ATTRIBUTE_ACCOUNT, account);
+        final String password = new String(secret);
+
+        return GMainLoopThread.getInstance().submit(new GMainLoopThread.AsyncOperation<Boolean>() {
+            @Override
+            public void start(final GLibLibrary.GAsyncReadyCallback callback, final Pointer userData) {
+                INSTANCE.secret_password_storev(SCHEMA, attributes.table,
+                        getCollection(), // save to disk, or keep in memory
+                        key, //display name
+                        password, null, callback, userData);
+            }
+
+            @Override
+            public Boolean finish(final Pointer sourceObject, final Pointer result) {
+                final PointerByReference error = new PointerByReference();
+                try {
+                    final boolean stored = INSTANCE.secret_password_store_finish(result, error);
+                    return stored && checkResult(error, "Could not save secret to the storage.");
+                } finally {
+                    if (error.getValue() != null) {
+                        GLibLibrary.INSTANCE.g_error_free(error.getValue());
+                    }
+                }
+            }
+
+            @Override
+            public void release() {
+                attributes.close();
+            }
+        });
+    }
+
+    protected CompletableFuture<Boolean> deleteSecretAsync(final String key) {
+        if (INSTANCE == null || SCHEMA == null) {
+            logger.warn("Libsecret is not available.");
+            return CompletableFuture.completedFuture(false);
+        }
+
+        final AttributeTable attributes = new AttributeTable();
+        attributes.put(ATTRIBUTE_TYPE, getStoredType());
+        attributes.put(ATTRIBUTE_KEY, key);
+
+        return GMainLoopThread.getInstance().submit(new GMainLoopThread.AsyncOperation<Boolean>() {
+            @Override
+            public void start(final GLibLibrary.GAsyncReadyCallback callback, final Pointer userData) {
+                INSTANCE.secret_password_clearv(SCHEMA, attributes.table, null, callback, userData);
+            }
+
+            @Override
+            public Boolean finish(final Pointer sourceObject, final Pointer result) {
+                final PointerByReference error = new PointerByReference();
+                try {
+                    final boolean cleared = INSTANCE.secret_password_clear_finish(result, error);
+                    return cleared && checkResult(error, "Could not delete secret from storage");
+                } finally {
+                    if (error.getValue() != null) {
+                        GLibLibrary.INSTANCE.g_error_free(error.getValue());
+                    }
+                }
+            }
+
+            @Override
+            public void release() {
+                attributes.close();
+            }
+        });
+    }
+
+    /**
+     * Run an operation with a {@code GCancellable} passed to its blocking calls, which is cancelled
+     * once the timeout elapses. The operation only timed out if one of its calls failed with
+     * {@code G_IO_ERROR_CANCELLED}: calls which completed just before the deadline are not reported.
+     */
+    private <T> T withDeadline(final Duration timeout, final Supplier<T> operation, final String description) {
+        Objects.requireNonNull(timeout, "timeout cannot be null");
+        if (INSTANCE == null || SCHEMA == null || DEADLINE.get() != null) {
+            return operation.get();
+        }
+
+        try (CancellableDeadline cancellable = CancellableDeadline.start(timeout)) {
+            final Deadline deadline = new Deadline(cancellable);
+            DEADLINE.set(deadline);
+            try {
+                final T result = operation.get();
+                if (deadline.callCancelled) {
+                    throw new SecretStoreTimeoutException(description + " did not complete within " + timeout, timeout);
+                }
+                return result;
+            } finally {
+                DEADLINE.remove();
+            }
+        }
+    }
+
+    /**
+     * Classify the error of a failed call, noting a call cancelled by the deadline of the current thread.
+     *
+     * @param domain name of the domain quark, {@code null} if unknown
+     * @param code error code
+     * @param message description of the error
+     * @param <T> secret type
+     * @return result of a read which failed with the error
+     */
+    static <T> SecretResult<T> failedCall(final String domain, final int code, final String message) {
+        final Deadline deadline = DEADLINE.get();
+        if (deadline != null && GErrors.IO_ERROR.equals(domain) && code == GErrors.IO_ERROR_CANCELLED) {
+            deadline.callCancelled = true;
+        }
+        return GErrors.toResult(domain, code, message);
+    }
+
+    private static Pointer getCancellable() {
+        final Deadline deadline = DEADLINE.get();
+        return deadline != null ? deadline.cancellable.getCancellable() : null;
+    }
+
+    private static long getCancellableAddress() {
+        final Pointer cancellable = getCancellable();
+        return cancellable != null ? Pointer.nativeValue(cancellable) : 0;
+    }
+
     private static boolean isSimplePasswordAPISupported() {
         // Make sure libsecret supports simple password API - this check does not require
         // keyring to be unlocked first 
@@ -308,16 +778,19 @@ public abstract class LibSecretBackedSecureStore<E extends StoredSecret> impleme
         return false;
     }
 
-    private static <T> T getStoredSecret(final GLibLibrary.GList listItem, final BiFunction<String, char[], T> mapper) {
+    private static <T> T getStoredSecret(final Pointer item, final BiFunction<String, char[], T> mapper) {
         // get attributes for secret item
-        final Pointer attributesHashTable = INSTANCE.secret_item_get_attributes(listItem.data);
+        final Pointer attributesHashTable = INSTANCE.secret_item_get_attributes(item);
 
         try {
             // search attribute "Account"
-            final Pointer userNameValue = GLibLibrary.INSTANCE.g_hash_table_lookup(attributesHashTable, getPointer(ATTRIBUTE_ACCOUNT));
+            final Pointer userNameValue;
+            try (Memory name = toMemory(ATTRIBUTE_ACCOUNT)) {
+                userNameValue = GLibLibrary.INSTANCE.g_hash_table_lookup(attributesHashTable, name);
+            }
             if (userNameValue != null) {
                 // get secret from the secret item
-                final Pointer secretValue = INSTANCE.secret_item_get_secret(listItem.data);
+                final Pointer secretValue = INSTANCE.secret_item_get_secret(item);
                 if (secretValue != null) {
                     try {
                         // get secret value as text
@@ -340,10 +813,46 @@ public abstract class LibSecretBackedSecureStore<E extends StoredSecret> impleme
         return null;
     }
 
-    private static Pointer getPointer(final String str) {
-        final Pointer attrTypeKey = new Memory(str.length() + 1);
-        attrTypeKey.setString(0, str);
-        return attrTypeKey;
+    private void remember(final Pointer item, final String key) {
+        final LibSecretChangeWatcher watcher = LibSecretChangeWatcher.getStartedInstance();
+        if (watcher != null) {
+            watcher.remember(item, getStoredType(), key);
+        }
+    }
+
+    static String getAttribute(final Pointer item, final String name) {
+        final Pointer attributesHashTable = INSTANCE.secret_item_get_attributes(item);
+        try {
+            final Pointer value;
+            try (Memory attributeName = toMemory(name)) {
+                value = GLibLibrary.INSTANCE.g_hash_table_lookup(attributesHashTable, attributeName);
+            }
+            return value != null ? value.getString(0) : null;
+        } finally {
+            GLibLibrary.INSTANCE.g_hash_table_unref(attributesHashTable);
+        }
+    }
+
+    private static void freeItems(final Pointer items) {
+        for (Pointer item = items; item != null; item = item.getPointer(GLibLibrary.GList.NEXT_OFFSET)) {
+            final Pointer data = item.getPointer(GLibLibrary.GList.DATA_OFFSET);
+            if (data != null) {
+                INSTANCE.g_object_unref(data);
+            }
+        }
+        GLibLibrary.INSTANCE.g_list_free(items);
+    }
+
+    /**
+     * Copy a string to native memory, which the caller closes once it is no longer used
+     * rather than leaving it to the cleaner.
+     */
+    private static Memory toMemory(final String str) {
+        // sized in bytes, which may be more than the number of characters
+        final byte[] bytes = Native.toByteArray(str);
+        final Memory memory = new Memory(bytes.length);
+        memory.write(0, bytes, 0, bytes.length);
+        return memory;
     }
 
 
@@ -397,13 +906,56 @@ public abstract class LibSecretBackedSecureStore<E extends StoredSecret> impleme
 
     protected static boolean checkResult(final PointerByReference error, final String message) {
         if (error.getValue() != null) {
-            GError gError = Structure.newInstance(GError.class, error.getValue());
-            gError.read();
-
-            logger.error(message + ": domain: {}, code: {}, description: {}", gError.domain, gError.code, gError.message);
+            toResult(error, message);
             return false;
         }
 
         return true;
     }
+
+    private static <T> SecretResult<T> toResult(final PointerByReference error, final String message) {
+        GError gError = Structure.newInstance(GError.class, error.getValue());
+        gError.read();
+
+        final String domain = GLibLibrary.INSTANCE.g_quark_to_string(gError.domain);
+        logger.error(message + ": domain: {}, code: {}, description: {}", domain, gError.code, gError.message);
+        return failedCall(domain, gError.code, gError.message);
+    }
+
+    /**
+     * Deadline of the blocking calls made by a thread
+     */
+    private static final class Deadline {
+        final CancellableDeadline cancellable;
+        // only read and written by the thread making the calls
+        boolean callCancelled;
+
+        Deadline(final CancellableDeadline cancellable) {
+            this.cancellable = cancellable;
+        }
+    }
+
+    /**
+     * Attribute hash table of a call, keeping its strings allocated until the call completes.
+     * Closing it destroys the table and frees the strings.
+     */
+    private static final class AttributeTable implements AutoCloseable {
+        final Pointer table = GLibLibrary.INSTANCE.g_hash_table_new(null, null);
+        final List<Memory> strings = new ArrayList<>(6);
+
+        void put(final String name, final String value) {
+            final Memory namePointer = toMemory(name);
+            final Memory valuePointer = toMemory(value);
+            strings.add(namePointer);
+            strings.add(valuePointer);
+            GLibLibrary.INSTANCE.g_hash_table_insert(table, namePointer, valuePointer);
+        }
+
+        @Override
+        public void close() {
+            GLibLibrary.INSTANCE.g_hash_table_destroy(table);
+            strings.forEach(Memory::close);
+            strings.clear();
+        }
+    }
 }
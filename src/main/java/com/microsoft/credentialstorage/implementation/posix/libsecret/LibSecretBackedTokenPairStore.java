@@ -3,6 +3,8 @@
 
 package com.microsoft.credentialstorage.implementation.posix.libsecret;
 
+import com.microsoft.credentialstorage.SecretResult;
+import com.microsoft.credentialstorage.SecretStoreListener;
 import com.microsoft.credentialstorage.implementation.posix.internal.GLibLibrary;
 import com.microsoft.credentialstorage.model.StoredToken;
 import com.microsoft.credentialstorage.model.StoredTokenPair;
@@ -10,6 +12,8 @@ import com.microsoft.credentialstorage.model.StoredTokenType;
 import com.sun.jna.ptr.PointerByReference;
 
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 /**
  * Libsecret store for a token pair.
@@ -18,23 +22,45 @@ public final class LibSecretBackedTokenPairStore extends LibSecretBackedSecureSt
     private static final String ACCESS_TOKEN = "/accessToken";
     private static final String REFRESH_TOKEN = "/refreshToken";
 
+    /**
+     * Creates a store saving the token pairs to disk.
+     */
+    public LibSecretBackedTokenPairStore() {
+        super();
+    }
+
+    /**
+     * Creates a store saving the token pairs to disk, or keeping them in the session collection.
+     *
+     * @param sessionScoped {@code true} to keep the token pairs in memory until the user's session ends
+     */
+    public LibSecretBackedTokenPairStore(final boolean sessionScoped) {
+        super(sessionScoped);
+    }
+
     @Override
-    public StoredTokenPair get(final String key) {
+    public SecretResult<StoredTokenPair> getResult(final String key) {
         Objects.requireNonNull(key, "key cannot be null");
 
-        logger.info("Getting {} for {}", getType(), key);
+        logger.debug("Getting {} for {}", getType(), key);
 
-        final StoredToken accessToken = readSecret(key + ACCESS_TOKEN,
+        final SecretResult<StoredToken> accessToken = readSecretResult(key + ACCESS_TOKEN,
                 (userName, password) -> new StoredToken(password, StoredTokenType.ACCESS));
-        final StoredToken refreshToken = readSecret(key + REFRESH_TOKEN,
+        if (accessToken.isFailure()) {
+            return accessToken.asFailure();
+        }
+        final SecretResult<StoredToken> refreshToken = readSecretResult(key + REFRESH_TOKEN,
                 (userName, password) -> new StoredToken(password, StoredTokenType.REFRESH));
+        if (refreshToken.isFailure()) {
+            return refreshToken.asFailure();
+        }
 
         // no token found
-        if (accessToken == null && refreshToken == null) {
-            return null;
+        if (!accessToken.isFound() && !refreshToken.isFound()) {
+            return SecretResult.notFound();
         }
 
-        return new StoredTokenPair(accessToken, refreshToken);
+        return SecretResult.found(new StoredTokenPair(accessToken.getValue(), refreshToken.getValue()));
     }
 
     @Override
@@ -42,7 +68,7 @@ public final class LibSecretBackedTokenPairStore extends LibSecretBackedSecureSt
         Objects.requireNonNull(key, "key cannot be null");
         Objects.requireNonNull(secret, "secret cannot be null");
 
-        logger.info("Adding a {} for {}", getType(), key);
+        logger.debug("Adding a {} for {}", getType(), key);
 
         final PointerByReference error = new PointerByReference();
         try {
@@ -67,7 +93,7 @@ public final class LibSecretBackedTokenPairStore extends LibSecretBackedSecureSt
     @Override
     public boolean delete(String key) {
         Objects.requireNonNull(key, "key cannot be null");
-        logger.info("Deleting {} for {}", getType(), key);
+        logger.debug("Deleting {} for {}", getType(), key);
 
         boolean result;
 
@@ -94,6 +120,78 @@ public final class LibSecretBackedTokenPairStore extends LibSecretBackedSecureSt
         return result;
     }
 
+    @Override
+    public CompletableFuture<StoredTokenPair> getAsync(final String key) {
+        Objects.requireNonNull(key, "key cannot be null");
+
+        logger.debug("Getting {} for {} asynchronously", getType(), key);
+
+        final CompletableFuture<StoredToken> accessToken = readSecretAsync(key + ACCESS_TOKEN,
+                (userName, password) -> new StoredToken(password, StoredTokenType.ACCESS));
+        final CompletableFuture<StoredToken> refreshToken = readSecretAsync(key + REFRESH_TOKEN,
+                (userName, password) -> new StoredToken(password, StoredTokenType.REFRESH));
+
+        return accessToken.thenCombine(refreshToken, (access, refresh) ->
+                // no token found
+                access == null && refresh == null ? null : new StoredTokenPair(access, refresh));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> addAsync(final String key, final StoredTokenPair secret) {
+        Objects.requireNonNull(key, "key cannot be null");
+        Objects.requireNonNull(secret, "secret cannot be null");
+
+        logger.debug("Adding a {} for {} asynchronously", getType(), key);
+
+        final CompletableFuture<Boolean> accessResult = writeSecretAsync(key + ACCESS_TOKEN,
+                secret.getAccessToken().getType().getDescription(),
+                secret.getAccessToken().getValue());
+        final CompletableFuture<Boolean> refreshResult = writeSecretAsync(key + REFRESH_TOKEN,
+                secret.getRefreshToken().getType().getDescription(),
+                secret.getRefreshToken().getValue());
+
+        return accessResult.thenCombine(refreshResult, Boolean::logicalAnd);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> deleteAsync(final String key) {
+        Objects.requireNonNull(key, "key cannot be null");
+
+        logger.debug("Deleting {} for {} asynchronously", getType(), key);
+
+        return deleteSecretAsync(key + ACCESS_TOKEN).thenCombine(deleteSecretAsync(key + REFRESH_TOKEN), Boolean::logicalAnd);
+    }
+
+    /**
+     * List the keys of the token pairs, whose tokens are stored under the key with a suffix.
+     *
+     * @return keys of the token pairs
+     */
+    @Override
+    public Stream<String> keys() {
+        return super.keys()
+                .filter(key -> key.endsWith(ACCESS_TOKEN) || key.endsWith(REFRESH_TOKEN))
+                .map(key -> key.substring(0, key.lastIndexOf('/')))
+                .distinct();
+    }
+
+    /**
+     * Register a listener notified with the keys of the token pairs, whose tokens are reported changed by the
+     * secret service under the key with a suffix.
+     *
+     * @param listener listener to notify
+     * @throws UnsupportedOperationException if the signals of the secret service cannot be received
+     */
+    @Override
+    public void addListener(final SecretStoreListener listener) {
+        super.addListener(new PairKeyListener(Objects.requireNonNull(listener, "listener cannot be null")));
+    }
+
+    @Override
+    public void removeListener(final SecretStoreListener listener) {
+        super.removeListener(new PairKeyListener(listener));
+    }
+
     @Override
     protected StoredTokenPair create(String username, char[] secret) {
         // not used
@@ -104,4 +202,38 @@ public final class LibSecretBackedTokenPairStore extends LibSecretBackedSecureSt
     protected String getType() {
         return "OAuth2Token";
     }
+
+    /**
+     * Listener mapping the keys of the tokens to the key of their pair. Equal to the listeners wrapping the same
+     * listener, so that it can be removed.
+     */
+    static final class PairKeyListener implements SecretStoreListener {
+        private final SecretStoreListener listener;
+
+        PairKeyListener(final SecretStoreListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void secretChanged(final String key) {
+            if (key.endsWith(ACCESS_TOKEN) || key.endsWith(REFRESH_TOKEN)) {
+                listener.secretChanged(key.substring(0, key.lastIndexOf('/')));
+            }
+        }
+
+        @Override
+        public void secretsChanged() {
+            listener.secretsChanged();
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            return o instanceof PairKeyListener && Objects.equals(listener, ((PairKeyListener) o).listener);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(listener);
+        }
+    }
 }
@@ -9,11 +9,28 @@ import com.microsoft.credentialstorage.model.StoredTokenType;
 import com.sun.jna.ptr.PointerByReference;
 
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Libsecret store for a token.
  */
 public final class LibSecretBackedTokenStore extends LibSecretBackedSecureStore<StoredToken> {
+    /**
+     * Creates a store saving the tokens to disk.
+     */
+    public LibSecretBackedTokenStore() {
+        super();
+    }
+
+    /**
+     * Creates a store saving the tokens to disk, or keeping them in the session collection.
+     *
+     * @param sessionScoped {@code true} to keep the tokens in memory until the user's session ends
+     */
+    public LibSecretBackedTokenStore(final boolean sessionScoped) {
+        super(sessionScoped);
+    }
+
     @Override
     protected StoredToken create(final String username, final char[] secret) {
         return new StoredToken(secret, StoredTokenType.fromDescription(username));
@@ -24,7 +41,7 @@ public final class LibSecretBackedTokenStore extends LibSecretBackedSecureStore<
         Objects.requireNonNull(key, "key cannot be null");
         Objects.requireNonNull(token, "secret cannot be null");
 
-        logger.info("Adding a {} for {}", getType(), key);
+        logger.debug("Adding a {} for {}", getType(), key);
 
         final PointerByReference error = new PointerByReference();
         try {
@@ -36,6 +53,16 @@ public final class LibSecretBackedTokenStore extends LibSecretBackedSecureStore<
         }
     }
 
+    @Override
+    public CompletableFuture<Boolean> addAsync(final String key, final StoredToken token) {
+        Objects.requireNonNull(key, "key cannot be null");
+        Objects.requireNonNull(token, "secret cannot be null");
+
+        logger.debug("Adding a {} for {} asynchronously", getType(), key);
+
+        return writeSecretAsync(key, token.getType().getDescription(), token.getValue());
+    }
+
     @Override
     protected String getType() {
         return "Token";
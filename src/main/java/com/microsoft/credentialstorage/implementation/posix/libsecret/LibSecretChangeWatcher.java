@@ -0,0 +1,170 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.implementation.posix.libsecret;
+
+import com.microsoft.credentialstorage.implementation.SecretStoreListeners;
+import com.microsoft.credentialstorage.implementation.posix.internal.DBusSignalWatcher;
+import com.microsoft.credentialstorage.implementation.posix.internal.GLibLibrary;
+import com.microsoft.credentialstorage.implementation.posix.internal.GioLibrary;
+import com.sun.jna.Pointer;
+import com.sun.jna.ptr.PointerByReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Watches the {@code ItemCreated}, {@code ItemChanged} and {@code ItemDeleted} signals of the secret service
+ * collections, which report changes made by any process, and notifies the listeners of the stores of the
+ * changed item's type.
+ *
+ * Signals only carry the D-Bus path of the item. Created and changed items are looked up to find their type and key;
+ * a deleted item can no longer be looked up, so the paths of the items seen are remembered. The deletion of an item
+ * never seen by this process, possibly of another application, is reported as a change of any secret.
+ */
+final class LibSecretChangeWatcher {
+    private static final Logger logger = LoggerFactory.getLogger(LibSecretChangeWatcher.class);
+
+    private static final String SECRET_SERVICE = "org.freedesktop.secrets";
+    private static final String COLLECTION_INTERFACE = "org.freedesktop.Secret.Collection";
+    private static final String ITEM_CREATED = "ItemCreated";
+    private static final String ITEM_CHANGED = "ItemChanged";
+    private static final String ITEM_DELETED = "ItemDeleted";
+
+    // SecretItemFlags: SECRET_ITEM_NONE
+    private static final int SECRET_ITEM_NONE = 0;
+
+    private static final int MAX_REMEMBERED_ITEMS = 10_000;
+
+    private static final ReentrantLock LOCK = new ReentrantLock();
+    private static volatile LibSecretChangeWatcher instance;
+    private static boolean subscribed;
+
+    // listeners of the stores by secret type
+    private final ConcurrentMap<String, SecretStoreListeners> listeners = new ConcurrentHashMap<>();
+
+    // item path to its type and key
+    private final ConcurrentMap<String, Map.Entry<String, String>> items = new ConcurrentHashMap<>();
+
+    private LibSecretChangeWatcher() {
+    }
+
+    /**
+     * Returns the watcher, subscribing to the secret service signals on first use.
+     *
+     * @return watcher, or {@code null} if the signals cannot be received
+     */
+    static LibSecretChangeWatcher getInstance() {
+        LOCK.lock();
+        try {
+            if (!subscribed) {
+                // not retried, without a session bus there is no secret service either
+                subscribed = true;
+                final LibSecretChangeWatcher watcher = new LibSecretChangeWatcher();
+                if (DBusSignalWatcher.subscribe(SECRET_SERVICE, COLLECTION_INTERFACE,
+                        watcher::signal, "secret-service-changes") != null) {
+                    instance = watcher;
+                }
+            }
+            return instance;
+        } finally {
+            LOCK.unlock();
+        }
+    }
+
+    /**
+     * Returns the watcher if it was already started.
+     *
+     * @return watcher, or {@code null}
+     */
+    static LibSecretChangeWatcher getStartedInstance() {
+        return instance;
+    }
+
+    /**
+     * @param type secret type of the store
+     * @return listeners of the stores of the type
+     */
+    SecretStoreListeners getListeners(final String type) {
+        return listeners.computeIfAbsent(type, ignored -> new SecretStoreListeners());
+    }
+
+    /**
+     * Remember the path of an item read by a store, so that its deletion can be reported.
+     *
+     * @param item {@code SecretItem}
+     * @param type secret type of the item
+     * @param key key of the item
+     */
+    void remember(final Pointer item, final String type, final String key) {
+        final String path = GioLibrary.INSTANCE.g_dbus_proxy_get_object_path(item);
+        if (path != null && key != null) {
+            put(path, type, key);
+        }
+    }
+
+    private void put(final String path, final String type, final String key) {
+        if (items.size() >= MAX_REMEMBERED_ITEMS && !items.containsKey(path)) {
+            // deletions of forgotten items are reported as changes of any secret
+            items.clear();
+        }
+        items.put(path, Map.entry(type, key));
+    }
+
+    private void signal(final String signalName, final String objectPath, final String itemPath) {
+        if (itemPath == null) {
+            return;
+        }
+
+        if (ITEM_DELETED.equals(signalName)) {
+            final Map.Entry<String, String> item = items.remove(itemPath);
+            if (item != null) {
+                fireSecretChanged(item.getKey(), item.getValue());
+            } else {
+                listeners.values().forEach(SecretStoreListeners::fireSecretsChanged);
+            }
+        } else if (ITEM_CREATED.equals(signalName) || ITEM_CHANGED.equals(signalName)) {
+            if (!lookUp(itemPath)) {
+                listeners.values().forEach(SecretStoreListeners::fireSecretsChanged);
+            }
+        }
+    }
+
+    private boolean lookUp(final String itemPath) {
+        final PointerByReference error = new PointerByReference();
+        final Pointer item = LibSecretBackedSecureStore.INSTANCE.secret_item_new_for_dbus_path_sync(null, itemPath,
+                SECRET_ITEM_NONE, null, error);
+        if (item == null) {
+            if (error.getValue() != null) {
+                GLibLibrary.INSTANCE.g_error_free(error.getValue());
+            }
+            logger.debug("Changed item {} could not be looked up.", itemPath);
+            return false;
+        }
+
+        try {
+            final String type = LibSecretBackedSecureStore.getAttribute(item, LibSecretBackedSecureStore.ATTRIBUTE_TYPE);
+            final String key = LibSecretBackedSecureStore.getAttribute(item, LibSecretBackedSecureStore.ATTRIBUTE_KEY);
+            if (type != null && key != null) {
+                put(itemPath, type, key);
+                fireSecretChanged(type, key);
+            }
+            // otherwise an item of another application
+            return true;
+        } finally {
+            LibSecretBackedSecureStore.INSTANCE.g_object_unref(item);
+        }
+    }
+
+    private void fireSecretChanged(final String type, final String key) {
+        final SecretStoreListeners typeListeners = listeners.get(Objects.requireNonNull(type));
+        if (typeListeners != null) {
+            typeListeners.fireSecretChanged(key);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.implementation.posix.libsecret;
+
+import com.microsoft.credentialstorage.SecretResult;
+
+import java.util.function.BiFunction;
+import java.util.function.LongConsumer;
+
+/**
+ * Bindings of the libsecret calls on the read and write paths of {@link LibSecretBackedSecureStore} as
+ * {@code java.lang.foreign} downcalls, replaced by the Java 22 version of this class in the multi-release jar.
+ *
+ * This version is used on older runtimes, where the calls are made through JNA.
+ */
+final class LibSecretDowncalls {
+    /**
+     * System property to disable the downcalls on Java 22 and later, and make the calls through JNA
+     */
+    static final String USE_DOWNCALLS = "AUTH_LIB_LIBSECRET_DOWNCALLS";
+
+    private LibSecretDowncalls() {
+    }
+
+    /**
+     * @return {@code true} if the downcalls are bound
+     */
+    static boolean isAvailable() {
+        return false;
+    }
+
+    static <T> SecretResult<T> search(final String type, final String key, final long cancellable,
+                                      final BiFunction<String, char[], T> mapper, final LongConsumer found) {
+        throw new UnsupportedOperationException("Downcalls require Java 22");
+    }
+
+    static boolean store(final String type, final String key, final String account, final char[] secret,
+                         final String collection, final long cancellable) {
+        throw new UnsupportedOperationException("Downcalls require Java 22");
+    }
+
+    static boolean clear(final String type, final String key, final long cancellable) {
+        throw new UnsupportedOperationException("Downcalls require Java 22");
+    }
+}
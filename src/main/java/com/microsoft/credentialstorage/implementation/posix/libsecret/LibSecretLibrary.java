@@ -3,6 +3,7 @@
 
 package com.microsoft.credentialstorage.implementation.posix.libsecret;
 
+import com.microsoft.credentialstorage.implementation.posix.internal.GLibLibrary.GAsyncReadyCallback;
 import com.sun.jna.Library;
 import com.sun.jna.Native;
 import com.sun.jna.Pointer;
@@ -234,6 +235,124 @@ public interface LibSecretLibrary extends Library {
                                        Pointer cancellable,
                                        PointerByReference error);
 
+    /**
+     * Search for items matching the attributes, asynchronously.
+     *
+     * https://gnome.pages.gitlab.gnome.org/libsecret/method.Service.search.html
+     *
+     * @param secret_service
+     *      the secret service, {@code null} for the default service
+     * @param schema
+     *      schema for the secret
+     * @param attributes
+     *      search for items matching these attributes
+     * @param flags
+     *      search option flags
+     * @param cancellable
+     *      cancellation object
+     * @param callback
+     *      called on the thread-default main context when the operation completes
+     * @param user_data
+     *      data to pass to the callback
+     */
+    void secret_service_search(Pointer secret_service,
+                               SecretSchema schema,
+                               Pointer attributes,
+                               int flags,
+                               Pointer cancellable,
+                               GAsyncReadyCallback callback,
+                               Pointer user_data);
+
+    /**
+     * Complete an asynchronous search.
+     *
+     * @param secret_service
+     *      the secret service passed to the search
+     * @param result
+     *      result passed to the callback
+     * @param error
+     *      location to place an error on failure
+     * @return a list of items that matched the search
+     */
+    Pointer secret_service_search_finish(Pointer secret_service,
+                                         Pointer result,
+                                         PointerByReference error);
+
+    /**
+     * Store a password, asynchronously.
+     *
+     * https://gnome.pages.gitlab.gnome.org/libsecret/func.password_storev.html
+     *
+     * @param schema
+     *      schema for the secret
+     * @param attributes
+     *      attributes of the secret
+     * @param collection
+     *      "session" means in memory; {@code null} for default on disk storage
+     * @param label
+     *      display name of this secret
+     * @param password
+     *      actual password
+     * @param cancellable
+     *      cancellation object
+     * @param callback
+     *      called on the thread-default main context when the operation completes
+     * @param user_data
+     *      data to pass to the callback
+     */
+    void secret_password_storev(SecretSchema schema,
+                                Pointer attributes,
+                                String collection,
+                                String label,
+                                String password,
+                                Pointer cancellable,
+                                GAsyncReadyCallback callback,
+                                Pointer user_data);
+
+    /**
+     * Complete an asynchronous store.
+     *
+     * @param result
+     *      result passed to the callback
+     * @param error
+     *      location to place an error on failure
+     * @return whether the secret was stored
+     */
+    boolean secret_password_store_finish(Pointer result, PointerByReference error);
+
+    /**
+     * Remove the passwords matching the attributes, asynchronously.
+     *
+     * https://gnome.pages.gitlab.gnome.org/libsecret/func.password_clearv.html
+     *
+     * @param schema
+     *      schema for the secret
+     * @param attributes
+     *      attributes of the secrets to remove
+     * @param cancellable
+     *      cancellation object
+     * @param callback
+     *      called on the thread-default main context when the operation completes
+     * @param user_data
+     *      data to pass to the callback
+     */
+    void secret_password_clearv(SecretSchema schema,
+                                Pointer attributes,
+                                Pointer cancellable,
+                                GAsyncReadyCallback callback,
+                                Pointer user_data);
+
+    /**
+     * Complete an asynchronous removal.
+     *
+     * @param result
+     *      result passed to the callback
+     * @param error
+     *      location to place an error on failure
+     * @return whether any password was removed
+     */
+    boolean secret_password_clear_finish(Pointer result, PointerByReference error);
+
     Pointer secret_service_get_sync(int flags,
                                     Pointer cancellable,
                                     PointerByReference error);
@@ -244,10 +363,43 @@ public interface LibSecretLibrary extends Library {
                                              Pointer cancellable,
                                              PointerByReference error);
 
+    /**
+     * Get the item at a D-Bus object path, e.g. one reported by a collection signal.
+     *
+     * https://gnome.pages.gitlab.gnome.org/libsecret/ctor.Item.new_for_dbus_path_sync.html
+     *
+     * @param secret_service
+     *      the secret service, {@code null} for the default service
+     * @param item_path
+     *      D-Bus object path of the item
+     * @param flags
+     *      initialization flags
+     * @param cancellable
+     *      cancellation object
+     * @param error
+     *      location to place an error on failure
+     * @return the item, to release with {@link #g_object_unref(Pointer)}
+     */
+    Pointer secret_item_new_for_dbus_path_sync(Pointer secret_service,
+                                               String item_path,
+                                               int flags,
+                                               Pointer cancellable,
+                                               PointerByReference error);
+
     Pointer secret_item_get_attributes(Pointer secretItem);
 
     Pointer secret_item_get_secret(Pointer secretItem);
 
+    /**
+     * Get whether the item is locked or not, the secret of a locked item is not loaded.
+     *
+     * @param secretItem
+     *      pointer to the item
+     * @return
+     *      {@code true} when the item is locked; {@code false} otherwise.
+     */
+    boolean secret_item_get_locked(Pointer secretItem);
+
     String secret_value_get_text(Pointer secretValue);
 
     void secret_value_unref(Pointer secretValue);
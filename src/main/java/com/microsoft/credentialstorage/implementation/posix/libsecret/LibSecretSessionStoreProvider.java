@@ -0,0 +1,71 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.implementation.posix.libsecret;
+
+import com.microsoft.credentialstorage.SecretStore;
+import com.microsoft.credentialstorage.SecretStoreProvider;
+import com.microsoft.credentialstorage.implementation.posix.internal.SessionBus;
+import com.microsoft.credentialstorage.model.StoredCredential;
+import com.microsoft.credentialstorage.model.StoredToken;
+import com.microsoft.credentialstorage.model.StoredTokenPair;
+
+/**
+ * Provider of the libsecret stores keeping secrets in the session collection.
+ */
+public final class LibSecretSessionStoreProvider implements SecretStoreProvider {
+    @Override
+    public String getName() {
+        return "libsecret (session)";
+    }
+
+    @Override
+    public int getPriority() {
+        return 400;
+    }
+
+    @Override
+    public boolean isSecure() {
+        return true;
+    }
+
+    @Override
+    public boolean isPersistent() {
+        return false;
+    }
+
+    @Override
+    public boolean isLikelySupported() {
+        return SessionBus.isLikelyAvailable();
+    }
+
+    @Override
+    public boolean isSupported() {
+        return LibSecretBackedSecureStore.isSupported();
+    }
+
+    /**
+     * The secret service reports the changes of all processes with D-Bus signals
+     *
+     * @return {@code true}
+     */
+    @Override
+    public boolean isReportingChanges() {
+        return true;
+    }
+
+    @Override
+    public SecretStore<StoredCredential> createCredentialStore() {
+        return new LibSecretBackedCredentialStore(true);
+    }
+
+    @Override
+    public SecretStore<StoredToken> createTokenStore() {
+        return new LibSecretBackedTokenStore(true);
+    }
+
+    @Override
+    public SecretStore<StoredTokenPair> createTokenPairStore() {
+        return new LibSecretBackedTokenPairStore(true);
+    }
+}
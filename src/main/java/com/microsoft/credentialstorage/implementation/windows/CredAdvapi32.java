@@ -9,6 +9,8 @@ import com.sun.jna.Native;
 import com.sun.jna.Pointer;
 import com.sun.jna.Structure;
 import com.sun.jna.platform.win32.WinBase;
+import com.sun.jna.ptr.IntByReference;
+import com.sun.jna.ptr.PointerByReference;
 import com.sun.jna.win32.StdCallLibrary;
 import com.sun.jna.win32.W32APIOptions;
 
@@ -55,6 +57,17 @@ interface CredAdvapi32 extends StdCallLibrary {
     int CRED_PERSIST_LOCAL_MACHINE = 2;
     int CRED_PERSIST_ENTERPRISE = 3;
 
+    /**
+     * Last error of CredRead, CredDelete and CredEnumerate when no credential matches
+     */
+    int ERROR_NOT_FOUND = 1168;
+
+    /**
+     * Last error of the credential calls when the logon session does not exist, e.g. while it is being set up
+     * or torn down, or for a service running without a user profile
+     */
+    int ERROR_NO_SUCH_LOGON_SESSION = 1312;
+
     /**
      * Credential attributes
      *
@@ -406,4 +419,28 @@ interface CredAdvapi32 extends StdCallLibrary {
      *      GetLastError
      */
     void CredFree(Pointer credential) throws LastErrorException;
+
+    /**
+     * The CredEnumerate function enumerates the credentials from the user's credential set.
+     *
+     * https://learn.microsoft.com/en-us/windows/win32/api/wincred/nf-wincred-credenumeratew
+     *
+     * @param filter
+     *      Name filter for the credentials. Only credentials with a TargetName matching the filter are returned.
+     *      The filter specifies a name prefix followed by an asterisk. If {@code null}, all credentials are returned.
+     * @param flags
+     *      Must be zero when a filter is given.
+     * @param count
+     *      Out - Count of the credentials returned.
+     * @param credentials
+     *      Out - Pointer to an array of pointers to credentials. The returned buffer is a single allocated block
+     *      and must be freed by calling <code>CredFree</code>.
+     *
+     * @return
+     *      True if CredEnumerate succeeded, false otherwise
+     *
+     * @throws LastErrorException
+     *      GetLastError, ERROR_NOT_FOUND if no credential matches the filter
+     */
+    boolean CredEnumerate(String filter, int flags, IntByReference count, PointerByReference credentials) throws LastErrorException;
 }
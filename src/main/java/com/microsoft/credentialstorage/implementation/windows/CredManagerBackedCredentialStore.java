@@ -11,12 +11,32 @@ import java.util.Objects;
  * Credential Manager store for a credential.
  */
 public final class CredManagerBackedCredentialStore extends CredManagerBackedSecureStore<StoredCredential> {
+    /**
+     * Creates a store persisting the credentials on the local machine.
+     */
+    public CredManagerBackedCredentialStore() {
+        super();
+    }
+
+    /**
+     * Creates a store persisting the credentials on the local machine, or keeping them for the logon session only.
+     *
+     * @param sessionScoped {@code true} to keep the credentials for the life of the logon session
+     */
+    public CredManagerBackedCredentialStore(final boolean sessionScoped) {
+        super(sessionScoped);
+    }
+
+    CredManagerBackedCredentialStore(final CredAdvapi32 instance, final boolean sessionScoped) {
+        super(instance, sessionScoped);
+    }
+
     @Override
     public boolean add(final String key, final StoredCredential secret) {
         Objects.requireNonNull(key, "key cannot be null");
         Objects.requireNonNull(secret, "secret cannot be null");
 
-        logger.info("Adding secret for {}", key);
+        logger.debug("Adding secret for {}", key);
 
         return writeSecret(key, secret.getUsername(), secret.getPassword());
     }
@@ -3,11 +3,15 @@
 
 package com.microsoft.credentialstorage.implementation.windows;
 
-import com.microsoft.credentialstorage.model.StoredSecret;
+import com.microsoft.credentialstorage.SecretResult;
 import com.microsoft.credentialstorage.SecretStore;
+import com.microsoft.credentialstorage.model.StoredSecret;
 import com.sun.jna.LastErrorException;
 import com.sun.jna.Memory;
+import com.sun.jna.Native;
 import com.sun.jna.Pointer;
+import com.sun.jna.ptr.IntByReference;
+import com.sun.jna.ptr.PointerByReference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -15,19 +19,60 @@ import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
 
 /**
  * This class exposes functions to interact with Windows Credential Manager
+ *
+ * Secrets are persisted on the local machine, or, for session-scoped stores, kept for the life of the logon
+ * session only. The target names of session-scoped credentials start with {@link #SESSION_TARGET_PREFIX}, so that
+ * both kinds of credentials can be saved for the same key: each store only sees its own credentials.
  */
 public abstract class CredManagerBackedSecureStore<E extends StoredSecret> implements SecretStore<E> {
     protected static final Logger logger = LoggerFactory.getLogger(CredManagerBackedSecureStore.class);
     private static final Charset UTF16LE = StandardCharsets.UTF_16LE;
+    private static final String WIN32_ERROR_DOMAIN = "win32";
+
+    /**
+     * Prefix of the target names of the credentials saved by session-scoped stores
+     */
+    public static final String SESSION_TARGET_PREFIX = "credentialstorage.session:";
+
+    private final CredAdvapi32 INSTANCE;
 
-    private final CredAdvapi32 INSTANCE = getCredAdvapi32Instance();
+    // MSDN doc doesn't mention threading safety, so calls are serialized. A lock rather than a monitor,
+    // so virtual threads waiting for it do not pin their carrier thread
+    private static final ReentrantLock LOCK = new ReentrantLock();
+
+    private final int persist;
+
+    /**
+     * Creates a store persisting the secrets on the local machine.
+     */
+    protected CredManagerBackedSecureStore() {
+        this(false);
+    }
+
+    /**
+     * Creates a store persisting the secrets on the local machine, or keeping them for the logon session only.
+     *
+     * @param sessionScoped {@code true} to keep the secrets for the life of the logon session
+     */
+    protected CredManagerBackedSecureStore(final boolean sessionScoped) {
+        this(getCredAdvapi32Instance(), sessionScoped);
+    }
+
+    CredManagerBackedSecureStore(final CredAdvapi32 instance, final boolean sessionScoped) {
+        this.INSTANCE = Objects.requireNonNull(instance, "instance cannot be null");
+        this.persist = sessionScoped ? CredAdvapi32.CRED_PERSIST_SESSION : CredAdvapi32.CRED_PERSIST_LOCAL_MACHINE;
+    }
 
     /**
      * Read calls CredRead on Windows and retrieve the Secret
@@ -39,11 +84,24 @@ public abstract class CredManagerBackedSecureStore<E extends StoredSecret> imple
      */
     @Override
     public E get(final String key) {
+        return getResult(key).getValue();
+    }
+
+    /**
+     * Read calls CredRead on Windows, telling a missing credential from a failed call by its last error
+     *
+     * @param key
+     *      TargetName in the credential structure
+     *
+     * @return result of the read, failures carry the {@code GetLastError} code in the {@code win32} domain
+     */
+    @Override
+    public SecretResult<E> getResult(final String key) {
         Objects.requireNonNull(key, "key cannot be null");
 
-        logger.info("Getting secret for {}", key);
+        logger.debug("Getting secret for {}", key);
 
-        return readSecret(key, this::createSecret);
+        return readSecretResult(key, this::createSecret);
     }
 
     /**
@@ -61,7 +119,7 @@ public abstract class CredManagerBackedSecureStore<E extends StoredSecret> imple
     public boolean delete(final String key) {
         Objects.requireNonNull(key, "key cannot be null");
 
-        logger.info("Deleting secret for {}", key);
+        logger.debug("Deleting secret for {}", key);
 
         return deleteSecret(key);
     }
@@ -81,6 +139,40 @@ public abstract class CredManagerBackedSecureStore<E extends StoredSecret> imple
     @Override
     public abstract boolean add(String key, E secret);
 
+    /**
+     * List the target names of the generic credentials in the user's credential set.
+     *
+     * Credential Manager does not record which store wrote a credential, so generic credentials written
+     * by other applications are listed as well.
+     *
+     * @return target names of the credentials
+     */
+    @Override
+    public Stream<String> keys() {
+        logger.debug("Listing secrets");
+
+        return toKeys(enumerateSecrets(null));
+    }
+
+    /**
+     * List the target names of the generic credentials starting with a prefix, filtered by CredEnumerate.
+     *
+     * @param prefix
+     *      prefix of the target names
+     *
+     * @return target names of the credentials starting with the prefix, see {@link #keys()}
+     */
+    @Override
+    public Stream<String> scan(final String prefix) {
+        Objects.requireNonNull(prefix, "prefix cannot be null");
+
+        logger.debug("Listing secrets starting with {}", prefix);
+
+        // the filter only supports a trailing wildcard, and matches case-insensitively
+        final String filter = prefix.isEmpty() || prefix.indexOf('*') >= 0 ? null : prefix + "*";
+        return toKeys(enumerateSecrets(filter)).filter(key -> key.startsWith(prefix));
+    }
+
     /**
      * Windows credential manager is considered a secure storage for secrets
      *
@@ -95,6 +187,13 @@ public abstract class CredManagerBackedSecureStore<E extends StoredSecret> imple
         return isWindows();
     }
 
+    /**
+     * @return {@code true} if the secrets are kept for the life of the logon session only
+     */
+    public boolean isSessionScoped() {
+        return persist == CredAdvapi32.CRED_PERSIST_SESSION;
+    }
+
     /**
      * Create a {@code Secret} from the native representation
      *
@@ -118,43 +217,126 @@ public abstract class CredManagerBackedSecureStore<E extends StoredSecret> imple
     }
 
     protected <T> T readSecret(final String key, final Function<CredAdvapi32.CREDENTIAL, T> mapper) {
-        T cred = null;
+        return readSecretResult(key, mapper).getValue();
+    }
 
+    protected <T> SecretResult<T> readSecretResult(final String key, final Function<CredAdvapi32.CREDENTIAL, T> mapper) {
         final CredAdvapi32.PCREDENTIAL pcredential = new CredAdvapi32.PCREDENTIAL();
         boolean read;
 
         try {
-            // MSDN doc doesn't mention threading safety, so let's just be careful and synchronize the access
-            synchronized (INSTANCE) {
-                read = INSTANCE.CredRead(key, CredAdvapi32.CRED_TYPE_GENERIC, 0, pcredential);
+            LOCK.lock();
+            try {
+                read = INSTANCE.CredRead(toTargetName(key), CredAdvapi32.CRED_TYPE_GENERIC, 0, pcredential);
+            } finally {
+                LOCK.unlock();
             }
 
             if (read) {
                 final CredAdvapi32.CREDENTIAL credential = new CredAdvapi32.CREDENTIAL(pcredential.credential);
-                cred = mapper.apply(credential);
+                if (isInScope(credential.Persist)) {
+                    return SecretResult.of(mapper.apply(credential));
+                }
             }
 
+            return SecretResult.notFound();
         } catch (final LastErrorException e) {
+            if (e.getErrorCode() == CredAdvapi32.ERROR_NOT_FOUND) {
+                return SecretResult.notFound();
+            }
+
             logger.error("Getting secret failed. {}", e.getMessage());
+            return toResult(e);
         } finally {
             if (pcredential.credential != null) {
-                synchronized (INSTANCE) {
+                LOCK.lock();
+                try {
                     INSTANCE.CredFree(pcredential.credential);
+                } finally {
+                    LOCK.unlock();
                 }
             }
         }
+    }
+
+    protected Stream<String> enumerateSecrets(final String filter) {
+        final IntByReference count = new IntByReference();
+        final PointerByReference pcredentials = new PointerByReference();
 
-        return cred;
+        try {
+            LOCK.lock();
+            try {
+                if (!INSTANCE.CredEnumerate(toTargetFilter(filter), 0, count, pcredentials)) {
+                    return Stream.empty();
+                }
+            } finally {
+                LOCK.unlock();
+            }
+        } catch (final LastErrorException e) {
+            if (e.getErrorCode() != CredAdvapi32.ERROR_NOT_FOUND) {
+                logger.error("Listing secrets failed. {}", e.getMessage());
+            }
+            return Stream.empty();
+        }
+
+        final Pointer credentials = pcredentials.getValue();
+        if (credentials == null) {
+            return Stream.empty();
+        }
+
+        // the names are copied out, so that the buffer is freed even if the stream is not closed
+        final int total = count.getValue();
+        final List<String> keys = new ArrayList<>(total);
+        try {
+            for (int i = 0; i < total; i++) {
+                final Pointer pcredential = credentials.getPointer((long) i * Native.POINTER_SIZE);
+                final CredAdvapi32.CREDENTIAL credential = new CredAdvapi32.CREDENTIAL(pcredential);
+                final String key = credential.Type == CredAdvapi32.CRED_TYPE_GENERIC
+                        ? toKey(credential.TargetName)
+                        : null;
+                if (key != null && isInScope(credential.Persist)) {
+                    keys.add(key);
+                }
+            }
+        } finally {
+            LOCK.lock();
+            try {
+                INSTANCE.CredFree(credentials);
+            } finally {
+                LOCK.unlock();
+            }
+        }
+        return keys.stream();
+    }
+
+    /**
+     * Map the target names of the credentials to the keys of this store
+     *
+     * @param targetNames
+     *      TargetName of the generic credentials
+     *
+     * @return keys, excluding the tokens of token pairs by default
+     */
+    protected Stream<String> toKeys(final Stream<String> targetNames) {
+        return targetNames.filter(name -> !name.endsWith("/accessToken") && !name.endsWith("/refreshToken"));
     }
 
     protected boolean writeSecret(final String key, final String username, final char[] secret) {
         final byte[] credBlob = UTF16LEGetBytes(secret);
 
-        final CredAdvapi32.CREDENTIAL cred = buildCred(key, username, credBlob);
+        final String targetName = toTargetName(key);
+        final CredAdvapi32.CREDENTIAL cred = buildCred(targetName, username, credBlob, persist);
 
         try {
-            synchronized (INSTANCE) {
+            LOCK.lock();
+            try {
+                if (!isInScope(readPersist(targetName))) {
+                    logger.error("Adding secret failed. A persisted credential has the same target name.");
+                    return false;
+                }
                 INSTANCE.CredWrite(cred, 0);
+            } finally {
+                LOCK.unlock();
             }
 
             return true;
@@ -169,9 +351,17 @@ public abstract class CredManagerBackedSecureStore<E extends StoredSecret> imple
     }
 
     protected boolean deleteSecret(final String key) {
+        final String targetName = toTargetName(key);
         try {
-            synchronized (INSTANCE) {
-                return INSTANCE.CredDelete(key, CredAdvapi32.CRED_TYPE_GENERIC, 0);
+            LOCK.lock();
+            try {
+                // a persisted credential of the same target name is not deleted by a session-scoped store
+                if (isSessionScoped() && readPersist(targetName) != CredAdvapi32.CRED_PERSIST_SESSION) {
+                    return false;
+                }
+                return INSTANCE.CredDelete(targetName, CredAdvapi32.CRED_TYPE_GENERIC, 0);
+            } finally {
+                LOCK.unlock();
             }
         } catch (LastErrorException e) {
             logger.error("Deleting secret failed. {}", e.getMessage());
@@ -179,7 +369,71 @@ public abstract class CredManagerBackedSecureStore<E extends StoredSecret> imple
         }
     }
 
-    static CredAdvapi32.CREDENTIAL buildCred(final String key, final String username, final byte[] credentialBlob) {
+    /**
+     * Whether a credential is seen by this store, session-scoped stores only see the credentials of the session
+     *
+     * @param credentialPersist Persist of the credential, {@link CredAdvapi32#CRED_PERSIST_NONE} if it does not exist
+     */
+    private boolean isInScope(final int credentialPersist) {
+        return !isSessionScoped() || credentialPersist == CredAdvapi32.CRED_PERSIST_NONE
+                || credentialPersist == CredAdvapi32.CRED_PERSIST_SESSION;
+    }
+
+    private String toTargetName(final String key) {
+        return isSessionScoped() ? SESSION_TARGET_PREFIX + key : key;
+    }
+
+    private String toTargetFilter(final String filter) {
+        if (!isSessionScoped()) {
+            return filter;
+        }
+        return SESSION_TARGET_PREFIX + (filter != null ? filter : "*");
+    }
+
+    /**
+     * @return key of a target name, {@code null} if the credential was saved by the other kind of store
+     */
+    private String toKey(final String targetName) {
+        if (targetName == null || targetName.startsWith(SESSION_TARGET_PREFIX) != isSessionScoped()) {
+            return null;
+        }
+        return isSessionScoped() ? targetName.substring(SESSION_TARGET_PREFIX.length()) : targetName;
+    }
+
+    // with LOCK held
+    private int readPersist(final String targetName) {
+        if (!isSessionScoped()) {
+            // only session-scoped stores need it
+            return CredAdvapi32.CRED_PERSIST_NONE;
+        }
+
+        final CredAdvapi32.PCREDENTIAL pcredential = new CredAdvapi32.PCREDENTIAL();
+        try {
+            if (!INSTANCE.CredRead(targetName, CredAdvapi32.CRED_TYPE_GENERIC, 0, pcredential)) {
+                return CredAdvapi32.CRED_PERSIST_NONE;
+            }
+            return new CredAdvapi32.CREDENTIAL(pcredential.credential).Persist;
+        } catch (final LastErrorException e) {
+            if (e.getErrorCode() != CredAdvapi32.ERROR_NOT_FOUND) {
+                logger.error("Getting secret failed. {}", e.getMessage());
+            }
+            return CredAdvapi32.CRED_PERSIST_NONE;
+        } finally {
+            if (pcredential.credential != null) {
+                INSTANCE.CredFree(pcredential.credential);
+            }
+        }
+    }
+
+    private static <T> SecretResult<T> toResult(final LastErrorException e) {
+        final SecretResult.Status status = e.getErrorCode() == CredAdvapi32.ERROR_NO_SUCH_LOGON_SESSION
+                ? SecretResult.Status.UNAVAILABLE
+                : SecretResult.Status.FAILED;
+        return SecretResult.failed(status, WIN32_ERROR_DOMAIN, e.getErrorCode(), e.getMessage());
+    }
+
+    static CredAdvapi32.CREDENTIAL buildCred(final String key, final String username, final byte[] credentialBlob,
+                                             final int persist) {
         final CredAdvapi32.CREDENTIAL credential = new CredAdvapi32.CREDENTIAL();
 
         credential.Flags = 0;
@@ -190,7 +444,7 @@ public abstract class CredManagerBackedSecureStore<E extends StoredSecret> imple
         credential.CredentialBlobSize = credentialBlob.length;
         credential.CredentialBlob = getPointer(credentialBlob);
 
-        credential.Persist = CredAdvapi32.CRED_PERSIST_LOCAL_MACHINE;
+        credential.Persist = persist;
         credential.UserName = username;
 
         return credential;
@@ -243,6 +497,11 @@ public abstract class CredManagerBackedSecureStore<E extends StoredSecret> imple
                 public void CredFree(Pointer credential) throws LastErrorException {
 
                 }
+
+                @Override
+                public boolean CredEnumerate(String filter, int flags, IntByReference count, PointerByReference credentials) throws LastErrorException {
+                    return false;
+                }
             };
         }
     }
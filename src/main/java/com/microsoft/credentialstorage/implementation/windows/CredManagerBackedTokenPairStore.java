@@ -3,11 +3,13 @@
 
 package com.microsoft.credentialstorage.implementation.windows;
 
+import com.microsoft.credentialstorage.SecretResult;
 import com.microsoft.credentialstorage.model.StoredToken;
 import com.microsoft.credentialstorage.model.StoredTokenPair;
 import com.microsoft.credentialstorage.model.StoredTokenType;
 
 import java.util.Objects;
+import java.util.stream.Stream;
 
 /**
  * Credential Manager store for a token pair.
@@ -16,23 +18,49 @@ public final class CredManagerBackedTokenPairStore extends CredManagerBackedSecu
     private static final String ACCESS_TOKEN = "/accessToken";
     private static final String REFRESH_TOKEN = "/refreshToken";
 
+    /**
+     * Creates a store persisting the token pairs on the local machine.
+     */
+    public CredManagerBackedTokenPairStore() {
+        super();
+    }
+
+    /**
+     * Creates a store persisting the token pairs on the local machine, or keeping them for the logon session only.
+     *
+     * @param sessionScoped {@code true} to keep the token pairs for the life of the logon session
+     */
+    public CredManagerBackedTokenPairStore(final boolean sessionScoped) {
+        super(sessionScoped);
+    }
+
+    CredManagerBackedTokenPairStore(final CredAdvapi32 instance, final boolean sessionScoped) {
+        super(instance, sessionScoped);
+    }
+
     @Override
-    public StoredTokenPair get(final String key) {
+    public SecretResult<StoredTokenPair> getResult(final String key) {
         Objects.requireNonNull(key, "key cannot be null");
 
-        logger.info("Getting secret for {}", key);
+        logger.debug("Getting secret for {}", key);
 
-        final StoredToken accessToken = readSecret(key + ACCESS_TOKEN,
+        final SecretResult<StoredToken> accessToken = readSecretResult(key + ACCESS_TOKEN,
                 credential -> new StoredToken(getSecret(credential), StoredTokenType.ACCESS));
-        final StoredToken refreshToken = readSecret(key + REFRESH_TOKEN,
+        if (accessToken.isFailure()) {
+            return accessToken.asFailure();
+        }
+        final SecretResult<StoredToken> refreshToken = readSecretResult(key + REFRESH_TOKEN,
                 credential -> new StoredToken(getSecret(credential), StoredTokenType.REFRESH));
+        if (refreshToken.isFailure()) {
+            return refreshToken.asFailure();
+        }
 
         // no token found
-        if (accessToken == null && refreshToken == null) {
-            return null;
+        if (!accessToken.isFound() && !refreshToken.isFound()) {
+            return SecretResult.notFound();
         }
 
-        return new StoredTokenPair(accessToken, refreshToken);
+        return SecretResult.found(new StoredTokenPair(accessToken.getValue(), refreshToken.getValue()));
     }
 
     @Override
@@ -40,7 +68,7 @@ public final class CredManagerBackedTokenPairStore extends CredManagerBackedSecu
         Objects.requireNonNull(key, "key cannot be null");
         Objects.requireNonNull(secret, "secret cannot be null");
 
-        logger.info("Adding secret for {}", key);
+        logger.debug("Adding secret for {}", key);
 
         return writeSecret(key + ACCESS_TOKEN,
                     secret.getAccessToken().getType().getDescription(), secret.getAccessToken().getValue())
@@ -52,11 +80,27 @@ public final class CredManagerBackedTokenPairStore extends CredManagerBackedSecu
     public boolean delete(final String key) {
         Objects.requireNonNull(key, "key cannot be null");
 
-        logger.info("Deleting secret for {}", key);
+        logger.debug("Deleting secret for {}", key);
 
         return deleteSecret(key + ACCESS_TOKEN) && deleteSecret(key + REFRESH_TOKEN);
     }
 
+    /**
+     * Map the target names to the keys of the token pairs, whose tokens are stored under the key with a suffix.
+     *
+     * @param targetNames
+     *      TargetName of the generic credentials
+     *
+     * @return keys of the token pairs
+     */
+    @Override
+    protected Stream<String> toKeys(final Stream<String> targetNames) {
+        return targetNames
+                .filter(key -> key.endsWith(ACCESS_TOKEN) || key.endsWith(REFRESH_TOKEN))
+                .map(key -> key.substring(0, key.lastIndexOf('/')))
+                .distinct();
+    }
+
     @Override
     protected StoredTokenPair create(final String username, final char[] secret) {
         // not used
@@ -12,6 +12,26 @@ import java.util.Objects;
  * Credential Manager store for a token.
  */
 public final class CredManagerBackedTokenStore extends CredManagerBackedSecureStore<StoredToken> {
+    /**
+     * Creates a store persisting the tokens on the local machine.
+     */
+    public CredManagerBackedTokenStore() {
+        super();
+    }
+
+    /**
+     * Creates a store persisting the tokens on the local machine, or keeping them for the logon session only.
+     *
+     * @param sessionScoped {@code true} to keep the tokens for the life of the logon session
+     */
+    public CredManagerBackedTokenStore(final boolean sessionScoped) {
+        super(sessionScoped);
+    }
+
+    CredManagerBackedTokenStore(final CredAdvapi32 instance, final boolean sessionScoped) {
+        super(instance, sessionScoped);
+    }
+
     @Override
     protected StoredToken create(final String username, final char[] secret) {
         return new StoredToken(secret, StoredTokenType.fromDescription(username));
@@ -22,7 +42,7 @@ public final class CredManagerBackedTokenStore extends CredManagerBackedSecureSt
         Objects.requireNonNull(key, "key cannot be null");
         Objects.requireNonNull(secret, "secret cannot be null");
 
-        logger.info("Adding secret for {}", key);
+        logger.debug("Adding secret for {}", key);
 
         return writeSecret(key, secret.getType().getDescription(), secret.getValue());
     }
@@ -0,0 +1,70 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.implementation.windows;
+
+import com.microsoft.credentialstorage.SecretStore;
+import com.microsoft.credentialstorage.SecretStoreProvider;
+import com.microsoft.credentialstorage.model.StoredCredential;
+import com.microsoft.credentialstorage.model.StoredToken;
+import com.microsoft.credentialstorage.model.StoredTokenPair;
+
+/**
+ * Provider of the Windows Credential Manager stores.
+ */
+public final class CredManagerStoreProvider implements SecretStoreProvider {
+    @Override
+    public String getName() {
+        return "Windows Credential Manager";
+    }
+
+    @Override
+    public int getPriority() {
+        return 500;
+    }
+
+    @Override
+    public boolean isSecure() {
+        return true;
+    }
+
+    @Override
+    public boolean isPersistent() {
+        return true;
+    }
+
+    @Override
+    public boolean isLikelySupported() {
+        return System.getProperty("os.name").startsWith("Windows");
+    }
+
+    @Override
+    public boolean isSupported() {
+        return CredManagerBackedSecureStore.isSupported();
+    }
+
+    /**
+     * Calls to Credential Manager are serialized, more threads would only wait for each other
+     *
+     * @return 1
+     */
+    @Override
+    public int getMaxConcurrentCalls() {
+        return 1;
+    }
+
+    @Override
+    public SecretStore<StoredCredential> createCredentialStore() {
+        return new CredManagerBackedCredentialStore();
+    }
+
+    @Override
+    public SecretStore<StoredToken> createTokenStore() {
+        return new CredManagerBackedTokenStore();
+    }
+
+    @Override
+    public SecretStore<StoredTokenPair> createTokenPairStore() {
+        return new CredManagerBackedTokenPairStore();
+    }
+}
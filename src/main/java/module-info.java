@@ -5,12 +5,28 @@ module com.microsoft.credentialstorage {
     requires com.sun.jna;
     requires com.sun.jna.platform;
     requires org.slf4j;
+    requires static jdk.jfr;
 
     exports com.microsoft.credentialstorage.model;
     exports com.microsoft.credentialstorage;
+    exports com.microsoft.credentialstorage.composite;
+    exports com.microsoft.credentialstorage.audit;
 
     exports com.microsoft.credentialstorage.implementation.posix.internal to com.sun.jna;
+    exports com.microsoft.credentialstorage.implementation.posix.kernelkeyring to com.sun.jna;
     exports com.microsoft.credentialstorage.implementation.posix.keyring to com.sun.jna;
     exports com.microsoft.credentialstorage.implementation.posix.libsecret to com.sun.jna;
     exports com.microsoft.credentialstorage.implementation.windows to com.sun.jna;
+
+    uses com.microsoft.credentialstorage.SecretStoreProvider;
+
+    provides com.microsoft.credentialstorage.SecretStoreProvider with
+            com.microsoft.credentialstorage.implementation.windows.CredManagerStoreProvider,
+            com.microsoft.credentialstorage.implementation.windows.CredManagerSessionStoreProvider,
+            com.microsoft.credentialstorage.implementation.macosx.KeychainStoreProvider,
+            com.microsoft.credentialstorage.implementation.posix.libsecret.LibSecretStoreProvider,
+            com.microsoft.credentialstorage.implementation.posix.libsecret.LibSecretSessionStoreProvider,
+            com.microsoft.credentialstorage.implementation.posix.keyring.GnomeKeyringStoreProvider,
+            com.microsoft.credentialstorage.implementation.file.FileVaultStoreProvider,
+            com.microsoft.credentialstorage.implementation.posix.kernelkeyring.KernelKeyringStoreProvider;
 }
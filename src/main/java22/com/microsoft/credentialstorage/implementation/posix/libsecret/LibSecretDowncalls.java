@@ -0,0 +1,434 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.implementation.posix.libsecret;
+
+import com.microsoft.credentialstorage.SecretResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.foreign.AddressLayout;
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemoryLayout;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.StructLayout;
+import java.lang.foreign.SymbolLookup;
+import java.lang.invoke.MethodHandle;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.BiFunction;
+import java.util.function.LongConsumer;
+
+import static java.lang.foreign.MemoryLayout.PathElement.groupElement;
+import static java.lang.foreign.MemoryLayout.PathElement.sequenceElement;
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+
+/**
+ * Bindings of the libsecret calls on the read and write paths of {@link LibSecretBackedSecureStore} as
+ * {@code java.lang.foreign} downcalls.
+ *
+ * Structures are read through memory layouts rather than JNA {@code Structure} reflection, and arguments are
+ * passed without JNA's marshalling. The secret is copied to native memory without creating a {@code String},
+ * and cleared once the call returns. The other calls of the store are still made through JNA.
+ *
+ * Native access has to be enabled for the module, e.g. with
+ * {@code --enable-native-access=com.microsoft.credentialstorage}, otherwise the runtime prints a warning.
+ */
+final class LibSecretDowncalls {
+    private static final Logger logger = LoggerFactory.getLogger(LibSecretDowncalls.class);
+
+    /**
+     * System property to disable the downcalls on Java 22 and later, and make the calls through JNA
+     */
+    static final String USE_DOWNCALLS = "AUTH_LIB_LIBSECRET_DOWNCALLS";
+
+    private static final AddressLayout C_STRING = ADDRESS.withTargetLayout(
+            MemoryLayout.sequenceLayout(Long.MAX_VALUE, JAVA_BYTE));
+
+    private static final StructLayout GLIST = MemoryLayout.structLayout(
+            ADDRESS.withName("data"),
+            ADDRESS.withName("next"),
+            ADDRESS.withName("prev"));
+
+    private static final StructLayout GERROR = MemoryLayout.structLayout(
+            JAVA_INT.withName("domain"),
+            JAVA_INT.withName("code"),
+            ADDRESS.withName("message"));
+
+    private static final StructLayout SECRET_SCHEMA_ATTRIBUTE = MemoryLayout.structLayout(
+            ADDRESS.withName("name"),
+            JAVA_INT.withName("type"),
+            MemoryLayout.paddingLayout(4));
+
+    private static final StructLayout SECRET_SCHEMA = MemoryLayout.structLayout(
+            ADDRESS.withName("name"),
+            JAVA_INT.withName("flags"),
+            MemoryLayout.paddingLayout(4),
+            MemoryLayout.sequenceLayout(32, SECRET_SCHEMA_ATTRIBUTE).withName("attributes"),
+            JAVA_INT.withName("reserved"),
+            MemoryLayout.paddingLayout(4),
+            MemoryLayout.sequenceLayout(7, ADDRESS).withName("reserved_pointers"));
+
+    private static final long GLIST_DATA = GLIST.byteOffset(groupElement("data"));
+    private static final long GLIST_NEXT = GLIST.byteOffset(groupElement("next"));
+    private static final long GERROR_DOMAIN = GERROR.byteOffset(groupElement("domain"));
+    private static final long GERROR_CODE = GERROR.byteOffset(groupElement("code"));
+    private static final long GERROR_MESSAGE = GERROR.byteOffset(groupElement("message"));
+
+    private static final Bindings BINDINGS = bind();
+
+    private LibSecretDowncalls() {
+    }
+
+    /**
+     * @return {@code true} if the downcalls are bound
+     */
+    static boolean isAvailable() {
+        return BINDINGS != null;
+    }
+
+    /**
+     * Find the secret of a key, see {@link LibSecretBackedSecureStore#readSecret}. The addresses of the items
+     * found are passed to {@code found} before they are released.
+     */
+    static <T> SecretResult<T> search(final String type, final String key, final long cancellable,
+                                      final BiFunction<String, char[], T> mapper, final LongConsumer found) {
+        try (Arena arena = Arena.ofConfined()) {
+            final MemorySegment attributes = newAttributes(arena, type, key, null);
+            final MemorySegment error = newErrorReference(arena);
+            try {
+                final MemorySegment items = (MemorySegment) BINDINGS.serviceSearchSync.invokeExact(
+                        MemorySegment.NULL, BINDINGS.schema, attributes,
+                        LibSecretLibrary.SECRET_SEARCH_UNLOCK | LibSecretLibrary.SECRET_SEARCH_LOAD_SECRETS,
+                        MemorySegment.ofAddress(cancellable), error);
+
+                final SecretResult<T> failure = toResult(error, "Could not find the item in storage.");
+                if (failure != null) {
+                    return failure;
+                }
+                return readItems(items, arena, mapper, found);
+            } finally {
+                BINDINGS.hashTableUnref.invokeExact(attributes);
+            }
+        } catch (final RuntimeException | Error e) {
+            throw e;
+        } catch (final Throwable t) {
+            throw new IllegalStateException("Calling libsecret failed", t);
+        }
+    }
+
+    /**
+     * Save the secret of a key to a collection, see {@link LibSecretBackedSecureStore#writeSecret}.
+     */
+    static boolean store(final String type, final String key, final String account, final char[] secret,
+                         final String collection, final long cancellable) {
+        try (Arena arena = Arena.ofConfined()) {
+            final MemorySegment attributes = newAttributes(arena, type, key, account);
+            final MemorySegment error = newErrorReference(arena);
+            final MemorySegment password = toCString(arena, secret);
+            try {
+                final int stored = (int) BINDINGS.passwordStorevSync.invokeExact(BINDINGS.schema, attributes,
+                        arena.allocateFrom(collection), arena.allocateFrom(key),
+                        password, MemorySegment.ofAddress(cancellable), error);
+
+                return checkResult(error, "Could not save the secret to the storage.") && stored != 0;
+            } finally {
+                password.fill((byte) 0);
+                BINDINGS.hashTableUnref.invokeExact(attributes);
+            }
+        } catch (final RuntimeException | Error e) {
+            throw e;
+        } catch (final Throwable t) {
+            throw new IllegalStateException("Calling libsecret failed", t);
+        }
+    }
+
+    /**
+     * Remove the secret of a key, see {@link LibSecretBackedSecureStore#deleteSecret}.
+     */
+    static boolean clear(final String type, final String key, final long cancellable) {
+        try (Arena arena = Arena.ofConfined()) {
+            final MemorySegment attributes = newAttributes(arena, type, key, null);
+            final MemorySegment error = newErrorReference(arena);
+            try {
+                final int cleared = (int) BINDINGS.passwordClearvSync.invokeExact(BINDINGS.schema, attributes,
+                        MemorySegment.ofAddress(cancellable), error);
+
+                return checkResult(error, "Could not delete secret from storage") && cleared != 0;
+            } finally {
+                BINDINGS.hashTableUnref.invokeExact(attributes);
+            }
+        } catch (final RuntimeException | Error e) {
+            throw e;
+        } catch (final Throwable t) {
+            throw new IllegalStateException("Calling libsecret failed", t);
+        }
+    }
+
+    private static <T> SecretResult<T> readItems(final MemorySegment items, final Arena arena,
+                                                 final BiFunction<String, char[], T> mapper,
+                                                 final LongConsumer found) throws Throwable {
+        final MemorySegment accountName = arena.allocateFrom(LibSecretBackedSecureStore.ATTRIBUTE_ACCOUNT);
+        T result = null;
+        boolean locked = false;
+        try {
+            for (MemorySegment node = items; !isNull(node); ) {
+                final MemorySegment listItem = node.reinterpret(GLIST.byteSize());
+                final MemorySegment item = listItem.get(ADDRESS, GLIST_DATA);
+                if (!isNull(item)) {
+                    found.accept(item.address());
+                }
+                if (result == null && !isNull(item)) {
+                    result = readItem(item, accountName, mapper);
+                    // the user dismissed the unlock prompt, or no prompt can be shown
+                    locked |= result == null && (int) BINDINGS.itemGetLocked.invokeExact(item) != 0;
+                }
+                node = listItem.get(ADDRESS, GLIST_NEXT);
+            }
+        } finally {
+            freeItems(items);
+        }
+
+        if (result != null) {
+            return SecretResult.found(result);
+        }
+        return locked
+                ? SecretResult.failed(SecretResult.Status.LOCKED, null, 0, "The item could not be unlocked")
+                : SecretResult.notFound();
+    }
+
+    private static <T> T readItem(final MemorySegment item, final MemorySegment accountName,
+                                  final BiFunction<String, char[], T> mapper) throws Throwable {
+        final MemorySegment itemAttributes = (MemorySegment) BINDINGS.itemGetAttributes.invokeExact(item);
+        try {
+            final MemorySegment account = (MemorySegment) BINDINGS.hashTableLookup.invokeExact(itemAttributes,
+                    accountName);
+            if (isNull(account)) {
+                return null;
+            }
+
+            final MemorySegment value = (MemorySegment) BINDINGS.itemGetSecret.invokeExact(item);
+            if (isNull(value)) {
+                return null;
+            }
+            try {
+                final MemorySegment text = (MemorySegment) BINDINGS.valueGetText.invokeExact(value);
+                if (isNull(text)) {
+                    return null;
+                }
+                return mapper.apply(account.getString(0), toChars(text));
+            } finally {
+                BINDINGS.valueUnref.invokeExact(value);
+            }
+        } finally {
+            BINDINGS.hashTableUnref.invokeExact(itemAttributes);
+        }
+    }
+
+    private static void freeItems(final MemorySegment items) throws Throwable {
+        for (MemorySegment node = items; !isNull(node); ) {
+            final MemorySegment listItem = node.reinterpret(GLIST.byteSize());
+            final MemorySegment item = listItem.get(ADDRESS, GLIST_DATA);
+            if (!isNull(item)) {
+                BINDINGS.objectUnref.invokeExact(item);
+            }
+            node = listItem.get(ADDRESS, GLIST_NEXT);
+        }
+        BINDINGS.listFree.invokeExact(items);
+    }
+
+    private static MemorySegment newAttributes(final Arena arena, final String type, final String key,
+                                               final String account) throws Throwable {
+        // the strings are owned by the arena, the table only refers to them
+        final MemorySegment table = (MemorySegment) BINDINGS.hashTableNew.invokeExact(MemorySegment.NULL,
+                MemorySegment.NULL);
+        insert(table, arena, LibSecretBackedSecureStore.ATTRIBUTE_TYPE, type);
+        insert(table, arena, LibSecretBackedSecureStore.ATTRIBUTE_KEY, key);
+        if (account != null) {
+            insert(table, arena, LibSecretBackedSecureStore.ATTRIBUTE_ACCOUNT, account);
+        }
+        return table;
+    }
+
+    private static void insert(final MemorySegment table, final Arena arena, final String name,
+                               final String value) throws Throwable {
+        BINDINGS.hashTableInsert.invokeExact(table, arena.allocateFrom(name), arena.allocateFrom(value));
+    }
+
+    private static MemorySegment newErrorReference(final Arena arena) {
+        final MemorySegment error = arena.allocate(ADDRESS);
+        error.set(ADDRESS, 0, MemorySegment.NULL);
+        return error;
+    }
+
+    private static boolean checkResult(final MemorySegment errorReference, final String message) throws Throwable {
+        return toResult(errorReference, message) == null;
+    }
+
+    /**
+     * @return result of the failed call, or {@code null} if no error was set
+     */
+    private static <T> SecretResult<T> toResult(final MemorySegment errorReference, final String message)
+            throws Throwable {
+        final MemorySegment error = errorReference.get(ADDRESS, 0);
+        if (isNull(error)) {
+            return null;
+        }
+
+        try {
+            final MemorySegment gError = error.reinterpret(GERROR.byteSize());
+            final MemorySegment domainName = (MemorySegment) BINDINGS.quarkToString.invokeExact(
+                    gError.get(JAVA_INT, GERROR_DOMAIN));
+            final MemorySegment description = gError.get(C_STRING, GERROR_MESSAGE);
+            final String domain = isNull(domainName) ? null : domainName.getString(0);
+            final int code = gError.get(JAVA_INT, GERROR_CODE);
+            final String text = isNull(description) ? null : description.getString(0);
+            logger.error(message + ": domain: {}, code: {}, description: {}", domain, code, text);
+            return LibSecretBackedSecureStore.failedCall(domain, code, text);
+        } finally {
+            BINDINGS.errorFree.invokeExact(error);
+        }
+    }
+
+    private static MemorySegment toCString(final Arena arena, final char[] chars) {
+        final ByteBuffer bytes = StandardCharsets.UTF_8.encode(CharBuffer.wrap(chars));
+        try {
+            final MemorySegment string = arena.allocate(bytes.remaining() + 1L);
+            MemorySegment.copy(MemorySegment.ofBuffer(bytes), 0, string, 0, bytes.remaining());
+            return string;
+        } finally {
+            Arrays.fill(bytes.array(), (byte) 0);
+        }
+    }
+
+    private static char[] toChars(final MemorySegment string) {
+        final MemorySegment text = string.reinterpret(Long.MAX_VALUE);
+        long length = 0;
+        while (text.get(JAVA_BYTE, length) != 0) {
+            length++;
+        }
+
+        final CharBuffer chars = StandardCharsets.UTF_8.decode(text.asSlice(0, length).asByteBuffer());
+        try {
+            final char[] result = new char[chars.remaining()];
+            chars.get(result);
+            return result;
+        } finally {
+            Arrays.fill(chars.array(), (char) 0);
+        }
+    }
+
+    private static boolean isNull(final MemorySegment segment) {
+        return segment.address() == 0;
+    }
+
+    private static Bindings bind() {
+        if (!Boolean.parseBoolean(System.getProperty(USE_DOWNCALLS, "true"))) {
+            logger.info("libsecret downcalls disabled by {}, calling through JNA", USE_DOWNCALLS);
+            return null;
+        }
+        if (!"Linux".equals(System.getProperty("os.name"))) {
+            return null;
+        }
+
+        try {
+            final SymbolLookup lookup = SymbolLookup.libraryLookup("libsecret-1.so.0", Arena.global())
+                    .or(SymbolLookup.libraryLookup("libgobject-2.0.so.0", Arena.global()))
+                    .or(SymbolLookup.libraryLookup("libglib-2.0.so.0", Arena.global()));
+            final Bindings bindings = new Bindings(Linker.nativeLinker(), lookup);
+            logger.info("libsecret downcalls bound, calling through java.lang.foreign");
+            return bindings;
+        } catch (final RuntimeException e) {
+            // library or symbol not found, or native access denied to the module
+            logger.info("libsecret downcalls not available, calling through JNA: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Downcall handles and the password schema, allocated for the lifetime of the process.
+     */
+    private static final class Bindings {
+        final MethodHandle hashTableNew;
+        final MethodHandle hashTableInsert;
+        final MethodHandle hashTableLookup;
+        final MethodHandle hashTableUnref;
+        final MethodHandle listFree;
+        final MethodHandle errorFree;
+        final MethodHandle quarkToString;
+        final MethodHandle objectUnref;
+        final MethodHandle serviceSearchSync;
+        final MethodHandle itemGetAttributes;
+        final MethodHandle itemGetSecret;
+        final MethodHandle itemGetLocked;
+        final MethodHandle valueGetText;
+        final MethodHandle valueUnref;
+        final MethodHandle passwordStorevSync;
+        final MethodHandle passwordClearvSync;
+        final MemorySegment schema;
+
+        Bindings(final Linker linker, final SymbolLookup lookup) {
+            hashTableNew = downcall(linker, lookup, "g_hash_table_new",
+                    FunctionDescriptor.of(ADDRESS, ADDRESS, ADDRESS));
+            // the returned gboolean is ignored
+            hashTableInsert = downcall(linker, lookup, "g_hash_table_insert",
+                    FunctionDescriptor.ofVoid(ADDRESS, ADDRESS, ADDRESS));
+            hashTableLookup = downcall(linker, lookup, "g_hash_table_lookup",
+                    FunctionDescriptor.of(C_STRING, ADDRESS, ADDRESS));
+            hashTableUnref = downcall(linker, lookup, "g_hash_table_unref", FunctionDescriptor.ofVoid(ADDRESS));
+            listFree = downcall(linker, lookup, "g_list_free", FunctionDescriptor.ofVoid(ADDRESS));
+            errorFree = downcall(linker, lookup, "g_error_free", FunctionDescriptor.ofVoid(ADDRESS));
+            quarkToString = downcall(linker, lookup, "g_quark_to_string", FunctionDescriptor.of(C_STRING, JAVA_INT));
+            objectUnref = downcall(linker, lookup, "g_object_unref", FunctionDescriptor.ofVoid(ADDRESS));
+            serviceSearchSync = downcall(linker, lookup, "secret_service_search_sync",
+                    FunctionDescriptor.of(ADDRESS, ADDRESS, ADDRESS, ADDRESS, JAVA_INT, ADDRESS, ADDRESS));
+            itemGetAttributes = downcall(linker, lookup, "secret_item_get_attributes",
+                    FunctionDescriptor.of(ADDRESS, ADDRESS));
+            itemGetSecret = downcall(linker, lookup, "secret_item_get_secret", FunctionDescriptor.of(ADDRESS, ADDRESS));
+            itemGetLocked = downcall(linker, lookup, "secret_item_get_locked",
+                    FunctionDescriptor.of(JAVA_INT, ADDRESS));
+            valueGetText = downcall(linker, lookup, "secret_value_get_text", FunctionDescriptor.of(ADDRESS, ADDRESS));
+            valueUnref = downcall(linker, lookup, "secret_value_unref", FunctionDescriptor.ofVoid(ADDRESS));
+            passwordStorevSync = downcall(linker, lookup, "secret_password_storev_sync",
+                    FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS, ADDRESS, ADDRESS, ADDRESS, ADDRESS, ADDRESS));
+            passwordClearvSync = downcall(linker, lookup, "secret_password_clearv_sync",
+                    FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS, ADDRESS, ADDRESS));
+            schema = newPasswordSchema();
+        }
+
+        private static MethodHandle downcall(final Linker linker, final SymbolLookup lookup, final String name,
+                                             final FunctionDescriptor descriptor) {
+            return linker.downcallHandle(lookup.find(name)
+                    .orElseThrow(() -> new UnsupportedOperationException("Symbol " + name + " not found")), descriptor);
+        }
+
+        // same schema as LibSecretBackedSecureStore, so secrets written through JNA are found and vice versa
+        private static MemorySegment newPasswordSchema() {
+            final Arena arena = Arena.global();
+            final MemorySegment schema = arena.allocate(SECRET_SCHEMA);
+            schema.set(ADDRESS, SECRET_SCHEMA.byteOffset(groupElement("name")),
+                    arena.allocateFrom(LibSecretBackedSecureStore.APP_NAME));
+            schema.set(JAVA_INT, SECRET_SCHEMA.byteOffset(groupElement("flags")), LibSecretLibrary.SECRET_SCHEMA_NONE);
+
+            final String[] names = {
+                    LibSecretBackedSecureStore.ATTRIBUTE_TYPE,
+                    LibSecretBackedSecureStore.ATTRIBUTE_KEY,
+                    LibSecretBackedSecureStore.ATTRIBUTE_ACCOUNT
+            };
+            for (int i = 0; i < names.length; i++) {
+                schema.set(ADDRESS, SECRET_SCHEMA.byteOffset(groupElement("attributes"), sequenceElement(i),
+                        groupElement("name")), arena.allocateFrom(names[i]));
+                schema.set(JAVA_INT, SECRET_SCHEMA.byteOffset(groupElement("attributes"), sequenceElement(i),
+                        groupElement("type")), LibSecretLibrary.SECRET_SCHEMA_ATTRIBUTE_STRING);
+            }
+            // the remaining attributes are zeroed, a null name terminates the list
+            return schema;
+        }
+    }
+}
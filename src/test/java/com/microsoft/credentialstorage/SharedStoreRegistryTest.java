@@ -0,0 +1,73 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage;
+
+import com.microsoft.credentialstorage.model.StoredCredential;
+import com.microsoft.credentialstorage.model.StoredToken;
+import com.microsoft.credentialstorage.model.StoredTokenType;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SharedStoreRegistryTest {
+
+    private final SharedStoreRegistry underTest = new SharedStoreRegistry();
+
+    @Test
+    public void storesOfAName_shouldBeShared() {
+        final SecretStore<StoredToken> store = underTest.getTokenStore("build-cache");
+        assertSame(store, underTest.getTokenStore("build-cache"));
+        assertNotSame(store, underTest.getTokenStore("other"));
+
+        store.add("key", token("value"));
+        assertArrayEquals("value".toCharArray(), underTest.getTokenStore("build-cache").get("key").getValue());
+        assertNull(underTest.getTokenStore("other").get("key"));
+        assertNull(underTest.getCredentialStore("build-cache").get("key"));
+    }
+
+    @Test
+    public void configuration_shouldOnlyApplyBeforeFirstUse() {
+        assertTrue(underTest.configure("bounded", 2, Duration.ofMinutes(1)));
+        assertFalse(underTest.configure("bounded", 10, null));
+
+        final SecretStore<StoredCredential> store = underTest.getCredentialStore("bounded");
+        for (int i = 0; i < 3; i++) {
+            store.add("key" + i, new StoredCredential("user", ("password" + i).toCharArray()));
+        }
+        try (Stream<String> keys = store.keys()) {
+            assertEquals(2, keys.count());
+        }
+
+        underTest.getTokenStore("used");
+        assertFalse(underTest.configure("used", 2, null));
+    }
+
+    @Test
+    public void clearing_shouldDeleteAndClearTheSecrets() {
+        final StoredToken token = token("value");
+        underTest.getTokenStore("build-cache").add("key", token);
+        underTest.getTokenStore("other").add("key", token("value"));
+
+        underTest.clear("build-cache");
+        assertNull(underTest.getTokenStore("build-cache").get("key"));
+        assertEquals(0, token.getValue().length);
+        assertArrayEquals("value".toCharArray(), underTest.getTokenStore("other").get("key").getValue());
+
+        underTest.clearAll();
+        assertNull(underTest.getTokenStore("other").get("key"));
+    }
+
+    private static StoredToken token(final String value) {
+        return new StoredToken(value.toCharArray(), StoredTokenType.PERSONAL);
+    }
+}
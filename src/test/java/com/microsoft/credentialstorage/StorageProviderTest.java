@@ -3,15 +3,25 @@
 
 package com.microsoft.credentialstorage;
 
+import com.microsoft.credentialstorage.model.StoredCredential;
 import com.microsoft.credentialstorage.model.StoredToken;
+import com.microsoft.credentialstorage.model.StoredTokenPair;
+import com.microsoft.credentialstorage.model.StoredTokenType;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeNotNull;
 
 public class StorageProviderTest {
 
@@ -83,4 +93,156 @@ public class StorageProviderTest {
             }
         };
     }
-}
\ No newline at end of file
+
+    @Test
+    public void tieredStores_shouldBeSharedByTheCallers() {
+        final SecretStore<StoredToken> tiered = StorageProvider.getTokenStorage(true,
+                StorageProvider.SecureOption.PREFERRED, StorageProvider.TieringOption.WRITE_THROUGH);
+        assumeNotNull(tiered);
+
+        assertSame(tiered, StorageProvider.getTokenStorage(true, StorageProvider.SecureOption.PREFERRED,
+                StorageProvider.TieringOption.WRITE_THROUGH));
+        assertNotSame(tiered, StorageProvider.getTokenStorage(true, StorageProvider.SecureOption.PREFERRED,
+                StorageProvider.TieringOption.NONE));
+    }
+
+    @Test
+    public void namedNonPersistentStores_shouldNotBeMergedInTheSessionStore() {
+        final SecretStore<StoredToken> first = StorageProvider.getTokenStorage(false,
+                StorageProvider.SecureOption.PREFERRED, "StorageProviderTest first");
+        final SecretStore<StoredToken> second = StorageProvider.getTokenStorage(false,
+                StorageProvider.SecureOption.PREFERRED, "StorageProviderTest second");
+
+        assertSame(first, StorageProvider.getTokenStorage(false, StorageProvider.SecureOption.PREFERRED,
+                "StorageProviderTest first"));
+        assertNotSame(first, second);
+
+        // clearing a name applies to the store handed out for it
+        assertTrue(first.add("key", new StoredToken("value".toCharArray(), StoredTokenType.PERSONAL)));
+        assertTrue(second.add("key", new StoredToken("value".toCharArray(), StoredTokenType.PERSONAL)));
+        StorageProvider.clearSharedStorage("StorageProviderTest first");
+        assertNull(first.get("key"));
+        assertNotNull(second.get("key"));
+    }
+
+    @Test
+    public void builtInProviders_shouldBeLoadedByPriority() {
+        final List<SecretStoreProvider> providers = StorageProvider.loadProviders();
+
+        assertEquals(8, providers.size());
+        assertEquals(providers.stream().map(SecretStoreProvider::getPriority).sorted((a, b) -> b - a)
+                        .collect(Collectors.toList()),
+                providers.stream().map(SecretStoreProvider::getPriority).collect(Collectors.toList()));
+        assertTrue(providers.stream().anyMatch(provider -> provider.getName().equals("kernel keyring")));
+    }
+
+    @Test
+    public void selectProvider_shouldOnlyProbeUntilASecureProviderIsSupported() {
+        final FakeProvider unlikely = new FakeProvider(500, true, true, false, true);
+        final FakeProvider insecure = new FakeProvider(400, false, true, true, true);
+        final FakeProvider unsupported = new FakeProvider(300, true, true, true, false);
+        final FakeProvider winner = new FakeProvider(200, true, true, true, true);
+        final FakeProvider session = new FakeProvider(150, true, false, true, true);
+        final FakeProvider lower = new FakeProvider(100, true, true, true, true);
+        final List<SecretStoreProvider> providers = Arrays.asList(unlikely, insecure, unsupported, winner, session,
+                lower);
+
+        assertEquals(winner, StorageProvider.selectProvider(providers, true));
+        assertEquals(0, unlikely.probes);
+        assertEquals(0, insecure.probes);
+        assertEquals(1, unsupported.probes);
+        assertEquals(0, lower.probes);
+
+        assertEquals(session, StorageProvider.selectProvider(providers, false));
+    }
+
+    @Test
+    public void selectProvider_withoutSecureProvider_shouldFallBackToInsecurePersistentProvider() {
+        final FakeProvider insecure = new FakeProvider(400, false, true, true, true);
+        final FakeProvider insecureSession = new FakeProvider(400, false, false, true, true);
+
+        assertEquals(insecure, StorageProvider.selectProvider(Arrays.asList(insecure, insecureSession), true));
+        assertNull(StorageProvider.selectProvider(Arrays.asList(insecure, insecureSession), false));
+    }
+
+    @Test
+    public void sessionProviders_shouldOnlyBePersistentStoresWhenNamedInTheFallbackChain() {
+        final FakeProvider persistent = new FakeProvider(400, true, true, true, true);
+        final FakeProvider session = new FakeProvider(100, true, false, true, true);
+        final List<SecretStoreProvider> providers = Arrays.asList(persistent, session);
+
+        assertEquals(persistent, StorageProvider.selectProvider(providers, true));
+        assertNull(StorageProvider.selectProvider(Arrays.asList(session), true));
+
+        System.setProperty(StorageProvider.FALLBACK_CHAIN, "fake 400, fake 100");
+        try {
+            assertEquals(providers, StorageProvider.selectFallbackChain(providers));
+        } finally {
+            System.clearProperty(StorageProvider.FALLBACK_CHAIN);
+        }
+    }
+
+    private static final class FakeProvider implements SecretStoreProvider {
+        private final int priority;
+        private final boolean secure;
+        private final boolean persistent;
+        private final boolean likelySupported;
+        private final boolean supported;
+        int probes;
+
+        FakeProvider(final int priority, final boolean secure, final boolean persistent,
+                     final boolean likelySupported, final boolean supported) {
+            this.priority = priority;
+            this.secure = secure;
+            this.persistent = persistent;
+            this.likelySupported = likelySupported;
+            this.supported = supported;
+        }
+
+        @Override
+        public String getName() {
+            return "fake " + priority;
+        }
+
+        @Override
+        public int getPriority() {
+            return priority;
+        }
+
+        @Override
+        public boolean isSecure() {
+            return secure;
+        }
+
+        @Override
+        public boolean isPersistent() {
+            return persistent;
+        }
+
+        @Override
+        public boolean isLikelySupported() {
+            return likelySupported;
+        }
+
+        @Override
+        public boolean isSupported() {
+            probes++;
+            return supported;
+        }
+
+        @Override
+        public SecretStore<StoredCredential> createCredentialStore() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public SecretStore<StoredToken> createTokenStore() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public SecretStore<StoredTokenPair> createTokenPairStore() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
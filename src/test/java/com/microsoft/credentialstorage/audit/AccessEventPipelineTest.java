@@ -0,0 +1,191 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.audit;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AccessEventPipelineTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final CollectingSink sink = new CollectingSink();
+
+    @Test
+    public void events_shouldReachSinksWithHashedKeys() {
+        try (AccessEventPipeline underTest = create(1, 16, "salt")) {
+            underTest.record("libsecret", AccessEvent.Operation.GET, "git:https://example.com", "FOUND", 1000);
+            underTest.record("libsecret", AccessEvent.Operation.DELETE, "git:https://example.com", "SUCCEEDED", 10);
+            underTest.record("libsecret", AccessEvent.Operation.KEYS, null, "SUCCEEDED", 10);
+        }
+
+        assertEquals(3, sink.events.size());
+        final AccessEvent get = sink.events.get(0);
+        assertEquals(AccessEvent.Operation.GET, get.getOperation());
+        assertEquals("FOUND", get.getOutcome());
+        assertTrue(get.getKeyHash().matches("[0-9a-f]{16}"));
+        assertEquals(get.getKeyHash(), sink.events.get(1).getKeyHash());
+        assertEquals(null, sink.events.get(2).getKeyHash());
+        assertTrue(sink.closed);
+
+        // the same salt gives the same hashes, another salt other ones
+        final CollectingSink other = new CollectingSink();
+        try (AccessEventPipeline salted = new AccessEventPipeline(Collections.singletonList(other), 1, 16, 16,
+                Duration.ofMillis(1), "other salt")) {
+            salted.record("libsecret", AccessEvent.Operation.GET, "git:https://example.com", "FOUND", 1000);
+        }
+        assertNotEquals(get.getKeyHash(), other.events.get(0).getKeyHash());
+    }
+
+    @Test
+    public void concurrentProducers_shouldAllBeRecorded() throws Exception {
+        final List<Thread> producers = new ArrayList<>();
+        final long recorded;
+        try (AccessEventPipeline underTest = create(1, 1 << 16, null)) {
+            for (int i = 0; i < 4; i++) {
+                final String store = "store" + i;
+                producers.add(new Thread(() -> {
+                    for (int j = 0; j < 10_000; j++) {
+                        underTest.record(store, AccessEvent.Operation.GET, "key" + j, "NOT_FOUND", j);
+                    }
+                }));
+            }
+            producers.forEach(Thread::start);
+            for (final Thread producer : producers) {
+                producer.join();
+            }
+            recorded = underTest.getRecordedCount();
+            assertEquals(40_000, recorded + underTest.getDroppedCount());
+        }
+
+        assertEquals(recorded, sink.events.size());
+        // the events of each producer stay in order
+        for (int i = 0; i < 4; i++) {
+            final String store = "store" + i;
+            final List<Long> durations = sink.events.stream().filter(event -> event.getStore().equals(store))
+                    .map(AccessEvent::getDurationNanos).collect(Collectors.toList());
+            for (int j = 1; j < durations.size(); j++) {
+                assertTrue(durations.get(j - 1) < durations.get(j));
+            }
+        }
+    }
+
+    @Test
+    public void fullRing_shouldDropEventsWithoutBlocking() {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final AccessEventSink slowSink = events -> {
+            blocked.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        try (AccessEventPipeline underTest = new AccessEventPipeline(Collections.singletonList(slowSink), 1, 4, 1,
+                Duration.ofMillis(1), null)) {
+            underTest.record("store", AccessEvent.Operation.GET, "key", "FOUND", 1);
+            assertTrue(blocked.await(10, TimeUnit.SECONDS));
+
+            for (int i = 0; i < 10; i++) {
+                underTest.record("store", AccessEvent.Operation.GET, "key", "FOUND", 1);
+            }
+            assertEquals(5, underTest.getRecordedCount());
+            assertEquals(6, underTest.getDroppedCount());
+            release.countDown();
+        } catch (final InterruptedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    @Test
+    public void sampling_shouldRecordAShareOfTheAccesses() {
+        try (AccessEventPipeline underTest = create(0, 16, null)) {
+            for (int i = 0; i < 100; i++) {
+                underTest.record("store", AccessEvent.Operation.GET, "key", "FOUND", 1);
+            }
+            assertEquals(0, underTest.getRecordedCount());
+        }
+        assertTrue(sink.events.isEmpty());
+    }
+
+    @Test
+    public void jsonFileSink_shouldAppendJsonLines() throws Exception {
+        final Path file = folder.getRoot().toPath().resolve("access.log");
+        try (AccessEventPipeline underTest = new AccessEventPipeline(
+                Collections.singletonList(new JsonFileAccessEventSink(file)))) {
+            underTest.record("kernel \"keyring\"", AccessEvent.Operation.ADD, "secret-repo", "SUCCEEDED", 2500);
+        }
+
+        final List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0), lines.get(0).matches("\\{\"timestamp\":\"[^\"]+Z\",\"store\":\"kernel \\\\\"keyring\\\\\"\","
+                + "\"operation\":\"ADD\",\"keyHash\":\"[0-9a-f]{16}\",\"outcome\":\"SUCCEEDED\",\"durationMicros\":2,"
+                + "\"thread\":\"[^\"]+\"}"));
+        assertFalse(lines.get(0).contains("secret-repo"));
+    }
+
+    @Test
+    public void jfrSink_shouldEmitEventsWhileRecording() throws Exception {
+        final Path file = folder.getRoot().toPath().resolve("access.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("com.microsoft.credentialstorage.Access");
+            recording.start();
+            try (AccessEventPipeline underTest = new AccessEventPipeline(
+                    Collections.singletonList(new JfrAccessEventSink()))) {
+                underTest.record("libsecret", AccessEvent.Operation.GET, "key", "LOCKED", 5000);
+            }
+            recording.stop();
+            recording.dump(file);
+        }
+
+        final List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        assertEquals(1, events.size());
+        assertEquals("libsecret", events.get(0).getString("store"));
+        assertEquals("LOCKED", events.get(0).getString("outcome"));
+        assertEquals(5000, events.get(0).getLong("accessDuration"));
+    }
+
+    private AccessEventPipeline create(final double sampleRate, final int capacity, final String salt) {
+        return new AccessEventPipeline(Collections.singletonList(sink), sampleRate, capacity, 64,
+                Duration.ofMillis(1), salt);
+    }
+
+    private static final class CollectingSink implements AccessEventSink {
+        final List<AccessEvent> events = Collections.synchronizedList(new ArrayList<>());
+        volatile boolean closed;
+
+        @Override
+        public void accept(final List<AccessEvent> batch) {
+            events.addAll(batch);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.composite;
+
+import com.microsoft.credentialstorage.SecretStore;
+import com.microsoft.credentialstorage.audit.AccessEvent;
+import com.microsoft.credentialstorage.audit.AccessEventPipeline;
+import com.microsoft.credentialstorage.implementation.memory.InsecureInMemoryStore;
+import com.microsoft.credentialstorage.model.StoredToken;
+import com.microsoft.credentialstorage.model.StoredTokenType;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AuditedSecretStoreTest {
+
+    private final List<AccessEvent> events = Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    public void accesses_shouldBeRecordedWithTheirOutcome() {
+        final InsecureInMemoryStore<StoredToken> delegate = new InsecureInMemoryStore<>();
+        try (AccessEventPipeline pipeline = createPipeline()) {
+            final SecretStore<StoredToken> underTest = new AuditedSecretStore<>(delegate, "memory", pipeline);
+
+            assertEquals(null, underTest.get("key"));
+            assertTrue(underTest.add("key", token("value")));
+            assertTrue(underTest.getResult("key").isFound());
+            assertFalse(underTest.putIfAbsent("key", token("other")));
+            assertEquals(1, underTest.scan("k").count());
+            assertTrue(underTest.delete("key"));
+        }
+
+        assertEquals(List.of("GET NOT_FOUND", "ADD SUCCEEDED", "GET FOUND", "PUT_IF_ABSENT FAILED",
+                "SCAN SUCCEEDED", "DELETE SUCCEEDED"), describe());
+        assertTrue(events.stream().allMatch(event -> event.getStore().equals("memory")));
+        assertEquals(1, events.stream().filter(event -> event.getOperation() != AccessEvent.Operation.SCAN)
+                .map(AccessEvent::getKeyHash).distinct().count());
+    }
+
+    @Test
+    public void failedCalls_shouldBeRecordedAsErrors() {
+        final SecretStore<StoredToken> delegate = new SecretStore<StoredToken>() {
+            @Override
+            public StoredToken get(final String key) {
+                return null;
+            }
+
+            @Override
+            public boolean delete(final String key) {
+                return false;
+            }
+
+            @Override
+            public boolean add(final String key, final StoredToken secret) {
+                return false;
+            }
+
+            @Override
+            public boolean isSecure() {
+                return false;
+            }
+
+            @Override
+            public Stream<String> keys() {
+                throw new IllegalStateException("The daemon is not running");
+            }
+        };
+        try (AccessEventPipeline pipeline = createPipeline()) {
+            final SecretStore<StoredToken> underTest = new AuditedSecretStore<>(delegate, "memory", pipeline);
+            try {
+                underTest.keys();
+                fail("keys should throw");
+            } catch (final IllegalStateException e) {
+                // expected
+            }
+        }
+
+        assertEquals(List.of("KEYS ERROR"), describe());
+    }
+
+    private AccessEventPipeline createPipeline() {
+        return new AccessEventPipeline(Collections.singletonList(events::addAll), 1, 64, 64, Duration.ofMillis(1),
+                null);
+    }
+
+    private List<String> describe() {
+        return events.stream().map(event -> event.getOperation() + " " + event.getOutcome())
+                .collect(Collectors.toList());
+    }
+
+    private static StoredToken token(final String value) {
+        return new StoredToken(value.toCharArray(), StoredTokenType.PERSONAL);
+    }
+}
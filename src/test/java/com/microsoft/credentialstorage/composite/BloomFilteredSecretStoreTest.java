@@ -0,0 +1,257 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.composite;
+
+import com.microsoft.credentialstorage.SecretResult;
+import com.microsoft.credentialstorage.SecretStore;
+import com.microsoft.credentialstorage.SecretStoreListener;
+import com.microsoft.credentialstorage.implementation.memory.InsecureInMemoryStore;
+import com.microsoft.credentialstorage.model.StoredToken;
+import com.microsoft.credentialstorage.model.StoredTokenType;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BloomFilteredSecretStoreTest {
+
+    private final AtomicLong ticker = new AtomicLong();
+
+    @Test
+    public void absentKeys_shouldNotReachTheStore() {
+        final Backend backend = new Backend(true, false);
+        for (int i = 0; i < 100; i++) {
+            backend.store.add("git:https://example.com/repo" + i, token("value" + i));
+        }
+        final BloomFilteredSecretStore<StoredToken> underTest = create(backend);
+        assertTrue(underTest.isFiltering());
+
+        for (int i = 0; i < 100; i++) {
+            final StoredToken token = underTest.get("git:https://example.com/repo" + i);
+            assertArrayEquals(("value" + i).toCharArray(), token.getValue());
+        }
+        for (int i = 0; i < 1000; i++) {
+            final SecretResult<StoredToken> result = underTest.getResult("git:https://example.com/other" + i);
+            assertEquals(SecretResult.Status.NOT_FOUND, result.getStatus());
+        }
+
+        assertEquals(100 + underTest.getFalsePositiveCount(), backend.reads.get());
+        assertEquals(1000, underTest.getFilteredCount() + underTest.getFalsePositiveCount());
+        assertTrue(underTest.getFalsePositiveCount() < 50);
+    }
+
+    @Test
+    public void writes_shouldUpdateTheFilter() {
+        final Backend backend = new Backend(true, false);
+        final BloomFilteredSecretStore<StoredToken> underTest = create(backend);
+
+        assertNull(underTest.get("key"));
+        assertEquals(0, backend.reads.get());
+
+        assertTrue(underTest.add("key", token("value")));
+        assertArrayEquals("value".toCharArray(), underTest.get("key").getValue());
+        assertTrue(underTest.replace("key", token("value"), token("other")));
+        assertFalse(underTest.putIfAbsent("key", token("value")));
+        assertArrayEquals("other".toCharArray(), underTest.get("key").getValue());
+        // the conditional writes read the secret as well
+        assertEquals(4, backend.reads.get());
+
+        // added twice, the key stays in the filter until it is rebuilt
+        assertTrue(underTest.delete("key"));
+        assertNull(underTest.get("key"));
+        assertEquals(5, backend.reads.get());
+
+        ticker.addAndGet(BloomFilteredSecretStore.DEFAULT_REBUILD_INTERVAL.toNanos());
+        assertNull(underTest.get("key"));
+        assertEquals(5, backend.reads.get());
+        assertEquals(2, underTest.getRebuildCount());
+
+        // deleted keys stay in the filter until it is rebuilt
+        assertTrue(underTest.putIfAbsent("key", token("value")));
+        assertTrue(underTest.delete("key"));
+        assertNull(underTest.get("key"));
+        assertEquals(7, backend.reads.get());
+    }
+
+    @Test
+    public void deletingKeysMissingFromTheFilter_shouldNotHideOtherKeys() {
+        final Backend backend = new Backend(true, false);
+        for (int i = 0; i < 100; i++) {
+            backend.store.add("key" + i, token("value" + i));
+        }
+        final BloomFilteredSecretStore<StoredToken> underTest = create(backend);
+
+        // added by another process, without notification
+        for (int i = 0; i < 100; i++) {
+            backend.store.add("other" + i, token("value"));
+            assertTrue(underTest.delete("other" + i));
+        }
+
+        for (int i = 0; i < 100; i++) {
+            assertArrayEquals(("value" + i).toCharArray(), underTest.get("key" + i).getValue());
+        }
+    }
+
+    @Test
+    public void keysAddedByOtherProcesses_shouldBeFoundOnceTheFilterIsRebuilt() {
+        final Backend backend = new Backend(true, false);
+        final BloomFilteredSecretStore<StoredToken> underTest = create(backend);
+        assertFalse(underTest.isUpdatedOnChange());
+
+        backend.store.add("key", token("value"));
+        assertNull(underTest.get("key"));
+
+        ticker.addAndGet(BloomFilteredSecretStore.DEFAULT_REBUILD_INTERVAL.toNanos());
+        assertArrayEquals("value".toCharArray(), underTest.get("key").getValue());
+        assertEquals(2, underTest.getRebuildCount());
+    }
+
+    @Test
+    public void reportedChanges_shouldUpdateTheFilter() {
+        final Backend backend = new Backend(true, true);
+        final BloomFilteredSecretStore<StoredToken> underTest = create(backend);
+        assertTrue(underTest.isUpdatedOnChange());
+
+        backend.store.add("key", token("value"));
+        backend.changed("key");
+        assertArrayEquals("value".toCharArray(), underTest.get("key").getValue());
+
+        // missed changes invalidate the filter, which is rebuilt
+        backend.store.add("other", token("value"));
+        backend.allChanged();
+        assertArrayEquals("value".toCharArray(), underTest.get("other").getValue());
+        assertEquals(2, underTest.getRebuildCount());
+
+        underTest.close();
+        assertEquals(0, backend.listeners.get());
+    }
+
+    @Test
+    public void unlistableStores_shouldNotBeFiltered() {
+        final Backend backend = new Backend(false, false);
+        final BloomFilteredSecretStore<StoredToken> underTest = create(backend);
+        assertFalse(underTest.isFiltering());
+
+        assertNull(underTest.get("key"));
+        ticker.addAndGet(BloomFilteredSecretStore.DEFAULT_REBUILD_INTERVAL.toNanos());
+        assertNull(underTest.get("key"));
+
+        assertEquals(2, backend.reads.get());
+        assertEquals(1, backend.listings.get());
+        assertEquals(0, underTest.getRebuildCount());
+    }
+
+    @Test
+    public void filter_shouldReportAddedKeys() {
+        final BloomFilter filter = new BloomFilter(1000, 0.01);
+        assertEquals(7, filter.hashCount());
+        assertEquals(9600, filter.size());
+
+        for (int i = 0; i < 1000; i++) {
+            filter.add("key" + i);
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(filter.mightContain("key" + i));
+        }
+        assertEquals(1000, filter.keyCount());
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightContain("absent" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 200);
+    }
+
+    private BloomFilteredSecretStore<StoredToken> create(final Backend backend) {
+        return new BloomFilteredSecretStore<>(backend, BloomFilteredSecretStore.DEFAULT_EXPECTED_KEYS,
+                BloomFilteredSecretStore.DEFAULT_FALSE_POSITIVE_RATE,
+                BloomFilteredSecretStore.DEFAULT_REBUILD_INTERVAL, ticker::get, Runnable::run);
+    }
+
+    private static StoredToken token(final String value) {
+        return new StoredToken(value.toCharArray(), StoredTokenType.PERSONAL);
+    }
+
+    private static final class Backend implements SecretStore<StoredToken> {
+        private final InsecureInMemoryStore<StoredToken> store = new InsecureInMemoryStore<>();
+        private final AtomicInteger reads = new AtomicInteger();
+        private final AtomicInteger listings = new AtomicInteger();
+        private final AtomicInteger listeners = new AtomicInteger();
+        private final boolean listable;
+        private final boolean notifying;
+        private volatile SecretStoreListener listener;
+
+        Backend(final boolean listable, final boolean notifying) {
+            this.listable = listable;
+            this.notifying = notifying;
+        }
+
+        void changed(final String key) {
+            listener.secretChanged(key);
+        }
+
+        void allChanged() {
+            listener.secretsChanged();
+        }
+
+        @Override
+        public StoredToken get(final String key) {
+            return getResult(key).getValue();
+        }
+
+        @Override
+        public SecretResult<StoredToken> getResult(final String key) {
+            reads.incrementAndGet();
+            return SecretResult.of(store.get(key));
+        }
+
+        @Override
+        public boolean delete(final String key) {
+            return store.delete(key);
+        }
+
+        @Override
+        public boolean add(final String key, final StoredToken secret) {
+            return store.add(key, secret);
+        }
+
+        @Override
+        public boolean isSecure() {
+            return false;
+        }
+
+        @Override
+        public Stream<String> keys() {
+            listings.incrementAndGet();
+            if (!listable) {
+                throw new UnsupportedOperationException("cannot list its keys");
+            }
+            return store.keys();
+        }
+
+        @Override
+        public void addListener(final SecretStoreListener listener) {
+            if (!notifying) {
+                throw new UnsupportedOperationException("cannot notify of changes");
+            }
+            this.listener = listener;
+            listeners.incrementAndGet();
+        }
+
+        @Override
+        public void removeListener(final SecretStoreListener listener) {
+            this.listener = null;
+            listeners.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.composite;
+
+import com.microsoft.credentialstorage.SecretStoreListener;
+import com.microsoft.credentialstorage.implementation.memory.InsecureInMemoryStore;
+import com.microsoft.credentialstorage.model.StoredToken;
+import com.microsoft.credentialstorage.model.StoredTokenType;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class JournaledSecretStoreTest {
+    private static final String ALL = "*";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void changes_shouldBeReportedToOtherStoresOnce() throws Exception {
+        final Path journal = folder.getRoot().toPath().resolve("changes").resolve("tokens.journal");
+        final RecordingListener first = new RecordingListener();
+        final RecordingListener second = new RecordingListener();
+
+        try (JournaledSecretStore<StoredToken> firstStore = create(journal, JournaledSecretStore.DEFAULT_MAX_SIZE);
+             JournaledSecretStore<StoredToken> secondStore = create(journal, JournaledSecretStore.DEFAULT_MAX_SIZE)) {
+            firstStore.addListener(first);
+            secondStore.addListener(second);
+
+            assertTrue(firstStore.add("http://host/a b", token("value")));
+            assertEquals("http://host/a b", second.next());
+
+            assertTrue(secondStore.add("other", token("value")));
+            assertEquals("http://host/a b", first.next());
+            assertEquals("other", first.next());
+
+            // own changes are reported when made, and skipped when read back from the journal
+            assertEquals(Arrays.asList("http://host/a b", "other"), first.received());
+            assertEquals(Arrays.asList("http://host/a b", "other"), second.received());
+        }
+    }
+
+    @Test
+    public void truncatedJournal_shouldReportMissedChanges() throws Exception {
+        final Path journal = folder.getRoot().toPath().resolve("tokens.journal");
+        final RecordingListener listener = new RecordingListener();
+
+        try (JournaledSecretStore<StoredToken> firstStore = create(journal, 200);
+             JournaledSecretStore<StoredToken> secondStore = create(journal, 200)) {
+            secondStore.addListener(listener);
+
+            for (int i = 0; i < 10; i++) {
+                firstStore.add("key" + i, token("value"));
+            }
+
+            String received;
+            do {
+                received = listener.next();
+            } while (!ALL.equals(received));
+        }
+    }
+
+    private JournaledSecretStore<StoredToken> create(final Path journal, final long maxSize) throws Exception {
+        return new JournaledSecretStore<>(new InsecureInMemoryStore<>(), journal, maxSize);
+    }
+
+    private static StoredToken token(final String value) {
+        return new StoredToken(value.toCharArray(), StoredTokenType.PERSONAL);
+    }
+
+    private static final class RecordingListener implements SecretStoreListener {
+        private final BlockingQueue<String> queue = new LinkedBlockingQueue<>();
+        private final List<String> received = new ArrayList<>();
+
+        @Override
+        public void secretChanged(final String key) {
+            queue.add(key);
+        }
+
+        @Override
+        public void secretsChanged() {
+            queue.add(ALL);
+        }
+
+        String next() throws InterruptedException {
+            final String key = queue.poll(10, TimeUnit.SECONDS);
+            if (key == null) {
+                throw new AssertionError("No change reported");
+            }
+            received.add(key);
+            return key;
+        }
+
+        List<String> received() {
+            queue.drainTo(received);
+            return received;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.composite;
+
+import com.microsoft.credentialstorage.SecretStore;
+import com.microsoft.credentialstorage.implementation.memory.InsecureInMemoryStore;
+import com.microsoft.credentialstorage.model.StoredToken;
+import com.microsoft.credentialstorage.model.StoredTokenType;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Load test with many virtual threads calling a backend which, like a native call made under a monitor,
+ * pins the carrier thread of a virtual thread, compared with the same load without offloading.
+ * <p>
+ * Offloading does not make the backend faster, both runs are bound by its serialized calls. What it gains is
+ * scheduler wait: on JDK 21 a pinned run kept other virtual threads waiting about 1.8 s for a carrier thread,
+ * an offloaded run about 0.1 s, at about 5300 calls/s for both.
+ */
+public class OffloadingSecretStoreIT {
+    private static final Logger logger = LoggerFactory.getLogger(OffloadingSecretStoreIT.class);
+
+    private static final int VIRTUAL_THREADS = 10_000;
+    private static final long CALL_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private ExecutorService virtualThreads;
+
+    @Before
+    public void setUp() {
+        //Only test on a runtime that has virtual threads
+        virtualThreads = newVirtualThreadPerTaskExecutor();
+        assumeTrue(virtualThreads != null);
+    }
+
+    @Test
+    public void manyVirtualThreads_shouldKeepThroughputAndScheduler() throws Exception {
+        final PinningStore backend = new PinningStore();
+        backend.add("key", new StoredToken("value".toCharArray(), StoredTokenType.PERSONAL));
+
+        try (OffloadingSecretStore<StoredToken> underTest = new OffloadingSecretStore<>(backend, 4)) {
+            // the same load without offloading, pinning the carrier threads
+            final Load pinned = run(backend);
+            final Load offloaded = run(underTest);
+            logger.info("Pinned: {} calls/s, scheduler waited {} ms; offloaded: {} calls/s, scheduler waited {} ms",
+                    Math.round(pinned.callsPerSecond), pinned.canaryMillis, Math.round(offloaded.callsPerSecond),
+                    offloaded.canaryMillis);
+
+            // the gain is in scheduler wait, wall-clock bounds are loose for slow build machines
+            assertTrue("Scheduler starved for " + offloaded.canaryMillis + " ms, " + pinned.canaryMillis
+                    + " ms without offloading", offloaded.canaryMillis <= Math.max(500, pinned.canaryMillis / 4));
+            // throughput is bound by the backend, offloading must not cost much of it
+            assertTrue(String.format("Throughput dropped to %.0f%% of the calls without offloading",
+                    100 * offloaded.callsPerSecond / pinned.callsPerSecond),
+                    offloaded.callsPerSecond > pinned.callsPerSecond / 2);
+        } finally {
+            virtualThreads.shutdown();
+            virtualThreads.awaitTermination(60, TimeUnit.SECONDS);
+        }
+    }
+
+    private Load run(final SecretStore<StoredToken> store) throws Exception {
+        final long start = System.nanoTime();
+        final List<Future<Boolean>> calls = new ArrayList<>(VIRTUAL_THREADS);
+        for (int i = 0; i < VIRTUAL_THREADS; i++) {
+            calls.add(virtualThreads.submit(() -> store.get("key") != null));
+        }
+
+        // the carrier threads stay available to other virtual threads while the calls wait for the pool
+        final long canaryStart = System.nanoTime();
+        virtualThreads.submit(() -> { }).get(60, TimeUnit.SECONDS);
+        final long canaryMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - canaryStart);
+
+        for (final Future<Boolean> call : calls) {
+            assertTrue("Secret not read", call.get(60, TimeUnit.SECONDS));
+        }
+        final double callsPerSecond = VIRTUAL_THREADS * 1e9 / (System.nanoTime() - start);
+        return new Load(callsPerSecond, canaryMillis);
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (final ReflectiveOperationException e) {
+            // Java 20 or older
+            return null;
+        }
+    }
+
+    private static final class Load {
+        final double callsPerSecond;
+        final long canaryMillis;
+
+        Load(final double callsPerSecond, final long canaryMillis) {
+            this.callsPerSecond = callsPerSecond;
+            this.canaryMillis = canaryMillis;
+        }
+    }
+
+    private static final class PinningStore implements SecretStore<StoredToken> {
+        private final InsecureInMemoryStore<StoredToken> store = new InsecureInMemoryStore<>();
+
+        @Override
+        public StoredToken get(final String key) {
+            synchronized (this) {
+                LockSupport.parkNanos(CALL_NANOS);
+                return store.get(key);
+            }
+        }
+
+        @Override
+        public boolean delete(final String key) {
+            return store.delete(key);
+        }
+
+        @Override
+        public boolean add(final String key, final StoredToken secret) {
+            return store.add(key, secret);
+        }
+
+        @Override
+        public boolean isSecure() {
+            return false;
+        }
+    }
+}
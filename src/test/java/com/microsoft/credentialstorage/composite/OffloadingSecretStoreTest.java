@@ -0,0 +1,97 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.composite;
+
+import com.microsoft.credentialstorage.SecretStore;
+import com.microsoft.credentialstorage.implementation.memory.InsecureInMemoryStore;
+import com.microsoft.credentialstorage.model.StoredToken;
+import com.microsoft.credentialstorage.model.StoredTokenType;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OffloadingSecretStoreTest {
+
+    private final ThreadRecordingStore backend = new ThreadRecordingStore();
+
+    @Test
+    public void calls_shouldRunOnThePool() {
+        try (OffloadingSecretStore<StoredToken> underTest = new OffloadingSecretStore<>(backend, 2)) {
+            assertTrue(underTest.add("key", token("value")));
+            assertArrayEquals("value".toCharArray(), underTest.get("key").getValue());
+            assertTrue(underTest.delete("key"));
+
+            assertTrue("Call ran on the calling thread", backend.threadName.startsWith("credential-backend-"));
+        }
+    }
+
+    @Test
+    public void keys_shouldBeReadOnThePoolAndClosed() {
+        try (OffloadingSecretStore<StoredToken> underTest = new OffloadingSecretStore<>(backend, 1)) {
+            underTest.add("a/1", token("1"));
+            underTest.add("a/2", token("2"));
+            underTest.add("b/1", token("3"));
+
+            try (Stream<String> keys = underTest.scan("a/")) {
+                assertEquals(Arrays.asList("a/1", "a/2"), keys.sorted().collect(Collectors.toList()));
+            }
+            assertTrue("Stream of the backend not closed", backend.keysClosed.get());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void failure_shouldBeRethrownToTheCaller() {
+        try (OffloadingSecretStore<StoredToken> underTest = new OffloadingSecretStore<>(backend, 1)) {
+            underTest.get("fail");
+        }
+    }
+
+    private static StoredToken token(final String value) {
+        return new StoredToken(value.toCharArray(), StoredTokenType.PERSONAL);
+    }
+
+    private static final class ThreadRecordingStore implements SecretStore<StoredToken> {
+        private final InsecureInMemoryStore<StoredToken> store = new InsecureInMemoryStore<>();
+        private final AtomicBoolean keysClosed = new AtomicBoolean();
+        private volatile String threadName;
+
+        @Override
+        public StoredToken get(final String key) {
+            threadName = Thread.currentThread().getName();
+            if ("fail".equals(key)) {
+                throw new IllegalStateException("backend failure");
+            }
+            return store.get(key);
+        }
+
+        @Override
+        public boolean delete(final String key) {
+            threadName = Thread.currentThread().getName();
+            return store.delete(key);
+        }
+
+        @Override
+        public boolean add(final String key, final StoredToken secret) {
+            threadName = Thread.currentThread().getName();
+            return store.add(key, secret);
+        }
+
+        @Override
+        public Stream<String> keys() {
+            return store.keys().onClose(() -> keysClosed.set(true));
+        }
+
+        @Override
+        public boolean isSecure() {
+            return false;
+        }
+    }
+}
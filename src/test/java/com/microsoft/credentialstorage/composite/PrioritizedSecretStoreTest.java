@@ -0,0 +1,146 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.composite;
+
+import com.microsoft.credentialstorage.SecretResult;
+import com.microsoft.credentialstorage.SecretStore;
+import com.microsoft.credentialstorage.implementation.memory.InsecureInMemoryStore;
+import com.microsoft.credentialstorage.model.StoredToken;
+import com.microsoft.credentialstorage.model.StoredTokenType;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PrioritizedSecretStoreTest {
+
+    private final RecordingStore delegate = new RecordingStore();
+    private final PriorityScheduler scheduler = new PriorityScheduler(1, 8, 1);
+    private final PrioritizedSecretStore<StoredToken> interactive =
+            new PrioritizedSecretStore<>(delegate, scheduler, PriorityScheduler.Lane.INTERACTIVE);
+    private final PrioritizedSecretStore<StoredToken> background =
+            new PrioritizedSecretStore<>(delegate, scheduler, PriorityScheduler.Lane.BACKGROUND);
+
+    @Test
+    public void interactiveCalls_shouldOvertakeWaitingBackgroundWork() throws Exception {
+        assertEquals("B" + "II" + "BBBBBB", run(6, 2));
+    }
+
+    @Test
+    public void backgroundWork_shouldGetItsShareWhileInteractiveCallsWait() throws Exception {
+        assertEquals("B" + "IIIIIIIII" + "B" + "IIIIIII" + "BBB", run(4, 16));
+        assertEquals(16, scheduler.getCallCount(PriorityScheduler.Lane.INTERACTIVE));
+        assertEquals(5, scheduler.getCallCount(PriorityScheduler.Lane.BACKGROUND));
+        assertTrue(scheduler.getWaitNanos(PriorityScheduler.Lane.BACKGROUND) > 0);
+    }
+
+    @Test
+    public void idleScheduler_shouldRunCallsRightAway() {
+        delegate.blocker.countDown();
+
+        assertTrue(background.add("B", token("value")));
+        assertEquals(SecretResult.Status.NOT_FOUND, interactive.getResult("I").getStatus());
+        assertEquals("BI", delegate.lanes());
+        assertEquals(0, scheduler.getQueuedCount(PriorityScheduler.Lane.INTERACTIVE));
+    }
+
+    /**
+     * Block the backend with a background write, queue background, then interactive calls, and unblock it.
+     *
+     * @return lanes of the calls, in the order they reached the backend
+     */
+    private String run(final int backgroundCalls, final int interactiveCalls) throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(1 + backgroundCalls + interactiveCalls);
+        try {
+            final List<Future<Boolean>> calls = new ArrayList<>();
+            calls.add(executor.submit(() -> background.add("B", token("blocker"))));
+            while (delegate.inProgress == 0) {
+                Thread.sleep(1);
+            }
+
+            for (int i = 0; i < backgroundCalls; i++) {
+                calls.add(executor.submit(() -> background.add("B", token("rotated"))));
+            }
+            awaitQueued(PriorityScheduler.Lane.BACKGROUND, backgroundCalls);
+            for (int i = 0; i < interactiveCalls; i++) {
+                calls.add(executor.submit(() -> interactive.delete("I")));
+            }
+            awaitQueued(PriorityScheduler.Lane.INTERACTIVE, interactiveCalls);
+
+            delegate.blocker.countDown();
+            for (final Future<Boolean> call : calls) {
+                call.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return delegate.lanes();
+    }
+
+    private void awaitQueued(final PriorityScheduler.Lane lane, final int count) throws InterruptedException {
+        while (scheduler.getQueuedCount(lane) < count) {
+            Thread.sleep(1);
+        }
+    }
+
+    private static StoredToken token(final String value) {
+        return new StoredToken(value.toCharArray(), StoredTokenType.PERSONAL);
+    }
+
+    /**
+     * Records the keys of the calls, named after their lanes, and blocks them until released
+     */
+    private static final class RecordingStore implements SecretStore<StoredToken> {
+        final InsecureInMemoryStore<StoredToken> secrets = new InsecureInMemoryStore<>();
+        final List<String> keys = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch blocker = new CountDownLatch(1);
+        volatile int inProgress;
+
+        @Override
+        public StoredToken get(final String key) {
+            call(key);
+            return secrets.get(key);
+        }
+
+        @Override
+        public boolean add(final String key, final StoredToken secret) {
+            call(key);
+            return secrets.add(key, secret);
+        }
+
+        @Override
+        public boolean delete(final String key) {
+            call(key);
+            return secrets.delete(key);
+        }
+
+        @Override
+        public boolean isSecure() {
+            return true;
+        }
+
+        String lanes() {
+            return String.join("", keys);
+        }
+
+        private void call(final String key) {
+            keys.add(key);
+            inProgress++;
+            try {
+                blocker.await(10, TimeUnit.SECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
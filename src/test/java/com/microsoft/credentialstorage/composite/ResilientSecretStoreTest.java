@@ -0,0 +1,238 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.composite;
+
+import com.microsoft.credentialstorage.SecretResult;
+import com.microsoft.credentialstorage.SecretStore;
+import com.microsoft.credentialstorage.implementation.memory.InsecureInMemoryStore;
+import com.microsoft.credentialstorage.model.StoredToken;
+import com.microsoft.credentialstorage.model.StoredTokenType;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ResilientSecretStoreTest {
+
+    private final AtomicLong ticker = new AtomicLong();
+    private final FlakyStore primary = new FlakyStore();
+    private final InsecureInMemoryStore<StoredToken> fallback = new InsecureInMemoryStore<>();
+    private final CircuitBreaker breaker = new CircuitBreaker("primary", 10, 4, 0.5, Duration.ofSeconds(1), 0.5,
+            Duration.ofSeconds(30), 2, ticker::get);
+
+    @Test
+    public void failingStore_shouldBeSkippedUntilItRecovers() {
+        final ResilientSecretStore<StoredToken> underTest = create();
+        primary.failing = true;
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(underTest.add("key" + i, token("value" + i)));
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(4, primary.calls.get());
+
+        // fails fast, without calling the failing store
+        assertArrayEquals("value0".toCharArray(), underTest.get("key0").getValue());
+        assertTrue(underTest.add("key4", token("value4")));
+        assertEquals(4, primary.calls.get());
+        assertEquals(5, fallback.keys().count());
+
+        // probed once the open duration has elapsed
+        primary.failing = false;
+        ticker.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(underTest.add("key5", token("value5")));
+        assertArrayEquals("value1".toCharArray(), underTest.get("key1").getValue());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        assertArrayEquals("value5".toCharArray(), primary.get("key5").getValue());
+        assertNull(fallback.get("key5"));
+
+        // deleted from both stores
+        assertTrue(underTest.delete("key1"));
+        assertNull(underTest.get("key1"));
+        assertEquals(5, underTest.keys().count());
+    }
+
+    @Test
+    public void secretsWrittenDuringAnOutage_shouldNotBeShadowedOnceTheStoreRecovers() {
+        final ResilientSecretStore<StoredToken> underTest = create();
+        assertTrue(underTest.add("key", token("old")));
+        assertTrue(underTest.add("deleted", token("old")));
+
+        primary.failing = true;
+        for (int i = 0; i < 4; i++) {
+            assertTrue(underTest.add("key", token("new")));
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(underTest.delete("deleted"));
+        assertArrayEquals("new".toCharArray(), underTest.get("key").getValue());
+
+        // the stale copies are deleted from the recovered store before it is read
+        primary.failing = false;
+        ticker.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        assertArrayEquals("new".toCharArray(), underTest.get("key").getValue());
+        assertNull(primary.secrets.get("key"));
+        assertEquals(SecretResult.Status.NOT_FOUND, underTest.getResult("deleted").getStatus());
+        assertNull(primary.secrets.get("deleted"));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        // a secret saved to the first store is deleted from the fallback store
+        assertTrue(underTest.add("key", token("newer")));
+        assertNull(fallback.get("key"));
+        assertArrayEquals("newer".toCharArray(), underTest.get("key").getValue());
+    }
+
+    @Test
+    public void staleCopiesWhoseDeletionIsNotConfirmed_shouldBeSkipped() {
+        final ResilientSecretStore<StoredToken> underTest = create();
+        assertTrue(underTest.add("key", token("old")));
+        primary.failing = true;
+        for (int i = 0; i < 4; i++) {
+            assertTrue(underTest.add("key", token("new")));
+        }
+
+        // the recovered store reports no deletion but still holds the stale copy
+        primary.failing = false;
+        primary.ignoringDeletes = true;
+        ticker.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        assertArrayEquals("new".toCharArray(), underTest.get("key").getValue());
+        assertArrayEquals("old".toCharArray(), primary.secrets.get("key").getValue());
+
+        primary.ignoringDeletes = false;
+        assertArrayEquals("new".toCharArray(), underTest.get("key").getValue());
+        assertNull(primary.secrets.get("key"));
+        assertTrue(underTest.add("key", token("newer")));
+        assertArrayEquals("newer".toCharArray(), underTest.get("key").getValue());
+    }
+
+    @Test
+    public void slowStore_shouldBeSkipped() {
+        final ResilientSecretStore<StoredToken> underTest = create();
+        primary.latency = Duration.ofSeconds(5);
+
+        for (int i = 0; i < 4; i++) {
+            assertNull(underTest.get("key"));
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        // a failing probe opens the breaker again
+        ticker.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        assertNull(underTest.get("key"));
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void failedReads_shouldFallBackAndCountAsFailures() {
+        final ResilientSecretStore<StoredToken> underTest = create();
+        fallback.add("key", token("value"));
+        primary.unavailable = true;
+
+        for (int i = 0; i < 4; i++) {
+            assertArrayEquals("value".toCharArray(), underTest.get("key").getValue());
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        // the open breaker skips the unavailable store, the fallback store answers alone
+        final SecretResult<StoredToken> result = underTest.getResult("missing");
+        assertEquals(SecretResult.Status.NOT_FOUND, result.getStatus());
+
+        // once probed, a missing secret is not known to be absent while the store fails
+        ticker.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        assertEquals(SecretResult.Status.UNAVAILABLE, underTest.getResult("missing").getStatus());
+    }
+
+    @Test
+    public void noAvailableStore_shouldFailFast() {
+        final Map<SecretStore<StoredToken>, CircuitBreaker> chain = new LinkedHashMap<>();
+        chain.put(primary, breaker);
+        final ResilientSecretStore<StoredToken> underTest = new ResilientSecretStore<>(chain);
+        primary.failing = true;
+
+        for (int i = 0; i < 4; i++) {
+            assertFalse(underTest.add("key", token("value")));
+        }
+        assertNull(underTest.get("key"));
+        assertFalse(underTest.putIfAbsent("key", token("value")));
+        assertEquals(0, underTest.keys().count());
+        assertEquals(4, primary.calls.get());
+    }
+
+    private ResilientSecretStore<StoredToken> create() {
+        final Map<SecretStore<StoredToken>, CircuitBreaker> chain = new LinkedHashMap<>();
+        chain.put(primary, breaker);
+        chain.put(fallback, new CircuitBreaker("fallback"));
+        return new ResilientSecretStore<>(chain);
+    }
+
+    private static StoredToken token(final String value) {
+        return new StoredToken(value.toCharArray(), StoredTokenType.PERSONAL);
+    }
+
+    private final class FlakyStore implements SecretStore<StoredToken> {
+        private final InsecureInMemoryStore<StoredToken> secrets = new InsecureInMemoryStore<>();
+        final AtomicInteger calls = new AtomicInteger();
+        volatile boolean failing;
+        volatile boolean unavailable;
+        volatile boolean ignoringDeletes;
+        volatile Duration latency = Duration.ZERO;
+
+        @Override
+        public StoredToken get(final String key) {
+            return getResult(key).getValue();
+        }
+
+        @Override
+        public SecretResult<StoredToken> getResult(final String key) {
+            call();
+            if (unavailable) {
+                return SecretResult.failed(SecretResult.Status.UNAVAILABLE, "g-dbus-error-quark", 2,
+                        "The name org.freedesktop.secrets was not provided by any .service files");
+            }
+            return SecretResult.of(secrets.get(key));
+        }
+
+        @Override
+        public boolean add(final String key, final StoredToken secret) {
+            call();
+            return secrets.add(key, secret);
+        }
+
+        @Override
+        public boolean delete(final String key) {
+            call();
+            return !ignoringDeletes && secrets.delete(key);
+        }
+
+        @Override
+        public Stream<String> keys() {
+            call();
+            return secrets.keys();
+        }
+
+        @Override
+        public boolean isSecure() {
+            return true;
+        }
+
+        private void call() {
+            calls.incrementAndGet();
+            ticker.addAndGet(latency.toNanos());
+            if (failing) {
+                throw new IllegalStateException("The daemon is not running");
+            }
+        }
+    }
+}
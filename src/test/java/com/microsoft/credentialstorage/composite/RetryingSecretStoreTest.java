@@ -0,0 +1,171 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.composite;
+
+import com.microsoft.credentialstorage.SecretResult;
+import com.microsoft.credentialstorage.SecretStore;
+import com.microsoft.credentialstorage.implementation.memory.InsecureInMemoryStore;
+import com.microsoft.credentialstorage.model.StoredToken;
+import com.microsoft.credentialstorage.model.StoredTokenType;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RetryingSecretStoreTest {
+
+    private static final SecretResult<StoredToken> NO_REPLY = SecretResult.failed(SecretResult.Status.TIMEOUT,
+            "g-dbus-error-quark", 4, "Did not receive a reply");
+    private static final SecretResult<StoredToken> LOCKED = SecretResult.failed(SecretResult.Status.LOCKED,
+            "secret-error", 2, "The collection is locked");
+
+    private final AtomicLong ticker = new AtomicLong();
+    private final List<Long> sleeps = new ArrayList<>();
+    private final FlakyStore delegate = new FlakyStore();
+
+    @Test
+    public void transientFailures_shouldBeRetriedWithGrowingBackoff() {
+        final RetryingSecretStore<StoredToken> underTest = create(5, Duration.ofSeconds(10));
+        delegate.secrets.add("key", token("value"));
+        delegate.failures.addAll(Arrays.asList(NO_REPLY, NO_REPLY, NO_REPLY));
+
+        assertArrayEquals("value".toCharArray(), underTest.get("key").getValue());
+        assertEquals(4, delegate.calls.get());
+        // no jitter: the full backoff, doubling up to the maximum
+        assertEquals(Arrays.asList(ms(100), ms(200), ms(400)), sleeps);
+        assertEquals(3, underTest.getRetryCount());
+        assertEquals(1, underTest.getRecoveredCount());
+        assertEquals(0, underTest.getExhaustedCount());
+    }
+
+    @Test
+    public void otherFailures_shouldNotBeRetried() {
+        final RetryingSecretStore<StoredToken> underTest = create(5, Duration.ofSeconds(10));
+        delegate.failures.add(LOCKED);
+
+        assertEquals(SecretResult.Status.LOCKED, underTest.getResult("key").getStatus());
+        assertEquals(SecretResult.Status.NOT_FOUND, underTest.getResult("key").getStatus());
+        assertEquals(2, delegate.calls.get());
+        assertTrue(sleeps.isEmpty());
+        assertEquals(0, underTest.getRetryCount());
+    }
+
+    @Test
+    public void retries_shouldStopAtMaxAttemptsOrDeadline() {
+        RetryingSecretStore<StoredToken> underTest = create(3, Duration.ofSeconds(10));
+        delegate.failures.addAll(Arrays.asList(NO_REPLY, NO_REPLY, NO_REPLY, NO_REPLY));
+
+        assertEquals(NO_REPLY, underTest.getResult("key"));
+        assertEquals(3, delegate.calls.get());
+        assertEquals(2, underTest.getRetryCount());
+        assertEquals(1, underTest.getExhaustedCount());
+
+        // the second retry would end after the deadline
+        underTest = create(5, Duration.ofMillis(250));
+        delegate.failures.clear();
+        delegate.failures.addAll(Arrays.asList(NO_REPLY, NO_REPLY, NO_REPLY, NO_REPLY));
+        delegate.calls.set(0);
+        sleeps.clear();
+
+        assertEquals(NO_REPLY, underTest.getResult("key"));
+        assertEquals(2, delegate.calls.get());
+        assertEquals(Arrays.asList(ms(100)), sleeps);
+        assertEquals(1, underTest.getExhaustedCount());
+    }
+
+    @Test
+    public void writes_shouldNotBeRetried() {
+        final RetryingSecretStore<StoredToken> underTest = create(5, Duration.ofSeconds(10));
+
+        delegate.failingWrites = true;
+        assertFalse(underTest.add("key", token("value")));
+        assertEquals(1, delegate.calls.get());
+        assertNull(underTest.get("key"));
+        assertTrue(sleeps.isEmpty());
+    }
+
+    @Test
+    public void isTransient_shouldClassifyNativeErrors() {
+        assertTrue(RetryPolicy.isTransient(NO_REPLY));
+        assertTrue(RetryPolicy.isTransient(SecretResult.failed(SecretResult.Status.UNAVAILABLE,
+                "g-dbus-error-quark", 2, "ServiceUnknown")));
+        assertTrue(RetryPolicy.isTransient(SecretResult.failed(SecretResult.Status.UNAVAILABLE,
+                "win32", 1312, "ERROR_NO_SUCH_LOGON_SESSION")));
+        assertTrue(RetryPolicy.isTransient(SecretResult.failed(SecretResult.Status.FAILED,
+                "security", 53, "errSecNotAvailable")));
+
+        assertFalse(RetryPolicy.isTransient(LOCKED));
+        assertFalse(RetryPolicy.isTransient(SecretResult.notFound()));
+        // cancelled by the caller
+        assertFalse(RetryPolicy.isTransient(SecretResult.failed(SecretResult.Status.TIMEOUT,
+                "g-io-error-quark", 19, "Operation was cancelled")));
+        assertFalse(RetryPolicy.isTransient(SecretResult.failed(SecretResult.Status.TIMEOUT, null, 0, "Timed out")));
+    }
+
+    private RetryingSecretStore<StoredToken> create(final int maxAttempts, final Duration deadline) {
+        final RetryPolicy policy = new RetryPolicy(maxAttempts, Duration.ofMillis(100), Duration.ofMillis(400),
+                deadline, ticker::get, nanos -> {
+                    sleeps.add(nanos);
+                    ticker.addAndGet(nanos);
+                }, bound -> bound);
+        return new RetryingSecretStore<>(delegate, policy);
+    }
+
+    private static long ms(final long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    private static StoredToken token(final String value) {
+        return new StoredToken(value.toCharArray(), StoredTokenType.PERSONAL);
+    }
+
+    private static final class FlakyStore implements SecretStore<StoredToken> {
+        final InsecureInMemoryStore<StoredToken> secrets = new InsecureInMemoryStore<>();
+        final Deque<SecretResult<StoredToken>> failures = new ArrayDeque<>();
+        final AtomicInteger calls = new AtomicInteger();
+        volatile boolean failingWrites;
+
+        @Override
+        public StoredToken get(final String key) {
+            return getResult(key).getValue();
+        }
+
+        @Override
+        public SecretResult<StoredToken> getResult(final String key) {
+            calls.incrementAndGet();
+            final SecretResult<StoredToken> failure = failures.poll();
+            return failure != null ? failure : SecretResult.of(secrets.get(key));
+        }
+
+        @Override
+        public boolean add(final String key, final StoredToken secret) {
+            calls.incrementAndGet();
+            return !failingWrites && secrets.add(key, secret);
+        }
+
+        @Override
+        public boolean delete(final String key) {
+            calls.incrementAndGet();
+            return secrets.delete(key);
+        }
+
+        @Override
+        public boolean isSecure() {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,340 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.composite;
+
+import com.microsoft.credentialstorage.SecretStore;
+import com.microsoft.credentialstorage.SecretStoreListener;
+import com.microsoft.credentialstorage.implementation.memory.InsecureInMemoryStore;
+import com.microsoft.credentialstorage.model.StoredToken;
+import com.microsoft.credentialstorage.model.StoredTokenType;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ShardedSecretStoreTest {
+
+    private static final int SECRETS = 1000;
+
+    @Test
+    public void secrets_shouldBeSpreadOverShards() {
+        final Map<String, SecretStore<StoredToken>> shards = shards(4);
+        try (ShardedSecretStore<StoredToken> underTest = new ShardedSecretStore<>(shards)) {
+            final Map<String, StoredToken> secrets = new HashMap<>();
+            for (int i = 0; i < SECRETS; i++) {
+                secrets.put("key" + i, token("value" + i));
+            }
+            assertTrue(underTest.addAll(secrets).isEmpty());
+
+            for (final SecretStore<StoredToken> shard : shards.values()) {
+                final long count = shard.keys().count();
+                assertTrue("unbalanced shard with " + count + " secrets", count > SECRETS / 8 && count < SECRETS / 2);
+            }
+            assertEquals(SECRETS, underTest.keys().count());
+            assertEquals(111, underTest.scan("key1").count());
+            assertEquals(SECRETS, underTest.getAll(secrets.keySet()).size());
+            assertArrayEquals("value7".toCharArray(), underTest.get("key7").getValue());
+
+            assertTrue(underTest.delete("key7"));
+            assertFalse(underTest.delete("key7"));
+            assertTrue(underTest.putIfAbsent("key7", token("other")));
+            assertFalse(underTest.putIfAbsent("key7", token("value7")));
+        }
+    }
+
+    @Test
+    public void addingShard_shouldOnlyMoveItsShareOfSecrets() {
+        final Map<String, SecretStore<StoredToken>> shards = shards(3);
+        try (ShardedSecretStore<StoredToken> underTest = new ShardedSecretStore<>(shards)) {
+            for (int i = 0; i < SECRETS; i++) {
+                underTest.add("key" + i, token("value" + i));
+            }
+
+            final Map<String, SecretStore<StoredToken>> resized = new LinkedHashMap<>(shards);
+            resized.put("shard3", new InsecureInMemoryStore<>());
+            final int moved = underTest.rebalance(resized);
+
+            assertTrue("moved " + moved + " secrets", moved > SECRETS / 8 && moved < SECRETS / 2);
+            assertEquals(moved, resized.get("shard3").keys().count());
+            assertEquals(SECRETS, resized.values().stream().mapToLong(shard -> shard.keys().count()).sum());
+            for (int i = 0; i < SECRETS; i++) {
+                assertArrayEquals(("value" + i).toCharArray(), underTest.get("key" + i).getValue());
+            }
+
+            // back to the original shards, the moved secrets return
+            assertEquals(moved, underTest.rebalance(shards));
+            assertEquals(0, resized.get("shard3").keys().count());
+            assertEquals(SECRETS, underTest.keys().distinct().count());
+        }
+    }
+
+    @Test
+    public void writesWhileRebalancing_shouldEndUpInTheirNewShard() throws Exception {
+        final int writers = 4;
+        final int keysPerWriter = 100;
+        final Map<String, SecretStore<StoredToken>> shards = new LinkedHashMap<>();
+        for (int i = 0; i < 3; i++) {
+            shards.put("shard" + i, new SlowStore());
+        }
+        final Map<String, SecretStore<StoredToken>> resized = new LinkedHashMap<>(shards);
+        resized.put("shard3", new SlowStore());
+
+        final ExecutorService executor = Executors.newFixedThreadPool(writers);
+        try (ShardedSecretStore<StoredToken> underTest = new ShardedSecretStore<>(shards)) {
+            final AtomicBoolean rebalancing = new AtomicBoolean(true);
+            final List<Future<Integer>> rounds = new ArrayList<>();
+            for (int writer = 0; writer < writers; writer++) {
+                final int first = writer * keysPerWriter;
+                rounds.add(executor.submit(() -> {
+                    // each writer owns its keys, so it reads its own writes
+                    int round = 0;
+                    while (rebalancing.get() || round == 0) {
+                        round++;
+                        for (int i = first; i < first + keysPerWriter; i++) {
+                            if (i % 3 == 0) {
+                                underTest.delete("key" + i);
+                                assertNull(underTest.get("key" + i));
+                            } else {
+                                assertTrue(underTest.add("key" + i, token("value" + round)));
+                                assertArrayEquals(("value" + round).toCharArray(),
+                                        underTest.get("key" + i).getValue());
+                            }
+                        }
+                    }
+                    return round;
+                }));
+            }
+
+            for (int i = 0; i < 10; i++) {
+                underTest.rebalance(i % 2 == 0 ? resized : shards);
+            }
+            rebalancing.set(false);
+
+            final int keys = writers * keysPerWriter;
+            for (int writer = 0; writer < writers; writer++) {
+                final int round = rounds.get(writer).get();
+                for (int i = writer * keysPerWriter; i < (writer + 1) * keysPerWriter; i++) {
+                    if (i % 3 == 0) {
+                        assertNull(underTest.get("key" + i));
+                    } else {
+                        assertArrayEquals(("value" + round).toCharArray(), underTest.get("key" + i).getValue());
+                    }
+                }
+            }
+
+            // back to the original shards, each secret is in its shard only
+            assertEquals(0, resized.get("shard3").keys().count());
+            assertEquals(keys - (keys + 2) / 3, shards.values().stream().mapToLong(shard -> shard.keys().count())
+                    .sum());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void replaceWhileRebalancing_shouldReplaceSecretsNotMovedYet() throws Exception {
+        final CountDownLatch listing = new CountDownLatch(1);
+        final CountDownLatch migrating = new CountDownLatch(1);
+        final Map<String, SecretStore<StoredToken>> shards = new LinkedHashMap<>();
+        for (int i = 0; i < 3; i++) {
+            shards.put("shard" + i, new GatedStore(listing, migrating));
+        }
+        final Map<String, SecretStore<StoredToken>> resized = new LinkedHashMap<>(shards);
+        resized.put("shard3", new InsecureInMemoryStore<>());
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (ShardedSecretStore<StoredToken> underTest = new ShardedSecretStore<>(shards)) {
+            for (int i = 0; i < 100; i++) {
+                underTest.add("key" + i, token("value" + i));
+            }
+            final Future<Integer> rebalancing = executor.submit(() -> underTest.rebalance(resized));
+            assertTrue(listing.await(10, TimeUnit.SECONDS));
+
+            // the secrets of the new shard are still in their previous shard
+            int replaced = 0;
+            for (int i = 0; i < 100; i++) {
+                assertFalse(underTest.replace("key" + i, token("other"), token("updated" + i)));
+                assertTrue(underTest.replace("key" + i, token("value" + i), token("updated" + i)));
+                assertArrayEquals(("updated" + i).toCharArray(), underTest.get("key" + i).getValue());
+                if (resized.get("shard3").get("key" + i) != null) {
+                    replaced++;
+                }
+            }
+            assertTrue(replaced > 0);
+
+            migrating.countDown();
+            rebalancing.get();
+            assertEquals(replaced, resized.get("shard3").keys().count());
+            for (int i = 0; i < 100; i++) {
+                assertArrayEquals(("updated" + i).toCharArray(), underTest.get("key" + i).getValue());
+            }
+            assertEquals(100, resized.values().stream().mapToLong(shard -> shard.keys().count()).sum());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void listeners_shouldBeNotifiedByShardsAddedByARebalancing() {
+        final Map<String, SecretStore<StoredToken>> shards = shards(2);
+        final AtomicInteger changes = new AtomicInteger();
+        final SecretStoreListener listener = new SecretStoreListener() {
+            @Override
+            public void secretChanged(final String key) {
+                changes.incrementAndGet();
+            }
+
+            @Override
+            public void secretsChanged() {
+            }
+        };
+
+        try (ShardedSecretStore<StoredToken> underTest = new ShardedSecretStore<>(shards)) {
+            underTest.addListener(listener);
+            final Map<String, SecretStore<StoredToken>> resized = new LinkedHashMap<>(shards);
+            final SecretStore<StoredToken> added = new InsecureInMemoryStore<>();
+            resized.put("shard2", added);
+            underTest.rebalance(resized);
+
+            changes.set(0);
+            for (int i = 0; i < 100; i++) {
+                underTest.add("key" + i, token("value" + i));
+            }
+            assertTrue(added.keys().count() > 0);
+            assertEquals(100, changes.get());
+
+            // a removed shard no longer notifies, a removed listener is not notified
+            underTest.rebalance(shards);
+            changes.set(0);
+            added.add("key", token("value"));
+            assertEquals(0, changes.get());
+            underTest.removeListener(listener);
+            underTest.add("key", token("value"));
+            assertEquals(0, changes.get());
+        }
+    }
+
+    private static Map<String, SecretStore<StoredToken>> shards(final int count) {
+        final Map<String, SecretStore<StoredToken>> shards = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            shards.put("shard" + i, new InsecureInMemoryStore<>());
+        }
+        return shards;
+    }
+
+    private static StoredToken token(final String value) {
+        return new StoredToken(value.toCharArray(), StoredTokenType.PERSONAL);
+    }
+
+    /**
+     * Store holding back the listing of its keys, so that a rebalancing waits before moving secrets
+     */
+    private static final class GatedStore implements SecretStore<StoredToken> {
+        private final InsecureInMemoryStore<StoredToken> secrets = new InsecureInMemoryStore<>();
+        private final CountDownLatch listing;
+        private final CountDownLatch migrating;
+
+        GatedStore(final CountDownLatch listing, final CountDownLatch migrating) {
+            this.listing = listing;
+            this.migrating = migrating;
+        }
+
+        @Override
+        public StoredToken get(final String key) {
+            return secrets.get(key);
+        }
+
+        @Override
+        public boolean add(final String key, final StoredToken secret) {
+            return secrets.add(key, secret);
+        }
+
+        @Override
+        public boolean delete(final String key) {
+            return secrets.delete(key);
+        }
+
+        @Override
+        public boolean putIfAbsent(final String key, final StoredToken secret) {
+            return secrets.putIfAbsent(key, secret);
+        }
+
+        @Override
+        public boolean replace(final String key, final StoredToken expected, final StoredToken updated) {
+            return secrets.replace(key, expected, updated);
+        }
+
+        @Override
+        public Stream<String> keys() {
+            listing.countDown();
+            try {
+                migrating.await();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return secrets.keys();
+        }
+
+        @Override
+        public boolean isSecure() {
+            return false;
+        }
+    }
+
+    /**
+     * Store taking a while to save secrets, so that writes overlap the migration of their key
+     */
+    private static final class SlowStore implements SecretStore<StoredToken> {
+        private final InsecureInMemoryStore<StoredToken> secrets = new InsecureInMemoryStore<>();
+
+        @Override
+        public StoredToken get(final String key) {
+            return secrets.get(key);
+        }
+
+        @Override
+        public boolean add(final String key, final StoredToken secret) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            return secrets.add(key, secret);
+        }
+
+        @Override
+        public boolean delete(final String key) {
+            return secrets.delete(key);
+        }
+
+        @Override
+        public boolean putIfAbsent(final String key, final StoredToken secret) {
+            return secrets.putIfAbsent(key, secret);
+        }
+
+        @Override
+        public Stream<String> keys() {
+            return secrets.keys();
+        }
+
+        @Override
+        public boolean isSecure() {
+            return false;
+        }
+    }
+}
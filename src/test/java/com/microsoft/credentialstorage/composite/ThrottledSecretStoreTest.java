@@ -0,0 +1,167 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.composite;
+
+import com.microsoft.credentialstorage.SecretResult;
+import com.microsoft.credentialstorage.SecretStore;
+import com.microsoft.credentialstorage.implementation.memory.InsecureInMemoryStore;
+import com.microsoft.credentialstorage.model.StoredToken;
+import com.microsoft.credentialstorage.model.StoredTokenType;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ThrottledSecretStoreTest {
+
+    private final BlockingStore delegate = new BlockingStore();
+
+    @Test
+    public void bulkhead_shouldBoundCallsInProgress() throws Exception {
+        final Bulkhead bulkhead = new Bulkhead("test", 2, 10, Duration.ofSeconds(10));
+        final ThrottledSecretStore<StoredToken> underTest = new ThrottledSecretStore<>(delegate, bulkhead);
+        delegate.secrets.add("key", token("value"));
+
+        final ExecutorService executor = Executors.newFixedThreadPool(6);
+        try {
+            final List<Future<StoredToken>> reads = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                reads.add(executor.submit(() -> underTest.get("key")));
+            }
+            while (bulkhead.getQueuedCount() < 4 || delegate.inProgress.get() < 2) {
+                Thread.sleep(1);
+            }
+
+            delegate.release.countDown();
+            for (final Future<StoredToken> read : reads) {
+                assertArrayEquals("value".toCharArray(), read.get(10, TimeUnit.SECONDS).getValue());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(2, delegate.maxInProgress.get());
+        assertEquals(6, bulkhead.getPermittedCount());
+        assertEquals(0, bulkhead.getRejectedCount());
+        assertTrue(bulkhead.getQueueWaitNanos() > 0);
+    }
+
+    @Test
+    public void fullBulkhead_shouldRejectCalls() throws Exception {
+        final Bulkhead bulkhead = new Bulkhead("test", 1, 0, Duration.ofSeconds(10));
+        final ThrottledSecretStore<StoredToken> underTest = new ThrottledSecretStore<>(delegate, bulkhead);
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<Boolean> write = executor.submit(() -> underTest.add("key", token("value")));
+            while (delegate.inProgress.get() == 0) {
+                Thread.sleep(1);
+            }
+
+            final SecretResult<StoredToken> rejected = underTest.getResult("key");
+            assertEquals(SecretResult.Status.TIMEOUT, rejected.getStatus());
+            assertFalse(underTest.delete("key"));
+            assertEquals(2, bulkhead.getRejectedCount());
+
+            delegate.release.countDown();
+            assertTrue(write.get(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue(underTest.getResult("key").isFound());
+    }
+
+    @Test
+    public void rateLimiter_shouldSpaceCallsAndRejectLongWaits() {
+        final AtomicLong ticker = new AtomicLong();
+        final List<Long> sleeps = new ArrayList<>();
+        // callers arriving at once, each waiting for its reserved permit
+        final RateLimiter rateLimiter = new RateLimiter("test", 10, 2, Duration.ofMillis(250), ticker::get,
+                sleeps::add);
+        final ThrottledSecretStore<StoredToken> underTest = new ThrottledSecretStore<>(delegate, null, rateLimiter);
+        delegate.release.countDown();
+
+        // the burst, then a call every 100ms, until the wait would be too long
+        for (int i = 0; i < 4; i++) {
+            assertEquals(SecretResult.Status.NOT_FOUND, underTest.getResult("key").getStatus());
+        }
+        assertEquals(SecretResult.Status.TIMEOUT, underTest.getResult("key").getStatus());
+        assertEquals(Arrays.asList(ms(100), ms(200)), sleeps);
+        assertEquals(4, delegate.calls.get());
+        assertEquals(1, rateLimiter.getRejectedCount());
+        assertEquals(ms(300), rateLimiter.getWaitNanos());
+
+        // refilled up to the burst
+        ticker.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertEquals(SecretResult.Status.NOT_FOUND, underTest.getResult("key").getStatus());
+        assertEquals(SecretResult.Status.NOT_FOUND, underTest.getResult("key").getStatus());
+        assertEquals(2, sleeps.size());
+    }
+
+    private static long ms(final long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    private static StoredToken token(final String value) {
+        return new StoredToken(value.toCharArray(), StoredTokenType.PERSONAL);
+    }
+
+    private static final class BlockingStore implements SecretStore<StoredToken> {
+        final InsecureInMemoryStore<StoredToken> secrets = new InsecureInMemoryStore<>();
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger calls = new AtomicInteger();
+        final AtomicInteger inProgress = new AtomicInteger();
+        final AtomicInteger maxInProgress = new AtomicInteger();
+
+        @Override
+        public StoredToken get(final String key) {
+            call();
+            return secrets.get(key);
+        }
+
+        @Override
+        public boolean add(final String key, final StoredToken secret) {
+            call();
+            return secrets.add(key, secret);
+        }
+
+        @Override
+        public boolean delete(final String key) {
+            call();
+            return secrets.delete(key);
+        }
+
+        @Override
+        public boolean isSecure() {
+            return true;
+        }
+
+        private void call() {
+            calls.incrementAndGet();
+            maxInProgress.accumulateAndGet(inProgress.incrementAndGet(), Math::max);
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inProgress.decrementAndGet();
+            }
+        }
+    }
+}
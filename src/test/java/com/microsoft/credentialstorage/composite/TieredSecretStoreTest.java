@@ -0,0 +1,182 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.composite;
+
+import com.microsoft.credentialstorage.SecretResult;
+import com.microsoft.credentialstorage.SecretStore;
+import com.microsoft.credentialstorage.implementation.memory.InsecureInMemoryStore;
+import com.microsoft.credentialstorage.model.StoredToken;
+import com.microsoft.credentialstorage.model.StoredTokenType;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TieredSecretStoreTest {
+
+    private final AtomicLong ticker = new AtomicLong();
+    private final PersistentStore secondTier = new PersistentStore();
+    private final InsecureInMemoryStore<StoredToken> firstTier = new InsecureInMemoryStore<>();
+
+    @Test
+    public void reads_shouldBePromotedToFirstTier() {
+        secondTier.add("key", token("value"));
+        final TieredSecretStore<StoredToken> underTest = create(TieredSecretStore.WritePolicy.WRITE_THROUGH);
+
+        assertArrayEquals("value".toCharArray(), underTest.get("key").getValue());
+        assertArrayEquals("value".toCharArray(), underTest.get("key").getValue());
+
+        assertEquals(1, secondTier.reads.get());
+        assertEquals(1, underTest.getFirstTierHitCount());
+    }
+
+    @Test
+    public void absentKeys_shouldBeRememberedUntilTheyExpireOrAreWritten() {
+        final TieredSecretStore<StoredToken> underTest = create(TieredSecretStore.WritePolicy.WRITE_THROUGH);
+
+        assertNull(underTest.get("key"));
+        assertNull(underTest.get("key"));
+        assertEquals(1, secondTier.reads.get());
+
+        ticker.addAndGet(TimeUnit.SECONDS.toNanos(31));
+        assertNull(underTest.get("key"));
+        assertEquals(2, secondTier.reads.get());
+
+        underTest.add("key", token("value"));
+        firstTier.delete("key");
+        assertArrayEquals("value".toCharArray(), underTest.get("key").getValue());
+        assertTrue(underTest.isSecure());
+    }
+
+    @Test
+    public void failedReads_shouldNotBeRememberedAsAbsent() {
+        final TieredSecretStore<StoredToken> underTest = create(TieredSecretStore.WritePolicy.WRITE_THROUGH);
+        secondTier.add("key", token("value"));
+
+        secondTier.failReads = true;
+        assertEquals(SecretResult.Status.LOCKED, underTest.getResult("key").getStatus());
+        assertNull(underTest.get("key"));
+        assertEquals(2, secondTier.reads.get());
+        assertEquals(0, underTest.getNegativeHitCount());
+
+        secondTier.failReads = false;
+        assertEquals(SecretResult.Status.FOUND, underTest.getResult("key").getStatus());
+        assertEquals(3, secondTier.reads.get());
+    }
+
+    @Test
+    public void failedWriteThrough_shouldInvalidateFirstTier() {
+        final TieredSecretStore<StoredToken> underTest = create(TieredSecretStore.WritePolicy.WRITE_THROUGH);
+        underTest.add("key", token("old"));
+
+        secondTier.failWrites = true;
+        assertFalse(underTest.add("key", token("new")));
+
+        assertNull(firstTier.get("key"));
+        assertArrayEquals("old".toCharArray(), underTest.get("key").getValue());
+    }
+
+    @Test
+    public void failedDeletes_shouldNotBeRememberedAsAbsent() {
+        final TieredSecretStore<StoredToken> underTest = create(TieredSecretStore.WritePolicy.WRITE_THROUGH);
+        underTest.add("key", token("value"));
+
+        secondTier.failWrites = true;
+        assertFalse(underTest.delete("key"));
+
+        assertNull(firstTier.get("key"));
+        assertArrayEquals("value".toCharArray(), underTest.get("key").getValue());
+        assertEquals(0, underTest.getNegativeHitCount());
+    }
+
+    @Test
+    public void writeBack_shouldReachSecondTierOnClose() {
+        final TieredSecretStore<StoredToken> underTest = create(TieredSecretStore.WritePolicy.WRITE_BACK);
+
+        assertTrue(underTest.add("key", token("value")));
+        assertTrue(underTest.add("deleted", token("value")));
+        assertTrue(underTest.delete("deleted"));
+        assertArrayEquals("value".toCharArray(), underTest.get("key").getValue());
+
+        underTest.close();
+
+        assertArrayEquals("value".toCharArray(), secondTier.get("key").getValue());
+        assertNull(secondTier.get("deleted"));
+    }
+
+    @Test
+    public void secondTierChanges_shouldInvalidateFirstTier() {
+        final InsecureInMemoryStore<StoredToken> observableSecondTier = new InsecureInMemoryStore<>();
+        final TieredSecretStore<StoredToken> underTest = new TieredSecretStore<>(firstTier, observableSecondTier,
+                true, TieredSecretStore.WritePolicy.WRITE_THROUGH, Duration.ofSeconds(30), ticker::get);
+        assertTrue(underTest.isInvalidatedOnChange());
+        assertFalse(create(TieredSecretStore.WritePolicy.WRITE_THROUGH).isInvalidatedOnChange());
+
+        underTest.add("key", token("old"));
+        assertNull(underTest.get("absent"));
+
+        // changed behind the first tier, e.g. by another process
+        observableSecondTier.add("key", token("new"));
+        observableSecondTier.add("absent", token("added"));
+
+        assertArrayEquals("new".toCharArray(), underTest.get("key").getValue());
+        assertArrayEquals("added".toCharArray(), underTest.get("absent").getValue());
+
+        underTest.close();
+        observableSecondTier.add("key", token("after close"));
+        assertArrayEquals("new".toCharArray(), underTest.get("key").getValue());
+    }
+
+    private TieredSecretStore<StoredToken> create(final TieredSecretStore.WritePolicy writePolicy) {
+        return new TieredSecretStore<>(firstTier, secondTier, true, writePolicy, Duration.ofSeconds(30), ticker::get);
+    }
+
+    private static StoredToken token(final String value) {
+        return new StoredToken(value.toCharArray(), StoredTokenType.PERSONAL);
+    }
+
+    private static final class PersistentStore implements SecretStore<StoredToken> {
+        private final InsecureInMemoryStore<StoredToken> store = new InsecureInMemoryStore<>();
+        private final AtomicInteger reads = new AtomicInteger();
+        private volatile boolean failWrites;
+        private volatile boolean failReads;
+
+        @Override
+        public StoredToken get(final String key) {
+            return getResult(key).getValue();
+        }
+
+        @Override
+        public SecretResult<StoredToken> getResult(final String key) {
+            reads.incrementAndGet();
+            if (failReads) {
+                return SecretResult.failed(SecretResult.Status.LOCKED, "secret-error", 2, "Collection is locked");
+            }
+            return SecretResult.of(store.get(key));
+        }
+
+        @Override
+        public boolean delete(final String key) {
+            return !failWrites && store.delete(key);
+        }
+
+        @Override
+        public boolean add(final String key, final StoredToken secret) {
+            return !failWrites && store.add(key, secret);
+        }
+
+        @Override
+        public boolean isSecure() {
+            return true;
+        }
+    }
+}
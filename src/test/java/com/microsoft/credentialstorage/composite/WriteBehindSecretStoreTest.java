@@ -0,0 +1,132 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.composite;
+
+import com.microsoft.credentialstorage.SecretStore;
+import com.microsoft.credentialstorage.implementation.memory.InsecureInMemoryStore;
+import com.microsoft.credentialstorage.model.StoredToken;
+import com.microsoft.credentialstorage.model.StoredTokenType;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class WriteBehindSecretStoreTest {
+
+    private final CountingStore backend = new CountingStore();
+
+    @Test
+    public void pendingWrites_shouldBeCoalescedAndVisible() {
+        try (WriteBehindSecretStore<StoredToken> underTest =
+                     new WriteBehindSecretStore<>(backend, 100, Duration.ofHours(1))) {
+            final CompletableFuture<Boolean> first = underTest.addAsync("key", token("first"));
+            final CompletableFuture<Boolean> second = underTest.addAsync("key", token("second"));
+            underTest.deleteAsync("other");
+
+            assertArrayEquals("second".toCharArray(), underTest.get("key").getValue());
+            assertEquals(0, backend.writes.get());
+
+            underTest.flush();
+
+            assertTrue(first.join());
+            assertTrue(second.join());
+            assertEquals("Writes to the same key not coalesced", 2, backend.writes.get());
+            assertEquals(1, underTest.getCoalescedCount());
+            assertArrayEquals("second".toCharArray(), backend.get("key").getValue());
+        }
+    }
+
+    @Test
+    public void batchSizeReached_shouldFlushWithoutWaitingForDelay() {
+        try (WriteBehindSecretStore<StoredToken> underTest =
+                     new WriteBehindSecretStore<>(backend, 3, Duration.ofHours(1))) {
+            underTest.addAsync("a", token("a"));
+            underTest.addAsync("b", token("b"));
+            underTest.addAsync("c", token("c")).join();
+
+            assertEquals(3, backend.writes.get());
+            assertEquals(1, underTest.getBatchCount());
+        }
+    }
+
+    @Test
+    public void addAndDelete_shouldWaitForTheBackend() {
+        try (WriteBehindSecretStore<StoredToken> underTest =
+                     new WriteBehindSecretStore<>(backend, 100, Duration.ofMillis(1))) {
+            assertTrue(underTest.add("key", token("value")));
+            assertArrayEquals("value".toCharArray(), backend.get("key").getValue());
+
+            assertTrue(underTest.delete("key"));
+            assertNull(backend.get("key"));
+            assertNull(underTest.get("key"));
+        }
+    }
+
+    @Test
+    public void addAndDelete_shouldNotWaitForTheDelay() {
+        try (WriteBehindSecretStore<StoredToken> underTest =
+                     new WriteBehindSecretStore<>(backend, 100, Duration.ofHours(1))) {
+            final CompletableFuture<Boolean> queued = underTest.addAsync("other", token("other"));
+
+            assertTrue(underTest.add("key", token("value")));
+            assertArrayEquals("value".toCharArray(), backend.get("key").getValue());
+            // applied with the write pending meanwhile
+            assertTrue(queued.isDone());
+
+            assertTrue(underTest.delete("key"));
+            assertNull(backend.get("key"));
+            assertEquals(0, underTest.getPendingCount());
+        }
+    }
+
+    @Test
+    public void close_shouldFlushPendingWrites() {
+        final WriteBehindSecretStore<StoredToken> underTest =
+                new WriteBehindSecretStore<>(backend, 100, Duration.ofHours(1));
+        final CompletableFuture<Boolean> write = underTest.addAsync("key", token("value"));
+
+        underTest.close();
+
+        assertTrue(write.isDone());
+        assertArrayEquals("value".toCharArray(), backend.get("key").getValue());
+    }
+
+    private static StoredToken token(final String value) {
+        return new StoredToken(value.toCharArray(), StoredTokenType.PERSONAL);
+    }
+
+    private static final class CountingStore implements SecretStore<StoredToken> {
+        private final InsecureInMemoryStore<StoredToken> store = new InsecureInMemoryStore<>();
+        private final AtomicInteger writes = new AtomicInteger();
+
+        @Override
+        public StoredToken get(final String key) {
+            return store.get(key);
+        }
+
+        @Override
+        public boolean delete(final String key) {
+            writes.incrementAndGet();
+            store.delete(key);
+            return true;
+        }
+
+        @Override
+        public boolean add(final String key, final StoredToken secret) {
+            writes.incrementAndGet();
+            return store.add(key, secret);
+        }
+
+        @Override
+        public boolean isSecure() {
+            return false;
+        }
+    }
+}
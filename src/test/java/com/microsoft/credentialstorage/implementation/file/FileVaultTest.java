@@ -0,0 +1,270 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.implementation.file;
+
+import com.microsoft.credentialstorage.SecretResult;
+import com.microsoft.credentialstorage.model.StoredCredential;
+import com.microsoft.credentialstorage.model.StoredToken;
+import com.microsoft.credentialstorage.model.StoredTokenPair;
+import com.microsoft.credentialstorage.model.StoredTokenType;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FileVaultTest {
+    private static final char[] PASSPHRASE = "correct horse battery staple".toCharArray();
+    private static final int ITERATIONS = 1000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void writeReadDelete_shouldSurviveReopen() throws IOException {
+        final Path directory = folder.getRoot().toPath();
+        try (FileVault vault = open(directory)) {
+            vault.write("Credential", "key", "user", "first".toCharArray());
+            vault.write("Credential", "key", "user", "second".toCharArray());
+            vault.write("Credential", "deleted", "user", "secret".toCharArray());
+            vault.write("Token", "key", "Personal Access Token", "token".toCharArray());
+
+            assertTrue("Secret not deleted", vault.delete("Credential", "deleted"));
+            assertFalse("Secret deleted twice", vault.delete("Credential", "deleted"));
+        }
+
+        try (FileVault vault = open(directory)) {
+            assertEquals("user:second", read(vault, "Credential", "key"));
+            assertEquals("Personal Access Token:token", read(vault, "Token", "key"));
+            assertNull(read(vault, "Credential", "deleted"));
+            assertNull(read(vault, "Credential", "missing"));
+        }
+    }
+
+    @Test
+    public void deletingAbsentSecret_shouldNotWriteToTheLog() throws IOException {
+        try (FileVault vault = open(folder.getRoot().toPath())) {
+            vault.write("Credential", "key", "user", "secret".toCharArray());
+            final long size = vault.getLogSize();
+
+            assertFalse(vault.delete("Credential", "missing"));
+            assertFalse(vault.delete("Token", "key"));
+            assertEquals(size, vault.getLogSize());
+
+            assertTrue(vault.delete("Credential", "key"));
+            assertTrue(vault.getLogSize() > size);
+        }
+    }
+
+    @Test
+    public void wrongPassphrase_shouldFailToOpen() throws IOException {
+        final Path directory = folder.getRoot().toPath();
+        open(directory).close();
+
+        try {
+            FileVault.open(directory, "wrong".toCharArray(), ITERATIONS).close();
+            fail("Vault opened with a wrong passphrase");
+        } catch (final IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void damagedEndOfLog_shouldBeTruncated() throws IOException {
+        final Path directory = folder.getRoot().toPath();
+        try (FileVault vault = open(directory)) {
+            vault.write("Credential", "key", "user", "secret".toCharArray());
+        }
+
+        // an interrupted append leaves an incomplete record behind
+        final Path log = directory.resolve("vault.log");
+        final long intactSize = Files.size(log);
+        Files.write(log, new byte[] {0, 0, 0, 100, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        try (FileVault vault = open(directory)) {
+            assertEquals("user:secret", read(vault, "Credential", "key"));
+            vault.write("Credential", "other", "user", "other".toCharArray());
+
+            assertEquals("user:other", read(vault, "Credential", "other"));
+            assertTrue(vault.getLogSize() > intactSize);
+        }
+    }
+
+    @Test
+    public void missingIndex_shouldBeRebuilt() throws IOException {
+        final Path directory = folder.getRoot().toPath();
+        try (FileVault vault = open(directory)) {
+            for (int i = 0; i < 100; i++) {
+                vault.write("Credential", "key" + i, "user", ("secret" + i).toCharArray());
+            }
+            vault.delete("Credential", "key7");
+        }
+
+        Files.delete(directory.resolve("vault.idx"));
+
+        try (FileVault vault = open(directory)) {
+            assertEquals("user:secret42", read(vault, "Credential", "key42"));
+            assertNull(read(vault, "Credential", "key7"));
+        }
+    }
+
+    @Test
+    public void compact_shouldDropSupersededRecords() throws IOException {
+        final Path directory = folder.getRoot().toPath();
+        try (FileVault vault = open(directory); FileVault other = open(directory)) {
+            for (int i = 0; i < 50; i++) {
+                vault.write("Credential", "key", "user", ("secret" + i).toCharArray());
+                vault.write("Credential", "removed" + i, "user", "secret".toCharArray());
+                vault.delete("Credential", "removed" + i);
+            }
+            assertEquals("user:secret49", read(other, "Credential", "key"));
+
+            final long sizeBefore = vault.getLogSize();
+            vault.compact();
+
+            assertTrue("Log not compacted", vault.getLogSize() < sizeBefore / 10);
+            assertEquals("user:secret49", read(vault, "Credential", "key"));
+            assertNull(read(vault, "Credential", "removed3"));
+
+            // another instance picks up the replaced files
+            assertEquals("user:secret49", read(other, "Credential", "key"));
+            other.write("Credential", "key", "user", "updated".toCharArray());
+            assertEquals("user:updated", read(vault, "Credential", "key"));
+        }
+    }
+
+    @Test
+    public void stores_shouldKeepSecretTypesApart() throws IOException {
+        try (FileVault vault = open(folder.getRoot().toPath())) {
+            final FileVaultBackedCredentialStore credentialStore = new FileVaultBackedCredentialStore(vault);
+            final FileVaultBackedTokenStore tokenStore = new FileVaultBackedTokenStore(vault);
+            final FileVaultBackedTokenPairStore tokenPairStore = new FileVaultBackedTokenPairStore(vault);
+
+            assertTrue(credentialStore.add("key", new StoredCredential("user", "password".toCharArray())));
+            assertTrue(tokenStore.add("key", new StoredToken("token".toCharArray(), StoredTokenType.PERSONAL)));
+            assertTrue(tokenPairStore.add("key", new StoredTokenPair("access".toCharArray(), "refresh".toCharArray())));
+
+            assertArrayEquals("password".toCharArray(), credentialStore.get("key").getPassword());
+            assertEquals(StoredTokenType.PERSONAL, tokenStore.get("key").getType());
+            assertArrayEquals("refresh".toCharArray(), tokenPairStore.get("key").getRefreshToken().getValue());
+
+            assertTrue(tokenStore.delete("key"));
+            assertNull(tokenStore.get("key"));
+            assertArrayEquals("password".toCharArray(), credentialStore.get("key").getPassword());
+        }
+    }
+
+    @Test
+    public void readsOfAClosedVault_shouldFail() throws IOException {
+        final FileVault vault = open(folder.getRoot().toPath());
+        final FileVaultBackedTokenPairStore tokenPairStore = new FileVaultBackedTokenPairStore(vault);
+        assertEquals(SecretResult.Status.NOT_FOUND, tokenPairStore.getResult("key").getStatus());
+        vault.close();
+
+        final SecretResult<StoredTokenPair> result = tokenPairStore.getResult("key");
+        assertEquals(SecretResult.Status.FAILED, result.getStatus());
+        assertEquals(ClosedChannelException.class.getName(), result.getErrorDomain());
+        assertNull(tokenPairStore.get("key"));
+    }
+
+    @Test
+    public void keys_shouldListLiveKeysOfType() throws IOException {
+        try (FileVault vault = open(folder.getRoot().toPath())) {
+            // more keys than a page
+            for (int i = 0; i < 100; i++) {
+                vault.write("Credential", "key" + i, "user", "secret".toCharArray());
+            }
+            vault.write("Token", "token", "Personal Access Token", "token".toCharArray());
+            for (int i = 10; i < 100; i++) {
+                vault.delete("Credential", "key" + i);
+            }
+
+            try (Stream<String> keys = vault.keys("Credential")) {
+                assertEquals(10, keys.count());
+            }
+
+            final FileVaultBackedTokenPairStore tokenPairStore = new FileVaultBackedTokenPairStore(vault);
+            assertTrue(tokenPairStore.add("pair/a", new StoredTokenPair("access".toCharArray(), "refresh".toCharArray())));
+            assertTrue(tokenPairStore.add("pair/b", new StoredTokenPair("access".toCharArray(), "refresh".toCharArray())));
+            try (Stream<String> keys = tokenPairStore.scan("pair/")) {
+                assertEquals(Arrays.asList("pair/a", "pair/b"), keys.sorted().collect(Collectors.toList()));
+            }
+        }
+    }
+
+    @Test
+    public void conditionalWrites_shouldNotLoseConcurrentRefreshes() throws Exception {
+        final Path directory = folder.getRoot().toPath();
+        final int threads = 4;
+        final int refreshes = 25;
+
+        // two vaults on one directory, like two processes
+        try (FileVault first = open(directory); FileVault second = open(directory)) {
+            final FileVaultBackedTokenPairStore firstStore = new FileVaultBackedTokenPairStore(first);
+            final FileVaultBackedTokenPairStore secondStore = new FileVaultBackedTokenPairStore(second);
+
+            assertTrue(firstStore.putIfAbsent("key", tokenPair(0)));
+            assertFalse("Existing pair replaced", secondStore.putIfAbsent("key", tokenPair(1)));
+            assertFalse("Stale pair replaced", secondStore.replace("key", tokenPair(1), tokenPair(2)));
+
+            final ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                final List<Future<?>> futures = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    final FileVaultBackedTokenPairStore store = t % 2 == 0 ? firstStore : secondStore;
+                    futures.add(executor.submit(() -> {
+                        for (int i = 0; i < refreshes; i++) {
+                            StoredTokenPair current;
+                            do {
+                                current = store.get("key");
+                            } while (!store.replace("key", current, tokenPair(refreshCount(current) + 1)));
+                        }
+                    }));
+                }
+                for (final Future<?> future : futures) {
+                    future.get();
+                }
+            } finally {
+                executor.shutdown();
+            }
+
+            assertEquals(threads * refreshes, refreshCount(firstStore.get("key")));
+        }
+    }
+
+    private static StoredTokenPair tokenPair(final int refreshCount) {
+        return new StoredTokenPair(("access" + refreshCount).toCharArray(), String.valueOf(refreshCount).toCharArray());
+    }
+
+    private static int refreshCount(final StoredTokenPair tokenPair) {
+        return Integer.parseInt(new String(tokenPair.getRefreshToken().getValue()));
+    }
+
+    private static FileVault open(final Path directory) throws IOException {
+        return FileVault.open(directory, PASSPHRASE, ITERATIONS);
+    }
+
+    private static String read(final FileVault vault, final String type, final String key) throws IOException {
+        return vault.read(type, key, (account, secret) -> account + ":" + new String(secret));
+    }
+}
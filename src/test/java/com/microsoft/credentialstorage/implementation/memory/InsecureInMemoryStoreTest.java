@@ -0,0 +1,161 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.implementation.memory;
+
+import com.microsoft.credentialstorage.model.StoredToken;
+import com.microsoft.credentialstorage.model.StoredTokenType;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class InsecureInMemoryStoreTest {
+
+    private final AtomicLong ticker = new AtomicLong();
+
+    @Test
+    public void addAndDelete_shouldReportOutcome() {
+        final InsecureInMemoryStore<StoredToken> underTest = new InsecureInMemoryStore<>();
+        final StoredToken token = token("value");
+
+        assertTrue("Adding a new secret failed", underTest.add("key", token));
+        assertTrue("Replacing a secret failed", underTest.add("key", token));
+        assertSame(token, underTest.get("key"));
+
+        assertTrue("Secret not deleted", underTest.delete("key"));
+        assertFalse("Secret deleted twice", underTest.delete("key"));
+        assertNull(underTest.get("key"));
+    }
+
+    @Test
+    public void maximumSizeExceeded_shouldEvictEldestAndClear() {
+        final InsecureInMemoryStore<StoredToken> underTest = new InsecureInMemoryStore<>(2, null, ticker::get);
+        final StoredToken first = token("first");
+
+        underTest.add("first", first);
+        underTest.add("second", token("second"));
+        underTest.add("third", token("third"));
+
+        assertEquals(2, underTest.size());
+        assertEquals(1, underTest.getEvictionCount());
+        assertNull(underTest.get("first"));
+        assertNotNull(underTest.get("third"));
+        assertArrayEquals("Evicted secret not cleared", new char[0], first.getValue());
+    }
+
+    @Test
+    public void timeToLiveElapsed_shouldExpireAndClear() {
+        final InsecureInMemoryStore<StoredToken> underTest =
+                new InsecureInMemoryStore<>(InsecureInMemoryStore.UNBOUNDED, Duration.ofSeconds(30), ticker::get);
+        final StoredToken expiring = token("expiring");
+
+        underTest.add("expiring", expiring);
+        underTest.add("long-lived", token("long-lived"), Duration.ofHours(2));
+
+        ticker.addAndGet(TimeUnit.SECONDS.toNanos(29));
+        assertNotNull(underTest.get("expiring"));
+
+        ticker.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        assertNull(underTest.get("expiring"));
+
+        // the wheel is advanced on writes
+        ticker.addAndGet(TimeUnit.MINUTES.toNanos(2));
+        underTest.add("other", token("other"));
+
+        assertEquals(1, underTest.getExpirationCount());
+        assertEquals(2, underTest.size());
+        assertNotNull(underTest.get("long-lived"));
+        assertArrayEquals("Expired secret not cleared", new char[0], expiring.getValue());
+
+        ticker.addAndGet(TimeUnit.HOURS.toNanos(3));
+        underTest.delete("other");
+
+        assertNull(underTest.get("long-lived"));
+        assertEquals(2, underTest.getExpirationCount());
+        assertEquals(0, underTest.size());
+    }
+
+    @Test
+    public void replacedEntry_shouldUseNewTimeToLive() {
+        final InsecureInMemoryStore<StoredToken> underTest =
+                new InsecureInMemoryStore<>(InsecureInMemoryStore.UNBOUNDED, Duration.ofSeconds(10), ticker::get);
+
+        underTest.add("key", token("old"));
+        ticker.addAndGet(TimeUnit.SECONDS.toNanos(8));
+        underTest.add("key", token("new"));
+        ticker.addAndGet(TimeUnit.SECONDS.toNanos(8));
+        underTest.add("other", token("other"));
+
+        assertArrayEquals("new".toCharArray(), underTest.get("key").getValue());
+        assertEquals(0, underTest.getExpirationCount());
+    }
+
+    @Test
+    public void keysAndScan_shouldSkipExpiredEntries() {
+        final InsecureInMemoryStore<StoredToken> underTest =
+                new InsecureInMemoryStore<>(InsecureInMemoryStore.UNBOUNDED, Duration.ofSeconds(10), ticker::get);
+
+        underTest.add("repo/a", token("a"));
+        ticker.addAndGet(TimeUnit.SECONDS.toNanos(8));
+        underTest.add("repo/b", token("b"));
+        underTest.add("other", token("other"));
+        ticker.addAndGet(TimeUnit.SECONDS.toNanos(4));
+
+        try (Stream<String> keys = underTest.keys()) {
+            assertEquals(Arrays.asList("other", "repo/b"), keys.sorted().collect(Collectors.toList()));
+        }
+        try (Stream<String> keys = underTest.scan("repo/")) {
+            assertEquals(Arrays.asList("repo/b"), keys.collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void conditionalWrites_shouldBeAtomic() throws Exception {
+        for (final InsecureInMemoryStore<StoredToken> underTest : Arrays.asList(
+                new InsecureInMemoryStore<StoredToken>(), new InsecureInMemoryStore<StoredToken>(10, null, ticker::get))) {
+            assertTrue(underTest.putIfAbsent("key", token("0")));
+            assertFalse("Existing secret replaced", underTest.putIfAbsent("key", token("1")));
+            assertFalse("Stale secret replaced", underTest.replace("key", token("1"), token("2")));
+            assertFalse("Missing secret replaced", underTest.replace("missing", token("0"), token("1")));
+
+            final Thread[] threads = new Thread[4];
+            for (int t = 0; t < threads.length; t++) {
+                threads[t] = new Thread(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        StoredToken current;
+                        do {
+                            current = underTest.get("key");
+                        } while (!underTest.replace("key", current, token(increment(current))));
+                    }
+                });
+                threads[t].start();
+            }
+            for (final Thread thread : threads) {
+                thread.join();
+            }
+
+            assertArrayEquals("4000".toCharArray(), underTest.get("key").getValue());
+        }
+    }
+
+    private static String increment(final StoredToken token) {
+        return String.valueOf(Integer.parseInt(new String(token.getValue())) + 1);
+    }
+
+    private static StoredToken token(final String value) {
+        return new StoredToken(value.toCharArray(), StoredTokenType.PERSONAL);
+    }
+}
@@ -0,0 +1,49 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.implementation.posix.internal;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class CancellableDeadlineIT {
+
+    @Before
+    public void setUp() {
+        //Only test on platform that has GIO
+        assumeTrue(isGioAvailable());
+    }
+
+    @Test
+    public void elapsedDeadline_shouldCancel() throws InterruptedException {
+        try (CancellableDeadline underTest = CancellableDeadline.start(Duration.ofMillis(10))) {
+            for (int i = 0; i < 500 && !underTest.isCancelled(); i++) {
+                Thread.sleep(10);
+            }
+            assertTrue("Deadline not cancelled", underTest.isCancelled());
+        }
+    }
+
+    @Test
+    public void closedDeadline_shouldNotCancel() throws InterruptedException {
+        final CancellableDeadline underTest = CancellableDeadline.start(Duration.ofMillis(50));
+        underTest.close();
+
+        Thread.sleep(100);
+        assertFalse("Closed deadline cancelled", underTest.isCancelled());
+    }
+
+    private static boolean isGioAvailable() {
+        try {
+            return System.getProperty("os.name").equals("Linux") && GioLibrary.INSTANCE != null;
+        } catch (final Throwable t) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.implementation.posix.internal;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assume.assumeNoException;
+import static org.junit.Assume.assumeTrue;
+
+public class DBusSignalWatcherIT {
+    private static final String COLLECTION_INTERFACE = "org.freedesktop.Secret.Collection";
+    private static final String COLLECTION = "/org/freedesktop/secrets/collection/test";
+
+    @Before
+    public void setUp() {
+        //Only test on Linux with a session bus, e.g. in dbus-run-session
+        assumeTrue(System.getProperty("os.name").equals("Linux"));
+        assumeTrue(System.getenv("DBUS_SESSION_BUS_ADDRESS") != null);
+        try {
+            assumeTrue(GioLibrary.INSTANCE != null);
+        } catch (final Throwable t) {
+            assumeNoException(t);
+        }
+    }
+
+    @Test
+    public void emittedSignal_shouldBeHandled() throws Exception {
+        final BlockingQueue<String> signals = new LinkedBlockingQueue<>();
+        final DBusSignalWatcher watcher = DBusSignalWatcher.subscribe(null, COLLECTION_INTERFACE,
+                (signalName, objectPath, argument) -> signals.add(signalName + " " + objectPath + " " + argument),
+                "dbus-signal-test");
+        assertNotNull("Subscription failed", watcher);
+
+        try {
+            final Process emit = new ProcessBuilder("gdbus", "emit", "--session",
+                    "--object-path", COLLECTION,
+                    "--signal", COLLECTION_INTERFACE + ".ItemDeleted",
+                    "objectpath '" + COLLECTION + "/1'")
+                    .inheritIO()
+                    .start();
+            assertEquals(0, emit.waitFor());
+
+            assertEquals("ItemDeleted " + COLLECTION + " " + COLLECTION + "/1", signals.poll(10, TimeUnit.SECONDS));
+        } finally {
+            watcher.close();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.implementation.posix.kernelkeyring;
+
+import com.microsoft.credentialstorage.model.StoredCredential;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class KernelKeyringBackedCredentialStoreIT {
+    KernelKeyringBackedCredentialStore underTest;
+
+    @Before
+    public void setUp() {
+        //Only test on platform that has kernel keyring support
+        assumeTrue(KernelKeyringBackedSecureStore.isSupported());
+
+        underTest = new KernelKeyringBackedCredentialStore();
+    }
+
+    @Test
+    public void saveCredential() {
+        final String key = "http://thisisatestkey";
+
+        final StoredCredential credential = new StoredCredential("username", "pass:\"word".toCharArray());
+
+        boolean added = underTest.add(key, credential);
+        assertTrue("Storing credential failed", added);
+
+        final StoredCredential readCred = underTest.get(key);
+
+        assertNotNull("Credential not found", readCred);
+        assertEquals(credential.getUsername(), readCred.getUsername());
+        assertArrayEquals(credential.getPassword(), readCred.getPassword());
+
+        try (Stream<String> keys = underTest.scan("http://thisisatest")) {
+            assertTrue("Credential not listed", keys.anyMatch(key::equals));
+        }
+
+        boolean deleted = underTest.delete(key);
+        assertTrue("Credential not deleted", deleted);
+
+        deleted = underTest.delete(key);
+        assertFalse("Credential deleted twice, did first delete fail?", deleted);
+
+        final StoredCredential nonExistent = underTest.get(key);
+        assertNull("Credential can still be read from store", nonExistent);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,87 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.implementation.posix.keyring;
+
+import com.microsoft.credentialstorage.implementation.posix.internal.GLibLibrary;
+import com.sun.jna.Memory;
+import com.sun.jna.Native;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * The fixed field offsets used to walk the native structures must match the documented C layouts.
+ *
+ * The offsets are listed for LP64 (64-bit Linux) and ILP32 (32-bit Linux), where pointers are 8 and 4 bytes and
+ * {@code int}, {@code guint} and enums are 4 bytes, aligned to their size:
+ * <pre>
+ * struct GList { gpointer data; GList *next; GList *prev; };
+ * struct GArray { gchar *data; guint len; };
+ * struct GnomeKeyringAttribute { char *name; GnomeKeyringAttributeType type; union { char *string; } value; };
+ * struct GnomeKeyringFound { char *keyring; guint item_id; GnomeKeyringAttributeList *attributes; char *secret; };
+ * </pre>
+ */
+public class GnomeKeyringLibraryTest {
+
+    // GList data and next, GArray data and len, attribute name, value and size, found attributes and secret
+    private static final int[] LP64 = {0, 8, 0, 8, 0, 16, 24, 16, 24};
+    private static final int[] ILP32 = {0, 4, 0, 4, 0, 8, 12, 8, 12};
+
+    @Test
+    public void offsets_shouldMatchTheDocumentedLayout() {
+        final int[] expected = layout();
+        assertNotNull("No documented layout for " + Native.POINTER_SIZE + " byte pointers", expected);
+
+        assertArrayEquals(expected, new int[] {
+                GLibLibrary.GList.DATA_OFFSET, GLibLibrary.GList.NEXT_OFFSET,
+                GLibLibrary.GArray.DATA_OFFSET, GLibLibrary.GArray.LEN_OFFSET,
+                GnomeKeyringLibrary.GnomeKeyringAttribute.NAME_OFFSET,
+                GnomeKeyringLibrary.GnomeKeyringAttribute.VALUE_OFFSET,
+                GnomeKeyringLibrary.GnomeKeyringAttribute.SIZE,
+                GnomeKeyringLibrary.GnomeKeyringFound.ATTRIBUTES_OFFSET,
+                GnomeKeyringLibrary.GnomeKeyringFound.SECRET_OFFSET});
+    }
+
+    @Test
+    public void glist_shouldReadValuesWrittenAtTheDocumentedOffsets() {
+        final int[] layout = layout();
+        final Memory data = new Memory(1);
+        final Memory next = new Memory(1);
+        final Memory node = new Memory(3L * Native.POINTER_SIZE);
+        node.clear();
+        node.setPointer(layout[0], data);
+        node.setPointer(layout[1], next);
+
+        final GLibLibrary.GList list = new GLibLibrary.GList(node);
+        assertEquals(data, list.data);
+        assertEquals(next, list.next);
+    }
+
+    @Test
+    public void garray_shouldReadValuesWrittenAtTheDocumentedOffsets() {
+        final int[] layout = layout();
+        final Memory data = new Memory(1);
+        final Memory array = new Memory(2L * Native.POINTER_SIZE);
+        array.clear();
+        array.setPointer(layout[2], data);
+        array.setInt(layout[3], 3);
+
+        final GLibLibrary.GArray garray = new GLibLibrary.GArray(array);
+        assertEquals(data, garray.data);
+        assertEquals(3, garray.len);
+    }
+
+    private static int[] layout() {
+        switch (Native.POINTER_SIZE) {
+            case 8:
+                return LP64;
+            case 4:
+                return ILP32;
+            default:
+                return null;
+        }
+    }
+}
@@ -3,10 +3,16 @@
 
 package com.microsoft.credentialstorage.implementation.posix.libsecret;
 
+import com.microsoft.credentialstorage.SecretResult;
 import com.microsoft.credentialstorage.model.StoredCredential;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 import static org.junit.Assert.*;
 import static org.junit.Assume.assumeTrue;
 
@@ -45,4 +51,53 @@ public class LibSecretBackedCredentialStoreIT {
         final StoredCredential nonExistent = underTest.get(key);
         assertNull("Credential can still be read from store", nonExistent);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void saveCredentialsAsync() {
+        final int count = 20;
+        final StoredCredential credential = new StoredCredential("username", "pass:\"word".toCharArray());
+
+        // all requests are in flight at once, driven by the main loop thread
+        final List<CompletableFuture<Boolean>> added = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            added.add(underTest.addAsync("http://thisisatestkey/async" + i, credential));
+        }
+        added.forEach(result -> assertTrue("Storing credential failed", result.join()));
+
+        final List<CompletableFuture<StoredCredential>> read = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            read.add(underTest.getAsync("http://thisisatestkey/async" + i));
+        }
+        for (final CompletableFuture<StoredCredential> result : read) {
+            final StoredCredential readCred = result.join();
+            assertNotNull("Credential not found", readCred);
+            assertEquals(credential.getUsername(), readCred.getUsername());
+            assertArrayEquals(credential.getPassword(), readCred.getPassword());
+        }
+
+        final List<CompletableFuture<Boolean>> deleted = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            deleted.add(underTest.deleteAsync("http://thisisatestkey/async" + i));
+        }
+        deleted.forEach(result -> assertTrue("Credential not deleted", result.join()));
+
+        assertNull("Credential can still be read from store", underTest.getAsync("http://thisisatestkey/async0").join());
+    }
+
+    @Test
+    public void saveCredentialWithDeadline() {
+        final String key = "http://thisisatestkey/deadline";
+        final Duration timeout = Duration.ofSeconds(10);
+
+        final StoredCredential credential = new StoredCredential("username", "pass:\"word".toCharArray());
+        assertTrue("Storing credential failed", underTest.add(key, credential, timeout));
+
+        final StoredCredential readCred = underTest.get(key, timeout);
+        assertNotNull("Credential not found", readCred);
+        assertArrayEquals(credential.getPassword(), readCred.getPassword());
+        assertEquals(SecretResult.Status.FOUND, underTest.getResult(key, timeout).getStatus());
+
+        assertTrue("Credential not deleted", underTest.delete(key, timeout));
+        assertEquals(SecretResult.Status.NOT_FOUND, underTest.getResult(key, timeout).getStatus());
+    }
+}
@@ -0,0 +1,46 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.implementation.posix.libsecret;
+
+import com.microsoft.credentialstorage.SecretStoreListener;
+import com.microsoft.credentialstorage.implementation.SecretStoreListeners;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class LibSecretBackedTokenPairStoreTest {
+
+    @Test
+    public void changesOfTheTokens_shouldBeReportedForTheirPair() {
+        final List<String> changed = new ArrayList<>();
+        final SecretStoreListener listener = new SecretStoreListener() {
+            @Override
+            public void secretChanged(final String key) {
+                changed.add(key);
+            }
+
+            @Override
+            public void secretsChanged() {
+                changed.add("*");
+            }
+        };
+        final SecretStoreListeners listeners = new SecretStoreListeners();
+        listeners.add(new LibSecretBackedTokenPairStore.PairKeyListener(listener));
+
+        listeners.fireSecretChanged("https://example.com/accessToken");
+        listeners.fireSecretChanged("https://example.com/refreshToken");
+        listeners.fireSecretChanged("https://example.com");
+        listeners.fireSecretsChanged();
+        assertEquals(Arrays.asList("https://example.com", "https://example.com", "*"), changed);
+
+        // removed through another wrapper of the same listener
+        listeners.remove(new LibSecretBackedTokenPairStore.PairKeyListener(listener));
+        listeners.fireSecretChanged("https://example.com/accessToken");
+        assertEquals(3, changed.size());
+    }
+}
@@ -0,0 +1,75 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.implementation.posix.libsecret;
+
+import com.microsoft.credentialstorage.model.StoredCredential;
+import com.microsoft.credentialstorage.model.StoredTokenPair;
+import com.microsoft.credentialstorage.model.StoredToken;
+import com.microsoft.credentialstorage.model.StoredTokenType;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class LibSecretSessionStoreIT {
+
+    private final String key = "http://thisisatestkey/" + UUID.randomUUID();
+
+    @Before
+    public void setUp() {
+        //Only test on platform that has libsecret support
+        assumeTrue(LibSecretBackedSecureStore.isSupported());
+    }
+
+    @Test
+    public void sessionToken_shouldNotBeMixedUpWithPersistedToken() {
+        final LibSecretBackedTokenStore session = new LibSecretBackedTokenStore(true);
+        final LibSecretBackedTokenStore persisted = new LibSecretBackedTokenStore();
+
+        try {
+            assertTrue(session.add(key, new StoredToken("ephemeral".toCharArray(), StoredTokenType.PERSONAL)));
+            assertNull("Session token seen by the persisted store", persisted.get(key));
+
+            assertTrue(persisted.add(key, new StoredToken("durable".toCharArray(), StoredTokenType.PERSONAL)));
+            assertArrayEquals("ephemeral".toCharArray(), session.get(key).getValue());
+            assertArrayEquals("durable".toCharArray(), persisted.get(key).getValue());
+            assertEquals(1, session.scan(key).count());
+
+            assertTrue(session.delete(key));
+            assertNull(session.get(key));
+            assertNotNull("Persisted token deleted by the session store", persisted.get(key));
+        } finally {
+            session.delete(key);
+            persisted.delete(key);
+        }
+    }
+
+    @Test
+    public void sessionCredentialsAndTokenPairs_shouldBeStored() {
+        final LibSecretBackedCredentialStore credentials = new LibSecretBackedCredentialStore(true);
+        final LibSecretBackedTokenPairStore tokenPairs = new LibSecretBackedTokenPairStore(true);
+
+        try {
+            assertTrue(credentials.add(key, new StoredCredential("user", "password".toCharArray())));
+            assertEquals("user", credentials.get(key).getUsername());
+
+            assertTrue(tokenPairs.add(key, new StoredTokenPair("access".toCharArray(), "refresh".toCharArray())));
+            assertArrayEquals("refresh".toCharArray(), tokenPairs.get(key).getRefreshToken().getValue());
+            assertEquals(key, tokenPairs.scan(key).collect(Collectors.joining()));
+        } finally {
+            assertTrue(credentials.delete(key));
+            assertTrue(tokenPairs.delete(key));
+            assertFalse(credentials.delete(key));
+        }
+    }
+}
@@ -0,0 +1,106 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.credentialstorage.implementation.posix.libsecret;
+
+import com.microsoft.credentialstorage.model.StoredCredential;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Soak test of the read path against a local secret service, checking that the resident memory of the process,
+ * which includes native memory, stays flat.
+ *
+ * Does not run by default; set the number of operations, and preferably a fixed heap so that heap growth
+ * does not show up as resident memory:
+ * {@code mvn verify -Dit.test=LibSecretSoakIT -Dsoak.operations=1000000 -DargLine="-Xms64m -Xmx64m"}
+ */
+public class LibSecretSoakIT {
+    private static final Logger logger = LoggerFactory.getLogger(LibSecretSoakIT.class);
+
+    private static final String OPERATIONS = "soak.operations";
+    private static final int SAMPLES = 20;
+
+    // resident memory may still move a little with the heap and the allocator's caches
+    private static final long RSS_TOLERANCE_KB = 32 * 1024;
+
+    private LibSecretBackedCredentialStore underTest;
+    private long operations;
+
+    @Before
+    public void setUp() {
+        //Only test on platform that has libsecret support
+        assumeTrue(LibSecretBackedSecureStore.isSupported());
+
+        operations = Long.getLong(OPERATIONS, 0);
+        assumeTrue("Set " + OPERATIONS + " to run the soak test", operations > 0);
+
+        underTest = new LibSecretBackedCredentialStore();
+    }
+
+    @Test
+    public void readPath_shouldKeepResidentMemoryFlat() throws Exception {
+        final String key = "http://thisisatestkey/soak";
+        final StoredCredential credential = new StoredCredential("username", "password".toCharArray());
+        assertTrue("Storing credential failed", underTest.add(key, credential));
+
+        final List<long[]> samples = new ArrayList<>();
+        final long interval = Math.max(1, operations / SAMPLES);
+        try {
+            for (long i = 1; i <= operations; i++) {
+                // mostly reads, including misses, with a write now and then
+                if (i % 100 == 0) {
+                    assertTrue("Storing credential failed", underTest.add(key, credential));
+                } else if (i % 10 == 0) {
+                    underTest.get(key + "/missing");
+                } else {
+                    assertNotNull("Credential not found", underTest.get(key));
+                }
+
+                if (i % interval == 0) {
+                    samples.add(sample(i));
+                }
+            }
+        } finally {
+            underTest.delete(key);
+        }
+
+        // the first quarter warms up the JIT, the heap and the D-Bus connection
+        final long[] baseline = samples.get(samples.size() / 4);
+        for (final long[] sample : samples.subList(samples.size() / 4, samples.size())) {
+            assertTrue(String.format("Resident memory grew by %d kB after %d operations", sample[1] - baseline[1],
+                    sample[0]), sample[1] - baseline[1] < RSS_TOLERANCE_KB);
+        }
+    }
+
+    private static long[] sample(final long operation) throws Exception {
+        // objects reclaimed by the cleaner are not a leak
+        System.gc();
+        Thread.sleep(100);
+
+        final long[] sample = {operation, getResidentKilobytes()};
+        logger.info("{} operations: RSS {} kB", sample[0], sample[1]);
+        return sample;
+    }
+
+    private static long getResidentKilobytes() throws IOException {
+        for (final String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+            if (line.startsWith("VmRSS:")) {
+                return Long.parseLong(line.replaceAll("[^0-9]", ""));
+            }
+        }
+        throw new IllegalStateException("VmRSS not found");
+    }
+}
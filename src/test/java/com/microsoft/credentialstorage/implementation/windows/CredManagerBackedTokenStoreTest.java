@@ -4,10 +4,28 @@
 package com.microsoft.credentialstorage.implementation.windows;
 
 import com.microsoft.credentialstorage.model.StoredToken;
+import com.microsoft.credentialstorage.model.StoredTokenType;
+import com.sun.jna.LastErrorException;
+import com.sun.jna.Memory;
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+import com.sun.jna.ptr.IntByReference;
+import com.sun.jna.ptr.PointerByReference;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
 
 public class CredManagerBackedTokenStoreTest {
 
@@ -27,4 +45,119 @@ public class CredManagerBackedTokenStoreTest {
 
         assertArrayEquals("Secret not correct", secretValue, token.getValue());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void sessionScopedStore_shouldOnlySeeSessionCredentials() {
+        // the structures get their type mapper from the loaded library, the credentials stay in the stub though
+        assumeTrue(CredManagerBackedSecureStore.isSupported());
+
+        final StubCredAdvapi32 credManager = new StubCredAdvapi32();
+        final CredManagerBackedTokenStore persisted = new CredManagerBackedTokenStore(credManager, false);
+        final CredManagerBackedTokenStore session = new CredManagerBackedTokenStore(credManager, true);
+
+        assertTrue(session.add("session", token("ephemeral")));
+        assertEquals(CredAdvapi32.CRED_PERSIST_SESSION,
+                credManager.persist.get(CredManagerBackedSecureStore.SESSION_TARGET_PREFIX + "session").intValue());
+        assertArrayEquals("ephemeral".toCharArray(), session.get("session").getValue());
+        assertNull(persisted.get("session"));
+
+        assertTrue(persisted.add("persisted", token("durable")));
+        assertEquals(CredAdvapi32.CRED_PERSIST_LOCAL_MACHINE, credManager.persist.get("persisted").intValue());
+
+        // the persisted credential is neither seen, replaced nor deleted by the session-scoped store
+        assertNull(session.get("persisted"));
+        assertFalse(session.delete("persisted"));
+        assertTrue(session.add("persisted", token("ephemeral")));
+        assertArrayEquals("ephemeral".toCharArray(), session.get("persisted").getValue());
+        assertArrayEquals("durable".toCharArray(), persisted.get("persisted").getValue());
+        assertEquals(List.of("session", "persisted"), session.keys().collect(Collectors.toList()));
+        assertEquals(List.of("persisted"), persisted.keys().collect(Collectors.toList()));
+
+        assertTrue(session.delete("session"));
+        assertNull(session.get("session"));
+    }
+
+    private static StoredToken token(final String value) {
+        return new StoredToken(value.toCharArray(), StoredTokenType.PERSONAL);
+    }
+
+    /**
+     * Credential Manager keeping the credentials of the tests in memory
+     */
+    private static final class StubCredAdvapi32 implements CredAdvapi32 {
+        final Map<String, Integer> persist = new LinkedHashMap<>();
+        final Map<String, String> userNames = new LinkedHashMap<>();
+        final Map<String, byte[]> blobs = new LinkedHashMap<>();
+
+        // native memory handed out, kept reachable until the test ends
+        private final List<Object> allocated = new ArrayList<>();
+
+        @Override
+        public boolean CredRead(final String targetName, final int type, final int flags,
+                                final PCREDENTIAL pcredential) throws LastErrorException {
+            if (!persist.containsKey(targetName)) {
+                throw new LastErrorException(ERROR_NOT_FOUND);
+            }
+            pcredential.credential = toNative(targetName).getPointer();
+            return true;
+        }
+
+        @Override
+        public boolean CredWrite(final CREDENTIAL credential, final int flags) throws LastErrorException {
+            persist.put(credential.TargetName, credential.Persist);
+            userNames.put(credential.TargetName, credential.UserName);
+            blobs.put(credential.TargetName, credential.CredentialBlob.getByteArray(0, credential.CredentialBlobSize));
+            return true;
+        }
+
+        @Override
+        public boolean CredDelete(final String targetName, final int type, final int flags)
+                throws LastErrorException {
+            if (persist.remove(targetName) == null) {
+                throw new LastErrorException(ERROR_NOT_FOUND);
+            }
+            userNames.remove(targetName);
+            blobs.remove(targetName);
+            return true;
+        }
+
+        @Override
+        public boolean CredEnumerate(final String filter, final int flags, final IntByReference count,
+                                     final PointerByReference credentials) throws LastErrorException {
+            final Memory pointers = new Memory((long) Math.max(1, persist.size()) * Native.POINTER_SIZE);
+            allocated.add(pointers);
+
+            int index = 0;
+            for (final String targetName : persist.keySet()) {
+                pointers.setPointer((long) index++ * Native.POINTER_SIZE, toNative(targetName).getPointer());
+            }
+            count.setValue(index);
+            credentials.setValue(pointers);
+            return true;
+        }
+
+        @Override
+        public void CredFree(final Pointer credential) throws LastErrorException {
+            // released with the stub
+        }
+
+        private CREDENTIAL toNative(final String targetName) {
+            final byte[] blob = blobs.get(targetName);
+            final Memory blobMemory = new Memory(Math.max(1, blob.length));
+            blobMemory.write(0, blob, 0, blob.length);
+
+            final CREDENTIAL credential = new CREDENTIAL();
+            credential.Type = CRED_TYPE_GENERIC;
+            credential.TargetName = targetName;
+            credential.UserName = userNames.get(targetName);
+            credential.Persist = persist.get(targetName);
+            credential.CredentialBlobSize = blob.length;
+            credential.CredentialBlob = blobMemory;
+            credential.write();
+
+            allocated.add(blobMemory);
+            allocated.add(credential);
+            return credential;
+        }
+    }
+}